@@ -0,0 +1,62 @@
+package com.wheelshare.cabbooking.benchmark;
+
+import com.wheelshare.cabbooking.service.DispatchMatcher;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * One batch dispatch window: candidate graph, greedy seed and auction, in a ~30 km square.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class DispatchBenchmark {
+
+    @Param({"500", "5000"})
+    public int size;
+
+    private int[] rideIds;
+    private double[] rideLat;
+    private double[] rideLng;
+    private double[] driverLat;
+    private double[] driverLng;
+    private DispatchMatcher.CandidateGraph graph;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(5);
+        rideIds = new int[size];
+        rideLat = new double[size];
+        rideLng = new double[size];
+        driverLat = new double[size];
+        driverLng = new double[size];
+        for (int i = 0; i < size; i++) {
+            rideIds[i] = i + 1;
+            rideLat[i] = 18.40 + random.nextDouble() * 0.3;
+            rideLng[i] = 73.70 + random.nextDouble() * 0.3;
+            driverLat[i] = 18.40 + random.nextDouble() * 0.3;
+            driverLng[i] = 73.70 + random.nextDouble() * 0.3;
+        }
+        graph = DispatchMatcher.CandidateGraph.build(rideIds, rideLat, rideLng, driverLat, driverLng, 5.0, 8);
+    }
+
+    @Benchmark
+    public DispatchMatcher.CandidateGraph buildGraph() {
+        return DispatchMatcher.CandidateGraph.build(rideIds, rideLat, rideLng, driverLat, driverLng, 5.0, 8);
+    }
+
+    @Benchmark
+    public int[] greedy() {
+        return DispatchMatcher.greedy(graph);
+    }
+
+    @Benchmark
+    public int[] solve() {
+        return DispatchMatcher.solve(graph, 10.0, 0.05, 2_000_000);
+    }
+}
@@ -0,0 +1,88 @@
+package com.wheelshare.cabbooking.benchmark;
+
+import com.wheelshare.cabbooking.helper.DistanceHelper;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Distance kernels over 10k points around one origin, as in a nearby-ride scan.
+ * lawOfCosines is the implementation DistanceHelper had before haversine, kept here as the baseline.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class DistanceBenchmark {
+
+    private static final int POINTS = 10_000;
+    private static final double ORIGIN_LAT = 18.52;
+    private static final double ORIGIN_LNG = 73.85;
+
+    private double[] lats;
+    private double[] lngs;
+    private double[] out;
+    private int[] index;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(1);
+        lats = new double[POINTS];
+        lngs = new double[POINTS];
+        out = new double[POINTS];
+        index = new int[POINTS];
+        for (int i = 0; i < POINTS; i++) {
+            lats[i] = ORIGIN_LAT + (random.nextDouble() - 0.5) * 0.4;
+            lngs[i] = ORIGIN_LNG + (random.nextDouble() - 0.5) * 0.4;
+        }
+    }
+
+    @Benchmark
+    public void lawOfCosines(Blackhole bh) {
+        for (int i = 0; i < POINTS; i++) {
+            bh.consume(lawOfCosinesKm(ORIGIN_LAT, ORIGIN_LNG, lats[i], lngs[i]));
+        }
+    }
+
+    @Benchmark
+    public void haversine(Blackhole bh) {
+        for (int i = 0; i < POINTS; i++) {
+            bh.consume(DistanceHelper.haversineKm(ORIGIN_LAT, ORIGIN_LNG, lats[i], lngs[i]));
+        }
+    }
+
+    @Benchmark
+    public void equirectangular(Blackhole bh) {
+        for (int i = 0; i < POINTS; i++) {
+            bh.consume(DistanceHelper.equirectangularKm(ORIGIN_LAT, ORIGIN_LNG, lats[i], lngs[i]));
+        }
+    }
+
+    @Benchmark
+    public double[] equirectangularBatch() {
+        DistanceHelper.equirectangularKm(ORIGIN_LAT, ORIGIN_LNG, lats, lngs, POINTS, out);
+        return out;
+    }
+
+    @Benchmark
+    public int withinFiveKm() {
+        return DistanceHelper.withinRadius(ORIGIN_LAT, ORIGIN_LNG, 5.0, lats, lngs, POINTS, index, out);
+    }
+
+    static double lawOfCosinesKm(double lat1, double lon1, double lat2, double lon2) {
+        if ((lat1 == lat2) && (lon1 == lon2)) {
+            return 0;
+        }
+        double theta = lon1 - lon2;
+        double dist = Math.sin(Math.toRadians(lat1)) * Math.sin(Math.toRadians(lat2)) + Math.cos(Math.toRadians(lat1)) * Math.cos(Math.toRadians(lat2)) * Math.cos(Math.toRadians(theta));
+        dist = Math.acos(dist);
+        dist = Math.toDegrees(dist);
+        dist = dist * 60 * 1.1515;
+        dist = dist * 1.609344;
+        return dist;
+    }
+}
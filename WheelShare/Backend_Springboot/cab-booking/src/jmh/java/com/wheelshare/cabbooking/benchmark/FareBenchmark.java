@@ -0,0 +1,42 @@
+package com.wheelshare.cabbooking.benchmark;
+
+import com.wheelshare.cabbooking.helper.FareHelper;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.math.BigDecimal;
+import java.util.concurrent.TimeUnit;
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class FareBenchmark {
+
+    private FareHelper fareHelper;
+    private double distanceKm;
+    private BigDecimal fare;
+
+    @Setup
+    public void setUp() {
+        // Same values as application.properties
+        fareHelper = new FareHelper();
+        ReflectionTestUtils.setField(fareHelper, "baseFare", new BigDecimal("30.0"));
+        ReflectionTestUtils.setField(fareHelper, "perKmRate", new BigDecimal("10.0"));
+        ReflectionTestUtils.setField(fareHelper, "commissionPercent", new BigDecimal("25.0"));
+        distanceKm = 12.3456789;
+        fare = fareHelper.calculateEstimatedFare(distanceKm);
+    }
+
+    @Benchmark
+    public BigDecimal estimatedFare() {
+        return fareHelper.calculateEstimatedFare(distanceKm);
+    }
+
+    @Benchmark
+    public BigDecimal driverEarning() {
+        return fareHelper.calculateDriverEarning(fare);
+    }
+}
@@ -0,0 +1,60 @@
+package com.wheelshare.cabbooking.benchmark;
+
+import com.wheelshare.cabbooking.service.RideEventJournal;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class JournalBenchmark {
+
+    private Path directory;
+    private RideEventJournal journal;
+
+    @Setup(Level.Iteration)
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("ride-journal-bench");
+        journal = new RideEventJournal(directory.toString(), 64 * 1024 * 1024, 5, 0);
+        journal.open();
+    }
+
+    @TearDown(Level.Iteration)
+    public void tearDown() throws IOException {
+        journal.close();
+        try (Stream<Path> files = Files.walk(directory)) {
+            files.sorted(Comparator.reverseOrder()).forEach(p -> p.toFile().delete());
+        }
+    }
+
+    // Fire and forget, as RideService appends; the flusher forces in the background
+    @Benchmark
+    public long append() {
+        return journal.append(RideEventJournal.EventType.COMPLETED, 42, 7, 12_550, null);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public long appendContended() {
+        return journal.append(RideEventJournal.EventType.PAID, 42, 7, 12_550, "UPI");
+    }
+
+    // Every 100th append waits for its force, a caller that needs durability batched this way
+    @Benchmark
+    public long appendGroupCommit() throws InterruptedException {
+        long sequence = journal.append(RideEventJournal.EventType.STARTED, 42, 7, 0, null);
+        if (sequence % 100 == 0) {
+            journal.awaitDurable(sequence);
+        }
+        return sequence;
+    }
+}
@@ -0,0 +1,77 @@
+package com.wheelshare.cabbooking.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import tools.jackson.databind.json.JsonMapper;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Serialization of the HashMap response shapes the controllers return most often.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class JsonBenchmark {
+
+    private JsonMapper jsonMapper;
+    private List<Map<String, Object>> nearbyRides;
+    private Map<String, Object> rideStatus;
+
+    @Setup
+    public void setUp() {
+        jsonMapper = JsonMapper.builder().build();
+
+        // GET /api/driver/nearby-rides with 50 rides in range
+        nearbyRides = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            Map<String, Object> map = new HashMap<>();
+            map.put("rideId", 1000 + i);
+            map.put("pickupAddress", "Shivaji Nagar, Pune, Maharashtra " + i);
+            map.put("dropAddress", "Hinjewadi Phase 1, Pune, Maharashtra " + i);
+            map.put("distanceKm", 14.2 + i);
+            map.put("fare", 172.0 + i);
+            map.put("driverEarning", new BigDecimal("129.00"));
+            map.put("distanceToPickup", 1.37);
+            nearbyRides.add(map);
+        }
+
+        // GET /api/ride-status/{rideId}
+        Map<String, Object> driver = new HashMap<>();
+        driver.put("name", "Driver Name");
+        driver.put("phone", "9876543210");
+        driver.put("licenseNumber", "MH12-2020-0012345");
+
+        rideStatus = new HashMap<>();
+        rideStatus.put("rideId", 1234);
+        rideStatus.put("rideStatus", "ACCEPTED");
+        rideStatus.put("status", "ACCEPTED");
+        rideStatus.put("sourceLat", 18.5308);
+        rideStatus.put("sourceLng", 73.8475);
+        rideStatus.put("destinationLat", 18.5912);
+        rideStatus.put("destinationLng", 73.7389);
+        rideStatus.put("fare", 172.0);
+        rideStatus.put("distanceKm", 14.2);
+        rideStatus.put("requestedAt", LocalDateTime.of(2026, 1, 15, 9, 30));
+        rideStatus.put("completedAt", null);
+        rideStatus.put("driver", driver);
+    }
+
+    @Benchmark
+    public byte[] nearbyRides() {
+        return jsonMapper.writeValueAsBytes(nearbyRides);
+    }
+
+    @Benchmark
+    public byte[] rideStatus() {
+        return jsonMapper.writeValueAsBytes(rideStatus);
+    }
+}
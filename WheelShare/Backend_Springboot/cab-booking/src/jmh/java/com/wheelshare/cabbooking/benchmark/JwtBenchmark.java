@@ -0,0 +1,69 @@
+package com.wheelshare.cabbooking.benchmark;
+
+import com.wheelshare.cabbooking.security.JwtService;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class JwtBenchmark {
+
+    // Far more distinct tokens than the verified-token cache holds (10,000), so a token has
+    // almost always been evicted by the time the ring comes back to it
+    private static final int FRESH_TOKENS = 1 << 16;
+
+    private JwtService jwtService;
+    private String token;
+    private String[] freshTokens;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        jwtService = new JwtService();
+        token = jwtService.generateToken("driver@wheelshare.test", "DRIVER", 42);
+
+        freshTokens = new String[FRESH_TOKENS];
+        for (int i = 0; i < FRESH_TOKENS; i++) {
+            freshTokens[i] = jwtService.generateToken("driver" + i + "@wheelshare.test", "DRIVER", i);
+        }
+    }
+
+    @Benchmark
+    public String generate() {
+        return jwtService.generateToken("driver@wheelshare.test", "DRIVER", 42);
+    }
+
+    @Benchmark
+    public boolean validate() {
+        return jwtService.isTokenValid(token);
+    }
+
+    // Verified-token cache hit, what a polling client pays after its first request
+    @Benchmark
+    public Object parseCached() {
+        return jwtService.parseToken(token);
+    }
+
+    // Cache miss, what a token's first request pays: SHA-256, HMAC check, claims decoding and the cache insert
+    @Benchmark
+    public Object parseUncached() {
+        String fresh = freshTokens[next];
+        next = (next + 1) & (FRESH_TOKENS - 1);
+        return jwtService.parseToken(fresh);
+    }
+
+    // The validate-then-extract-each-claim calls a request used to make, all cache hits now
+    @Benchmark
+    public void authenticatedRequest(Blackhole bh) {
+        bh.consume(jwtService.isTokenValid(token));
+        bh.consume(jwtService.extractEmail(token));
+        bh.consume(jwtService.extractRole(token));
+        bh.consume(jwtService.extractUserId(token));
+    }
+}
@@ -0,0 +1,114 @@
+package com.wheelshare.cabbooking.benchmark;
+
+import com.wheelshare.cabbooking.entity.Ride;
+import com.wheelshare.cabbooking.enums.RideStatus;
+import com.wheelshare.cabbooking.helper.FareHelper;
+import com.wheelshare.cabbooking.service.DispatchService;
+import com.wheelshare.cabbooking.service.DriverLocationBuffer;
+import com.wheelshare.cabbooking.service.DriverService;
+import com.wheelshare.cabbooking.service.RideEventStream;
+import com.wheelshare.cabbooking.service.RideGeoIndex;
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.config.MeterFilter;
+import io.micrometer.core.instrument.distribution.DistributionStatisticConfig;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.micrometer.prometheusmetrics.PrometheusConfig;
+import io.micrometer.prometheusmetrics.PrometheusMeterRegistry;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of the latency histograms. metrics=off gives every meter a no-op registry, on records
+ * into Prometheus with percentile histograms, as application.properties configures them.
+ *
+ * nearbyRides is the in-memory part of /api/driver/nearby-rides with its ride.geo.nearby timer;
+ * repositoryTimer is what each repository call and request pays: a tagged timer looked up and
+ * recorded. Compare nearbyRides on/off, and repositoryTimer against a query's round trip.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class MetricsBenchmark {
+
+    private static final int DRIVER_ID = 1;
+    private static final int RIDES = 10_000;
+
+    @Param({"off", "on"})
+    public String metrics;
+
+    private MeterRegistry registry;
+    private DriverService driverService;
+
+    @Setup
+    public void setUp() {
+        if ("on".equals(metrics)) {
+            registry = new PrometheusMeterRegistry(PrometheusConfig.DEFAULT);
+            registry.config().meterFilter(new MeterFilter() {
+                @Override
+                public DistributionStatisticConfig configure(Meter.Id id, DistributionStatisticConfig config) {
+                    return DistributionStatisticConfig.builder().percentilesHistogram(true).build().merge(config);
+                }
+            });
+        } else {
+            registry = new SimpleMeterRegistry();
+            registry.config().meterFilter(MeterFilter.deny());
+        }
+
+        FareHelper fareHelper = new FareHelper();
+        ReflectionTestUtils.setField(fareHelper, "baseFare", new BigDecimal("30.0"));
+        ReflectionTestUtils.setField(fareHelper, "perKmRate", new BigDecimal("10.0"));
+        ReflectionTestUtils.setField(fareHelper, "commissionPercent", new BigDecimal("25.0"));
+
+        RideGeoIndex index = new RideGeoIndex(null, registry);
+        Random random = new Random(3);
+        for (int i = 0; i < RIDES; i++) {
+            Ride ride = new Ride();
+            ride.setRideId(i + 1);
+            ride.setSourceLat(18.0 + random.nextDouble());
+            ride.setSourceLng(73.5 + random.nextDouble());
+            ride.setSourceAddress("Pickup " + i);
+            ride.setDestinationAddress("Drop " + i);
+            ride.setDistanceKm(10.0);
+            ride.setFare(130.0);
+            ride.setRideStatus(RideStatus.REQUESTED);
+            index.add(ride);
+        }
+
+        DriverLocationBuffer buffer = new DriverLocationBuffer(null, null, registry);
+        RideEventStream stream = new RideEventStream(null, 1);
+        DispatchService dispatchService = new DispatchService(index, buffer, stream, registry);
+        driverService = new DriverService(null, null, fareHelper, index, buffer, stream, dispatchService, null);
+
+        buffer.setAvailable(DRIVER_ID, true);
+        buffer.ingest(DRIVER_ID, 18.5, 74.0);
+    }
+
+    @Benchmark
+    public List<Map<String, Object>> nearbyRides() {
+        return driverService.getNearbyRides(DRIVER_ID);
+    }
+
+    // Same shape as spring.data.repository.invocations
+    @Benchmark
+    public Timer repositoryTimer() {
+        Timer timer = Timer.builder("spring.data.repository.invocations")
+                .tag("repository", "RideRepository")
+                .tag("method", "findDriverHistoryPage")
+                .tag("state", "SUCCESS")
+                .tag("exception", "None")
+                .register(registry);
+        timer.record(250_000, TimeUnit.NANOSECONDS);
+        return timer;
+    }
+}
@@ -0,0 +1,120 @@
+package com.wheelshare.cabbooking.benchmark;
+
+import com.wheelshare.cabbooking.entity.Ride;
+import com.wheelshare.cabbooking.enums.RideStatus;
+import com.wheelshare.cabbooking.helper.FareHelper;
+import com.wheelshare.cabbooking.service.DispatchService;
+import com.wheelshare.cabbooking.service.DriverLocationBuffer;
+import com.wheelshare.cabbooking.service.DriverService;
+import com.wheelshare.cabbooking.service.RideEventStream;
+import com.wheelshare.cabbooking.service.RideGeoIndex;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * DriverService.getNearbyRides against the full scan it replaced, over open rides spread
+ * across a ~110 km square. linearScan is the original pipeline over every REQUESTED ride,
+ * minus the repository call.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class NearbyRidesBenchmark {
+
+    private static final int DRIVER_ID = 1;
+
+    @Param({"1000", "10000", "100000"})
+    public int rides;
+
+    private List<Ride> openRides;
+    private FareHelper fareHelper;
+    private DriverService driverService;
+    private double driverLat;
+    private double driverLng;
+
+    @Setup
+    public void setUp() {
+        fareHelper = new FareHelper();
+        ReflectionTestUtils.setField(fareHelper, "baseFare", new BigDecimal("30.0"));
+        ReflectionTestUtils.setField(fareHelper, "perKmRate", new BigDecimal("10.0"));
+        ReflectionTestUtils.setField(fareHelper, "commissionPercent", new BigDecimal("25.0"));
+
+        RideGeoIndex index = new RideGeoIndex(null, new SimpleMeterRegistry());
+        Random random = new Random(3);
+        openRides = new ArrayList<>(rides);
+        for (int i = 0; i < rides; i++) {
+            Ride ride = new Ride();
+            ride.setRideId(i + 1);
+            ride.setSourceLat(18.0 + random.nextDouble());
+            ride.setSourceLng(73.5 + random.nextDouble());
+            ride.setSourceAddress("Pickup " + i);
+            ride.setDestinationAddress("Drop " + i);
+            ride.setDistanceKm(10.0);
+            ride.setFare(130.0);
+            ride.setRideStatus(RideStatus.REQUESTED);
+            openRides.add(ride);
+            index.add(ride);
+        }
+
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        DriverLocationBuffer buffer = new DriverLocationBuffer(null, null, registry);
+        RideEventStream stream = new RideEventStream(null, 1);
+        DispatchService dispatchService = new DispatchService(index, buffer, stream, registry);
+        driverService = new DriverService(null, null, fareHelper, index, buffer, stream, dispatchService, null);
+
+        driverLat = 18.5;
+        driverLng = 74.0;
+        buffer.setAvailable(DRIVER_ID, true);
+        buffer.ingest(DRIVER_ID, driverLat, driverLng);
+    }
+
+    @Benchmark
+    public List<Map<String, Object>> gridIndex() {
+        return driverService.getNearbyRides(DRIVER_ID);
+    }
+
+    @Benchmark
+    public List<Map<String, Object>> linearScan() {
+        double maxDistanceKm = 5.0;
+
+        return openRides.stream()
+                .filter(r -> DistanceBenchmark.lawOfCosinesKm(
+                        driverLat, driverLng,
+                        r.getSourceLat(), r.getSourceLng()
+                ) <= maxDistanceKm)
+                .map(r -> {
+                    double distanceToPickup = DistanceBenchmark.lawOfCosinesKm(
+                            driverLat, driverLng,
+                            r.getSourceLat(), r.getSourceLng()
+                    );
+
+                    BigDecimal driverEarning = fareHelper.calculateDriverEarning(BigDecimal.valueOf(r.getFare()));
+
+                    Map<String, Object> map = new HashMap<>();
+                    map.put("rideId", r.getRideId());
+                    map.put("pickupAddress", r.getSourceAddress());
+                    map.put("dropAddress", r.getDestinationAddress());
+                    map.put("distanceKm", r.getDistanceKm());
+                    map.put("fare", r.getFare());
+                    map.put("driverEarning", driverEarning);
+                    map.put("distanceToPickup", Math.round(distanceToPickup * 100.0) / 100.0);
+
+                    return map;
+                })
+                .sorted((m1, m2) -> Double.compare((Double) m1.get("distanceToPickup"), (Double) m2.get("distanceToPickup")))
+                .collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,129 @@
+package com.wheelshare.cabbooking.loadtest;
+
+import com.wheelshare.cabbooking.service.IdempotencyStore;
+import tools.jackson.databind.JsonNode;
+import tools.jackson.databind.json.JsonMapper;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.Queue;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Non-blocking calls to the app, at most maxInFlight on the wire. Latency is taken from the moment
+ * a call is made, not when it gets a connection, so a backed-up server shows up in the numbers
+ * instead of quietly slowing the simulated apps down.
+ */
+final class ApiClient {
+
+    private static final JsonMapper JSON = JsonMapper.builder().build();
+
+    private final String baseUrl;
+    private final HttpClient client;
+    private final LatencyReport report;
+    private final Semaphore permits;
+    private final Queue<Runnable> waiting = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger inFlight = new AtomicInteger();
+
+    record Response(int status, String body) {
+
+        boolean ok() {
+            return status >= 200 && status < 300;
+        }
+
+        JsonNode json() {
+            return JSON.readTree(body);
+        }
+    }
+
+    ApiClient(String baseUrl, int maxInFlight, ExecutorService executor, LatencyReport report) {
+        this.baseUrl = baseUrl;
+        this.report = report;
+        this.permits = new Semaphore(maxInFlight);
+        this.client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofSeconds(5))
+                .executor(executor)
+                .build();
+    }
+
+    int inFlight() {
+        return inFlight.get();
+    }
+
+    CompletableFuture<Response> get(String endpoint, String path, String token) {
+        return send(endpoint, request(path, token).GET());
+    }
+
+    CompletableFuture<Response> post(String endpoint, String path, String token, Object body) {
+        return send(endpoint, request(path, token)
+                .header("Content-Type", "application/json")
+                .POST(body == null ? HttpRequest.BodyPublishers.noBody()
+                        : HttpRequest.BodyPublishers.ofString(JSON.writeValueAsString(body))));
+    }
+
+    // Ride requests and payments carry an Idempotency-Key, kept across retries of the same request
+    CompletableFuture<Response> post(String endpoint, String path, String token, Object body, String idempotencyKey) {
+        return send(endpoint, request(path, token)
+                .header("Content-Type", "application/json")
+                .header(IdempotencyStore.HEADER, idempotencyKey)
+                .POST(HttpRequest.BodyPublishers.ofString(JSON.writeValueAsString(body))));
+    }
+
+    static String newIdempotencyKey() {
+        return UUID.randomUUID().toString();
+    }
+
+    private HttpRequest.Builder request(String path, String token) {
+        HttpRequest.Builder builder = HttpRequest.newBuilder(URI.create(baseUrl + path))
+                .timeout(Duration.ofSeconds(30));
+        if (token != null) {
+            builder.header("Authorization", "Bearer " + token);
+        }
+        return builder;
+    }
+
+    private CompletableFuture<Response> send(String endpoint, HttpRequest.Builder builder) {
+        HttpRequest request = builder.build();
+        long start = System.nanoTime();
+        CompletableFuture<Response> result = new CompletableFuture<>();
+
+        waiting.add(() -> {
+            inFlight.incrementAndGet();
+            client.sendAsync(request, HttpResponse.BodyHandlers.ofString()).whenComplete((response, e) -> {
+                long micros = (System.nanoTime() - start) / 1000;
+                inFlight.decrementAndGet();
+                permits.release();
+                drain();
+                if (e != null) {
+                    report.failed(endpoint);
+                    result.completeExceptionally(e);
+                } else {
+                    report.record(endpoint, response.statusCode(), micros);
+                    result.complete(new Response(response.statusCode(), response.body()));
+                }
+            });
+        });
+        drain();
+        return result;
+    }
+
+    private void drain() {
+        while (!waiting.isEmpty() && permits.tryAcquire()) {
+            Runnable next = waiting.poll();
+            if (next == null) {
+                permits.release();
+                continue;
+            }
+            next.run();
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package com.wheelshare.cabbooking.loadtest;
+
+import com.wheelshare.cabbooking.helper.DistanceHelper;
+
+import java.util.Random;
+
+/**
+ * A square city of sizeKm around a centre. Points are {lat, lng} pairs.
+ */
+final class City {
+
+    // Trips are at least this long and at most this long (or half the city, if smaller)
+    private static final double MIN_TRIP_KM = 1.0;
+    private static final double MAX_TRIP_KM = 15.0;
+
+    private final double minLat;
+    private final double maxLat;
+    private final double minLng;
+    private final double maxLng;
+    private final double maxTripKm;
+
+    City(double centerLat, double centerLng, double sizeKm) {
+        double latDelta = DistanceHelper.latitudeDelta(sizeKm / 2);
+        double lngDelta = DistanceHelper.longitudeDelta(centerLat, sizeKm / 2);
+        this.minLat = centerLat - latDelta;
+        this.maxLat = centerLat + latDelta;
+        this.minLng = centerLng - lngDelta;
+        this.maxLng = centerLng + lngDelta;
+        this.maxTripKm = Math.max(MIN_TRIP_KM, Math.min(MAX_TRIP_KM, sizeKm / 2));
+    }
+
+    double[] randomPoint(Random random) {
+        return new double[]{
+                minLat + random.nextDouble() * (maxLat - minLat),
+                minLng + random.nextDouble() * (maxLng - minLng)
+        };
+    }
+
+    // Somewhere a trip from here could end, in a random direction and kept inside the city
+    double[] destination(double[] from, Random random) {
+        double km = MIN_TRIP_KM + random.nextDouble() * (maxTripKm - MIN_TRIP_KM);
+        return offset(from, km, random.nextDouble() * 2 * Math.PI);
+    }
+
+    // A cruising driver drifts km in a random direction
+    double[] wander(double[] from, double km, Random random) {
+        return offset(from, km, random.nextDouble() * 2 * Math.PI);
+    }
+
+    // km along the straight line to target, or target itself if it is closer than that
+    static double[] moveToward(double[] from, double[] target, double km) {
+        double remaining = DistanceHelper.calculateDistanceKm(from[0], from[1], target[0], target[1]);
+        if (remaining <= km) {
+            return target.clone();
+        }
+        double f = km / remaining;
+        return new double[]{from[0] + (target[0] - from[0]) * f, from[1] + (target[1] - from[1]) * f};
+    }
+
+    private double[] offset(double[] from, double km, double bearing) {
+        double lat = from[0] + km * Math.cos(bearing) / DistanceHelper.KM_PER_DEGREE;
+        double lng = from[1] + km * Math.sin(bearing) / (DistanceHelper.KM_PER_DEGREE * Math.cos(Math.toRadians(from[0])));
+        return new double[]{clamp(lat, minLat, maxLat), clamp(lng, minLng, maxLng)};
+    }
+
+    private static double clamp(double value, double min, double max) {
+        return Math.max(min, Math.min(max, value));
+    }
+}
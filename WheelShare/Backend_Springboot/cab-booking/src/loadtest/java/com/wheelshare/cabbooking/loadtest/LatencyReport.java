@@ -0,0 +1,99 @@
+package com.wheelshare.cabbooking.loadtest;
+
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+
+import java.io.PrintStream;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Latency and outcome per endpoint, in microseconds. Recording is wait-free (HdrHistogram Recorder);
+ * reading intervals and totals is serialized.
+ */
+final class LatencyReport {
+
+    private static final int SIGNIFICANT_DIGITS = 3;
+
+    private final Map<String, Endpoint> endpoints = new ConcurrentHashMap<>();
+    private final long startNanos = System.nanoTime();
+
+    private static final class Endpoint {
+        final Recorder recorder = new Recorder(SIGNIFICANT_DIGITS);
+        final Histogram total = new Histogram(SIGNIFICANT_DIGITS);
+        final LongAdder ok = new LongAdder();
+        final LongAdder clientErrors = new LongAdder();
+        final LongAdder serverErrors = new LongAdder();
+        final LongAdder failures = new LongAdder();
+        Histogram interval;
+    }
+
+    private Endpoint endpoint(String name) {
+        return endpoints.computeIfAbsent(name, n -> new Endpoint());
+    }
+
+    void record(String name, int status, long micros) {
+        Endpoint endpoint = endpoint(name);
+        endpoint.recorder.recordValue(Math.max(micros, 1));
+        if (status < 400) {
+            endpoint.ok.increment();
+        } else if (status < 500) {
+            endpoint.clientErrors.increment();
+        } else {
+            endpoint.serverErrors.increment();
+        }
+    }
+
+    // No response at all (connection refused, reset, timeout); no latency to record
+    void failed(String name) {
+        endpoint(name).failures.increment();
+    }
+
+    // Everything recorded since the last call, across endpoints; also folds it into the totals
+    synchronized Histogram interval() {
+        Histogram all = new Histogram(SIGNIFICANT_DIGITS);
+        for (Endpoint endpoint : endpoints.values()) {
+            endpoint.interval = endpoint.recorder.getIntervalHistogram(endpoint.interval);
+            endpoint.total.add(endpoint.interval);
+            all.add(endpoint.interval);
+        }
+        return all;
+    }
+
+    synchronized void print(PrintStream out) {
+        interval();
+        double seconds = (System.nanoTime() - startNanos) / 1e9;
+
+        out.printf(Locale.ROOT, "%-42s %9s %9s %8s %7s %7s %9s %9s %9s %9s%n",
+                "endpoint", "count", "req/s", "2xx/3xx", "4xx", "5xx/io", "p50 ms", "p99 ms", "p999 ms", "max ms");
+        Histogram all = new Histogram(SIGNIFICANT_DIGITS);
+        long ok = 0;
+        long clientErrors = 0;
+        long serverErrors = 0;
+        for (Map.Entry<String, Endpoint> entry : new TreeMap<>(endpoints).entrySet()) {
+            Endpoint e = entry.getValue();
+            all.add(e.total);
+            ok += e.ok.sum();
+            clientErrors += e.clientErrors.sum();
+            serverErrors += e.serverErrors.sum() + e.failures.sum();
+            row(out, entry.getKey(), e.total, seconds, e.ok.sum(), e.clientErrors.sum(),
+                    e.serverErrors.sum() + e.failures.sum());
+        }
+        row(out, "all", all, seconds, ok, clientErrors, serverErrors);
+    }
+
+    private static void row(PrintStream out, String name, Histogram h, double seconds,
+                            long ok, long clientErrors, long serverErrors) {
+        long count = ok + clientErrors + serverErrors;
+        out.printf(Locale.ROOT, "%-42s %9d %9.1f %8d %7d %7d %9.2f %9.2f %9.2f %9.2f%n",
+                name, count, count / seconds, ok, clientErrors, serverErrors,
+                ms(h, 50.0), ms(h, 99.0), ms(h, 99.9), h.getTotalCount() == 0 ? 0.0 : h.getMaxValue() / 1000.0);
+    }
+
+    static double ms(Histogram h, double percentile) {
+        return h.getTotalCount() == 0 ? 0.0 : h.getValueAtPercentile(percentile) / 1000.0;
+    }
+}
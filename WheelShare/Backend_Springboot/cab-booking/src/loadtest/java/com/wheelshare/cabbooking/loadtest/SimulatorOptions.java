@@ -0,0 +1,108 @@
+package com.wheelshare.cabbooking.loadtest;
+
+import java.util.Locale;
+
+/**
+ * Simulator settings, given as name=value arguments (see -Dsim.args in pom.xml); a leading -- is allowed.
+ * Defaults describe a mid-sized city on a local app with the stock application.properties.
+ */
+final class SimulatorOptions {
+
+    String baseUrl = "http://localhost:8080";
+
+    // Population and demand
+    int drivers = 1000;
+    int customers = 3000;
+    double ridesPerSecond = 5.0;
+
+    // City: a square of cityKm around the centre
+    double centerLat = 18.52;
+    double centerLng = 73.85;
+    double cityKm = 20.0;
+
+    // Run length; drivers come online and demand grows to full rate over rampUpSeconds
+    int durationSeconds = 300;
+    int rampUpSeconds = 60;
+    int reportSeconds = 10;
+
+    // How often the apps talk to the server, in real time
+    long locationIntervalMs = 4000;
+    long pollIntervalMs = 3000;
+    long statusIntervalMs = 2000;
+    int patienceSeconds = 120;
+
+    // Driving, compressed by timeScale so a run sees whole rides
+    double speedKmh = 25.0;
+    double timeScale = 10.0;
+
+    // Requests on the wire at once; the rest queue in the simulator and the wait counts as latency
+    int maxInFlight = 512;
+
+    // Accounts: reused across runs, new ones verify with the OTP read back from the app's database
+    String userPrefix = "sim";
+    String password = "Sim@12345";
+    String dbUrl = "jdbc:mysql://localhost:3306/wheelshare_springboot_db";
+    String dbUser = "root";
+    String dbPassword = "cdac";
+
+    long seed = 1;
+
+    static SimulatorOptions parse(String[] args) {
+        SimulatorOptions options = new SimulatorOptions();
+        for (String arg : args) {
+            if (arg.isBlank()) {
+                continue;
+            }
+            String option = arg.startsWith("--") ? arg.substring(2) : arg;
+            int eq = option.indexOf('=');
+            if (eq < 0) {
+                throw new IllegalArgumentException("Expected name=value, got " + arg);
+            }
+            options.set(option.substring(0, eq), option.substring(eq + 1));
+        }
+        if (options.drivers < 1 || options.customers < 1 || options.ridesPerSecond <= 0) {
+            throw new IllegalArgumentException("drivers, customers and rides-per-second must be positive");
+        }
+        return options;
+    }
+
+    private void set(String name, String value) {
+        switch (name) {
+            case "base-url" -> baseUrl = value;
+            case "drivers" -> drivers = Integer.parseInt(value);
+            case "customers" -> customers = Integer.parseInt(value);
+            case "rides-per-second" -> ridesPerSecond = Double.parseDouble(value);
+            case "center" -> {
+                String[] parts = value.split(",");
+                centerLat = Double.parseDouble(parts[0]);
+                centerLng = Double.parseDouble(parts[1]);
+            }
+            case "city-km" -> cityKm = Double.parseDouble(value);
+            case "duration" -> durationSeconds = Integer.parseInt(value);
+            case "ramp-up" -> rampUpSeconds = Integer.parseInt(value);
+            case "report" -> reportSeconds = Integer.parseInt(value);
+            case "location-interval-ms" -> locationIntervalMs = Long.parseLong(value);
+            case "poll-interval-ms" -> pollIntervalMs = Long.parseLong(value);
+            case "status-interval-ms" -> statusIntervalMs = Long.parseLong(value);
+            case "patience" -> patienceSeconds = Integer.parseInt(value);
+            case "speed-kmh" -> speedKmh = Double.parseDouble(value);
+            case "time-scale" -> timeScale = Double.parseDouble(value);
+            case "max-in-flight" -> maxInFlight = Integer.parseInt(value);
+            case "user-prefix" -> userPrefix = value;
+            case "password" -> password = value;
+            case "db-url" -> dbUrl = value;
+            case "db-user" -> dbUser = value;
+            case "db-password" -> dbPassword = value;
+            case "seed" -> seed = Long.parseLong(value);
+            default -> throw new IllegalArgumentException("Unknown option " + name);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return String.format(Locale.ROOT,
+                "%s: %d drivers, %d customers, %.1f rides/s in a %.0f km city around %.4f,%.4f for %ds (ramp-up %ds)",
+                baseUrl, drivers, customers, ridesPerSecond, cityKm, centerLat, centerLng,
+                durationSeconds, rampUpSeconds);
+    }
+}
@@ -0,0 +1,280 @@
+package com.wheelshare.cabbooking.loadtest;
+
+import org.HdrHistogram.Histogram;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Friday-evening traffic against a locally running app, through the same endpoints the apps call.
+ * Drivers come online over the ramp-up and stream positions; ride requests arrive as a Poisson
+ * process that grows to ridesPerSecond over the same ramp-up, each taken by an idle customer.
+ * Prints a progress line every few seconds, then throughput and p50/p99/p999 per endpoint.
+ *
+ * Accounts ({userPrefix}-driver-N@wheelshare.test, ...) are created on the first run and reused
+ * afterwards. New accounts verify with the OTP read from the app's database, as the mails go to
+ * addresses nobody reads; point spring.mail.host at a local SMTP sink to keep the outbox quiet.
+ *
+ * A 4xx on accept-ride is a driver losing the race for a ride, and on cancel a driver accepting
+ * first; both are part of the load, not failures of the run.
+ */
+public final class TrafficSimulator {
+
+    private static final long DRAIN_TIMEOUT_MS = 60_000;
+
+    final SimulatorOptions options;
+    final City city;
+    final ScheduledExecutorService scheduler = Executors.newScheduledThreadPool(2, daemon("sim-scheduler"));
+    private final ExecutorService httpExecutor =
+            Executors.newFixedThreadPool(Math.max(4, Runtime.getRuntime().availableProcessors()), daemon("sim-http"));
+    ApiClient api;
+    volatile boolean running = true;
+
+    // Users with a step scheduled or in flight
+    final AtomicInteger busy = new AtomicInteger();
+    private final Queue<VirtualCustomer> idleCustomers = new ConcurrentLinkedQueue<>();
+
+    final LongAdder ridesRequested = new LongAdder();
+    final LongAdder ridesAccepted = new LongAdder();
+    final LongAdder acceptsLost = new LongAdder();
+    final LongAdder ridesStarted = new LongAdder();
+    final LongAdder ridesCompleted = new LongAdder();
+    final LongAdder ridesPaid = new LongAdder();
+    final LongAdder ridesCancelled = new LongAdder();
+    final LongAdder stepFailures = new LongAdder();
+    private final LongAdder noIdleCustomer = new LongAdder();
+
+    private Connection otpConnection;
+
+    TrafficSimulator(SimulatorOptions options) {
+        this.options = options;
+        this.city = new City(options.centerLat, options.centerLng, options.cityKm);
+    }
+
+    public static void main(String[] args) throws Exception {
+        TrafficSimulator simulator = new TrafficSimulator(SimulatorOptions.parse(args));
+        int status = simulator.run() ? 0 : 1;
+        System.exit(status);
+    }
+
+    boolean run() throws Exception {
+        System.out.println("Simulating " + options);
+
+        List<VirtualDriver> drivers = new ArrayList<>();
+        for (int i = 0; i < options.drivers; i++) {
+            drivers.add(new VirtualDriver(this, i, options.seed * 31 + i));
+        }
+        List<VirtualCustomer> customers = new ArrayList<>();
+        for (int i = 0; i < options.customers; i++) {
+            customers.add(new VirtualCustomer(this, i, options.seed * 31 + options.drivers + i));
+        }
+
+        List<VirtualUser> users = new ArrayList<>(drivers);
+        users.addAll(customers);
+        if (!signIn(users)) {
+            return false;
+        }
+
+        LatencyReport report = new LatencyReport();
+        api = new ApiClient(options.baseUrl, options.maxInFlight, httpExecutor, report);
+        long startNanos = System.nanoTime();
+
+        long rampMs = options.rampUpSeconds * 1000L;
+        for (int i = 0; i < drivers.size(); i++) {
+            drivers.get(i).start(rampMs * i / drivers.size());
+        }
+        Collections.shuffle(customers, new Random(options.seed));
+        idleCustomers.addAll(customers);
+        scheduleArrival(startNanos, new Random(options.seed));
+
+        ScheduledFuture<?> progress = scheduler.scheduleAtFixedRate(() -> progress(report, startNanos),
+                options.reportSeconds, options.reportSeconds, TimeUnit.SECONDS);
+
+        Thread.sleep(options.durationSeconds * 1000L);
+        running = false;
+        System.out.println("Stopping: finishing rides in progress and taking drivers offline");
+        long deadline = System.currentTimeMillis() + DRAIN_TIMEOUT_MS;
+        while (busy.get() > 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(200);
+        }
+        progress.cancel(false);
+
+        System.out.println();
+        report.print(System.out);
+        System.out.println();
+        System.out.printf(Locale.ROOT,
+                "Rides: %d requested, %d accepted (%d accepts lost to another driver), %d started, %d completed, "
+                        + "%d paid, %d cancelled by the customer%n",
+                ridesRequested.sum(), ridesAccepted.sum(), acceptsLost.sum(), ridesStarted.sum(),
+                ridesCompleted.sum(), ridesPaid.sum(), ridesCancelled.sum());
+        System.out.printf(Locale.ROOT, "Arrivals with no idle customer: %d, failed steps (retried): %d%n",
+                noIdleCustomer.sum(), stepFailures.sum());
+        if (busy.get() > 0) {
+            System.out.println(busy.get() + " users still busy after " + DRAIN_TIMEOUT_MS / 1000 + "s");
+        }
+        return true;
+    }
+
+    // Customer back in the pool for the next arrival
+    void idle(VirtualCustomer customer) {
+        if (running) {
+            idleCustomers.add(customer);
+        }
+    }
+
+    // Candidates arrive at the full rate; during ramp-up each is kept with probability elapsed / rampUp
+    private void scheduleArrival(long startNanos, Random random) {
+        long delayMicros = (long) (-Math.log(1 - random.nextDouble()) / options.ridesPerSecond * 1_000_000);
+        scheduler.schedule(() -> {
+            if (!running) {
+                return;
+            }
+            double elapsed = (System.nanoTime() - startNanos) / 1e9;
+            if (random.nextDouble() * options.rampUpSeconds <= elapsed) {
+                VirtualCustomer customer = idleCustomers.poll();
+                if (customer == null) {
+                    noIdleCustomer.increment();
+                } else {
+                    customer.book();
+                }
+            }
+            scheduleArrival(startNanos, random);
+        }, delayMicros, TimeUnit.MICROSECONDS);
+    }
+
+    private void progress(LatencyReport report, long startNanos) {
+        Histogram interval = report.interval();
+        System.out.printf(Locale.ROOT,
+                "%5ds %8.1f req/s  p50 %7.2f ms  p99 %7.2f ms  p999 %8.2f ms  in flight %4d | "
+                        + "requested %d accepted %d completed %d paid %d cancelled %d%n",
+                (System.nanoTime() - startNanos) / 1_000_000_000, interval.getTotalCount() / (double) options.reportSeconds,
+                LatencyReport.ms(interval, 50.0), LatencyReport.ms(interval, 99.0), LatencyReport.ms(interval, 99.9),
+                api.inFlight(), ridesRequested.sum(), ridesAccepted.sum(), ridesCompleted.sum(),
+                ridesPaid.sum(), ridesCancelled.sum());
+    }
+
+    // Log in, or register, verify and log in; timed separately from the run
+    private boolean signIn(List<VirtualUser> users) {
+        LatencyReport report = new LatencyReport();
+        ApiClient auth = new ApiClient(options.baseUrl, options.maxInFlight, httpExecutor, report);
+        List<CompletableFuture<Void>> signIns = new ArrayList<>();
+        for (VirtualUser user : users) {
+            signIns.add(login(auth, user).thenCompose(ok -> ok
+                    ? CompletableFuture.completedFuture(null)
+                    : register(auth, user).thenCompose(v -> login(auth, user)).thenCompose(loggedIn -> loggedIn
+                            ? CompletableFuture.<Void>completedFuture(null)
+                            : CompletableFuture.failedFuture(new IllegalStateException("login after verify failed")))));
+        }
+
+        try {
+            CompletableFuture.allOf(signIns.toArray(new CompletableFuture[0])).join();
+        } catch (RuntimeException e) {
+            long failed = signIns.stream().filter(CompletableFuture::isCompletedExceptionally).count();
+            System.out.println("Sign-in failed for " + failed + " of " + users.size() + " users: " + e.getCause());
+            return false;
+        } finally {
+            closeOtpConnection();
+        }
+
+        System.out.println("Signed in " + users.size() + " users");
+        report.print(System.out);
+        System.out.println();
+        return true;
+    }
+
+    private CompletableFuture<Boolean> login(ApiClient auth, VirtualUser user) {
+        return auth.post("POST /api/auth/login", "/api/auth/login", null,
+                Map.of("email", user.email, "password", options.password)).thenCompose(r -> {
+            if (r.status() == 401) {
+                return CompletableFuture.completedFuture(false);
+            }
+            if (!r.ok()) {
+                return VirtualUser.unexpected("login", r);
+            }
+            user.token = r.json().get("token").asString();
+            user.userId = r.json().get("userId").asInt();
+            return CompletableFuture.completedFuture(true);
+        });
+    }
+
+    // Already registered but never verified (an earlier run stopped halfway): ask for a fresh OTP
+    private CompletableFuture<Void> register(ApiClient auth, VirtualUser user) {
+        Map<String, Object> body = Map.of("name", "Simulated " + user.role().toLowerCase(Locale.ROOT),
+                "email", user.email, "phone", "9000000000", "password", options.password, "role", user.role());
+        return auth.post("POST /api/auth/register", "/api/auth/register", null, body).thenCompose(r -> {
+            if (r.status() == 400) {
+                return auth.post("POST /api/auth/resend-otp", "/api/auth/resend-otp", null, Map.of("email", user.email));
+            }
+            return CompletableFuture.completedFuture(r);
+        }).thenCompose(r -> {
+            if (!r.ok()) {
+                return VirtualUser.unexpected("register", r);
+            }
+            return auth.post("POST /api/auth/verify-otp", "/api/auth/verify-otp", null,
+                    Map.of("email", user.email, "otp", lookupOtp(user.email)));
+        }).thenCompose(r -> r.ok()
+                ? CompletableFuture.<Void>completedFuture(null)
+                : VirtualUser.unexpected("verify-otp", r));
+    }
+
+    private synchronized String lookupOtp(String email) {
+        try {
+            if (otpConnection == null) {
+                otpConnection = DriverManager.getConnection(options.dbUrl, options.dbUser, options.dbPassword);
+            }
+            try (PreparedStatement statement = otpConnection.prepareStatement(
+                    "SELECT o.otp_code FROM email_otps o JOIN users u ON u.user_id = o.user_id "
+                            + "WHERE u.email = ? AND o.is_used = FALSE ORDER BY o.expires_at DESC LIMIT 1")) {
+                statement.setString(1, email);
+                try (ResultSet rs = statement.executeQuery()) {
+                    if (!rs.next()) {
+                        throw new IllegalStateException("No OTP for " + email);
+                    }
+                    return rs.getString(1);
+                }
+            }
+        } catch (SQLException e) {
+            throw new IllegalStateException("OTP lookup for " + email + " failed: " + e.getMessage(), e);
+        }
+    }
+
+    private synchronized void closeOtpConnection() {
+        if (otpConnection != null) {
+            try {
+                otpConnection.close();
+            } catch (SQLException ignored) {
+                // Only ever read from
+            }
+            otpConnection = null;
+        }
+    }
+
+    private static ThreadFactory daemon(String name) {
+        AtomicInteger count = new AtomicInteger();
+        return r -> {
+            Thread thread = new Thread(r, name + "-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+}
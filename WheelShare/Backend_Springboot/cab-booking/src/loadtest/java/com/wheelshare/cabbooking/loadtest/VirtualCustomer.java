@@ -0,0 +1,144 @@
+package com.wheelshare.cabbooking.loadtest;
+
+import tools.jackson.databind.JsonNode;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Customer app, from when a trip is wanted until it is paid: estimates the fare, requests the ride,
+ * polls its status, gives up after patienceSeconds without a driver, and pays once completed.
+ * Between trips the customer waits in the simulator's idle pool.
+ */
+final class VirtualCustomer extends VirtualUser {
+
+    private enum State { BOOKING, WAITING, RIDING, PAYING }
+
+    private static final String[] PAYMENT_METHODS = {"CASH", "UPI"};
+
+    private State state;
+    private Map<String, Object> trip;
+    private String idempotencyKey;
+    private Integer rideId;
+    private long requestedAt;
+
+    VirtualCustomer(TrafficSimulator sim, int index, long seed) {
+        super(sim, sim.options.userPrefix + "-customer-" + index + "@wheelshare.test", seed);
+    }
+
+    @Override
+    String role() {
+        return "CUSTOMER";
+    }
+
+    @Override
+    long retryMs() {
+        return sim.options.statusIntervalMs;
+    }
+
+    // Called by the arrival process with a customer taken from the idle pool
+    void book() {
+        double[] pickup = sim.city.randomPoint(random);
+        double[] drop = sim.city.destination(pickup, random);
+        trip = new HashMap<>();
+        trip.put("sourceLat", pickup[0]);
+        trip.put("sourceLng", pickup[1]);
+        trip.put("sourceAddress", "Simulated pickup");
+        trip.put("destinationLat", drop[0]);
+        trip.put("destinationLng", drop[1]);
+        trip.put("destinationAddress", "Simulated drop");
+        idempotencyKey = ApiClient.newIdempotencyKey();
+        rideId = null;
+        state = State.BOOKING;
+        start(0);
+    }
+
+    @Override
+    CompletableFuture<Long> next() {
+        return switch (state) {
+            case BOOKING -> sim.running ? request() : idle();
+            case WAITING, RIDING -> pollStatus();
+            case PAYING -> pay();
+        };
+    }
+
+    private CompletableFuture<Long> request() {
+        return sim.api.post("POST /api/rides/estimate-fare", "/api/rides/estimate-fare", token, trip).thenCompose(estimate -> {
+            if (!estimate.ok()) {
+                return unexpected("estimate-fare", estimate);
+            }
+            trip.put("estimatedFare", estimate.json().get("estimatedFare").asDouble());
+            return sim.api.post("POST /api/rides/request", "/api/rides/request", token, trip, idempotencyKey);
+        }).thenCompose(r -> {
+            if (!r.ok()) {
+                return unexpected("request", r);
+            }
+            sim.ridesRequested.increment();
+            rideId = r.json().get("rideId").asInt();
+            requestedAt = System.currentTimeMillis();
+            state = State.WAITING;
+            return after(sim.options.statusIntervalMs);
+        });
+    }
+
+    private CompletableFuture<Long> pollStatus() {
+        return sim.api.get("GET /api/rides/{rideId}", "/api/rides/" + rideId, token).thenCompose(r -> {
+            if (!r.ok()) {
+                return unexpected("ride status", r);
+            }
+            JsonNode ride = r.json();
+            switch (ride.get("rideStatus").asString()) {
+                case "REQUESTED" -> {
+                    boolean outOfPatience = System.currentTimeMillis() - requestedAt > sim.options.patienceSeconds * 1000L;
+                    return outOfPatience || !sim.running ? cancel() : after(sim.options.statusIntervalMs);
+                }
+                case "COMPLETED" -> {
+                    idempotencyKey = ApiClient.newIdempotencyKey();
+                    state = State.PAYING;
+                    return after(0);
+                }
+                case "CANCELLED" -> {
+                    return idle();
+                }
+                default -> {
+                    state = State.RIDING;
+                    return after(sim.options.statusIntervalMs);
+                }
+            }
+        });
+    }
+
+    // A 400 here means a driver accepted in the meantime; keep polling
+    private CompletableFuture<Long> cancel() {
+        return sim.api.post("POST /api/rides/cancel/{rideId}", "/api/rides/cancel/" + rideId, token, null).thenCompose(r -> {
+            if (r.status() == 400) {
+                return after(sim.options.statusIntervalMs);
+            }
+            if (!r.ok()) {
+                return unexpected("cancel", r);
+            }
+            sim.ridesCancelled.increment();
+            return idle();
+        });
+    }
+
+    private CompletableFuture<Long> pay() {
+        Map<String, Object> body = Map.of("paymentMethod", PAYMENT_METHODS[random.nextInt(PAYMENT_METHODS.length)]);
+        return sim.api.post("POST /api/rides/pay/{rideId}", "/api/rides/pay/" + rideId, token, body, idempotencyKey)
+                .thenCompose(r -> {
+                    if (r.status() >= 500) {
+                        return unexpected("pay", r);
+                    }
+                    if (r.ok()) {
+                        sim.ridesPaid.increment();
+                    }
+                    return idle();
+                });
+    }
+
+    private CompletableFuture<Long> idle() {
+        sim.idle(this);
+        return after(STOP);
+    }
+}
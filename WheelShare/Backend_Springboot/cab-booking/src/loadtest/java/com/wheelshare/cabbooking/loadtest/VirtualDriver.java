@@ -0,0 +1,206 @@
+package com.wheelshare.cabbooking.loadtest;
+
+import tools.jackson.databind.JsonNode;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Driver app: goes online, streams its position, polls nearby rides and takes the closest one,
+ * drives to the pickup and on to the destination, then looks for the next ride. Goes offline when
+ * the run ends, finishing any ride it has first.
+ */
+final class VirtualDriver extends VirtualUser {
+
+    private enum State { OFFLINE, IDLE, ACCEPTED, TO_PICKUP, ON_TRIP }
+
+    // Without a ride, drivers drift at this share of driving speed
+    private static final double CRUISE_FACTOR = 0.3;
+
+    private State state = State.OFFLINE;
+    private double[] position;
+    private Integer rideId;
+    private double[] pickup;
+    private double[] destination;
+    private long lastMoveAt;
+    private long nextLocationAt;
+    private long nextPollAt;
+
+    VirtualDriver(TrafficSimulator sim, int index, long seed) {
+        super(sim, sim.options.userPrefix + "-driver-" + index + "@wheelshare.test", seed);
+        this.position = sim.city.randomPoint(random);
+    }
+
+    @Override
+    String role() {
+        return "DRIVER";
+    }
+
+    @Override
+    long retryMs() {
+        return sim.options.locationIntervalMs;
+    }
+
+    private long tickMs() {
+        return Math.min(sim.options.locationIntervalMs, sim.options.pollIntervalMs);
+    }
+
+    @Override
+    CompletableFuture<Long> next() {
+        return switch (state) {
+            case OFFLINE -> sim.running ? goOnline() : after(STOP);
+            case IDLE -> sim.running ? cruise() : goOffline();
+            case ACCEPTED -> fetchRide();
+            case TO_PICKUP -> toPickup();
+            case ON_TRIP -> onTrip();
+        };
+    }
+
+    private CompletableFuture<Long> goOnline() {
+        return sim.api.post("POST /api/driver/go-online", "/api/driver/go-online", token, null).thenCompose(r -> {
+            if (!r.ok()) {
+                return unexpected("go-online", r);
+            }
+            state = State.IDLE;
+            lastMoveAt = System.currentTimeMillis();
+            return after(0);
+        });
+    }
+
+    private CompletableFuture<Long> goOffline() {
+        return sim.api.post("POST /api/driver/go-offline", "/api/driver/go-offline", token, null)
+                .thenApply(r -> STOP);
+    }
+
+    private CompletableFuture<Long> cruise() {
+        long now = System.currentTimeMillis();
+        position = sim.city.wander(position, moved(now) * CRUISE_FACTOR, random);
+
+        CompletableFuture<Void> sent = CompletableFuture.completedFuture(null);
+        if (now >= nextLocationAt) {
+            nextLocationAt = now + sim.options.locationIntervalMs;
+            sent = sendLocation();
+        }
+        return sent.thenCompose(v -> {
+            if (now < nextPollAt) {
+                return after(tickMs());
+            }
+            nextPollAt = now + sim.options.pollIntervalMs;
+            return pollNearby();
+        });
+    }
+
+    // Nearest ride first, as the list comes back; losing the race to another driver is a 400
+    private CompletableFuture<Long> pollNearby() {
+        return sim.api.get("GET /api/driver/nearby-rides", "/api/driver/nearby-rides", token).thenCompose(r -> {
+            if (!r.ok()) {
+                return unexpected("nearby-rides", r);
+            }
+            JsonNode rides = r.json();
+            if (rides.isEmpty()) {
+                return after(tickMs());
+            }
+            int candidate = rides.get(0).get("rideId").asInt();
+            return sim.api.post("POST /api/driver/accept-ride/{rideId}", "/api/driver/accept-ride/" + candidate, token, null)
+                    .thenCompose(accepted -> {
+                        if (accepted.status() == 400) {
+                            sim.acceptsLost.increment();
+                            return after(tickMs());
+                        }
+                        if (!accepted.ok()) {
+                            return unexpected("accept-ride", accepted);
+                        }
+                        sim.ridesAccepted.increment();
+                        rideId = candidate;
+                        state = State.ACCEPTED;
+                        return after(0);
+                    });
+        });
+    }
+
+    // The nearby list has no coordinates; the ride itself does
+    private CompletableFuture<Long> fetchRide() {
+        return sim.api.get("GET /api/rides/{rideId}", "/api/rides/" + rideId, token).thenCompose(r -> {
+            if (!r.ok()) {
+                return unexpected("ride status", r);
+            }
+            JsonNode ride = r.json();
+            if (!"ACCEPTED".equals(ride.get("rideStatus").asString())) {
+                state = State.IDLE;
+                return after(0);
+            }
+            pickup = new double[]{ride.get("sourceLat").asDouble(), ride.get("sourceLng").asDouble()};
+            destination = new double[]{ride.get("destinationLat").asDouble(), ride.get("destinationLng").asDouble()};
+            lastMoveAt = System.currentTimeMillis();
+            state = State.TO_PICKUP;
+            return after(0);
+        });
+    }
+
+    private CompletableFuture<Long> toPickup() {
+        boolean arrived = driveToward(pickup);
+        return sendLocation().thenCompose(v -> {
+            if (!arrived) {
+                return after(sim.options.locationIntervalMs);
+            }
+            return sim.api.post("POST /api/driver/start-ride/{rideId}", "/api/driver/start-ride/" + rideId, token, null)
+                    .thenCompose(r -> {
+                        if (!r.ok()) {
+                            return dropRide("start-ride", r);
+                        }
+                        sim.ridesStarted.increment();
+                        state = State.ON_TRIP;
+                        return after(sim.options.locationIntervalMs);
+                    });
+        });
+    }
+
+    private CompletableFuture<Long> onTrip() {
+        boolean arrived = driveToward(destination);
+        return sendLocation().thenCompose(v -> {
+            if (!arrived) {
+                return after(sim.options.locationIntervalMs);
+            }
+            return sim.api.post("POST /api/driver/complete-ride/{rideId}", "/api/driver/complete-ride/" + rideId, token, null)
+                    .thenCompose(r -> {
+                        if (!r.ok()) {
+                            return dropRide("complete-ride", r);
+                        }
+                        sim.ridesCompleted.increment();
+                        rideId = null;
+                        state = State.IDLE;
+                        return after(0);
+                    });
+        });
+    }
+
+    // A 4xx means the server no longer sees this ride the way we do; go back to looking for work
+    private CompletableFuture<Long> dropRide(String endpoint, ApiClient.Response response) {
+        if (response.status() < 500) {
+            rideId = null;
+            state = State.IDLE;
+        }
+        return unexpected(endpoint, response);
+    }
+
+    // Once the run is over, rides are finished on the spot
+    private boolean driveToward(double[] target) {
+        position = sim.running
+                ? City.moveToward(position, target, moved(System.currentTimeMillis()))
+                : target.clone();
+        return position[0] == target[0] && position[1] == target[1];
+    }
+
+    private CompletableFuture<Void> sendLocation() {
+        return sim.api.post("POST /api/driver/update-location", "/api/driver/update-location", token,
+                Map.of("latitude", position[0], "longitude", position[1])).thenCompose(r ->
+                r.ok() ? CompletableFuture.<Void>completedFuture(null) : unexpected("update-location", r));
+    }
+
+    // Kilometres driven since the last move, at speedKmh sped up by timeScale
+    private double moved(long now) {
+        double km = sim.options.speedKmh * sim.options.timeScale * (now - lastMoveAt) / 3_600_000.0;
+        lastMoveAt = now;
+        return km;
+    }
+}
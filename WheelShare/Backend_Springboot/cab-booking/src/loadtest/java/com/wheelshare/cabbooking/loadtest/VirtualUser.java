@@ -0,0 +1,70 @@
+package com.wheelshare.cabbooking.loadtest;
+
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * One simulated app. Its steps run one at a time: each step makes its calls, then says how long to
+ * wait before the next one, or STOP. A step that fails (no response, unexpected status) is retried
+ * from the same state after retryMs, so the simulation never loses track of a ride.
+ */
+abstract class VirtualUser {
+
+    static final long STOP = -1;
+
+    final TrafficSimulator sim;
+    final String email;
+    final Random random;
+    String token;
+    Integer userId;
+
+    VirtualUser(TrafficSimulator sim, String email, long seed) {
+        this.sim = sim;
+        this.email = email;
+        this.random = new Random(seed);
+    }
+
+    abstract String role();
+
+    abstract CompletableFuture<Long> next();
+
+    abstract long retryMs();
+
+    // Counted as busy until a step returns STOP
+    void start(long delayMs) {
+        sim.busy.incrementAndGet();
+        schedule(delayMs);
+    }
+
+    private void schedule(long delayMs) {
+        sim.scheduler.schedule(this::step, delayMs, TimeUnit.MILLISECONDS);
+    }
+
+    private void step() {
+        CompletableFuture<Long> next;
+        try {
+            next = next();
+        } catch (RuntimeException e) {
+            next = CompletableFuture.failedFuture(e);
+        }
+        next.whenComplete((delay, e) -> {
+            if (e != null) {
+                sim.stepFailures.increment();
+                schedule(retryMs());
+            } else if (delay == STOP) {
+                sim.busy.decrementAndGet();
+            } else {
+                schedule(delay);
+            }
+        });
+    }
+
+    static CompletableFuture<Long> after(long delayMs) {
+        return CompletableFuture.completedFuture(delayMs);
+    }
+
+    static <T> CompletableFuture<T> unexpected(String endpoint, ApiClient.Response response) {
+        return CompletableFuture.failedFuture(new IllegalStateException(endpoint + " -> " + response.status()));
+    }
+}
@@ -0,0 +1,102 @@
+package com.wheelshare.cabbooking.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.hibernate.autoconfigure.HibernatePropertiesCustomizer;
+import org.springframework.boot.jdbc.DataSourceBuilder;
+import org.springframework.boot.jdbc.autoconfigure.DataSourceProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+import javax.sql.DataSource;
+import java.util.Map;
+
+/**
+ * Connection pools. The primary is configured exactly as Boot would (spring.datasource.*,
+ * spring.datasource.hikari.*). Setting datasource.replica.url adds a read-replica pool
+ * (datasource.replica.username/password, datasource.replica.hikari.*) and routes read-only
+ * service transactions to it, see ReplicaRoutingDataSource.
+ *
+ * What everything else injects is a lazy proxy: a transaction takes a real connection at its
+ * first statement, so a read-only method answered from memory (ride status, my-rides) never
+ * touches the pool, and the routing sees the transaction fully set up.
+ *
+ * Id blocks for @PooledId entities are reserved over a third, small pool on the primary
+ * database (datasource.ids.pool-size), never over a second connection from the primary pool
+ * while the inserting transaction holds one.
+ */
+@Configuration
+public class DataSourceConfig {
+
+    @Bean
+    @ConfigurationProperties("spring.datasource.hikari")
+    public HikariDataSource primaryDataSource(DataSourceProperties properties) {
+        HikariDataSource dataSource = properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+        dataSource.setPoolName(ReplicaRoutingDataSource.PRIMARY);
+        return dataSource;
+    }
+
+    @Bean
+    public HikariDataSource idDataSource(DataSourceProperties properties,
+                                         @Value("${datasource.ids.pool-size:2}") int poolSize) {
+        HikariDataSource dataSource = properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+        dataSource.setPoolName("ids");
+        dataSource.setMaximumPoolSize(poolSize);
+        dataSource.setMinimumIdle(1);
+        return dataSource;
+    }
+
+    @Bean
+    public IdBlockAllocator idBlockAllocator(@Qualifier("idDataSource") DataSource idDataSource,
+                                             @Value("${datasource.ids.block-size:50}") int blockSize) {
+        return new IdBlockAllocator(idDataSource, blockSize);
+    }
+
+    @Bean
+    public HibernatePropertiesCustomizer idBlockAllocatorCustomizer(IdBlockAllocator idBlockAllocator) {
+        return properties -> properties.put(IdBlockAllocator.SETTING, idBlockAllocator);
+    }
+
+    @Bean
+    @ConditionalOnProperty(name = "datasource.replica.url")
+    @ConfigurationProperties("datasource.replica.hikari")
+    public HikariDataSource replicaDataSource(@Value("${datasource.replica.url}") String url,
+                                              @Value("${datasource.replica.username:${spring.datasource.username:}}") String username,
+                                              @Value("${datasource.replica.password:${spring.datasource.password:}}") String password) {
+        HikariDataSource dataSource = DataSourceBuilder.create()
+                .type(HikariDataSource.class)
+                .url(url)
+                .username(username)
+                .password(password)
+                .build();
+        dataSource.setPoolName(ReplicaRoutingDataSource.REPLICA);
+        return dataSource;
+    }
+
+    @Bean
+    @ConditionalOnProperty(name = "datasource.replica.url")
+    public ReplicaRoutingDataSource routingDataSource(@Qualifier("primaryDataSource") DataSource primaryDataSource,
+                                                      @Qualifier("replicaDataSource") DataSource replicaDataSource,
+                                                      @Value("${datasource.replica.read-your-writes-ms:2000}") long readYourWritesMs) {
+        ReplicaRoutingDataSource routing = new ReplicaRoutingDataSource(readYourWritesMs);
+        routing.setTargetDataSources(Map.of(
+                ReplicaRoutingDataSource.PRIMARY, primaryDataSource,
+                ReplicaRoutingDataSource.REPLICA, replicaDataSource));
+        routing.setDefaultTargetDataSource(primaryDataSource);
+        return routing;
+    }
+
+    @Bean
+    @Primary
+    public DataSource dataSource(@Qualifier("primaryDataSource") DataSource primaryDataSource,
+                                 ObjectProvider<ReplicaRoutingDataSource> routingDataSource) {
+        DataSource routing = routingDataSource.getIfAvailable();
+        return new LazyConnectionDataSourceProxy(routing != null ? routing : primaryDataSource);
+    }
+}
@@ -0,0 +1,69 @@
+package com.wheelshare.cabbooking.config;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.jcache.configuration.CaffeineConfiguration;
+import com.github.benmanes.caffeine.jcache.spi.CaffeineCachingProvider;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.hibernate.cache.jcache.ConfigSettings;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.hibernate.autoconfigure.HibernatePropertiesCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import javax.cache.CacheManager;
+import javax.cache.Caching;
+import java.net.URI;
+import java.util.List;
+import java.util.OptionalLong;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Hibernate second-level cache for User and Driver, plus email -> userId natural-id resolutions.
+ *
+ * Regions are Caffeine caches behind JCache, bounded to max-entries and expired ttl after they
+ * were written. Writes through Hibernate (save, dirty checking) update the regions on commit
+ * (READ_WRITE); the TTL bounds how long a change made outside Hibernate, or by another instance,
+ * can go unseen. Each region reports cache.gets{result=hit|miss}, evictions and a hit ratio.
+ */
+@Configuration
+public class EntityCacheConfig {
+
+    public static final String USERS = "users";
+    public static final String DRIVERS = "drivers";
+    public static final String USER_IDS_BY_EMAIL = "user-ids-by-email";
+
+    private static final List<String> REGIONS = List.of(USERS, DRIVERS, USER_IDS_BY_EMAIL);
+
+    // Own manager per application context, test contexts must not see each other's entries
+    @Bean(destroyMethod = "close")
+    public CacheManager entityCacheManager(@Value("${entity-cache.max-entries:100000}") long maxEntries,
+                                           @Value("${entity-cache.ttl-ms:600000}") long ttlMs,
+                                           MeterRegistry meterRegistry) {
+        CacheManager cacheManager = Caching.getCachingProvider(CaffeineCachingProvider.class.getName())
+                .getCacheManager(URI.create("wheelshare-entities-" + UUID.randomUUID()), getClass().getClassLoader());
+
+        for (String region : REGIONS) {
+            CaffeineConfiguration<Object, Object> config = new CaffeineConfiguration<>();
+            config.setMaximumSize(OptionalLong.of(maxEntries));
+            config.setExpireAfterWrite(OptionalLong.of(TimeUnit.MILLISECONDS.toNanos(ttlMs)));
+            // Hibernate caches its own immutable entry objects, no need to copy them
+            config.setStoreByValue(false);
+            config.setNativeStatisticsEnabled(true);
+
+            Cache<?, ?> cache = cacheManager.createCache(region, config).unwrap(Cache.class);
+            CaffeineCacheMetrics.monitor(meterRegistry, cache, region);
+            Gauge.builder("entity.cache.hit.ratio", cache, c -> c.stats().hitRate())
+                    .tag("cache", region)
+                    .register(meterRegistry);
+        }
+        return cacheManager;
+    }
+
+    @Bean
+    public HibernatePropertiesCustomizer entityCacheCustomizer(CacheManager entityCacheManager) {
+        return properties -> properties.put(ConfigSettings.CACHE_MANAGER, entityCacheManager);
+    }
+}
@@ -0,0 +1,96 @@
+package com.wheelshare.cabbooking.config;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.SQLIntegrityConstraintViolationException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Hands out ids for @PooledId entities, blockSize at a time per sequence, from id_sequences.
+ *
+ * Blocks are reserved over a pool of their own (see DataSourceConfig): the inserting transaction
+ * already holds a primary connection, and asking the primary pool for a second one deadlocks once
+ * every connection belongs to a transaction waiting for ids. A reservation is one short
+ * transaction (SELECT ... FOR UPDATE, UPDATE), so instances sharing the database never get the
+ * same block. Ids of a block that is never used up are skipped, as with any pooled generator.
+ */
+public class IdBlockAllocator {
+
+    // Hibernate setting the generators find this allocator under, see DataSourceConfig
+    public static final String SETTING = "wheelshare.id-block-allocator";
+
+    private static final class Block {
+        long next;
+        long end;
+    }
+
+    private final DataSource dataSource;
+    private final int blockSize;
+    private final Map<String, Block> blocks = new ConcurrentHashMap<>();
+
+    public IdBlockAllocator(DataSource dataSource, int blockSize) {
+        this.dataSource = dataSource;
+        this.blockSize = blockSize;
+    }
+
+    public long next(String sequence) {
+        Block block = blocks.computeIfAbsent(sequence, s -> new Block());
+        synchronized (block) {
+            if (block.next == block.end) {
+                block.next = reserve(sequence);
+                block.end = block.next + blockSize;
+            }
+            return block.next++;
+        }
+    }
+
+    // First id of a fresh block; next_val is always above every id handed out so far
+    private long reserve(String sequence) {
+        try (Connection connection = dataSource.getConnection()) {
+            connection.setAutoCommit(false);
+            try {
+                long first = reserve(connection, sequence);
+                connection.commit();
+                return first;
+            } catch (SQLException e) {
+                connection.rollback();
+                throw e;
+            }
+        } catch (SQLIntegrityConstraintViolationException e) {
+            // Another instance created the row first, it is there to lock now
+            return reserve(sequence);
+        } catch (SQLException e) {
+            throw new RuntimeException("Could not reserve ids for " + sequence, e);
+        }
+    }
+
+    private long reserve(Connection connection, String sequence) throws SQLException {
+        try (PreparedStatement select = connection.prepareStatement(
+                "SELECT next_val FROM id_sequences WHERE sequence_name = ? FOR UPDATE")) {
+            select.setString(1, sequence);
+            try (ResultSet rs = select.executeQuery()) {
+                if (rs.next()) {
+                    long first = rs.getLong(1);
+                    try (PreparedStatement update = connection.prepareStatement(
+                            "UPDATE id_sequences SET next_val = ? WHERE sequence_name = ?")) {
+                        update.setLong(1, first + blockSize);
+                        update.setString(2, sequence);
+                        update.executeUpdate();
+                    }
+                    return first;
+                }
+            }
+        }
+        try (PreparedStatement insert = connection.prepareStatement(
+                "INSERT INTO id_sequences (sequence_name, next_val) VALUES (?, ?)")) {
+            insert.setString(1, sequence);
+            insert.setLong(2, 1L + blockSize);
+            insert.executeUpdate();
+        }
+        return 1;
+    }
+}
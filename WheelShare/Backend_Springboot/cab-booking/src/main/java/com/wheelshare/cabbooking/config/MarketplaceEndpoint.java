@@ -0,0 +1,54 @@
+package com.wheelshare.cabbooking.config;
+
+import com.wheelshare.cabbooking.service.MarketplaceMetrics;
+import lombok.RequiredArgsConstructor;
+import org.jspecify.annotations.Nullable;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.Selector;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * /actuator/marketplace: dispatch quality per city area over a recent window, from
+ * MarketplaceMetrics. window is a duration such as 15m or 1h (default 1h), rounded up to whole
+ * slots and capped at the longest window kept.
+ *
+ *   GET /actuator/marketplace?window=15m            whole city, then every active area
+ *   GET /actuator/marketplace/18.52/73.85?window=1h  the area containing that point
+ */
+@Component
+@Endpoint(id = "marketplace")
+@RequiredArgsConstructor
+public class MarketplaceEndpoint {
+
+    private static final Duration DEFAULT_WINDOW = Duration.ofHours(1);
+
+    private final MarketplaceMetrics marketplaceMetrics;
+
+    @ReadOperation
+    public Map<String, Object> areas(@Nullable Duration window) {
+        List<Map<String, Object>> areas = marketplaceMetrics.snapshots(windowMs(window)).stream()
+                .map(MarketplaceMetrics.Snapshot::toMap)
+                .toList();
+
+        Map<String, Object> response = new LinkedHashMap<>();
+        response.put("city", areas.get(0));
+        response.put("areas", areas.subList(1, areas.size()));
+        return response;
+    }
+
+    @ReadOperation
+    public Map<String, Object> area(@Selector double lat, @Selector double lng, @Nullable Duration window) {
+        return marketplaceMetrics.snapshot(lat, lng, windowMs(window)).toMap();
+    }
+
+    private long windowMs(Duration window) {
+        long ms = (window != null ? window : DEFAULT_WINDOW).toMillis();
+        return Math.min(Math.max(ms, 1), marketplaceMetrics.getMaxWindowMs());
+    }
+}
@@ -0,0 +1,95 @@
+package com.wheelshare.cabbooking.config;
+
+import com.wheelshare.cabbooking.security.JwtPrincipal;
+import com.wheelshare.cabbooking.service.RideService;
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Sends read-only service transactions to the replica, everything else to the primary.
+ *
+ * A connection goes to the replica when the transaction is @Transactional(readOnly = true) and
+ * was started by a service method; Spring Data's own read-only defaults (findById inside a
+ * write path, login lookups) stay on the primary. A user whose write committed less than
+ * readYourWritesMs ago also stays on the primary, so their own ride status or saved places
+ * are never older than what they just did. Only decides correctly behind a
+ * LazyConnectionDataSourceProxy, which fetches the connection once the transaction is set up.
+ */
+public class ReplicaRoutingDataSource extends AbstractRoutingDataSource {
+
+    public static final String PRIMARY = "primary";
+    public static final String REPLICA = "replica";
+
+    private static final String SERVICE_PREFIX = RideService.class.getPackageName() + ".";
+
+    // Above this many users in the window, expired entries are swept on the next write
+    private static final int SWEEP_THRESHOLD = 10_000;
+
+    // userId -> nanoTime of their last committed write
+    private final ConcurrentMap<Integer, Long> lastWrites = new ConcurrentHashMap<>();
+
+    private final long readYourWritesNanos;
+
+    public ReplicaRoutingDataSource(long readYourWritesMs) {
+        this.readYourWritesNanos = readYourWritesMs * 1_000_000L;
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            return PRIMARY;
+        }
+
+        Integer userId = currentUserId();
+        if (!TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+            if (userId != null) {
+                TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                    @Override
+                    public void afterCommit() {
+                        recordWrite(userId);
+                    }
+                });
+            }
+            return PRIMARY;
+        }
+
+        String name = TransactionSynchronizationManager.getCurrentTransactionName();
+        if (name == null || !name.startsWith(SERVICE_PREFIX)) {
+            return PRIMARY;
+        }
+        return userId != null && wroteRecently(userId) ? PRIMARY : REPLICA;
+    }
+
+    public void recordWrite(Integer userId) {
+        long now = System.nanoTime();
+        lastWrites.put(userId, now);
+        if (lastWrites.size() > SWEEP_THRESHOLD) {
+            lastWrites.values().removeIf(at -> now - at > readYourWritesNanos);
+        }
+    }
+
+    public boolean wroteRecently(Integer userId) {
+        Long at = lastWrites.get(userId);
+        if (at == null) {
+            return false;
+        }
+        if (System.nanoTime() - at <= readYourWritesNanos) {
+            return true;
+        }
+        lastWrites.remove(userId, at);
+        return false;
+    }
+
+    private static Integer currentUserId() {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        return authentication != null && authentication.getPrincipal() instanceof JwtPrincipal principal
+                ? principal.userId()
+                : null;
+    }
+}
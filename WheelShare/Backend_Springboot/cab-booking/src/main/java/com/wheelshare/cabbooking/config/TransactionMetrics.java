@@ -0,0 +1,95 @@
+package com.wheelshare.cabbooking.config;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.TransactionExecution;
+import org.springframework.transaction.TransactionExecutionListener;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * In-flight transaction counts and transaction durations. Boot registers every
+ * TransactionExecutionListener bean with the transaction manager; it reports only transactions
+ * that begin, not methods joining one already running.
+ *
+ * transactions.active{read_only} is what holds pool connections right now, transactions
+ * {read_only, outcome} how long they held them.
+ */
+@Component
+public class TransactionMetrics implements TransactionExecutionListener {
+
+    // Running transaction -> start nanoTime; identity keys, so a transaction ends once
+    // even when a failed commit is followed by a rollback
+    private final Map<TransactionExecution, Long> running = new ConcurrentHashMap<>();
+
+    private final AtomicInteger activeReadOnly = new AtomicInteger();
+    private final AtomicInteger activeReadWrite = new AtomicInteger();
+
+    private final Timer readOnlyCommitted;
+    private final Timer readOnlyRolledBack;
+    private final Timer readWriteCommitted;
+    private final Timer readWriteRolledBack;
+
+    public TransactionMetrics(MeterRegistry meterRegistry) {
+        meterRegistry.gauge("transactions.active", Tags.of("read_only", "true"), activeReadOnly);
+        meterRegistry.gauge("transactions.active", Tags.of("read_only", "false"), activeReadWrite);
+
+        this.readOnlyCommitted = timer(meterRegistry, true, "commit");
+        this.readOnlyRolledBack = timer(meterRegistry, true, "rollback");
+        this.readWriteCommitted = timer(meterRegistry, false, "commit");
+        this.readWriteRolledBack = timer(meterRegistry, false, "rollback");
+    }
+
+    private static Timer timer(MeterRegistry meterRegistry, boolean readOnly, String outcome) {
+        return Timer.builder("transactions")
+                .tag("read_only", String.valueOf(readOnly))
+                .tag("outcome", outcome)
+                .publishPercentileHistogram()
+                .minimumExpectedValue(Duration.ofMillis(1))
+                .maximumExpectedValue(Duration.ofSeconds(30))
+                .register(meterRegistry);
+    }
+
+    public int getActive() {
+        return activeReadOnly.get() + activeReadWrite.get();
+    }
+
+    @Override
+    public void afterBegin(TransactionExecution transaction, Throwable beginFailure) {
+        if (beginFailure != null) {
+            return;
+        }
+        running.put(transaction, System.nanoTime());
+        (transaction.isReadOnly() ? activeReadOnly : activeReadWrite).incrementAndGet();
+    }
+
+    @Override
+    public void afterCommit(TransactionExecution transaction, Throwable commitFailure) {
+        end(transaction, commitFailure == null);
+    }
+
+    @Override
+    public void afterRollback(TransactionExecution transaction, Throwable rollbackFailure) {
+        end(transaction, false);
+    }
+
+    private void end(TransactionExecution transaction, boolean committed) {
+        Long start = running.remove(transaction);
+        if (start == null) {
+            return;
+        }
+        boolean readOnly = transaction.isReadOnly();
+        (readOnly ? activeReadOnly : activeReadWrite).decrementAndGet();
+
+        Timer timer = readOnly
+                ? (committed ? readOnlyCommitted : readOnlyRolledBack)
+                : (committed ? readWriteCommitted : readWriteRolledBack);
+        timer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+    }
+}
@@ -0,0 +1,118 @@
+package com.wheelshare.cabbooking.controller;
+
+import com.wheelshare.cabbooking.service.BulkImportService;
+import com.wheelshare.cabbooking.service.RevenueAnalytics;
+import lombok.RequiredArgsConstructor;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+@RestController
+@RequestMapping("/api/admin")
+@RequiredArgsConstructor
+public class AdminController {
+
+    // Longest range an hourly series is drawn for
+    private static final long MAX_HOURLY_POINTS = 31 * 24;
+
+    private final RevenueAnalytics revenueAnalytics;
+    private final BulkImportService bulkImportService;
+
+    // Totals over [from, to) plus a series at the given granularity; defaults to the last 30 days by day.
+    // Same totals keys as the .NET /api/admin/revenue.
+    @GetMapping("/revenue")
+    public ResponseEntity<?> getRevenue(@RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+                                        @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+                                        @RequestParam(defaultValue = "day") String granularity) {
+        try {
+            LocalDateTime end = (to != null ? to.plusDays(1) : LocalDate.now().plusDays(1)).atStartOfDay();
+            LocalDateTime start = from != null ? from.atStartOfDay() : end.minusDays(30);
+            if (!start.isBefore(end)) {
+                throw new RuntimeException("from must be on or before to");
+            }
+
+            RevenueAnalytics.Granularity unit;
+            try {
+                unit = RevenueAnalytics.Granularity.valueOf(granularity.toUpperCase());
+            } catch (IllegalArgumentException e) {
+                throw new RuntimeException("granularity must be hour, day or month");
+            }
+            if (unit == RevenueAnalytics.Granularity.HOUR
+                    && Duration.between(start, end).toHours() > MAX_HOURLY_POINTS) {
+                throw new RuntimeException("Hourly series is limited to 31 days");
+            }
+
+            Map<String, Object> response = toRevenue(revenueAnalytics.totals(start, end));
+            List<Map<String, Object>> series = new ArrayList<>();
+            revenueAnalytics.series(start, end, unit).forEach((periodStart, totals) -> {
+                Map<String, Object> point = toRevenue(totals);
+                point.put("periodStart", periodStart);
+                series.add(point);
+            });
+            response.put("from", start.toLocalDate());
+            response.put("to", end.toLocalDate().minusDays(1));
+            response.put("granularity", unit.name().toLowerCase());
+            response.put("series", series);
+            return ResponseEntity.ok(response);
+        } catch (RuntimeException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        } catch (Exception e) {
+            return ResponseEntity.status(500).body("Internal server error: " + e.getMessage());
+        }
+    }
+
+    // Historical data as CSV in the request body, streamed straight into batched inserts; columns in BulkImportService
+    @PostMapping(value = "/import/drivers", consumes = {"text/csv", MediaType.TEXT_PLAIN_VALUE})
+    public ResponseEntity<?> importDrivers(InputStream body) {
+        try {
+            return ResponseEntity.ok(bulkImportService.importDrivers(
+                    new InputStreamReader(body, StandardCharsets.UTF_8)).toMap());
+        } catch (RuntimeException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        } catch (Exception e) {
+            return ResponseEntity.status(500).body("Internal server error: " + e.getMessage());
+        }
+    }
+
+    @PostMapping(value = "/import/rides", consumes = {"text/csv", MediaType.TEXT_PLAIN_VALUE})
+    public ResponseEntity<?> importRides(InputStream body) {
+        try {
+            return ResponseEntity.ok(bulkImportService.importRides(
+                    new InputStreamReader(body, StandardCharsets.UTF_8)).toMap());
+        } catch (RuntimeException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        } catch (Exception e) {
+            return ResponseEntity.status(500).body("Internal server error: " + e.getMessage());
+        }
+    }
+
+    private Map<String, Object> toRevenue(RevenueAnalytics.Totals totals) {
+        Map<String, Object> map = new HashMap<>();
+        map.put("completedRides", totals.rides());
+        map.put("totalRevenue", totals.gmvPaise() / 100.0);
+        map.put("platformFee", totals.commissionPaise() / 100.0);
+        map.put("driverEarnings", (totals.gmvPaise() - totals.commissionPaise()) / 100.0);
+
+        Map<String, Object> payments = new HashMap<>();
+        totals.payments().forEach((method, countAndPaise) -> {
+            Map<String, Object> mix = new HashMap<>();
+            mix.put("count", countAndPaise[0]);
+            mix.put("amount", countAndPaise[1] / 100.0);
+            payments.put(method, mix);
+        });
+        map.put("paymentMethods", payments);
+        return map;
+    }
+}
@@ -1,11 +1,16 @@
 package com.wheelshare.cabbooking.controller;
 
+import com.wheelshare.cabbooking.dto.CursorPage;
+import com.wheelshare.cabbooking.dto.DriverLocationBatchDto;
 import com.wheelshare.cabbooking.dto.DriverLocationDto;
 import com.wheelshare.cabbooking.entity.Ride;
+import com.wheelshare.cabbooking.helper.LocationBatchCodec;
 import com.wheelshare.cabbooking.security.JwtService;
+import com.wheelshare.cabbooking.service.DriverEarningsService;
 import com.wheelshare.cabbooking.service.DriverService;
 import com.wheelshare.cabbooking.service.RideService;
 import lombok.RequiredArgsConstructor;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
@@ -21,14 +26,11 @@ public class DriverController {
     private final DriverService driverService;
     private final RideService rideService; // Needed for accepting/starting rides if logic resides there
     private final JwtService jwtService;
+    private final DriverEarningsService driverEarningsService;
 
-    // Helper to get Driver ID (which is User ID)
+    // Driver ID is the User ID; JwtAuthFilter already verified the token
     private Integer getDriverId(String token) {
-        // Remove "Bearer " prefix
-        if (token != null && token.startsWith("Bearer ")) {
-            token = token.substring(7);
-        }
-        return jwtService.extractUserId(token);
+        return jwtService.resolveUserId(token);
     }
 
     @PostMapping("/go-online")
@@ -53,6 +55,33 @@ public class DriverController {
         }
     }
 
+    @PostMapping(value = "/update-location/batch", consumes = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<?> updateLocationBatch(@RequestHeader("Authorization") String token, @RequestBody DriverLocationBatchDto dto) {
+        try {
+            Integer driverId = getDriverId(token);
+            int samples = driverService.updateLocationBatch(driverId, LocationBatchCodec.fromDto(dto));
+            return ResponseEntity.ok(Map.of("samples", samples));
+        } catch (RuntimeException e) {
+             return ResponseEntity.badRequest().body(e.getMessage());
+        } catch (Exception e) {
+             return ResponseEntity.status(500).body("Internal server error: " + e.getMessage());
+        }
+    }
+
+    // Binary form of the same batch, see LocationBatchCodec for the layout
+    @PostMapping(value = "/update-location/batch", consumes = {LocationBatchCodec.CONTENT_TYPE, MediaType.APPLICATION_OCTET_STREAM_VALUE})
+    public ResponseEntity<?> updateLocationBatchBinary(@RequestHeader("Authorization") String token, @RequestBody byte[] body) {
+        try {
+            Integer driverId = getDriverId(token);
+            int samples = driverService.updateLocationBatch(driverId, LocationBatchCodec.decode(body));
+            return ResponseEntity.ok(Map.of("samples", samples));
+        } catch (RuntimeException e) {
+             return ResponseEntity.badRequest().body(e.getMessage());
+        } catch (Exception e) {
+             return ResponseEntity.status(500).body("Internal server error: " + e.getMessage());
+        }
+    }
+
     @PostMapping("/go-offline")
     public ResponseEntity<?> goOffline(@RequestHeader("Authorization") String token) {
         try {
@@ -75,6 +104,18 @@ public class DriverController {
         }
     }
 
+    // Ride picked for this driver by batch dispatch, 204 when there is none
+    @GetMapping("/offer")
+    public ResponseEntity<?> getOffer(@RequestHeader("Authorization") String token) {
+        try {
+             Integer driverId = getDriverId(token);
+             Map<String, Object> offer = driverService.getOffer(driverId);
+             return offer != null ? ResponseEntity.ok(offer) : ResponseEntity.noContent().build();
+        } catch (Exception e) {
+             return ResponseEntity.status(500).body("Internal server error: " + e.getMessage());
+        }
+    }
+
     @PostMapping("/accept-ride/{rideId}")
     public ResponseEntity<?> acceptRide(@RequestHeader("Authorization") String token, @PathVariable Integer rideId) {
         try {
@@ -127,11 +168,31 @@ public class DriverController {
     }
 
     @GetMapping("/ride-history")
-    public ResponseEntity<?> getRideHistory(@RequestHeader("Authorization") String token) {
+    public ResponseEntity<?> getRideHistory(@RequestHeader("Authorization") String token,
+                                            @RequestParam(required = false) String cursor,
+                                            @RequestParam(required = false) Integer limit) {
         try {
              Integer driverId = getDriverId(token);
-             List<Map<String, Object>> result = driverService.getRideHistory(driverId);
-             return ResponseEntity.ok(result);
+             CursorPage<Map<String, Object>> page = driverService.getRideHistory(driverId, cursor, limit);
+             // Body stays a plain list; the cursor for the next page travels in a header
+             ResponseEntity.BodyBuilder ok = ResponseEntity.ok();
+             if (page.nextCursor() != null) {
+                 ok.header("X-Next-Cursor", page.nextCursor());
+             }
+             return ok.body(page.items());
+        } catch (RuntimeException e) {
+             return ResponseEntity.badRequest().body(e.getMessage());
+        } catch (Exception e) {
+             return ResponseEntity.status(500).body("Internal server error: " + e.getMessage());
+        }
+    }
+
+    // Today / this week / lifetime from the rollup rows
+    @GetMapping("/earnings")
+    public ResponseEntity<?> getEarnings(@RequestHeader("Authorization") String token) {
+        try {
+             Integer driverId = getDriverId(token);
+             return ResponseEntity.ok(driverEarningsService.getEarnings(driverId));
         } catch (Exception e) {
              return ResponseEntity.status(500).body("Internal server error: " + e.getMessage());
         }
@@ -1,11 +1,14 @@
 package com.wheelshare.cabbooking.controller;
 
+import com.wheelshare.cabbooking.dto.CursorPage;
 import com.wheelshare.cabbooking.dto.EstimateFareDto;
 import com.wheelshare.cabbooking.dto.PaymentDto;
 import com.wheelshare.cabbooking.dto.RideRequestDto;
 import com.wheelshare.cabbooking.security.JwtService;
+import com.wheelshare.cabbooking.service.IdempotencyStore;
 import com.wheelshare.cabbooking.service.RideService;
 import lombok.RequiredArgsConstructor;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
@@ -20,12 +23,11 @@ public class RideController {
 
     private final RideService rideService;
     private final JwtService jwtService;
+    private final IdempotencyStore idempotencyStore;
 
+    // Set by JwtAuthFilter, the token is not parsed again
     private Integer getUserId(String token) {
-        if (token != null && token.startsWith("Bearer ")) {
-            token = token.substring(7);
-        }
-        return jwtService.extractUserId(token);
+        return jwtService.resolveUserId(token);
     }
     
     @GetMapping("/pending")
@@ -33,12 +35,25 @@ public class RideController {
         return ResponseEntity.ok(rideService.getPendingRides());
     }
 
+    // A retry with the same Idempotency-Key gets the first response back instead of a second ride
     @PostMapping("/request")
-    public ResponseEntity<?> requestRide(@RequestHeader("Authorization") String token, @RequestBody RideRequestDto dto) {
+    public ResponseEntity<?> requestRide(@RequestHeader("Authorization") String token,
+                                         @RequestHeader(value = IdempotencyStore.HEADER, required = false) String idempotencyKey,
+                                         @RequestBody RideRequestDto dto) {
         try {
             Integer customerId = getUserId(token);
-            Map<String, Object> result = rideService.requestRide(dto, customerId);
-            return ResponseEntity.ok(result);
+            return idempotencyStore.execute(customerId, "ride-request", idempotencyKey, dto, () -> {
+                try {
+                    return ResponseEntity.ok(rideService.requestRide(dto, customerId, idempotencyKey));
+                } catch (DataIntegrityViolationException e) {
+                    // Key already used by a request the store no longer remembers (restart, TTL)
+                    Map<String, Object> existing = rideService.findRequestedRide(customerId, idempotencyKey);
+                    if (existing == null) {
+                        throw e;
+                    }
+                    return ResponseEntity.ok(existing);
+                }
+            });
         } catch (Exception e) {
             return ResponseEntity.status(500).body("Internal server error: " + e.getMessage());
         }
@@ -68,22 +83,41 @@ public class RideController {
     }
 
     @GetMapping("/history")
-    public ResponseEntity<?> getRideHistory(@RequestHeader("Authorization") String token) {
+    public ResponseEntity<?> getRideHistory(@RequestHeader("Authorization") String token,
+                                            @RequestParam(required = false) String cursor,
+                                            @RequestParam(required = false) Integer limit) {
         try {
             Integer customerId = getUserId(token);
-            List<Map<String, Object>> result = rideService.getRideHistory(customerId);
-            return ResponseEntity.ok(result);
+            CursorPage<Map<String, Object>> page = rideService.getRideHistory(customerId, cursor, limit);
+            // Body stays a plain list; the cursor for the next page travels in a header
+            ResponseEntity.BodyBuilder ok = ResponseEntity.ok();
+            if (page.nextCursor() != null) {
+                ok.header("X-Next-Cursor", page.nextCursor());
+            }
+            return ok.body(page.items());
+        } catch (RuntimeException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
         } catch (Exception e) {
             return ResponseEntity.status(500).body("Internal server error: " + e.getMessage());
         }
     }
 
     @PostMapping("/pay/{rideId}")
-    public ResponseEntity<?> makePayment(@RequestHeader("Authorization") String token, @PathVariable Integer rideId, @RequestBody PaymentDto dto) {
+    public ResponseEntity<?> makePayment(@RequestHeader("Authorization") String token,
+                                         @RequestHeader(value = IdempotencyStore.HEADER, required = false) String idempotencyKey,
+                                         @PathVariable Integer rideId, @RequestBody PaymentDto dto) {
         try {
             Integer customerId = getUserId(token);
-            Map<String, Object> result = rideService.makePayment(rideId, dto, customerId);
-            return ResponseEntity.ok(result);
+            return idempotencyStore.execute(customerId, "pay", idempotencyKey, List.of(rideId, dto), () -> {
+                try {
+                    return ResponseEntity.ok(rideService.makePayment(rideId, dto, customerId));
+                } catch (DataIntegrityViolationException e) {
+                    // Lost the race on uk_payments_ride to a concurrent payment for the same ride
+                    return ResponseEntity.badRequest().body("Payment already made for this ride");
+                } catch (RuntimeException e) {
+                    return ResponseEntity.badRequest().body(e.getMessage());
+                }
+            });
         } catch (RuntimeException e) {
              return ResponseEntity.badRequest().body(e.getMessage());
         } catch (Exception e) {
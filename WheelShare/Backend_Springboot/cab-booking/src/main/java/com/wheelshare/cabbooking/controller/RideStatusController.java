@@ -1,15 +1,20 @@
 package com.wheelshare.cabbooking.controller;
 
-import com.wheelshare.cabbooking.entity.Ride;
-import com.wheelshare.cabbooking.repository.RideRepository;
+import com.wheelshare.cabbooking.security.JwtService;
+import com.wheelshare.cabbooking.service.RideEventStream;
+import com.wheelshare.cabbooking.service.RideService;
 import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.AccessDeniedException;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
-import java.util.HashMap;
 import java.util.Map;
 
 @RestController
@@ -17,40 +22,39 @@ import java.util.Map;
 @RequiredArgsConstructor
 public class RideStatusController {
 
-    private final RideRepository rideRepository;
+    private final RideService rideService;
+    private final RideEventStream rideEventStream;
+    private final JwtService jwtService;
 
     @GetMapping("/{rideId}")
     public ResponseEntity<?> getRideStatus(@PathVariable Integer rideId) {
-        Ride ride = rideRepository.findById(rideId)
-                .orElse(null);
+        Map<String, Object> response = rideService.getRideStatus(rideId);
 
-        if (ride == null) {
+        if (response == null) {
             return ResponseEntity.notFound().build();
         }
 
-        Map<String, Object> response = new HashMap<>();
-        response.put("rideId", ride.getRideId());
-        response.put("rideStatus", ride.getRideStatus());
-        response.put("status", ride.getRideStatus()); // Duplicate for frontend compat
-        response.put("sourceLat", ride.getSourceLat());
-        response.put("sourceLng", ride.getSourceLng());
-        response.put("destinationLat", ride.getDestinationLat());
-        response.put("destinationLng", ride.getDestinationLng());
-        response.put("fare", ride.getFare());
-        response.put("distanceKm", ride.getDistanceKm());
-        response.put("requestedAt", ride.getRequestedAt());
-        response.put("completedAt", ride.getCompletedAt());
-
-        if (ride.getDriver() != null && ride.getDriver().getUser() != null) {
-            Map<String, Object> driverInfo = new HashMap<>();
-            driverInfo.put("name", ride.getDriver().getUser().getName());
-            driverInfo.put("phone", ride.getDriver().getUser().getPhone());
-            driverInfo.put("licenseNumber", ride.getDriver().getLicenseNumber());
-            response.put("driver", driverInfo);
-        } else {
-            response.put("driver", null);
+        return ResponseEntity.ok(response);
+    }
+
+    // Pushes a "status" event on every lifecycle change and "location" events while the driver is on the way.
+    // Only the ride's customer and its assigned driver may follow it.
+    @GetMapping(value = "/{rideId}/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public ResponseEntity<SseEmitter> streamRideStatus(@RequestHeader("Authorization") String token,
+                                                       @PathVariable Integer rideId) {
+        Integer userId = jwtService.resolveUserId(token);
+
+        SseEmitter emitter;
+        try {
+            emitter = rideEventStream.subscribe(rideId, () -> rideService.getRideStatus(rideId, userId));
+        } catch (AccessDeniedException e) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
         }
 
-        return ResponseEntity.ok(response);
+        if (emitter == null) {
+            return ResponseEntity.notFound().build();
+        }
+
+        return ResponseEntity.ok(emitter);
     }
 }
@@ -20,11 +20,9 @@ public class SavedPlacesController {
     private final SavedPlacesService savedPlacesService;
     private final JwtService jwtService;
 
+    // Set by JwtAuthFilter, the token is not parsed again
     private Integer getUserId(String token) {
-        if (token != null && token.startsWith("Bearer ")) {
-            token = token.substring(7);
-        }
-        return jwtService.extractUserId(token);
+        return jwtService.resolveUserId(token);
     }
 
     @GetMapping
@@ -0,0 +1,15 @@
+package com.wheelshare.cabbooking.dto;
+
+import com.wheelshare.cabbooking.enums.RideStatus;
+
+import java.time.LocalDateTime;
+
+// Only the columns /api/rides/history returns, filled straight from a JPQL constructor expression
+public record CustomerRideHistoryRow(Integer rideId,
+                                     Double sourceLat, Double sourceLng,
+                                     Double destinationLat, Double destinationLng,
+                                     Double distanceKm, Double fare, Double finalFare,
+                                     RideStatus rideStatus,
+                                     LocalDateTime requestedAt, LocalDateTime completedAt,
+                                     String driverName, String driverPhone, String licenseNumber) {
+}
@@ -0,0 +1,11 @@
+package com.wheelshare.cabbooking.dto;
+
+import lombok.Data;
+
+// Column-wise so Jackson fills primitive arrays instead of one object per sample
+@Data
+public class DriverLocationBatchDto {
+    private long[] timestamps;
+    private double[] latitudes;
+    private double[] longitudes;
+}
@@ -0,0 +1,14 @@
+package com.wheelshare.cabbooking.dto;
+
+import com.wheelshare.cabbooking.enums.RideStatus;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+// Only the columns /api/driver/ride-history returns, filled straight from a JPQL constructor expression
+public record DriverRideHistoryRow(Integer rideId,
+                                   String sourceAddress, String destinationAddress,
+                                   Double distanceKm, Double fare, Double finalFare,
+                                   RideStatus rideStatus, LocalDateTime completedAt,
+                                   String customerName, BigDecimal driverEarning) {
+}
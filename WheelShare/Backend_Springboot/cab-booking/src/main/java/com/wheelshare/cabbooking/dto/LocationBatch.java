@@ -0,0 +1,24 @@
+package com.wheelshare.cabbooking.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+// Decoded location samples, coordinates in fixed-point E7 (degrees * 10^7)
+@Getter
+@AllArgsConstructor
+public class LocationBatch {
+    private final int size;
+    private final long[] timestamps;
+    private final int[] latitudesE7;
+    private final int[] longitudesE7;
+
+    public int latestIndex() {
+        int latest = 0;
+        for (int i = 1; i < size; i++) {
+            if (timestamps[i] >= timestamps[latest]) {
+                latest = i;
+            }
+        }
+        return latest;
+    }
+}
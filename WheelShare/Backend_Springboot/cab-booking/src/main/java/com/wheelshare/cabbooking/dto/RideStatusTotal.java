@@ -0,0 +1,7 @@
+package com.wheelshare.cabbooking.dto;
+
+import com.wheelshare.cabbooking.enums.RideStatus;
+
+// Ride count and fare sum for one status, from a single GROUP BY
+public record RideStatusTotal(RideStatus rideStatus, Long rides, Double fares) {
+}
@@ -1,7 +1,11 @@
 package com.wheelshare.cabbooking.entity;
 
+import com.wheelshare.cabbooking.config.EntityCacheConfig;
 import jakarta.persistence.*;
 import lombok.*;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+import org.hibernate.annotations.DynamicUpdate;
 
 @Entity
 @Table(name = "drivers")
@@ -10,13 +14,16 @@ import lombok.*;
 @NoArgsConstructor
 @AllArgsConstructor
 @Builder
+@DynamicUpdate // location columns are written by DriverLocationBuffer, don't overwrite them on unrelated saves
+// The cached copy's location can be older than the row; positions are read from DriverLocationBuffer first
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = EntityCacheConfig.DRIVERS)
 public class Driver {
 
     @Id
     @Column(name = "driver_id")
     private Integer driverId;
 
-    @OneToOne
+    @OneToOne(fetch = FetchType.LAZY)
     @MapsId
     @JoinColumn(name = "driver_id")
     private User user;
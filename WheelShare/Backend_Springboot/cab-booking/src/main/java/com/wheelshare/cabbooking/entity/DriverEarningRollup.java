@@ -0,0 +1,42 @@
+package com.wheelshare.cabbooking.entity;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+// Running total of a driver's ledger credits for one day, week (starting Monday) or their lifetime
+@Entity
+@Table(name = "driver_earning_rollups",
+        uniqueConstraints = @UniqueConstraint(name = "uk_driver_earning_period",
+                columnNames = {"driver_id", "period_type", "period_start"}))
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class DriverEarningRollup {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Integer rollupId;
+
+    @Column(name = "driver_id", nullable = false)
+    private Integer driverId;
+
+    @Column(name = "period_type", nullable = false, length = 10)
+    private String periodType; // DAY, WEEK, LIFETIME
+
+    @Column(name = "period_start", nullable = false)
+    private LocalDate periodStart;
+
+    @Column(nullable = false, precision = 14, scale = 2)
+    private BigDecimal amount;
+
+    @Column(nullable = false)
+    private Integer rides;
+
+    private LocalDateTime updatedAt;
+}
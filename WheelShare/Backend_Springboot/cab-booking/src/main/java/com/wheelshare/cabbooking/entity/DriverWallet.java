@@ -0,0 +1,43 @@
+package com.wheelshare.cabbooking.entity;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+// Append-only earnings ledger, same shape as the .NET DriverWallet. Rows are never updated.
+@Entity
+@Table(name = "DriverWallets",
+        uniqueConstraints = @UniqueConstraint(name = "uk_driver_wallet_ride", columnNames = {"ride_id", "transaction_type"}),
+        indexes = @Index(name = "idx_driver_wallet_driver", columnList = "driver_id, wallet_id"))
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class DriverWallet {
+
+    @Id
+    @PooledId("DriverWallets")
+    @Column(name = "wallet_id")
+    private Integer walletId;
+
+    @Column(name = "driver_id", nullable = false)
+    private Integer driverId;
+
+    @Column(name = "ride_id")
+    private Integer rideId;
+
+    @Column(nullable = false, precision = 12, scale = 2)
+    private BigDecimal amount;
+
+    @Column(name = "transaction_type", nullable = false, length = 10)
+    @Builder.Default
+    private String transactionType = "CREDIT"; // CREDIT, DEBIT
+
+    private String description;
+
+    @Builder.Default
+    private LocalDateTime createdAt = LocalDateTime.now();
+}
@@ -15,7 +15,7 @@ import java.time.LocalDateTime;
 public class EmailOtp {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @PooledId("EmailOtps")
     private Integer otpId;
 
     @Column(nullable = false)
@@ -28,7 +28,7 @@ public class EmailOtp {
 
     private Boolean isUsed = false;
 
-    @ManyToOne
+    @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "UserId", insertable = false, updatable = false)
     private User user;
 }
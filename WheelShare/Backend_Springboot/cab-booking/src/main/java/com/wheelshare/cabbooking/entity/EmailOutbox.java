@@ -0,0 +1,55 @@
+package com.wheelshare.cabbooking.entity;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.LocalDateTime;
+
+@Entity
+@Table(name = "EmailOutbox", indexes = {
+        @Index(name = "idx_email_outbox_due", columnList = "status, next_attempt_at")
+})
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class EmailOutbox {
+
+    @Id
+    @PooledId("EmailOutbox")
+    private Integer outboxId;
+
+    @Column(nullable = false, length = 150)
+    private String toEmail;
+
+    @Column(nullable = false)
+    private String subject;
+
+    @Column(nullable = false, length = 4000)
+    private String body;
+
+    @Builder.Default
+    @Column(length = 20, nullable = false)
+    private String status = "PENDING"; // PENDING, SENT, FAILED
+
+    @Builder.Default
+    private Integer attempts = 0;
+
+    @Column(name = "next_attempt_at")
+    private LocalDateTime nextAttemptAt;
+
+    @Column(length = 500)
+    private String lastError;
+
+    // Claim of the dispatcher batch sending it; another dispatcher may take it once claimedUntil passes
+    @Column(length = 36)
+    private String claimedBy;
+
+    private LocalDateTime claimedUntil;
+
+    @Builder.Default
+    private LocalDateTime createdAt = LocalDateTime.now();
+
+    private LocalDateTime sentAt;
+}
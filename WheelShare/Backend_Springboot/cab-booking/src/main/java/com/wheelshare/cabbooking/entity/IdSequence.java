@@ -0,0 +1,21 @@
+package com.wheelshare.cabbooking.entity;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+/**
+ * Next free id per @PooledId sequence. Mapped so the schema tool keeps the table; only
+ * IdBlockAllocator reads and writes it, over its own connections.
+ */
+@Entity
+@Table(name = "id_sequences")
+@Getter
+@Setter
+@NoArgsConstructor
+public class IdSequence {
+
+    @Id
+    private String sequenceName;
+
+    private Long nextVal;
+}
@@ -7,7 +7,9 @@ import java.math.BigDecimal;
 import java.time.LocalDateTime;
 
 @Entity
-@Table(name = "Payments")
+// One payment per ride, also when two requests race past the check in RideService.makePayment
+@Table(name = "Payments",
+        uniqueConstraints = @UniqueConstraint(name = "uk_payments_ride", columnNames = "ride_id"))
 @Getter
 @Setter
 @NoArgsConstructor
@@ -16,12 +18,12 @@ import java.time.LocalDateTime;
 public class Payment {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @PooledId("Payments")
     private Integer paymentId;
 
     private Integer rideId;
 
-    @OneToOne
+    @OneToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "RideId", insertable = false, updatable = false)
     private Ride ride;
 
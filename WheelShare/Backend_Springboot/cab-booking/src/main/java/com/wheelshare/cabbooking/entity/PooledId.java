@@ -0,0 +1,22 @@
+package com.wheelshare.cabbooking.entity;
+
+import org.hibernate.annotations.IdGeneratorType;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Id taken from a block reserved in id_sequences under this sequence name, see IdBlockAllocator.
+ * Ids are known before the insert, so Hibernate can send inserts in JDBC batches (with IDENTITY
+ * each insert has to run alone to read its key back).
+ */
+@IdGeneratorType(PooledIdGenerator.class)
+@Retention(RetentionPolicy.RUNTIME)
+@Target({ElementType.FIELD, ElementType.METHOD})
+public @interface PooledId {
+
+    // Row in id_sequences
+    String value();
+}
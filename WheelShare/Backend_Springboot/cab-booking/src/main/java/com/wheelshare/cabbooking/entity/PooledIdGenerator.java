@@ -0,0 +1,43 @@
+package com.wheelshare.cabbooking.entity;
+
+import com.wheelshare.cabbooking.config.IdBlockAllocator;
+import org.hibernate.engine.config.spi.ConfigurationService;
+import org.hibernate.engine.spi.SharedSessionContractImplementor;
+import org.hibernate.generator.GeneratorCreationContext;
+import org.hibernate.id.IdentifierGenerator;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Member;
+import java.lang.reflect.Method;
+
+/**
+ * Generator behind @PooledId. Never touches the session's connection or pool, the allocator
+ * reserves blocks on its own.
+ */
+public class PooledIdGenerator implements IdentifierGenerator {
+
+    private final String sequence;
+    private final IdBlockAllocator allocator;
+    private final boolean integer;
+
+    public PooledIdGenerator(PooledId config, Member member, GeneratorCreationContext context) {
+        Object allocator = context.getServiceRegistry().requireService(ConfigurationService.class)
+                .getSettings().get(IdBlockAllocator.SETTING);
+        if (!(allocator instanceof IdBlockAllocator)) {
+            throw new IllegalStateException("No " + IdBlockAllocator.SETTING + " in the Hibernate settings");
+        }
+        this.sequence = config.value();
+        this.allocator = (IdBlockAllocator) allocator;
+        Class<?> type = member instanceof Field field ? field.getType() : ((Method) member).getReturnType();
+        this.integer = type == Integer.class || type == int.class;
+    }
+
+    @Override
+    public Object generate(SharedSessionContractImplementor session, Object object) {
+        long id = allocator.next(sequence);
+        if (integer) {
+            return Math.toIntExact(id);
+        }
+        return id;
+    }
+}
@@ -1,11 +1,21 @@
 package com.wheelshare.cabbooking.entity;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.wheelshare.cabbooking.enums.RideStatus;
 import jakarta.persistence.*;
 import lombok.*;
+import org.hibernate.annotations.JdbcTypeCode;
+import org.hibernate.type.SqlTypes;
 import java.time.LocalDateTime;
 
 @Entity
-@Table(name = "rides")
+@Table(name = "rides",
+        uniqueConstraints = @UniqueConstraint(name = "uk_rides_customer_idempotency", columnNames = {"customer_id", "idempotency_key"}),
+        indexes = {
+                @Index(name = "idx_rides_customer_history", columnList = "customer_id, requested_at, ride_id"),
+                @Index(name = "idx_rides_driver_history", columnList = "driver_id, ride_status, completed_at, ride_id"),
+                @Index(name = "idx_rides_status", columnList = "ride_status, driver_id")
+        })
 @Getter
 @Setter
 @NoArgsConstructor
@@ -14,17 +24,20 @@ import java.time.LocalDateTime;
 public class Ride {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    // Ids are handed out 50 at a time from id_sequences, so inserts can go to the database in JDBC batches
+    // (with IDENTITY Hibernate has to run each insert alone to read the key back)
+    @PooledId("rides")
     private Integer rideId;
 
     // We can store just the ID or the relationship. Keeping relationship is better for JPA.
     // In .NET it had CustomerId and DriverId explicitly.
     
-    @ManyToOne
+    // Lazy: each query says what it needs through an entity graph in RideRepository
+    @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "customer_id", nullable = false)
     private User customer;
 
-    @ManyToOne
+    @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "driver_id")
     private Driver driver;
 
@@ -40,12 +53,20 @@ public class Ride {
     private Double fare;
     private Double finalFare;
 
-    @Column(length = 20, nullable = false)
-    private String rideStatus; // REQUESTED, ACCEPTED, STARTED, COMPLETED, CANCELLED
+    // One byte per row and index entry; see RideStatus for the encoding and legal moves
+    @Enumerated(EnumType.ORDINAL)
+    @JdbcTypeCode(SqlTypes.TINYINT)
+    @Column(nullable = false)
+    private RideStatus rideStatus;
 
     @Builder.Default
     private LocalDateTime requestedAt = LocalDateTime.now();
     
     private LocalDateTime acceptedAt;
     private LocalDateTime completedAt;
+
+    // Idempotency-Key the customer sent with the request, null when none; a retry can't insert a second row
+    @JsonIgnore
+    @Column(length = 64)
+    private String idempotencyKey;
 }
@@ -1,5 +1,6 @@
 package com.wheelshare.cabbooking.entity;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import jakarta.persistence.*;
 import lombok.Data;
 import java.time.LocalDateTime;
@@ -10,7 +11,7 @@ import java.time.LocalDateTime;
 public class SavedPlace {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @PooledId("saved_places")
     private Integer savedPlaceId;
 
     @Column(name = "user_id", nullable = false)
@@ -30,7 +31,8 @@ public class SavedPlace {
 
     private LocalDateTime createdAt = LocalDateTime.now();
 
-    // Navigation property
+    // Navigation property, not part of the JSON (userId already is)
+    @JsonIgnore
     @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "user_id", insertable = false, updatable = false)
     private User user;
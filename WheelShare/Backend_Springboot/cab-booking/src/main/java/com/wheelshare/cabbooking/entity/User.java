@@ -1,12 +1,22 @@
 package com.wheelshare.cabbooking.entity;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.wheelshare.cabbooking.config.EntityCacheConfig;
 import jakarta.persistence.*;
 import lombok.*;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+import org.hibernate.annotations.NaturalId;
+import org.hibernate.annotations.NaturalIdCache;
 
 import java.time.LocalDateTime;
 
 @Entity
-@Table(name = "Users")
+@Table(name = "Users",
+        uniqueConstraints = @UniqueConstraint(name = "uk_users_email", columnNames = "email"))
+// Read on nearly every request and rarely written; see EntityCacheConfig
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = EntityCacheConfig.USERS)
+@NaturalIdCache(region = EntityCacheConfig.USER_IDS_BY_EMAIL)
 @Getter
 @Setter
 @NoArgsConstructor
@@ -15,18 +25,21 @@ import java.time.LocalDateTime;
 public class User {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @PooledId("Users")
     private Integer userId;
 
     @Column(nullable = false, length = 100)
     private String name;
 
+    // Login and OTP lookups resolve email -> userId through the natural-id cache
+    @NaturalId
     @Column(nullable = false, length = 150)
     private String email;
 
     @Column(nullable = false, length = 15)
     private String phone;
 
+    @JsonIgnore
     @Column(nullable = false)
     private String passwordHash;
 
@@ -13,7 +13,7 @@ import lombok.*;
 public class Vehicle {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @PooledId("Vehicles")
     private Integer vehicleId;
 
     @Column(nullable = false)
@@ -29,7 +29,7 @@ public class Vehicle {
 
     private Boolean isActive = true;
 
-    @ManyToOne
+    @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "DriverId", insertable = false, updatable = false)
     private Driver driver;
 }
@@ -0,0 +1,57 @@
+package com.wheelshare.cabbooking.enums;
+
+import java.util.EnumSet;
+import java.util.Set;
+
+/**
+ * Ride lifecycle and the moves allowed between states:
+ * REQUESTED -> ACCEPTED -> STARTED -> COMPLETED, and REQUESTED -> CANCELLED.
+ *
+ * Persisted as its ordinal in a TINYINT column, so constants are only ever appended,
+ * never reordered or removed. JSON still carries the name.
+ */
+public enum RideStatus {
+    REQUESTED,
+    ACCEPTED,
+    STARTED,
+    COMPLETED,
+    CANCELLED;
+
+    private Set<RideStatus> next;
+
+    static {
+        REQUESTED.next = EnumSet.of(ACCEPTED, CANCELLED);
+        ACCEPTED.next = EnumSet.of(STARTED);
+        STARTED.next = EnumSet.of(COMPLETED);
+        COMPLETED.next = EnumSet.noneOf(RideStatus.class);
+        CANCELLED.next = EnumSet.noneOf(RideStatus.class);
+    }
+
+    public boolean canMoveTo(RideStatus target) {
+        return next.contains(target);
+    }
+
+    // Some sequence of legal moves leads from this state to target, e.g. REQUESTED reaches COMPLETED
+    public boolean canReach(RideStatus target) {
+        for (RideStatus step : next) {
+            if (step == target || step.canReach(target)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // Still in flight; a terminal ride never changes again
+    public boolean isActive() {
+        return !next.isEmpty();
+    }
+
+    // Value stored in rides.ride_status, for native SQL
+    public int code() {
+        return ordinal();
+    }
+
+    public static Set<RideStatus> active() {
+        return EnumSet.of(REQUESTED, ACCEPTED, STARTED);
+    }
+}
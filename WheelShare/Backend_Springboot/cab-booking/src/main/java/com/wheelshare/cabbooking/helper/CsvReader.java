@@ -0,0 +1,88 @@
+package com.wheelshare.cabbooking.helper;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Minimal RFC 4180 reader: comma separated, fields optionally in double quotes, "" for a quote
+ * inside one, quoted fields may span lines. Streams the input, one record in memory at a time.
+ */
+public class CsvReader {
+
+    private final BufferedReader in;
+    private final StringBuilder field = new StringBuilder();
+    private int line = 1;
+    private int recordLine;
+
+    public CsvReader(Reader reader) {
+        this.in = reader instanceof BufferedReader buffered ? buffered : new BufferedReader(reader, 64 * 1024);
+    }
+
+    // Next record, or null at end of input; blank lines are skipped
+    public String[] next() throws IOException {
+        List<String> fields = new ArrayList<>();
+        field.setLength(0);
+        boolean quoted = false;
+        boolean any = false;
+        recordLine = line;
+
+        int c;
+        while ((c = in.read()) != -1) {
+            if (quoted) {
+                if (c == '"') {
+                    in.mark(1);
+                    if (in.read() == '"') {
+                        field.append('"');
+                    } else {
+                        in.reset();
+                        quoted = false;
+                    }
+                } else {
+                    if (c == '\n') {
+                        line++;
+                    }
+                    field.append((char) c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+                any = true;
+            } else if (c == ',') {
+                fields.add(field.toString());
+                field.setLength(0);
+                any = true;
+            } else if (c == '\n' || c == '\r') {
+                if (c == '\r') {
+                    in.mark(1);
+                    if (in.read() != '\n') {
+                        in.reset();
+                    }
+                }
+                line++;
+                if (any || field.length() > 0) {
+                    break;
+                }
+                recordLine = line;
+            } else {
+                field.append((char) c);
+                any = true;
+            }
+        }
+
+        if (quoted) {
+            throw new RuntimeException("Line " + recordLine + ": unterminated quoted field");
+        }
+        if (!any && field.length() == 0) {
+            return null;
+        }
+        fields.add(field.toString());
+        return fields.toArray(new String[0]);
+    }
+
+    // Line the last record returned by next() started on
+    public int getLine() {
+        return recordLine;
+    }
+}
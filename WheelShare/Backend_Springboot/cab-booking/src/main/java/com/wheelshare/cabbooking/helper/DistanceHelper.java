@@ -1,17 +1,118 @@
 package com.wheelshare.cabbooking.helper;
 
+/**
+ * Great-circle distances in km.
+ *
+ * haversineKm is exact on the sphere and is what fares are billed on.
+ * equirectangularKm is a flat-earth approximation, within a few metres of haversine below 50 km,
+ * for the search paths that compare many points. withinBoundingBox is a trig-free reject test
+ * to run before either.
+ */
 public class DistanceHelper {
+
+    public static final double EARTH_RADIUS_KM = 6371.0088;
+
+    public static final double KM_PER_DEGREE = EARTH_RADIUS_KM * Math.PI / 180.0;
+
+    private static final double RAD = Math.PI / 180.0;
+
     public static double calculateDistanceKm(double lat1, double lon1, double lat2, double lon2) {
-        if ((lat1 == lat2) && (lon1 == lon2)) {
-            return 0;
-        } else {
-            double theta = lon1 - lon2;
-            double dist = Math.sin(Math.toRadians(lat1)) * Math.sin(Math.toRadians(lat2)) + Math.cos(Math.toRadians(lat1)) * Math.cos(Math.toRadians(lat2)) * Math.cos(Math.toRadians(theta));
-            dist = Math.acos(dist);
-            dist = Math.toDegrees(dist);
-            dist = dist * 60 * 1.1515;
-            dist = dist * 1.609344;
-            return (dist);
+        return haversineKm(lat1, lon1, lat2, lon2);
+    }
+
+    public static double haversineKm(double lat1, double lon1, double lat2, double lon2) {
+        double dLat = (lat2 - lat1) * RAD;
+        double dLon = (lon2 - lon1) * RAD;
+        double sinLat = Math.sin(dLat * 0.5);
+        double sinLon = Math.sin(dLon * 0.5);
+        double a = sinLat * sinLat + Math.cos(lat1 * RAD) * Math.cos(lat2 * RAD) * sinLon * sinLon;
+        return 2.0 * EARTH_RADIUS_KM * Math.asin(Math.min(1.0, Math.sqrt(a)));
+    }
+
+    // One cos per pair, use for radii under ~50 km
+    public static double equirectangularKm(double lat1, double lon1, double lat2, double lon2) {
+        double dx = wrapLongitude(lon2 - lon1) * Math.cos((lat1 + lat2) * 0.5 * RAD);
+        double dy = lat2 - lat1;
+        return Math.sqrt(dx * dx + dy * dy) * KM_PER_DEGREE;
+    }
+
+    // Half-width in degrees of longitude of a box that contains every point within radiusKm of lat
+    public static double longitudeDelta(double lat, double radiusKm) {
+        // Degrees of longitude are narrowest at the poleward edge of the box
+        double edgeLat = Math.abs(lat) + latitudeDelta(radiusKm);
+        double cos = edgeLat >= 90.0 ? 0.0 : Math.cos(edgeLat * RAD);
+        if (cos < 1e-9) {
+            return 180.0;
+        }
+        return Math.min(radiusKm / (KM_PER_DEGREE * cos), 180.0);
+    }
+
+    public static double latitudeDelta(double radiusKm) {
+        return radiusKm / KM_PER_DEGREE;
+    }
+
+    // No trig: false means the point is certainly further than the radius the deltas were built for
+    public static boolean withinBoundingBox(double originLat, double originLng, double latDelta, double lngDelta,
+                                            double lat, double lng) {
+        return Math.abs(lat - originLat) <= latDelta
+                && Math.abs(wrapLongitude(lng - originLng)) <= lngDelta;
+    }
+
+    /**
+     * Equirectangular distance from one origin to count points, written to out.
+     * The midpoint cosine is expanded around the origin latitude instead of calling cos per
+     * point; the extra error is below a millimetre at 50 km. Allocates nothing.
+     */
+    public static void equirectangularKm(double originLat, double originLng,
+                                         double[] lats, double[] lngs, int count, double[] out) {
+        double cosOrigin = Math.cos(originLat * RAD);
+        double sinOrigin = Math.sin(originLat * RAD);
+        for (int i = 0; i < count; i++) {
+            double dy = lats[i] - originLat;
+            double h = dy * 0.5 * RAD;
+            double cosMid = cosOrigin * (1.0 - h * h * 0.5) - sinOrigin * h;
+            double dx = wrapLongitude(lngs[i] - originLng) * cosMid;
+            out[i] = Math.sqrt(dx * dx + dy * dy) * KM_PER_DEGREE;
+        }
+    }
+
+    /**
+     * Indexes and distances of the points within radiusKm of the origin, bounding box first.
+     * Returns how many were written to outIndex/outKm. Allocates nothing.
+     */
+    public static int withinRadius(double originLat, double originLng, double radiusKm,
+                                   double[] lats, double[] lngs, int count, int[] outIndex, double[] outKm) {
+        double latDelta = latitudeDelta(radiusKm);
+        double lngDelta = longitudeDelta(originLat, radiusKm);
+        double cosOrigin = Math.cos(originLat * RAD);
+        double sinOrigin = Math.sin(originLat * RAD);
+
+        int found = 0;
+        for (int i = 0; i < count; i++) {
+            double dy = lats[i] - originLat;
+            double dLng = wrapLongitude(lngs[i] - originLng);
+            if (Math.abs(dy) > latDelta || Math.abs(dLng) > lngDelta) {
+                continue;
+            }
+            double h = dy * 0.5 * RAD;
+            double dx = dLng * (cosOrigin * (1.0 - h * h * 0.5) - sinOrigin * h);
+            double km = Math.sqrt(dx * dx + dy * dy) * KM_PER_DEGREE;
+            if (km <= radiusKm) {
+                outIndex[found] = i;
+                outKm[found] = km;
+                found++;
+            }
+        }
+        return found;
+    }
+
+    private static double wrapLongitude(double dLng) {
+        if (dLng > 180.0) {
+            return dLng - 360.0;
+        }
+        if (dLng < -180.0) {
+            return dLng + 360.0;
         }
+        return dLng;
     }
 }
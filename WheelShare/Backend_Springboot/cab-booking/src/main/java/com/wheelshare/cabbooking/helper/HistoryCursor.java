@@ -0,0 +1,51 @@
+package com.wheelshare.cabbooking.helper;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.Base64;
+
+/**
+ * Opaque keyset cursor: the (timestamp, rideId) of the last row of a page.
+ * The next page continues strictly after it in (timestamp desc, rideId desc) order.
+ * Rows whose timestamp is null compare with nothing and never show up; every writer sets
+ * requestedAt, and completedAt on a COMPLETED ride (requestRide/completeRide, bulk import).
+ */
+public record HistoryCursor(LocalDateTime at, Integer rideId) {
+
+    public static final int DEFAULT_LIMIT = 50;
+    public static final int MAX_LIMIT = 200;
+
+    // Sorts before every real row, used for the first page
+    public static final HistoryCursor START = new HistoryCursor(LocalDateTime.of(9999, 12, 31, 23, 59), Integer.MAX_VALUE);
+
+    public String encode() {
+        String raw = at + "|" + rideId;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public static HistoryCursor decode(String cursor) {
+        if (cursor == null || cursor.isBlank()) {
+            return START;
+        }
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            int separator = raw.lastIndexOf('|');
+            return new HistoryCursor(LocalDateTime.parse(raw.substring(0, separator)),
+                    Integer.valueOf(raw.substring(separator + 1)));
+        } catch (RuntimeException e) {
+            throw new RuntimeException("Invalid cursor");
+        }
+    }
+
+    // Clients that send neither get the whole list (the web UI does, it filters and totals client-side)
+    public static boolean isPaged(String cursor, Integer limit) {
+        return (cursor != null && !cursor.isBlank()) || limit != null;
+    }
+
+    public static int clampLimit(Integer limit) {
+        if (limit == null || limit < 1) {
+            return DEFAULT_LIMIT;
+        }
+        return Math.min(limit, MAX_LIMIT);
+    }
+}
@@ -0,0 +1,176 @@
+package com.wheelshare.cabbooking.helper;
+
+import com.wheelshare.cabbooking.dto.DriverLocationBatchDto;
+import com.wheelshare.cabbooking.dto.LocationBatch;
+
+import java.io.ByteArrayOutputStream;
+
+/**
+ * Compact binary encoding for batches of driver location samples.
+ *
+ * Layout, all integers as LEB128 varints (signed ones zigzag-encoded):
+ *   count
+ *   first timestamp (epoch millis), first latitude E7, first longitude E7
+ *   then per further sample: delta millis, delta latitude E7, delta longitude E7
+ *
+ * A sample a few seconds and a few metres after the previous one costs 5-7 bytes
+ * instead of ~60 bytes of JSON.
+ *
+ * Anything malformed (truncated, over-long varints, trailing bytes, coordinates outside
+ * +-90/+-180, timestamps outside 0..MAX_TIMESTAMP) is rejected with a RuntimeException,
+ * which the controller turns into a 400.
+ */
+public class LocationBatchCodec {
+
+    public static final String CONTENT_TYPE = "application/x-wheelshare-locations";
+
+    public static final int MAX_SAMPLES = 10_000;
+
+    // Year 3000, far past any real sample; bounds deltas so nothing can overflow
+    public static final long MAX_TIMESTAMP = 32_503_680_000_000L;
+
+    private static final double E7 = 10_000_000.0;
+    private static final long MAX_LAT_E7 = 900_000_000L;
+    private static final long MAX_LNG_E7 = 1_800_000_000L;
+
+    public static LocationBatch decode(byte[] data) {
+        int[] pos = {0};
+        long count = readVarLong(data, pos);
+        if (count < 1 || count > MAX_SAMPLES) {
+            throw new RuntimeException("Invalid sample count in location batch");
+        }
+
+        int size = (int) count;
+        long[] timestamps = new long[size];
+        int[] latitudes = new int[size];
+        int[] longitudes = new int[size];
+
+        long t = readVarLong(data, pos);
+        long lat = unzigzag(readVarLong(data, pos));
+        long lng = unzigzag(readVarLong(data, pos));
+        for (int i = 0; ; i++) {
+            checkSample(t, lat, lng);
+            timestamps[i] = t;
+            latitudes[i] = (int) lat;
+            longitudes[i] = (int) lng;
+
+            if (i + 1 == size) {
+                break;
+            }
+            // Both ends are in range, so a valid delta is at most twice the range; checked before adding
+            long dt = unzigzag(readVarLong(data, pos));
+            long dLat = unzigzag(readVarLong(data, pos));
+            long dLng = unzigzag(readVarLong(data, pos));
+            if (!within(dt, MAX_TIMESTAMP) || !within(dLat, 2 * MAX_LAT_E7) || !within(dLng, 2 * MAX_LNG_E7)) {
+                throw new RuntimeException("Delta out of range in location batch");
+            }
+            t += dt;
+            lat += dLat;
+            lng += dLng;
+        }
+
+        if (pos[0] != data.length) {
+            throw new RuntimeException("Trailing bytes in location batch");
+        }
+        return new LocationBatch(size, timestamps, latitudes, longitudes);
+    }
+
+    public static byte[] encode(LocationBatch batch) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(4 + batch.getSize() * 8);
+        writeVarLong(out, batch.getSize());
+
+        long[] t = batch.getTimestamps();
+        int[] lat = batch.getLatitudesE7();
+        int[] lng = batch.getLongitudesE7();
+        writeVarLong(out, t[0]);
+        writeVarLong(out, zigzag(lat[0]));
+        writeVarLong(out, zigzag(lng[0]));
+        for (int i = 1; i < batch.getSize(); i++) {
+            writeVarLong(out, zigzag(t[i] - t[i - 1]));
+            writeVarLong(out, zigzag((long) lat[i] - lat[i - 1]));
+            writeVarLong(out, zigzag((long) lng[i] - lng[i - 1]));
+        }
+        return out.toByteArray();
+    }
+
+    public static LocationBatch fromDto(DriverLocationBatchDto dto) {
+        if (dto.getTimestamps() == null || dto.getLatitudes() == null || dto.getLongitudes() == null) {
+            throw new RuntimeException("timestamps, latitudes and longitudes are required");
+        }
+
+        int size = dto.getTimestamps().length;
+        if (size < 1 || size > MAX_SAMPLES || dto.getLatitudes().length != size || dto.getLongitudes().length != size) {
+            throw new RuntimeException("Invalid location batch");
+        }
+
+        int[] latitudes = new int[size];
+        int[] longitudes = new int[size];
+        for (int i = 0; i < size; i++) {
+            latitudes[i] = toE7(dto.getLatitudes()[i]);
+            longitudes[i] = toE7(dto.getLongitudes()[i]);
+            checkSample(dto.getTimestamps()[i], latitudes[i], longitudes[i]);
+        }
+        return new LocationBatch(size, dto.getTimestamps(), latitudes, longitudes);
+    }
+
+    // Only for longitudes and latitudes: NaN, infinities and anything past +-180 would not fit an int
+    public static int toE7(double degrees) {
+        if (!(Math.abs(degrees) <= 180.0)) {
+            throw new RuntimeException("Coordinate out of range in location batch");
+        }
+        return (int) Math.round(degrees * E7);
+    }
+
+    public static double fromE7(int value) {
+        return value / E7;
+    }
+
+    private static void checkSample(long t, long latE7, long lngE7) {
+        if (t < 0 || t > MAX_TIMESTAMP) {
+            throw new RuntimeException("Timestamp out of range in location batch");
+        }
+        if (!within(latE7, MAX_LAT_E7) || !within(lngE7, MAX_LNG_E7)) {
+            throw new RuntimeException("Coordinate out of range in location batch");
+        }
+    }
+
+    // Not Math.abs, which leaves Long.MIN_VALUE negative
+    private static boolean within(long value, long max) {
+        return value >= -max && value <= max;
+    }
+
+    private static long readVarLong(byte[] data, int[] pos) {
+        long result = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            if (pos[0] >= data.length) {
+                throw new RuntimeException("Truncated location batch");
+            }
+            byte b = data[pos[0]++];
+            // The tenth byte only has room for the top bit of a long
+            if (shift == 63 && (b & 0x7E) != 0) {
+                throw new RuntimeException("Malformed varint in location batch");
+            }
+            result |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return result;
+            }
+        }
+        throw new RuntimeException("Malformed varint in location batch");
+    }
+
+    private static void writeVarLong(ByteArrayOutputStream out, long value) {
+        while ((value & ~0x7FL) != 0) {
+            out.write((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.write((int) value);
+    }
+
+    private static long zigzag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    private static long unzigzag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+}
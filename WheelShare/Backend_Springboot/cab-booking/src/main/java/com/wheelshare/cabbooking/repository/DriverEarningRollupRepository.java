@@ -0,0 +1,32 @@
+package com.wheelshare.cabbooking.repository;
+
+import com.wheelshare.cabbooking.entity.DriverEarningRollup;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+public interface DriverEarningRollupRepository extends JpaRepository<DriverEarningRollup, Integer> {
+
+    // Creates the period's row or adds to it, in one statement with no read first
+    @Transactional
+    @Modifying
+    @Query(value = "INSERT INTO driver_earning_rollups (driver_id, period_type, period_start, amount, rides, updated_at) " +
+                   "VALUES (:driverId, :periodType, :periodStart, :amount, 1, :now) " +
+                   "ON DUPLICATE KEY UPDATE amount = amount + :amount, rides = rides + 1, updated_at = :now",
+           nativeQuery = true)
+    int addEarning(@Param("driverId") Integer driverId,
+                   @Param("periodType") String periodType,
+                   @Param("periodStart") LocalDate periodStart,
+                   @Param("amount") BigDecimal amount,
+                   @Param("now") LocalDateTime now);
+
+    List<DriverEarningRollup> findByDriverIdAndPeriodStartIn(Integer driverId, Collection<LocalDate> periodStarts);
+}
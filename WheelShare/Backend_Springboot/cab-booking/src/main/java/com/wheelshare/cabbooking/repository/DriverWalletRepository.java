@@ -0,0 +1,7 @@
+package com.wheelshare.cabbooking.repository;
+
+import com.wheelshare.cabbooking.entity.DriverWallet;
+import org.springframework.data.jpa.repository.JpaRepository;
+
+public interface DriverWalletRepository extends JpaRepository<DriverWallet, Integer> {
+}
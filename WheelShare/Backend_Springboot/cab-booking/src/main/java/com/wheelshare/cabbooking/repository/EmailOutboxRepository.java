@@ -0,0 +1,37 @@
+package com.wheelshare.cabbooking.repository;
+
+import com.wheelshare.cabbooking.entity.EmailOutbox;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+public interface EmailOutboxRepository extends JpaRepository<EmailOutbox, Integer> {
+
+    // Due and not claimed, or claimed by a dispatcher whose claim has run out
+    @Query("select e.outboxId from EmailOutbox e where e.status = 'PENDING' and e.nextAttemptAt <= :now " +
+            "and (e.claimedUntil is null or e.claimedUntil < :now) order by e.outboxId")
+    List<Integer> findDueIds(@Param("now") LocalDateTime now, Pageable pageable);
+
+    // Conditional, so of two dispatchers picking the same rows only one claims each of them
+    @Transactional
+    @Modifying
+    @Query("update EmailOutbox e set e.claimedBy = :claim, e.claimedUntil = :until where e.outboxId in :ids " +
+            "and e.status = 'PENDING' and (e.claimedUntil is null or e.claimedUntil < :now)")
+    int claim(@Param("ids") List<Integer> ids, @Param("claim") String claim,
+              @Param("until") LocalDateTime until, @Param("now") LocalDateTime now);
+
+    List<EmailOutbox> findByClaimedByOrderByOutboxIdAsc(String claimedBy);
+
+    List<EmailOutbox> findByToEmailOrderByOutboxIdDesc(String toEmail);
+
+    @Transactional
+    @Modifying
+    @Query("delete from EmailOutbox e where e.status = 'SENT' and e.sentAt < :before")
+    int deleteSentBefore(@Param("before") LocalDateTime before);
+}
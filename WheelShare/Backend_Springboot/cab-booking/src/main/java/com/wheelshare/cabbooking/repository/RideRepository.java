@@ -1,20 +1,111 @@
 package com.wheelshare.cabbooking.repository;
 
+import com.wheelshare.cabbooking.dto.CustomerRideHistoryRow;
+import com.wheelshare.cabbooking.dto.DriverRideHistoryRow;
+import com.wheelshare.cabbooking.dto.RideStatusTotal;
+import com.wheelshare.cabbooking.entity.Driver;
 import com.wheelshare.cabbooking.entity.Ride;
+import com.wheelshare.cabbooking.enums.RideStatus;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 
 @Repository
 public interface RideRepository extends JpaRepository<Ride, Integer> {
-    List<Ride> findByRideStatusAndDriverIsNull(String rideStatus);
-    List<Ride> findByRideStatus(String rideStatus);
+    // Pending list is serialized with its customer
+    @EntityGraph(attributePaths = "customer")
+    List<Ride> findByRideStatusAndDriverIsNull(RideStatus rideStatus);
+    List<Ride> findByRideStatus(RideStatus rideStatus);
 
     List<Ride> findByCustomer_UserIdOrderByRequestedAtDesc(Integer userId);
 
     java.util.Optional<Ride> findByRideIdAndCustomer_UserId(Integer rideId, Integer userId);
 
+    java.util.Optional<Ride> findByCustomer_UserIdAndIdempotencyKey(Integer userId, String idempotencyKey);
+
     List<Ride> findByDriver_DriverId(Integer driverId);
 
-    List<Ride> findByDriver_DriverIdAndRideStatus(Integer driverId, String rideStatus);
+    List<Ride> findByDriver_DriverIdAndRideStatus(Integer driverId, RideStatus rideStatus);
+
+    // My-rides is serialized whole, so customer and driver come in the same select
+    @EntityGraph(attributePaths = {"customer", "driver", "driver.user"})
+    List<Ride> findByDriver_DriverIdAndRideStatusInOrderByRequestedAtDesc(Integer driverId, Collection<RideStatus> rideStatuses);
+
+    // Every ride still in flight, loaded whole for ActiveRideStore
+    @EntityGraph(attributePaths = {"customer", "driver", "driver.user"})
+    List<Ride> findByRideStatusIn(Collection<RideStatus> rideStatuses);
+
+    // What the status response reads: the ride, its driver and the driver's name and phone
+    @EntityGraph(attributePaths = {"driver", "driver.user"})
+    java.util.Optional<Ride> findWithDriverByRideId(Integer rideId);
+
+    // Compare-and-set: returns 1 for the single driver that wins the ride, 0 for everyone else
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("update Ride r set r.driver = :driver, " +
+           "r.rideStatus = com.wheelshare.cabbooking.enums.RideStatus.ACCEPTED, r.acceptedAt = :acceptedAt " +
+           "where r.rideId = :rideId and r.rideStatus = com.wheelshare.cabbooking.enums.RideStatus.REQUESTED " +
+           "and r.driver is null")
+    int claimRequestedRide(@Param("rideId") Integer rideId,
+                           @Param("driver") Driver driver,
+                           @Param("acceptedAt") LocalDateTime acceptedAt);
+
+    // Compare-and-set against claimRequestedRide: a ride is either accepted or cancelled, never both
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("update Ride r set r.rideStatus = com.wheelshare.cabbooking.enums.RideStatus.CANCELLED " +
+           "where r.rideId = :rideId and r.customer.userId = :customerId " +
+           "and r.rideStatus = com.wheelshare.cabbooking.enums.RideStatus.REQUESTED")
+    int cancelRequestedRide(@Param("rideId") Integer rideId, @Param("customerId") Integer customerId);
+
+    // Keyset page of a customer's rides, newest first, strictly after (requestedAt, rideId).
+    // Served by idx_rides_customer_history without a sort or an offset scan.
+    @Query("select new com.wheelshare.cabbooking.dto.CustomerRideHistoryRow(" +
+           "r.rideId, r.sourceLat, r.sourceLng, r.destinationLat, r.destinationLng, " +
+           "r.distanceKm, r.fare, r.finalFare, r.rideStatus, r.requestedAt, r.completedAt, " +
+           "u.name, u.phone, d.licenseNumber) " +
+           "from Ride r left join r.driver d left join d.user u " +
+           "where r.customer.userId = :customerId " +
+           "and (r.requestedAt < :at or (r.requestedAt = :at and r.rideId < :rideId)) " +
+           "order by r.requestedAt desc, r.rideId desc")
+    List<CustomerRideHistoryRow> findCustomerHistoryPage(@Param("customerId") Integer customerId,
+                                                         @Param("at") LocalDateTime at,
+                                                         @Param("rideId") Integer rideId,
+                                                         Limit limit);
+
+    // Keyset page of a driver's completed rides, newest first, strictly after (completedAt, rideId).
+    // Served by idx_rides_driver_history.
+    @Query("select new com.wheelshare.cabbooking.dto.DriverRideHistoryRow(" +
+           "r.rideId, r.sourceAddress, r.destinationAddress, r.distanceKm, r.fare, r.finalFare, " +
+           "r.rideStatus, r.completedAt, c.name, w.amount) " +
+           "from Ride r left join r.customer c " +
+           "left join DriverWallet w on w.rideId = r.rideId and w.transactionType = 'CREDIT' " +
+           "where r.driver.driverId = :driverId " +
+           "and r.rideStatus = com.wheelshare.cabbooking.enums.RideStatus.COMPLETED and r.completedAt is not null " +
+           "and (r.completedAt < :at or (r.completedAt = :at and r.rideId < :rideId)) " +
+           "order by r.completedAt desc, r.rideId desc")
+    List<DriverRideHistoryRow> findDriverHistoryPage(@Param("driverId") Integer driverId,
+                                                     @Param("at") LocalDateTime at,
+                                                     @Param("rideId") Integer rideId,
+                                                     Limit limit);
+
+    // Completed rides are summed on their final fare, as billed
+    @Query("select new com.wheelshare.cabbooking.dto.RideStatusTotal(" +
+           "r.rideStatus, count(r), sum(coalesce(r.finalFare, r.fare))) " +
+           "from Ride r group by r.rideStatus")
+    List<RideStatusTotal> totalsByStatus();
+
+    // Completed rides with no ledger credit yet, for the one-off earnings backfill
+    @Query("select r from Ride r " +
+           "where r.rideStatus = com.wheelshare.cabbooking.enums.RideStatus.COMPLETED and r.driver is not null " +
+           "and r.completedAt is not null and not exists " +
+           "(select 1 from DriverWallet w where w.rideId = r.rideId and w.transactionType = 'CREDIT') " +
+           "order by r.rideId")
+    List<Ride> findCompletedWithoutEarning(Limit limit);
 }
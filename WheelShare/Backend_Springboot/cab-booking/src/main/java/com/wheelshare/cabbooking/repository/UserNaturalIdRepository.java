@@ -0,0 +1,11 @@
+package com.wheelshare.cabbooking.repository;
+
+import com.wheelshare.cabbooking.entity.User;
+
+import java.util.Optional;
+
+public interface UserNaturalIdRepository {
+
+    // Email is User's natural id; a cached email -> userId resolution skips the query
+    Optional<User> findByEmail(String email);
+}
@@ -2,12 +2,20 @@ package com.wheelshare.cabbooking.repository;
 
 import com.wheelshare.cabbooking.entity.User;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
-public interface UserRepository extends JpaRepository<User, Integer> {
-
-    Optional<User> findByEmail(String email);
+public interface UserRepository extends JpaRepository<User, Integer>, UserNaturalIdRepository {
 
     Optional<User> findByPhone(String phone);
+
+    long countByIsEmailVerifiedTrue();
+
+    // Which of these emails already have an account; one query per bulk import chunk
+    @Query("select u.email from User u where u.email in :emails")
+    List<String> findExistingEmails(@Param("emails") Collection<String> emails);
 }
@@ -36,16 +36,16 @@ public class JwtAuthFilter extends OncePerRequestFilter {
 
         String token = authHeader.substring(7);
 
-        if(jwtService.isTokenValid(token)) {
+        // One verification per request, repeat tokens come from JwtService's cache
+        JwtPrincipal principal = jwtService.parseToken(token);
 
-            String email = jwtService.extractEmail(token);
-            String role = jwtService.extractRole(token);
+        if(principal != null) {
 
             UsernamePasswordAuthenticationToken authToken =
                     new UsernamePasswordAuthenticationToken(
-                            email,
+                            principal,
                             null,
-                            List.of(new SimpleGrantedAuthority("ROLE_" + role))
+                            List.of(new SimpleGrantedAuthority("ROLE_" + principal.role()))
                     );
 
             SecurityContextHolder.getContext().setAuthentication(authToken);
@@ -0,0 +1,15 @@
+package com.wheelshare.cabbooking.security;
+
+import java.security.Principal;
+
+/**
+ * Claims of a verified token. JwtAuthFilter puts this in the security context as the
+ * authentication principal, so nothing downstream needs to parse the token again.
+ */
+public record JwtPrincipal(Integer userId, String email, String role, long expiresAt) implements Principal {
+
+    @Override
+    public String getName() {
+        return email;
+    }
+}
@@ -2,19 +2,43 @@ package com.wheelshare.cabbooking.security;
 
 import io.jsonwebtoken.*;
 import io.jsonwebtoken.security.Keys;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.stereotype.Service;
 
+import java.nio.charset.StandardCharsets;
 import java.security.Key;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.Date;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentHashMap;
 
 @Service
 public class JwtService {
 
     private final String SECRET = "wheelshare-secret-key-wheelshare-secret-key";
 
-    private Key getSigningKey() {
-        return Keys.hmacShaKeyFor(SECRET.getBytes());
-    }
+    // Built once, both are immutable and thread-safe
+    private final Key signingKey = Keys.hmacShaKeyFor(SECRET.getBytes());
+    private final JwtParser parser = Jwts.parserBuilder().setSigningKey(signingKey).build();
+
+    @Value("${jwt.cache.max-entries:10000}")
+    private int cacheMaxEntries = 10_000;
+
+    // SHA-256 of the token -> claims, so repeat requests skip HMAC and JSON decoding.
+    // Only verified tokens get in, and an entry is dropped once the token expires.
+    private final ConcurrentHashMap<String, JwtPrincipal> verified = new ConcurrentHashMap<>();
+
+    private static final ThreadLocal<MessageDigest> SHA_256 = ThreadLocal.withInitial(() -> {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    });
 
     public String generateToken(String email, String role, Integer userId) {
 
@@ -24,39 +48,110 @@ public class JwtService {
                 .claim("userId", userId)
                 .setIssuedAt(new Date())
                 .setExpiration(new Date(System.currentTimeMillis() + 86400000))
-                .signWith(getSigningKey(), SignatureAlgorithm.HS256)
+                .signWith(signingKey, SignatureAlgorithm.HS256)
                 .compact();
     }
-    
+
+    // Verified claims of the token, or null when it is malformed, tampered with or expired
+    public JwtPrincipal parseToken(String token) {
+        if (token == null || token.isEmpty()) {
+            return null;
+        }
+
+        String key = hash(token);
+        long now = System.currentTimeMillis();
+        JwtPrincipal principal = verified.get(key);
+        if (principal != null) {
+            if (principal.expiresAt() > now) {
+                return principal;
+            }
+            verified.remove(key, principal);
+            return null;
+        }
+
+        try {
+            Claims claims = parser.parseClaimsJws(token).getBody();
+            Date expiration = claims.getExpiration();
+            principal = new JwtPrincipal(
+                    claims.get("userId", Integer.class),
+                    claims.getSubject(),
+                    claims.get("role", String.class),
+                    expiration != null ? expiration.getTime() : Long.MAX_VALUE
+            );
+        } catch (JwtException | IllegalArgumentException e) {
+            return null;
+        }
+
+        if (verified.size() >= cacheMaxEntries) {
+            evict(now);
+        }
+        verified.put(key, principal);
+        return principal;
+    }
+
+    // User id of the current request: the principal JwtAuthFilter set, else the header's token
+    public Integer resolveUserId(String authorizationHeader) {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        if (authentication != null && authentication.getPrincipal() instanceof JwtPrincipal principal) {
+            return principal.userId();
+        }
+
+        String token = authorizationHeader;
+        if (token != null && token.startsWith("Bearer ")) {
+            token = token.substring(7);
+        }
+        JwtPrincipal principal = parseToken(token);
+        if (principal == null) {
+            throw new JwtException("Invalid or expired token");
+        }
+        return principal.userId();
+    }
+
     public String extractEmail(String token) {
-        return extractAllClaims(token).getSubject();
+        return requireValid(token).email();
     }
 
     public String extractRole(String token) {
-        return extractAllClaims(token).get("role", String.class);
+        return requireValid(token).role();
     }
 
     public Integer extractUserId(String token) {
-        return extractAllClaims(token).get("userId", Integer.class);
+        return requireValid(token).userId();
     }
 
     public boolean isTokenValid(String token) {
-        try {
-            extractAllClaims(token);
-            return true;
-        } catch (Exception e) {
-            return false;
-        }
+        return parseToken(token) != null;
     }
 
-    private Claims extractAllClaims(String token) {
+    public int getCacheSize() {
+        return verified.size();
+    }
 
-        return Jwts.parserBuilder()
-                .setSigningKey(getSigningKey())
-                .build()
-                .parseClaimsJws(token)
-                .getBody();
+    private JwtPrincipal requireValid(String token) {
+        JwtPrincipal principal = parseToken(token);
+        if (principal == null) {
+            throw new JwtException("Invalid or expired token");
+        }
+        return principal;
     }
 
+    // Expired entries first; if the cache is still full, drop an arbitrary tenth of it
+    private void evict(long now) {
+        verified.values().removeIf(p -> p.expiresAt() <= now);
+        if (verified.size() < cacheMaxEntries) {
+            return;
+        }
+
+        int toRemove = Math.max(cacheMaxEntries / 10, 1);
+        Iterator<String> keys = verified.keySet().iterator();
+        while (toRemove-- > 0 && keys.hasNext()) {
+            keys.next();
+            keys.remove();
+        }
+    }
 
+    private static String hash(String token) {
+        MessageDigest digest = SHA_256.get();
+        return HexFormat.of().formatHex(digest.digest(token.getBytes(StandardCharsets.UTF_8)));
+    }
 }
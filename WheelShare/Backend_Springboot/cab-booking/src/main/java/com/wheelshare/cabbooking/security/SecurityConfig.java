@@ -1,5 +1,6 @@
 package com.wheelshare.cabbooking.security;
 
+import jakarta.servlet.DispatcherType;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.security.config.Customizer;
@@ -32,6 +33,9 @@ public class SecurityConfig {
 
             .authorizeHttpRequests(auth -> auth
 
+                // A ride status stream ending re-dispatches the request; it was authorized when it opened
+                .dispatcherTypeMatchers(DispatcherType.ASYNC).permitAll()
+
                 //  Public APIs
                 .requestMatchers(
                         "/swagger-ui/**",
@@ -40,6 +44,12 @@ public class SecurityConfig {
                         "/api/auth/**",
                         "/api/stats/public"
                 ).permitAll()
+
+                // Health checks and Prometheus scrapes carry no token; actuator only listens on localhost (management.server)
+                .requestMatchers("/actuator/health", "/actuator/prometheus").permitAll()
+
+                // Admin dashboard APIs
+                .requestMatchers("/api/admin/**", "/actuator/marketplace/**").hasRole("ADMIN")
                 
                 // Everything else protected
                 .anyRequest().authenticated()
@@ -56,6 +66,8 @@ public class SecurityConfig {
         configuration.setAllowedOriginPatterns(java.util.List.of("*"));
         configuration.setAllowedMethods(java.util.List.of("*"));
         configuration.setAllowedHeaders(java.util.List.of("*"));
+        // Lets the browser read the keyset cursor of the history endpoints and spot replayed POSTs
+        configuration.setExposedHeaders(java.util.List.of("X-Next-Cursor", "Idempotent-Replayed"));
         configuration.setAllowCredentials(true);
         
         org.springframework.web.cors.UrlBasedCorsConfigurationSource source = new org.springframework.web.cors.UrlBasedCorsConfigurationSource();
@@ -0,0 +1,276 @@
+package com.wheelshare.cabbooking.service;
+
+import com.wheelshare.cabbooking.entity.Driver;
+import com.wheelshare.cabbooking.entity.Ride;
+import com.wheelshare.cabbooking.entity.User;
+import com.wheelshare.cabbooking.enums.RideStatus;
+import com.wheelshare.cabbooking.repository.RideRepository;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.hibernate.Hibernate;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Rides still in flight (REQUESTED, ACCEPTED, STARTED), held as detached copies with their
+ * customer, driver and driver's user, indexed by rideId and driverId.
+ *
+ * RideService writes through after each commit and a ride leaves as soon as it is completed
+ * or cancelled, so status polls and a driver's my-rides are answered without a query. Anything
+ * the store cannot answer (an unknown ride, a driver whose index may be incomplete, before the
+ * first load) returns null and the caller goes to the database. reconcile() compares the store
+ * with the database on a schedule and repairs any drift, counted in rides.active.corrections.
+ */
+@Component
+public class ActiveRideStore {
+
+    private final RideRepository rideRepository;
+
+    // version is taken from a counter on every write, so reconcile can tell what changed after its read
+    private record Entry(Ride ride, long version) {
+    }
+
+    private final ConcurrentHashMap<Integer, Entry> rides = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<Integer, Set<Integer>> byDriver = new ConcurrentHashMap<>();
+
+    // Rides that went terminal, so a late after-commit write for an earlier step can't bring them back
+    private final ConcurrentHashMap<Integer, Long> evicted = new ConcurrentHashMap<>();
+
+    // Drivers with a ride the store couldn't copy whole; their my-rides goes to the database
+    private final Set<Integer> staleDrivers = ConcurrentHashMap.newKeySet();
+
+    private final AtomicLong versions = new AtomicLong();
+    private final AtomicLong corrections = new AtomicLong();
+    private final Object writeLock = new Object();
+    private volatile boolean loaded;
+
+    public ActiveRideStore(RideRepository rideRepository, MeterRegistry meterRegistry) {
+        this.rideRepository = rideRepository;
+
+        // Should stay flat; any increase means something wrote rides around RideService
+        FunctionCounter.builder("rides.active.corrections", this, ActiveRideStore::getCorrections)
+                .register(meterRegistry);
+    }
+
+    public Ride get(Integer rideId) {
+        Entry entry = rides.get(rideId);
+        return entry != null ? entry.ride() : null;
+    }
+
+    // Newest first, as the repository orders them; null when the database has to answer
+    public List<Ride> findByDriver(Integer driverId) {
+        if (!loaded || staleDrivers.contains(driverId)) {
+            return null;
+        }
+        return collect(byDriver.get(driverId));
+    }
+
+    // True when the store knows this ride is no longer open to drivers
+    public boolean isTaken(Integer rideId) {
+        if (evicted.containsKey(rideId)) {
+            return true;
+        }
+        Entry entry = rides.get(rideId);
+        return entry != null && entry.ride().getRideStatus() != RideStatus.REQUESTED;
+    }
+
+    /**
+     * Records the ride's committed state. Terminal rides are evicted; a write for a state that
+     * leads to the one the store holds is older than it (after-commit hooks of two steps can
+     * run out of order) and is dropped.
+     */
+    public void put(Ride ride) {
+        synchronized (writeLock) {
+            apply(ride, Long.MAX_VALUE);
+        }
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(initialDelayString = "${rides.active.reconcile-ms:60000}", fixedDelayString = "${rides.active.reconcile-ms:60000}")
+    public void reconcile() {
+        // Entries written after this point are newer than the rows read below and are kept
+        long snapshot = versions.incrementAndGet();
+        List<Ride> active = rideRepository.findByRideStatusIn(RideStatus.active());
+
+        synchronized (writeLock) {
+            long fixed = 0;
+            Set<Integer> seen = new HashSet<>();
+            for (Ride ride : active) {
+                seen.add(ride.getRideId());
+                Entry entry = rides.get(ride.getRideId());
+                if (entry != null && entry.version() > snapshot) {
+                    continue;
+                }
+                if (entry == null || !sameState(entry.ride(), ride)) {
+                    fixed++;
+                }
+                apply(ride, snapshot);
+            }
+
+            // Held here but no longer active in the database
+            for (Map.Entry<Integer, Entry> e : rides.entrySet()) {
+                if (!seen.contains(e.getKey()) && e.getValue().version() < snapshot) {
+                    remove(e.getKey());
+                    fixed++;
+                }
+            }
+
+            evicted.values().removeIf(version -> version < snapshot);
+            staleDrivers.clear();
+            if (loaded) {
+                corrections.addAndGet(fixed);
+            }
+            loaded = true;
+        }
+    }
+
+    // Entries reconcile had to fix since startup; non-zero means something wrote around RideService
+    public long getCorrections() {
+        return corrections.get();
+    }
+
+    // Caller holds writeLock. ifNotAfter is the reconcile snapshot, MAX_VALUE for a live write.
+    private void apply(Ride ride, long ifNotAfter) {
+        Integer rideId = ride.getRideId();
+        if (!ride.getRideStatus().isActive()) {
+            remove(rideId);
+            evicted.put(rideId, versions.incrementAndGet());
+            return;
+        }
+        Long evictedAt = evicted.get(rideId);
+        if (evictedAt != null && evictedAt > ifNotAfter) {
+            return;
+        }
+
+        Entry current = rides.get(rideId);
+        if (current != null && ifNotAfter == Long.MAX_VALUE
+                && ride.getRideStatus().canReach(current.ride().getRideStatus())) {
+            return;
+        }
+
+        Ride copy = copy(ride, current != null ? current.ride() : null);
+        if (copy == null) {
+            // Not enough of the graph was loaded to copy; let the database answer for this ride
+            remove(rideId);
+            if (ride.getDriver() != null) {
+                staleDrivers.add(ride.getDriver().getDriverId());
+            }
+            return;
+        }
+
+        remove(rideId);
+        rides.put(rideId, new Entry(copy, versions.incrementAndGet()));
+        if (copy.getDriver() != null) {
+            byDriver.computeIfAbsent(copy.getDriver().getDriverId(), k -> ConcurrentHashMap.newKeySet()).add(rideId);
+        }
+    }
+
+    private void remove(Integer rideId) {
+        Entry entry = rides.remove(rideId);
+        if (entry == null) {
+            return;
+        }
+        Ride ride = entry.ride();
+        if (ride.getDriver() != null) {
+            byDriver.computeIfPresent(ride.getDriver().getDriverId(), (k, ids) -> ids.remove(rideId) && ids.isEmpty() ? null : ids);
+        }
+    }
+
+    private List<Ride> collect(Set<Integer> rideIds) {
+        List<Ride> result = new ArrayList<>();
+        if (rideIds != null) {
+            for (Integer rideId : rideIds) {
+                Ride ride = get(rideId);
+                if (ride != null) {
+                    result.add(ride);
+                }
+            }
+        }
+        result.sort(Comparator.comparing(Ride::getRequestedAt, Comparator.nullsLast(Comparator.reverseOrder())));
+        return result;
+    }
+
+    private static boolean sameState(Ride a, Ride b) {
+        Integer driverA = a.getDriver() != null ? a.getDriver().getDriverId() : null;
+        Integer driverB = b.getDriver() != null ? b.getDriver().getDriverId() : null;
+        return a.getRideStatus() == b.getRideStatus() && Objects.equals(driverA, driverB);
+    }
+
+    /**
+     * A copy that shares nothing with the persistence context. The customer comes from the
+     * previous copy when the entity only holds a proxy; null when neither has it loaded.
+     */
+    private static Ride copy(Ride ride, Ride previous) {
+        User customer;
+        if (ride.getCustomer() == null) {
+            return null;
+        } else if (Hibernate.isInitialized(ride.getCustomer())) {
+            customer = copy(ride.getCustomer());
+        } else if (previous != null) {
+            customer = previous.getCustomer();
+        } else {
+            return null;
+        }
+
+        Driver driver = null;
+        if (ride.getDriver() != null) {
+            if (!Hibernate.isInitialized(ride.getDriver()) || !Hibernate.isInitialized(ride.getDriver().getUser())) {
+                return null;
+            }
+            Driver source = ride.getDriver();
+            driver = Driver.builder()
+                    .driverId(source.getDriverId())
+                    .user(copy(source.getUser()))
+                    .licenseNumber(source.getLicenseNumber())
+                    .isVerified(source.getIsVerified())
+                    .isAvailable(source.getIsAvailable())
+                    .currentLatitude(source.getCurrentLatitude())
+                    .currentLongitude(source.getCurrentLongitude())
+                    .build();
+        }
+
+        return Ride.builder()
+                .rideId(ride.getRideId())
+                .customer(customer)
+                .driver(driver)
+                .sourceLat(ride.getSourceLat())
+                .sourceLng(ride.getSourceLng())
+                .sourceAddress(ride.getSourceAddress())
+                .destinationLat(ride.getDestinationLat())
+                .destinationLng(ride.getDestinationLng())
+                .destinationAddress(ride.getDestinationAddress())
+                .distanceKm(ride.getDistanceKm())
+                .fare(ride.getFare())
+                .finalFare(ride.getFinalFare())
+                .rideStatus(ride.getRideStatus())
+                .requestedAt(ride.getRequestedAt())
+                .acceptedAt(ride.getAcceptedAt())
+                .completedAt(ride.getCompletedAt())
+                .build();
+    }
+
+    private static User copy(User user) {
+        return User.builder()
+                .userId(user.getUserId())
+                .name(user.getName())
+                .email(user.getEmail())
+                .phone(user.getPhone())
+                .role(user.getRole())
+                .isActive(user.getIsActive())
+                .createdAt(user.getCreatedAt())
+                .isEmailVerified(user.getIsEmailVerified())
+                .build();
+    }
+}
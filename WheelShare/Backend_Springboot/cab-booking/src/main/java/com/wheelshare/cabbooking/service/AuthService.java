@@ -8,6 +8,7 @@ import com.wheelshare.cabbooking.entity.Driver;
 import com.wheelshare.cabbooking.entity.EmailOtp;
 import com.wheelshare.cabbooking.entity.User;
 import com.wheelshare.cabbooking.helper.OtpHelper;
+import com.wheelshare.cabbooking.helper.TransactionHelper;
 import com.wheelshare.cabbooking.repository.DriverRepository;
 import com.wheelshare.cabbooking.repository.EmailOtpRepository;
 import com.wheelshare.cabbooking.repository.UserRepository;
@@ -33,6 +34,7 @@ public class AuthService {
     private final EmailService emailService;
     private final JwtService jwtService;
     private final PasswordEncoder passwordEncoder;
+    private final StatsService statsService;
 
     @Transactional
     public String register(RegisterDto dto) {
@@ -57,6 +59,7 @@ public class AuthService {
             driver.setUser(user);
             driver.setLicenseNumber("PENDING");
             driverRepository.save(driver);
+            TransactionHelper.afterCommit(statsService::driverRegistered);
         }
 
         String otp = OtpHelper.generateOtp();
@@ -68,7 +71,8 @@ public class AuthService {
         emailOtp.setIsUsed(false);
         emailOtpRepository.save(emailOtp);
 
-        emailService.sendOtpEmail(user.getEmail(), otp);
+        // Written to the outbox in this transaction, sent by EmailOutboxDispatcher after commit
+        emailService.queueOtpEmail(user.getEmail(), otp);
 
         return "OTP sent to registered email";
     }
@@ -97,6 +101,7 @@ public class AuthService {
 
         user.setIsEmailVerified(true);
         userRepository.save(user);
+        TransactionHelper.afterCommit(statsService::userVerified);
 
         return "Email verified successfully. Please login.";
     }
@@ -125,7 +130,7 @@ public class AuthService {
         emailOtp.setIsUsed(false);
         emailOtpRepository.save(emailOtp);
 
-        emailService.sendOtpEmail(user.getEmail(), newOtp);
+        emailService.queueOtpEmail(user.getEmail(), newOtp);
 
         return "OTP resent successfully";
     }
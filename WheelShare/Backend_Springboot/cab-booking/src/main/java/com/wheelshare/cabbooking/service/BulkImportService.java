@@ -0,0 +1,351 @@
+package com.wheelshare.cabbooking.service;
+
+import com.wheelshare.cabbooking.entity.Driver;
+import com.wheelshare.cabbooking.entity.Ride;
+import com.wheelshare.cabbooking.entity.User;
+import com.wheelshare.cabbooking.enums.RideStatus;
+import com.wheelshare.cabbooking.helper.CsvReader;
+import com.wheelshare.cabbooking.repository.UserRepository;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import org.hibernate.exception.ConstraintViolationException;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Loads historical drivers and rides from CSV.
+ *
+ * Rows are persisted chunk-rows at a time, one transaction per chunk, and the persistence context
+ * is flushed and cleared every JDBC batch so memory stays flat. Ids come from the pooled
+ * id_sequences generators, so Hibernate sends each flush as batch_size-row JDBC batches
+ * (one multi-row INSERT each on MySQL with rewriteBatchedStatements) instead of a round trip per row.
+ * A bad row fails the import at that row; chunks before it stay committed.
+ *
+ * Drivers CSV: name, email, phone, license_number[, is_verified]. Emails that already have an
+ * account are skipped. Imported accounts have no usable password until one is set.
+ * Rides CSV: customer_id, driver_id, source_lat, source_lng, source_address, destination_lat,
+ * destination_lng, destination_address, distance_km, fare, final_fare, ride_status,
+ * requested_at, accepted_at, completed_at. Only COMPLETED and CANCELLED rides; ids are user ids.
+ */
+@Service
+public class BulkImportService {
+
+    public record ImportResult(long imported, long skipped, long millis) {
+
+        public Map<String, Object> toMap() {
+            Map<String, Object> map = new HashMap<>();
+            map.put("imported", imported);
+            map.put("skipped", skipped);
+            map.put("seconds", millis / 1000.0);
+            map.put("rowsPerSecond", millis > 0 ? imported * 1000 / millis : imported);
+            return map;
+        }
+    }
+
+    private record RideRow(Ride ride, Integer customerId, Integer driverId) {
+    }
+
+    // Ride timestamps before this, or more than a day ahead of the clock, are typos
+    private static final LocalDateTime EARLIEST = LocalDateTime.of(2000, 1, 1, 0, 0);
+
+    // Written instead of a BCrypt hash, no password matches it
+    private static final String NO_PASSWORD = "!imported";
+
+    private static final List<String> DRIVER_COLUMNS = List.of("name", "email", "phone", "license_number");
+    private static final List<String> RIDE_COLUMNS = List.of("customer_id", "fare", "ride_status", "requested_at");
+
+    private final UserRepository userRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final StatsService statsService;
+    private final RevenueAnalytics revenueAnalytics;
+    private final DriverEarningsService driverEarningsService;
+    private final int chunkRows;
+    private final int batchSize;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    public BulkImportService(UserRepository userRepository,
+                             TransactionTemplate transactionTemplate,
+                             StatsService statsService,
+                             RevenueAnalytics revenueAnalytics,
+                             DriverEarningsService driverEarningsService,
+                             @Value("${import.chunk-rows:5000}") int chunkRows,
+                             @Value("${spring.jpa.properties.hibernate.jdbc.batch_size:50}") int batchSize) {
+        this.userRepository = userRepository;
+        this.transactionTemplate = transactionTemplate;
+        this.statsService = statsService;
+        this.revenueAnalytics = revenueAnalytics;
+        this.driverEarningsService = driverEarningsService;
+        this.chunkRows = chunkRows;
+        this.batchSize = batchSize;
+    }
+
+    public ImportResult importDrivers(Reader reader) throws IOException {
+        long start = System.currentTimeMillis();
+        CsvReader csv = new CsvReader(reader);
+        Map<String, Integer> columns = header(csv, DRIVER_COLUMNS);
+
+        long imported = 0;
+        long skipped = 0;
+        Set<String> seen = new HashSet<>();
+        List<Driver> chunk = new ArrayList<>(chunkRows);
+        try {
+            String[] row;
+            while ((row = csv.next()) != null) {
+                Driver driver = toDriver(columns, row, csv.getLine());
+                if (!seen.add(driver.getUser().getEmail().toLowerCase(Locale.ROOT))) {
+                    skipped++;
+                    continue;
+                }
+                chunk.add(driver);
+                if (chunk.size() == chunkRows) {
+                    long saved = persistDrivers(chunk);
+                    imported += saved;
+                    skipped += chunk.size() - saved;
+                    chunk.clear();
+                }
+            }
+            long saved = persistDrivers(chunk);
+            imported += saved;
+            skipped += chunk.size() - saved;
+        } finally {
+            if (imported > 0) {
+                statsService.reconcile();
+            }
+        }
+        return new ImportResult(imported, skipped, System.currentTimeMillis() - start);
+    }
+
+    public ImportResult importRides(Reader reader) throws IOException {
+        long start = System.currentTimeMillis();
+        CsvReader csv = new CsvReader(reader);
+        Map<String, Integer> columns = header(csv, RIDE_COLUMNS);
+
+        long imported = 0;
+        long millis;
+        List<RideRow> chunk = new ArrayList<>(chunkRows);
+        int firstLine = 0;
+        try {
+            String[] row;
+            while ((row = csv.next()) != null) {
+                if (chunk.isEmpty()) {
+                    firstLine = csv.getLine();
+                }
+                chunk.add(toRide(columns, row, csv.getLine()));
+                if (chunk.size() == chunkRows) {
+                    imported += persistRides(chunk, firstLine, csv.getLine(), imported);
+                    chunk.clear();
+                }
+            }
+            imported += persistRides(chunk, firstLine, csv.getLine(), imported);
+            millis = System.currentTimeMillis() - start;
+        } finally {
+            // Stats, revenue buckets and the earnings ledger are derived from rides; bring them up to date
+            if (imported > 0) {
+                statsService.reconcile();
+                revenueAnalytics.rebuild();
+                driverEarningsService.backfill();
+            }
+        }
+        return new ImportResult(imported, 0, millis);
+    }
+
+    private long persistDrivers(List<Driver> drivers) {
+        if (drivers.isEmpty()) {
+            return 0;
+        }
+        Long saved = transactionTemplate.execute(status -> {
+            Set<String> existing = new HashSet<>();
+            for (String email : userRepository.findExistingEmails(drivers.stream().map(d -> d.getUser().getEmail()).toList())) {
+                existing.add(email.toLowerCase(Locale.ROOT));
+            }
+
+            long count = 0;
+            for (Driver driver : drivers) {
+                if (existing.contains(driver.getUser().getEmail().toLowerCase(Locale.ROOT))) {
+                    continue;
+                }
+                entityManager.persist(driver.getUser());
+                entityManager.persist(driver);
+                if (++count % batchSize == 0) {
+                    entityManager.flush();
+                    entityManager.clear();
+                }
+            }
+            entityManager.flush();
+            entityManager.clear();
+            return count;
+        });
+        return saved != null ? saved : 0;
+    }
+
+    private long persistRides(List<RideRow> rows, int firstLine, int lastLine, long importedBefore) {
+        if (rows.isEmpty()) {
+            return 0;
+        }
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                for (int i = 0; i < rows.size(); i++) {
+                    RideRow row = rows.get(i);
+                    Ride ride = row.ride();
+                    // References only, the foreign keys check the ids
+                    ride.setCustomer(entityManager.getReference(User.class, row.customerId()));
+                    if (row.driverId() != null) {
+                        ride.setDriver(entityManager.getReference(Driver.class, row.driverId()));
+                    }
+                    entityManager.persist(ride);
+                    if ((i + 1) % batchSize == 0) {
+                        entityManager.flush();
+                        entityManager.clear();
+                    }
+                }
+                entityManager.flush();
+                entityManager.clear();
+            });
+        } catch (ConstraintViolationException | DataIntegrityViolationException e) {
+            // Raw from flush(), translated when it only surfaces at commit
+            throw new RuntimeException("Lines " + firstLine + "-" + lastLine + ": unknown customer_id or driver_id ("
+                    + importedBefore + " rides before them were imported)");
+        }
+        return rows.size();
+    }
+
+    private Driver toDriver(Map<String, Integer> columns, String[] row, int line) {
+        User user = new User();
+        user.setName(required(columns, row, "name", line));
+        user.setEmail(required(columns, row, "email", line));
+        user.setPhone(required(columns, row, "phone", line));
+        user.setPasswordHash(NO_PASSWORD);
+        user.setRole("DRIVER");
+        user.setIsEmailVerified(true);
+        user.setIsActive(true);
+        user.setCreatedAt(LocalDateTime.now());
+
+        Driver driver = new Driver();
+        driver.setUser(user);
+        driver.setLicenseNumber(required(columns, row, "license_number", line));
+        driver.setIsVerified(Boolean.parseBoolean(optional(columns, row, "is_verified")));
+        driver.setIsAvailable(false);
+        return driver;
+    }
+
+    private RideRow toRide(Map<String, Integer> columns, String[] row, int line) {
+        RideStatus status;
+        try {
+            status = RideStatus.valueOf(required(columns, row, "ride_status", line).toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new RuntimeException("Line " + line + ": unknown ride_status");
+        }
+        if (status.isActive()) {
+            throw new RuntimeException("Line " + line + ": only COMPLETED and CANCELLED rides can be imported");
+        }
+
+        Integer driverId = integer(columns, row, "driver_id", line);
+        LocalDateTime completedAt = dateTime(columns, row, "completed_at", line);
+        if (status == RideStatus.COMPLETED && (driverId == null || completedAt == null)) {
+            throw new RuntimeException("Line " + line + ": a COMPLETED ride needs driver_id and completed_at");
+        }
+
+        Ride ride = new Ride();
+        ride.setSourceLat(decimal(columns, row, "source_lat", line));
+        ride.setSourceLng(decimal(columns, row, "source_lng", line));
+        ride.setSourceAddress(optional(columns, row, "source_address"));
+        ride.setDestinationLat(decimal(columns, row, "destination_lat", line));
+        ride.setDestinationLng(decimal(columns, row, "destination_lng", line));
+        ride.setDestinationAddress(optional(columns, row, "destination_address"));
+        ride.setDistanceKm(decimal(columns, row, "distance_km", line));
+        ride.setFare(decimal(columns, row, "fare", line));
+        ride.setFinalFare(decimal(columns, row, "final_fare", line));
+        ride.setRideStatus(status);
+        ride.setRequestedAt(dateTime(columns, row, "requested_at", line));
+        ride.setAcceptedAt(dateTime(columns, row, "accepted_at", line));
+        ride.setCompletedAt(completedAt);
+        if (ride.getFare() == null || ride.getRequestedAt() == null) {
+            throw new RuntimeException("Line " + line + ": fare and requested_at are required");
+        }
+        return new RideRow(ride, integer(columns, row, "customer_id", line), driverId);
+    }
+
+    // Column name -> index, names are case-insensitive
+    private static Map<String, Integer> header(CsvReader csv, List<String> required) throws IOException {
+        String[] names = csv.next();
+        if (names == null) {
+            throw new RuntimeException("CSV is empty");
+        }
+        Map<String, Integer> columns = new HashMap<>();
+        for (int i = 0; i < names.length; i++) {
+            columns.put(names[i].trim().toLowerCase(Locale.ROOT), i);
+        }
+        for (String name : required) {
+            if (!columns.containsKey(name)) {
+                throw new RuntimeException("Missing column " + name);
+            }
+        }
+        return columns;
+    }
+
+    private static String optional(Map<String, Integer> columns, String[] row, String name) {
+        Integer index = columns.get(name);
+        if (index == null || index >= row.length) {
+            return null;
+        }
+        String value = row[index].trim();
+        return value.isEmpty() ? null : value;
+    }
+
+    private static String required(Map<String, Integer> columns, String[] row, String name, int line) {
+        String value = optional(columns, row, name);
+        if (value == null) {
+            throw new RuntimeException("Line " + line + ": " + name + " is required");
+        }
+        return value;
+    }
+
+    private static Integer integer(Map<String, Integer> columns, String[] row, String name, int line) {
+        String value = optional(columns, row, name);
+        try {
+            return value != null ? Integer.valueOf(value) : null;
+        } catch (NumberFormatException e) {
+            throw new RuntimeException("Line " + line + ": " + name + " is not a number");
+        }
+    }
+
+    private static Double decimal(Map<String, Integer> columns, String[] row, String name, int line) {
+        String value = optional(columns, row, name);
+        try {
+            return value != null ? Double.valueOf(value) : null;
+        } catch (NumberFormatException e) {
+            throw new RuntimeException("Line " + line + ": " + name + " is not a number");
+        }
+    }
+
+    // ISO date-time, with a space or a T between date and time
+    private static LocalDateTime dateTime(Map<String, Integer> columns, String[] row, String name, int line) {
+        String value = optional(columns, row, name);
+        LocalDateTime dateTime;
+        try {
+            dateTime = value != null ? LocalDateTime.parse(value.replace(' ', 'T')) : null;
+        } catch (DateTimeParseException e) {
+            throw new RuntimeException("Line " + line + ": " + name + " is not a date-time");
+        }
+        if (dateTime != null && (dateTime.isBefore(EARLIEST) || dateTime.isAfter(LocalDateTime.now().plusDays(1)))) {
+            throw new RuntimeException("Line " + line + ": " + name + " is out of range");
+        }
+        return dateTime;
+    }
+}
@@ -0,0 +1,327 @@
+package com.wheelshare.cabbooking.service;
+
+import com.wheelshare.cabbooking.helper.DistanceHelper;
+
+import java.util.Arrays;
+import java.util.Comparator;
+
+/**
+ * Driver-to-ride assignment for one dispatch window.
+ * Drivers are rows, rides are columns and each candidate edge costs the pickup distance in km.
+ * A driver left without a ride costs skipCostKm, so the solver prefers serving more drivers
+ * before shaving kilometres. Plain arrays only, no Spring, so it can be benchmarked in isolation.
+ */
+public final class DispatchMatcher {
+
+    public static final int UNASSIGNED = -1;
+
+    private static final double MIN_CELL_DEG = 0.001;
+    private static final double MAX_CELL_DEG = 0.5;
+
+    private DispatchMatcher() {
+    }
+
+    /**
+     * Sparse candidate edges in CSR form: driver i's edges are edgeStart[i] until edgeStart[i + 1].
+     * Columns are positions in the ride arrays the graph was built from, rideIds maps them back.
+     */
+    public record CandidateGraph(int drivers, int rides, int[] rideIds,
+                                 int[] edgeStart, int[] edgeRide, double[] edgeCost) {
+
+        /**
+         * Keeps the maxCandidates closest rides per driver within radiusKm.
+         * Rides are bucketed into a grid sized for about two rides per cell and each driver
+         * searches outward ring by ring, stopping once no unseen ride can beat its current k-th.
+         * Distances are equirectangular, plenty for pickups of a few km.
+         */
+        public static CandidateGraph build(int[] rideIds, double[] rideLat, double[] rideLng,
+                                           double[] driverLat, double[] driverLng,
+                                           double radiusKm, int maxCandidates) {
+            int rides = rideIds.length;
+            int drivers = driverLat.length;
+            int[] edgeStart = new int[drivers + 1];
+            int[] edgeRide = new int[drivers * maxCandidates];
+            double[] edgeCost = new double[drivers * maxCandidates];
+            if (rides == 0) {
+                return new CandidateGraph(drivers, 0, rideIds, edgeStart, new int[0], new double[0]);
+            }
+
+            double minLat = Double.MAX_VALUE, maxLat = -Double.MAX_VALUE;
+            double minLng = Double.MAX_VALUE, maxLng = -Double.MAX_VALUE;
+            for (int j = 0; j < rides; j++) {
+                minLat = Math.min(minLat, rideLat[j]);
+                maxLat = Math.max(maxLat, rideLat[j]);
+                minLng = Math.min(minLng, rideLng[j]);
+                maxLng = Math.max(maxLng, rideLng[j]);
+            }
+            double area = Math.max((maxLat - minLat) * (maxLng - minLng), 1e-6);
+            double cellDeg = Math.min(Math.max(Math.sqrt(area * 2.0 / rides), MIN_CELL_DEG), MAX_CELL_DEG);
+
+            // Rides sorted by cell, cellKeys/cellStart index the runs
+            long[] keyed = new long[rides];
+            for (int j = 0; j < rides; j++) {
+                keyed[j] = cellKey(cellIndex(rideLat[j], cellDeg), cellIndex(rideLng[j], cellDeg));
+            }
+            Integer[] order = new Integer[rides];
+            for (int j = 0; j < rides; j++) {
+                order[j] = j;
+            }
+            Arrays.sort(order, Comparator.comparingLong(j -> keyed[j]));
+
+            int[] sortedRide = new int[rides];
+            long[] cellKeys = new long[rides];
+            int[] cellStart = new int[rides + 1];
+            int cells = 0;
+            for (int k = 0; k < rides; k++) {
+                sortedRide[k] = order[k];
+                long key = keyed[order[k]];
+                if (cells == 0 || cellKeys[cells - 1] != key) {
+                    cellKeys[cells] = key;
+                    cellStart[cells] = k;
+                    cells++;
+                }
+            }
+            cellStart[cells] = rides;
+
+            // Bounded max-heap of the best candidates so far, reused across drivers
+            double[] heapCost = new double[maxCandidates];
+            int[] heapRide = new int[maxCandidates];
+
+            int edges = 0;
+            for (int i = 0; i < drivers; i++) {
+                edgeStart[i] = edges;
+
+                double lat = driverLat[i];
+                double lng = driverLng[i];
+                double cosLat = Math.max(Math.cos(Math.toRadians(lat)), 1e-6);
+                int centerLat = cellIndex(lat, cellDeg);
+                int centerLng = cellIndex(lng, cellDeg);
+                // Anything outside ring r is at least r cells away along one axis
+                double ringKm = cellDeg * DistanceHelper.KM_PER_DEGREE * cosLat;
+                int maxRing = (int) Math.min(Math.ceil(radiusKm / ringKm), 180.0 / cellDeg);
+
+                int size = 0;
+                for (int ring = 0; ring <= maxRing; ring++) {
+                    if (size == maxCandidates && heapCost[0] <= ring * ringKm - ringKm) {
+                        break;
+                    }
+                    for (int a = centerLat - ring; a <= centerLat + ring; a++) {
+                        boolean edgeRow = a == centerLat - ring || a == centerLat + ring;
+                        int step = edgeRow ? 1 : Math.max(2 * ring, 1);
+                        for (int b = centerLng - ring; b <= centerLng + ring; b += step) {
+                            int cell = Arrays.binarySearch(cellKeys, 0, cells, cellKey(a, b));
+                            if (cell < 0) {
+                                continue;
+                            }
+                            for (int k = cellStart[cell]; k < cellStart[cell + 1]; k++) {
+                                int j = sortedRide[k];
+                                double dy = rideLat[j] - lat;
+                                double dx = (rideLng[j] - lng) * cosLat;
+                                double km = Math.sqrt(dx * dx + dy * dy) * DistanceHelper.KM_PER_DEGREE;
+                                if (km > radiusKm) {
+                                    continue;
+                                }
+                                if (size < maxCandidates) {
+                                    siftUp(heapCost, heapRide, size++, km, j);
+                                } else if (km < heapCost[0]) {
+                                    siftDown(heapCost, heapRide, size, km, j);
+                                }
+                            }
+                        }
+                    }
+                }
+
+                for (int k = 0; k < size; k++) {
+                    edgeRide[edges] = heapRide[k];
+                    edgeCost[edges] = heapCost[k];
+                    edges++;
+                }
+            }
+            edgeStart[drivers] = edges;
+
+            return new CandidateGraph(drivers, rides, rideIds, edgeStart,
+                    Arrays.copyOf(edgeRide, edges), Arrays.copyOf(edgeCost, edges));
+        }
+
+        private static void siftUp(double[] cost, int[] ride, int index, double km, int j) {
+            while (index > 0) {
+                int parent = (index - 1) / 2;
+                if (cost[parent] >= km) {
+                    break;
+                }
+                cost[index] = cost[parent];
+                ride[index] = ride[parent];
+                index = parent;
+            }
+            cost[index] = km;
+            ride[index] = j;
+        }
+
+        // Replaces the root (current worst) and restores the heap
+        private static void siftDown(double[] cost, int[] ride, int size, double km, int j) {
+            int index = 0;
+            while (true) {
+                int child = 2 * index + 1;
+                if (child >= size) {
+                    break;
+                }
+                if (child + 1 < size && cost[child + 1] > cost[child]) {
+                    child++;
+                }
+                if (cost[child] <= km) {
+                    break;
+                }
+                cost[index] = cost[child];
+                ride[index] = ride[child];
+                index = child;
+            }
+            cost[index] = km;
+            ride[index] = j;
+        }
+
+        private static int cellIndex(double degrees, double cellDeg) {
+            return (int) Math.floor(degrees / cellDeg);
+        }
+
+        private static long cellKey(int latIndex, int lngIndex) {
+            return ((long) latIndex << 32) | (lngIndex & 0xffffffffL);
+        }
+    }
+
+    /**
+     * Greedy seed refined by a bounded auction. The auction result is only taken when it
+     * finished within maxBids and actually beats the greedy total.
+     * Returns the column assigned to each driver, or UNASSIGNED.
+     */
+    public static int[] solve(CandidateGraph graph, double skipCostKm, double epsilonKm, long maxBids) {
+        int[] greedy = greedy(graph);
+        int[] auction = auction(graph, skipCostKm, epsilonKm, maxBids);
+        if (auction != null && totalCost(graph, auction, skipCostKm) < totalCost(graph, greedy, skipCostKm)) {
+            return auction;
+        }
+        return greedy;
+    }
+
+    // Cheapest edges first, take each one whose driver and ride are both still free
+    public static int[] greedy(CandidateGraph graph) {
+        int[] edgeStart = graph.edgeStart();
+        int edges = edgeStart[graph.drivers()];
+
+        // Non-negative float bits sort like the floats themselves, so cost and edge index pack into one long
+        long[] order = new long[edges];
+        for (int e = 0; e < edges; e++) {
+            order[e] = ((long) Float.floatToIntBits((float) graph.edgeCost()[e]) << 32) | e;
+        }
+        Arrays.sort(order);
+
+        int[] edgeDriver = new int[edges];
+        for (int i = 0; i < graph.drivers(); i++) {
+            Arrays.fill(edgeDriver, edgeStart[i], edgeStart[i + 1], i);
+        }
+
+        int[] assigned = new int[graph.drivers()];
+        Arrays.fill(assigned, UNASSIGNED);
+        boolean[] taken = new boolean[graph.rides()];
+        for (long key : order) {
+            int e = (int) key;
+            int driver = edgeDriver[e];
+            int ride = graph.edgeRide()[e];
+            if (assigned[driver] == UNASSIGNED && !taken[ride]) {
+                assigned[driver] = ride;
+                taken[ride] = true;
+            }
+        }
+        return assigned;
+    }
+
+    /**
+     * Forward auction (Bertsekas) with a fixed epsilon: the result is within drivers * epsilonKm
+     * of the optimum. Each driver also has a private "no ride" option worth -skipCostKm whose
+     * price never moves. Returns null when it needs more than maxBids bids.
+     */
+    public static int[] auction(CandidateGraph graph, double skipCostKm, double epsilonKm, long maxBids) {
+        int drivers = graph.drivers();
+        int[] edgeStart = graph.edgeStart();
+        int[] edgeRide = graph.edgeRide();
+        double[] edgeCost = graph.edgeCost();
+
+        double[] price = new double[graph.rides()];
+        int[] owner = new int[graph.rides()];
+        Arrays.fill(owner, UNASSIGNED);
+        int[] assigned = new int[drivers];
+        Arrays.fill(assigned, UNASSIGNED);
+
+        // Ring buffer of drivers still bidding, each driver is queued at most once
+        int[] queue = new int[Math.max(drivers, 1)];
+        int head = 0;
+        int size = 0;
+        for (int i = 0; i < drivers; i++) {
+            if (edgeStart[i] < edgeStart[i + 1]) {
+                queue[size++] = i;
+            }
+        }
+
+        long bids = 0;
+        while (size > 0) {
+            if (++bids > maxBids) {
+                return null;
+            }
+            int driver = queue[head];
+            head = (head + 1) % queue.length;
+            size--;
+
+            double best = -skipCostKm;
+            double second = -skipCostKm;
+            int bestRide = UNASSIGNED;
+            for (int e = edgeStart[driver]; e < edgeStart[driver + 1]; e++) {
+                double value = -edgeCost[e] - price[edgeRide[e]];
+                if (value > best) {
+                    second = best;
+                    best = value;
+                    bestRide = edgeRide[e];
+                } else if (value > second) {
+                    second = value;
+                }
+            }
+
+            // Prices only go up, so a driver that prefers no ride now never comes back
+            if (bestRide == UNASSIGNED) {
+                continue;
+            }
+
+            price[bestRide] += best - second + epsilonKm;
+            int outbid = owner[bestRide];
+            if (outbid != UNASSIGNED) {
+                assigned[outbid] = UNASSIGNED;
+                queue[(head + size) % queue.length] = outbid;
+                size++;
+            }
+            owner[bestRide] = driver;
+            assigned[driver] = bestRide;
+        }
+        return assigned;
+    }
+
+    // Pickup km of every assignment plus skipCostKm for each driver that had candidates but no ride
+    public static double totalCost(CandidateGraph graph, int[] assigned, double skipCostKm) {
+        double total = 0;
+        for (int i = 0; i < graph.drivers(); i++) {
+            int start = graph.edgeStart()[i];
+            int end = graph.edgeStart()[i + 1];
+            if (start == end) {
+                continue;
+            }
+            if (assigned[i] == UNASSIGNED) {
+                total += skipCostKm;
+                continue;
+            }
+            for (int e = start; e < end; e++) {
+                if (graph.edgeRide()[e] == assigned[i]) {
+                    total += graph.edgeCost()[e];
+                    break;
+                }
+            }
+        }
+        return total;
+    }
+}
@@ -0,0 +1,171 @@
+package com.wheelshare.cabbooking.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Batch dispatch. With dispatch.mode=batch, open rides and available drivers are collected
+ * every dispatch.window-ms and matched together by DispatchMatcher to keep total pickup
+ * distance low, instead of every driver racing for every ride within range.
+ * Each chosen ride is offered to one driver until it is accepted or the offer expires.
+ */
+@Service
+public class DispatchService {
+
+    private final RideGeoIndex rideGeoIndex;
+    private final DriverLocationBuffer driverLocationBuffer;
+    private final RideEventStream rideEventStream;
+
+    @Value("${dispatch.mode:fcfs}")
+    private String mode;
+
+    @Value("${dispatch.max-pickup-km:5.0}")
+    private double maxPickupKm = 5.0;
+
+    @Value("${dispatch.candidates-per-driver:8}")
+    private int candidatesPerDriver;
+
+    @Value("${dispatch.offer-ttl-ms:15000}")
+    private long offerTtlMs;
+
+    @Value("${dispatch.auction-epsilon-km:0.05}")
+    private double auctionEpsilonKm;
+
+    @Value("${dispatch.auction-max-bids:2000000}")
+    private long auctionMaxBids;
+
+    public record Offer(Integer rideId, Integer driverId, double distanceToPickupKm, long expiresAt) {
+    }
+
+    // The dispatch thread fills these; request threads read them and remove the offers they accept
+    private final ConcurrentHashMap<Integer, Offer> offersByDriver = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<Integer, Offer> offersByRide = new ConcurrentHashMap<>();
+
+    private final Timer windowTimer;
+    private final Counter offersMade;
+
+    public DispatchService(RideGeoIndex rideGeoIndex, DriverLocationBuffer driverLocationBuffer,
+                           RideEventStream rideEventStream, MeterRegistry meterRegistry) {
+        this.rideGeoIndex = rideGeoIndex;
+        this.driverLocationBuffer = driverLocationBuffer;
+        this.rideEventStream = rideEventStream;
+
+        this.windowTimer = Timer.builder("dispatch.window")
+                .publishPercentiles(0.5, 0.99)
+                .register(meterRegistry);
+        this.offersMade = meterRegistry.counter("dispatch.offers");
+        meterRegistry.gauge("dispatch.offers.open", offersByDriver, ConcurrentHashMap::size);
+    }
+
+    public boolean isBatchMode() {
+        return "batch".equalsIgnoreCase(mode);
+    }
+
+    public double getMaxPickupKm() {
+        return maxPickupKm;
+    }
+
+    public Offer getOffer(Integer driverId) {
+        Offer offer = offersByDriver.get(driverId);
+        if (offer == null || !isLive(offer, System.currentTimeMillis())) {
+            return null;
+        }
+        return offer;
+    }
+
+    // Accepted: the driver is free for the next window without waiting for the offer to lapse
+    public void clearOffer(Offer offer) {
+        offersByDriver.remove(offer.driverId(), offer);
+        offersByRide.remove(offer.rideId(), offer);
+    }
+
+    @Scheduled(fixedDelayString = "${dispatch.window-ms:2000}")
+    public void dispatch() {
+        if (!isBatchMode()) {
+            return;
+        }
+
+        long start = System.nanoTime();
+        long now = System.currentTimeMillis();
+
+        offersByDriver.values().removeIf(offer -> !isLive(offer, now));
+        offersByRide.values().removeIf(offer -> !isLive(offer, now));
+
+        // Drivers already holding an offer or on a ride sit this window out
+        List<Integer> driverIds = new ArrayList<>();
+        List<DriverLocationBuffer.Position> positions = new ArrayList<>();
+        driverLocationBuffer.forEachAvailable((driverId, position) -> {
+            if (!offersByDriver.containsKey(driverId) && !rideEventStream.isOnRide(driverId)) {
+                driverIds.add(driverId);
+                positions.add(position);
+            }
+        });
+        if (driverIds.isEmpty() || rideGeoIndex.size() == 0) {
+            return;
+        }
+
+        double[] latitudes = new double[driverIds.size()];
+        double[] longitudes = new double[driverIds.size()];
+        for (int i = 0; i < driverIds.size(); i++) {
+            latitudes[i] = positions.get(i).latitude();
+            longitudes[i] = positions.get(i).longitude();
+        }
+
+        // Snapshot of the open rides nobody holds an offer for
+        List<RideGeoIndex.OpenRide> open = new ArrayList<>(rideGeoIndex.size());
+        for (RideGeoIndex.OpenRide ride : rideGeoIndex.openRides()) {
+            if (!offersByRide.containsKey(ride.rideId())) {
+                open.add(ride);
+            }
+        }
+        int[] rideIds = new int[open.size()];
+        double[] rideLat = new double[open.size()];
+        double[] rideLng = new double[open.size()];
+        for (int j = 0; j < open.size(); j++) {
+            rideIds[j] = open.get(j).rideId();
+            rideLat[j] = open.get(j).sourceLat();
+            rideLng[j] = open.get(j).sourceLng();
+        }
+
+        DispatchMatcher.CandidateGraph graph = DispatchMatcher.CandidateGraph.build(
+                rideIds, rideLat, rideLng, latitudes, longitudes, maxPickupKm, candidatesPerDriver);
+        // Leaving a driver idle costs more than any pickup in range, so coverage comes first
+        int[] assigned = DispatchMatcher.solve(graph, 2 * maxPickupKm, auctionEpsilonKm, auctionMaxBids);
+
+        long expiresAt = now + offerTtlMs;
+        for (int i = 0; i < assigned.length; i++) {
+            if (assigned[i] == DispatchMatcher.UNASSIGNED) {
+                continue;
+            }
+
+            double distanceKm = 0;
+            for (int e = graph.edgeStart()[i]; e < graph.edgeStart()[i + 1]; e++) {
+                if (graph.edgeRide()[e] == assigned[i]) {
+                    distanceKm = graph.edgeCost()[e];
+                    break;
+                }
+            }
+
+            Offer offer = new Offer(graph.rideIds()[assigned[i]], driverIds.get(i), distanceKm, expiresAt);
+            offersByRide.put(offer.rideId(), offer);
+            offersByDriver.put(offer.driverId(), offer);
+            offersMade.increment();
+        }
+
+        windowTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+    }
+
+    // An offer dies when it times out or its ride leaves the open index (accepted or cancelled)
+    private boolean isLive(Offer offer, long now) {
+        return offer.expiresAt() > now && rideGeoIndex.get(offer.rideId()) != null;
+    }
+}
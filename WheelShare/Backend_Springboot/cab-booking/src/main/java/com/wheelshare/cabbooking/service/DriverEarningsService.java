@@ -0,0 +1,126 @@
+package com.wheelshare.cabbooking.service;
+
+import com.wheelshare.cabbooking.entity.DriverEarningRollup;
+import com.wheelshare.cabbooking.entity.DriverWallet;
+import com.wheelshare.cabbooking.entity.Ride;
+import com.wheelshare.cabbooking.helper.FareHelper;
+import com.wheelshare.cabbooking.repository.DriverEarningRollupRepository;
+import com.wheelshare.cabbooking.repository.DriverWalletRepository;
+import com.wheelshare.cabbooking.repository.RideRepository;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Limit;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.temporal.TemporalAdjusters;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Driver earnings. Completing a ride appends one CREDIT to the DriverWallets ledger and adds it to
+ * the driver's DAY, WEEK and LIFETIME rollup rows in the same transaction, so reading
+ * today / this week / lifetime is at most three rows however many rides the driver has done.
+ */
+@Service
+@RequiredArgsConstructor
+public class DriverEarningsService {
+
+    public static final String DAY = "DAY";
+    public static final String WEEK = "WEEK";
+    public static final String LIFETIME = "LIFETIME";
+
+    // LIFETIME has a single row per driver, keyed on this date
+    private static final LocalDate LIFETIME_START = LocalDate.of(1970, 1, 1);
+
+    private static final int BACKFILL_BATCH = 500;
+
+    private final DriverWalletRepository driverWalletRepository;
+    private final DriverEarningRollupRepository rollupRepository;
+    private final RideRepository rideRepository;
+    private final FareHelper fareHelper;
+    private final TransactionTemplate transactionTemplate;
+
+    // Runs inside the caller's transaction, the ledger row and the rollups commit with the ride
+    public BigDecimal recordRideEarning(Integer driverId, Integer rideId, Double fare, LocalDateTime completedAt) {
+        BigDecimal earning = fareHelper.calculateDriverEarning(BigDecimal.valueOf(fare))
+                .setScale(2, RoundingMode.HALF_UP);
+
+        DriverWallet credit = new DriverWallet();
+        credit.setDriverId(driverId);
+        credit.setRideId(rideId);
+        credit.setAmount(earning);
+        credit.setTransactionType("CREDIT");
+        credit.setDescription("Earning for ride #" + rideId);
+        credit.setCreatedAt(completedAt);
+        driverWalletRepository.save(credit);
+
+        LocalDate day = completedAt.toLocalDate();
+        LocalDateTime now = LocalDateTime.now();
+        rollupRepository.addEarning(driverId, DAY, day, earning, now);
+        rollupRepository.addEarning(driverId, WEEK, weekStart(day), earning, now);
+        rollupRepository.addEarning(driverId, LIFETIME, LIFETIME_START, earning, now);
+
+        return earning;
+    }
+
+    public Map<String, Object> getEarnings(Integer driverId) {
+        LocalDate today = LocalDate.now();
+        LocalDate week = weekStart(today);
+
+        Map<String, Object> todayTotals = totals(null);
+        Map<String, Object> weekTotals = totals(null);
+        Map<String, Object> lifetimeTotals = totals(null);
+        for (DriverEarningRollup rollup : rollupRepository.findByDriverIdAndPeriodStartIn(
+                driverId, List.of(today, week, LIFETIME_START))) {
+            if (DAY.equals(rollup.getPeriodType()) && today.equals(rollup.getPeriodStart())) {
+                todayTotals = totals(rollup);
+            } else if (WEEK.equals(rollup.getPeriodType()) && week.equals(rollup.getPeriodStart())) {
+                weekTotals = totals(rollup);
+            } else if (LIFETIME.equals(rollup.getPeriodType())) {
+                lifetimeTotals = totals(rollup);
+            }
+        }
+
+        Map<String, Object> response = new HashMap<>();
+        response.put("today", todayTotals);
+        response.put("thisWeek", weekTotals);
+        response.put("lifetime", lifetimeTotals);
+        // Only credits exist so far, the balance is everything earned
+        response.put("balance", lifetimeTotals.get("amount"));
+        return response;
+    }
+
+    // Ledger entries for rides completed before the ledger existed; a no-op once caught up
+    @EventListener(ApplicationReadyEvent.class)
+    public void backfill() {
+        List<Ride> missing;
+        do {
+            missing = rideRepository.findCompletedWithoutEarning(Limit.of(BACKFILL_BATCH));
+            for (Ride ride : missing) {
+                transactionTemplate.executeWithoutResult(status -> recordRideEarning(
+                        ride.getDriver().getDriverId(), ride.getRideId(),
+                        ride.getFinalFare() != null ? ride.getFinalFare() : ride.getFare(),
+                        ride.getCompletedAt()));
+            }
+        } while (missing.size() == BACKFILL_BATCH);
+    }
+
+    private static LocalDate weekStart(LocalDate day) {
+        return day.with(TemporalAdjusters.previousOrSame(DayOfWeek.MONDAY));
+    }
+
+    private static Map<String, Object> totals(DriverEarningRollup rollup) {
+        Map<String, Object> map = new HashMap<>();
+        map.put("amount", rollup != null ? rollup.getAmount() : BigDecimal.ZERO.setScale(2));
+        map.put("rides", rollup != null ? rollup.getRides() : 0);
+        return map;
+    }
+}
@@ -0,0 +1,175 @@
+package com.wheelshare.cabbooking.service;
+
+import com.wheelshare.cabbooking.entity.Driver;
+import com.wheelshare.cabbooking.helper.DistanceHelper;
+import com.wheelshare.cabbooking.repository.DriverRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+
+/**
+ * Write-behind stage for driver GPS pings.
+ * The latest position per driver is served from memory straight away and the
+ * changed positions are written to the drivers table in one JDBC batch per interval.
+ */
+@Component
+public class DriverLocationBuffer {
+
+    private static final String FLUSH_SQL =
+            "UPDATE drivers SET current_latitude = ?, current_longitude = ? WHERE driver_id = ?";
+
+    private final DriverRepository driverRepository;
+    private final JdbcTemplate jdbcTemplate;
+
+    @Value("${driver.location.min-move-meters:5}")
+    private double minMoveMeters;
+
+    public record Position(double latitude, double longitude, long receivedAt) {
+    }
+
+    // Latest known position, what reads see
+    private final ConcurrentHashMap<Integer, Position> latest = new ConcurrentHashMap<>();
+
+    // Positions not yet written to the database
+    private final ConcurrentHashMap<Integer, Position> pending = new ConcurrentHashMap<>();
+
+    // Mirror of drivers.is_available so a ping doesn't need a SELECT
+    private final ConcurrentHashMap<Integer, Boolean> availability = new ConcurrentHashMap<>();
+
+    private final Counter ingested;
+    private final Counter dropped;
+    private final Counter coalesced;
+    private final Counter flushedRows;
+    private final Timer flushTimer;
+
+    public DriverLocationBuffer(DriverRepository driverRepository, JdbcTemplate jdbcTemplate, MeterRegistry meterRegistry) {
+        this.driverRepository = driverRepository;
+        this.jdbcTemplate = jdbcTemplate;
+
+        this.ingested = meterRegistry.counter("driver.location.ingested");
+        this.dropped = meterRegistry.counter("driver.location.dropped");
+        this.coalesced = meterRegistry.counter("driver.location.coalesced");
+        this.flushedRows = meterRegistry.counter("driver.location.flushed");
+        this.flushTimer = Timer.builder("driver.location.flush")
+                .publishPercentiles(0.5, 0.99)
+                .register(meterRegistry);
+        meterRegistry.gauge("driver.location.pending", pending, Map::size);
+        // Share of pings that never reached the database, either unmoved or overwritten before a flush
+        meterRegistry.gauge("driver.location.coalesce.ratio", this, DriverLocationBuffer::coalesceRatio);
+    }
+
+    // Returns false when the ping didn't move far enough to be worth keeping
+    public boolean ingest(Integer driverId, double latitude, double longitude) {
+        ingested.increment();
+
+        Position previous = latest.get(driverId);
+        if (previous != null && DistanceHelper.equirectangularKm(
+                previous.latitude(), previous.longitude(), latitude, longitude) * 1000.0 < minMoveMeters) {
+            dropped.increment();
+            return false;
+        }
+
+        Position position = new Position(latitude, longitude, System.currentTimeMillis());
+        latest.put(driverId, position);
+        if (pending.put(driverId, position) != null) {
+            coalesced.increment();
+        }
+        return true;
+    }
+
+    public Position getPosition(Integer driverId) {
+        return latest.get(driverId);
+    }
+
+    public boolean isAvailable(Integer driverId) {
+        Boolean available = availability.get(driverId);
+        if (available == null) {
+            Driver driver = driverRepository.findById(driverId)
+                    .orElseThrow(() -> new RuntimeException("Driver not found"));
+            available = !Boolean.FALSE.equals(driver.getIsAvailable());
+            availability.putIfAbsent(driverId, available);
+        }
+        return available;
+    }
+
+    public void setAvailable(Integer driverId, boolean available) {
+        availability.put(driverId, available);
+    }
+
+    // Online drivers with a known position, for dispatch
+    public void forEachAvailable(BiConsumer<Integer, Position> action) {
+        latest.forEach((driverId, position) -> {
+            if (Boolean.TRUE.equals(availability.get(driverId))) {
+                action.accept(driverId, position);
+            }
+        });
+    }
+
+    @Scheduled(fixedDelayString = "${driver.location.flush-interval-ms:1000}")
+    public void flush() {
+        if (pending.isEmpty()) {
+            return;
+        }
+
+        List<Integer> driverIds = new ArrayList<>(pending.size());
+        List<Position> positions = new ArrayList<>(pending.size());
+        for (Integer driverId : pending.keySet()) {
+            Position position = pending.remove(driverId);
+            if (position != null) {
+                driverIds.add(driverId);
+                positions.add(position);
+            }
+        }
+
+        long start = System.nanoTime();
+        try {
+            jdbcTemplate.batchUpdate(FLUSH_SQL, new BatchPreparedStatementSetter() {
+                @Override
+                public void setValues(PreparedStatement ps, int i) throws SQLException {
+                    ps.setDouble(1, positions.get(i).latitude());
+                    ps.setDouble(2, positions.get(i).longitude());
+                    ps.setInt(3, driverIds.get(i));
+                }
+
+                @Override
+                public int getBatchSize() {
+                    return driverIds.size();
+                }
+            });
+            flushedRows.increment(driverIds.size());
+        } catch (RuntimeException e) {
+            // Put the batch back unless a newer ping has already replaced it
+            for (int i = 0; i < driverIds.size(); i++) {
+                pending.putIfAbsent(driverIds.get(i), positions.get(i));
+            }
+            throw e;
+        } finally {
+            flushTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    private double coalesceRatio() {
+        double count = ingested.count();
+        return count == 0 ? 0.0 : (dropped.count() + coalesced.count()) / count;
+    }
+
+    @PreDestroy
+    public void flushOnShutdown() {
+        flush();
+    }
+}
@@ -1,18 +1,26 @@
 package com.wheelshare.cabbooking.service;
 
+import com.wheelshare.cabbooking.dto.CursorPage;
 import com.wheelshare.cabbooking.dto.DriverLocationDto;
+import com.wheelshare.cabbooking.dto.DriverRideHistoryRow;
+import com.wheelshare.cabbooking.dto.LocationBatch;
 import com.wheelshare.cabbooking.entity.Driver;
 import com.wheelshare.cabbooking.entity.Ride;
-import com.wheelshare.cabbooking.helper.DistanceHelper;
+import com.wheelshare.cabbooking.enums.RideStatus;
 import com.wheelshare.cabbooking.helper.FareHelper;
+import com.wheelshare.cabbooking.helper.HistoryCursor;
+import com.wheelshare.cabbooking.helper.LocationBatchCodec;
+import com.wheelshare.cabbooking.helper.TransactionHelper;
 import com.wheelshare.cabbooking.repository.DriverRepository;
 import com.wheelshare.cabbooking.repository.RideRepository;
 import lombok.RequiredArgsConstructor;
+import org.springframework.data.domain.Limit;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.math.BigDecimal;
 import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -25,6 +33,11 @@ public class DriverService {
     private final DriverRepository driverRepository;
     private final RideRepository rideRepository;
     private final FareHelper fareHelper;
+    private final RideGeoIndex rideGeoIndex;
+    private final DriverLocationBuffer driverLocationBuffer;
+    private final RideEventStream rideEventStream;
+    private final DispatchService dispatchService;
+    private final ActiveRideStore activeRideStore;
 
     @Transactional
     public String goOnline(Integer driverId) {
@@ -33,25 +46,43 @@ public class DriverService {
         
         driver.setIsAvailable(true);
         driverRepository.save(driver);
+
+        TransactionHelper.afterCommit(() -> driverLocationBuffer.setAvailable(driverId, true));
         return "Driver is online";
     }
 
-    @Transactional
+    // Pings are buffered in memory and written to the drivers table in batches by DriverLocationBuffer
     public String updateLocation(Integer driverId, DriverLocationDto dto) {
-        Driver driver = driverRepository.findById(driverId)
-                .orElseThrow(() -> new RuntimeException("Driver not found"));
-
-        if (Boolean.FALSE.equals(driver.getIsAvailable())) {
+        // A driver on a ride is marked unavailable but must keep reporting position
+        boolean onRide = rideEventStream.isOnRide(driverId);
+        if (!onRide && !driverLocationBuffer.isAvailable(driverId)) {
              throw new RuntimeException("Driver is offline");
         }
 
-        driver.setCurrentLatitude(dto.getLatitude());
-        driver.setCurrentLongitude(dto.getLongitude());
-        driverRepository.save(driver);
+        if (driverLocationBuffer.ingest(driverId, dto.getLatitude(), dto.getLongitude()) && onRide) {
+            rideEventStream.publishLocation(driverId, dto.getLatitude(), dto.getLongitude());
+        }
         
         return "Location updated";
     }
 
+    // Only the newest sample of a batch matters for the stored position
+    public int updateLocationBatch(Integer driverId, LocationBatch batch) {
+        boolean onRide = rideEventStream.isOnRide(driverId);
+        if (!onRide && !driverLocationBuffer.isAvailable(driverId)) {
+             throw new RuntimeException("Driver is offline");
+        }
+
+        int latest = batch.latestIndex();
+        double latitude = LocationBatchCodec.fromE7(batch.getLatitudesE7()[latest]);
+        double longitude = LocationBatchCodec.fromE7(batch.getLongitudesE7()[latest]);
+        if (driverLocationBuffer.ingest(driverId, latitude, longitude) && onRide) {
+            rideEventStream.publishLocation(driverId, latitude, longitude);
+        }
+
+        return batch.getSize();
+    }
+
     @Transactional
     public String goOffline(Integer driverId) {
         Driver driver = driverRepository.findById(driverId)
@@ -59,72 +90,128 @@ public class DriverService {
 
         driver.setIsAvailable(false);
         driverRepository.save(driver);
+
+        TransactionHelper.afterCommit(() -> driverLocationBuffer.setAvailable(driverId, false));
         return "Driver is offline";
     }
 
     public List<Map<String, Object>> getNearbyRides(Integer driverId) {
-        Driver driver = driverRepository.findById(driverId)
-                .orElseThrow(() -> new RuntimeException("Driver not found"));
-        
-        if (Boolean.FALSE.equals(driver.getIsAvailable()) || driver.getCurrentLatitude() == null) {
+        if (!driverLocationBuffer.isAvailable(driverId)) {
             return new ArrayList<>();
         }
 
-        double maxDistanceKm = 5.0;
-        List<Ride> rides = rideRepository.findByRideStatusAndDriverIsNull("REQUESTED");
-
-        return rides.stream()
-                .filter(r -> DistanceHelper.calculateDistanceKm(
-                        driver.getCurrentLatitude(), driver.getCurrentLongitude(),
-                        r.getSourceLat(), r.getSourceLng()
-                ) <= maxDistanceKm)
-                .map(r -> {
-                    double distanceToPickup = DistanceHelper.calculateDistanceKm(
-                            driver.getCurrentLatitude(), driver.getCurrentLongitude(),
-                            r.getSourceLat(), r.getSourceLng()
-                    );
-                    
-                    BigDecimal driverEarning = fareHelper.calculateDriverEarning(BigDecimal.valueOf(r.getFare()));
-
-                    Map<String, Object> map = new HashMap<>();
-                    map.put("rideId", r.getRideId());
-                    map.put("pickupAddress", r.getSourceAddress());
-                    map.put("dropAddress", r.getDestinationAddress());
-                    map.put("distanceKm", r.getDistanceKm());
-                    map.put("fare", r.getFare());
-                    map.put("driverEarning", driverEarning);
-                    map.put("distanceToPickup", Math.round(distanceToPickup * 100.0) / 100.0);
-                    
-                    return map;
-                })
-                .sorted((m1, m2) -> Double.compare((Double) m1.get("distanceToPickup"), (Double) m2.get("distanceToPickup")))
+        // In batch mode drivers no longer race for everything in range, they get what dispatch offered them
+        if (dispatchService.isBatchMode()) {
+            List<Map<String, Object>> offered = new ArrayList<>();
+            Map<String, Object> offer = getOffer(driverId);
+            if (offer != null) {
+                offered.add(offer);
+            }
+            return offered;
+        }
+
+        // Prefer the buffered position, it may be newer than the row
+        DriverLocationBuffer.Position position = driverLocationBuffer.getPosition(driverId);
+        double latitude;
+        double longitude;
+        if (position != null) {
+            latitude = position.latitude();
+            longitude = position.longitude();
+        } else {
+            Driver driver = driverRepository.findById(driverId)
+                    .orElseThrow(() -> new RuntimeException("Driver not found"));
+            if (driver.getCurrentLatitude() == null) {
+                return new ArrayList<>();
+            }
+            latitude = driver.getCurrentLatitude();
+            longitude = driver.getCurrentLongitude();
+        }
+
+        List<RideGeoIndex.Candidate> candidates = rideGeoIndex.findNearby(latitude, longitude, dispatchService.getMaxPickupKm());
+
+        return candidates.stream()
+                .sorted(Comparator.comparingDouble(RideGeoIndex.Candidate::distanceKm))
+                .map(c -> toNearbyRide(c.ride(), c.distanceKm()))
                 .collect(Collectors.toList());
     }
 
+    // Batch dispatch hands each driver at most one ride, in the same shape as getNearbyRides
+    public Map<String, Object> getOffer(Integer driverId) {
+        DispatchService.Offer offer = dispatchService.getOffer(driverId);
+        if (offer == null) {
+            return null;
+        }
+
+        RideGeoIndex.OpenRide ride = rideGeoIndex.get(offer.rideId());
+        if (ride == null) {
+            return null;
+        }
+
+        Map<String, Object> map = toNearbyRide(ride, offer.distanceToPickupKm());
+        map.put("expiresAt", offer.expiresAt());
+        return map;
+    }
+
+    private Map<String, Object> toNearbyRide(RideGeoIndex.OpenRide r, double distanceToPickupKm) {
+        BigDecimal driverEarning = fareHelper.calculateDriverEarning(BigDecimal.valueOf(r.fare()));
+
+        Map<String, Object> map = new HashMap<>();
+        map.put("rideId", r.rideId());
+        map.put("pickupAddress", r.sourceAddress());
+        map.put("dropAddress", r.destinationAddress());
+        map.put("distanceKm", r.distanceKm());
+        map.put("fare", r.fare());
+        map.put("driverEarning", driverEarning);
+        map.put("distanceToPickup", Math.round(distanceToPickupKm * 100.0) / 100.0);
+
+        return map;
+    }
+
+    @Transactional(readOnly = true)
     public List<Ride> getMyRides(Integer driverId) {
-        return rideRepository.findByDriver_DriverId(driverId).stream()
-                .filter(r -> "ACCEPTED".equals(r.getRideStatus()) || "STARTED".equals(r.getRideStatus()))
-                .sorted((r1, r2) -> r2.getRequestedAt().compareTo(r1.getRequestedAt()))
-                .collect(Collectors.toList());
+        List<Ride> active = activeRideStore.findByDriver(driverId);
+        if (active != null) {
+            return active;
+        }
+        return rideRepository.findByDriver_DriverIdAndRideStatusInOrderByRequestedAtDesc(
+                driverId, List.of(RideStatus.ACCEPTED, RideStatus.STARTED));
     }
 
-    public List<Map<String, Object>> getRideHistory(Integer driverId) {
-         return rideRepository.findByDriver_DriverIdAndRideStatus(driverId, "COMPLETED").stream()
-                .sorted((r1, r2) -> r2.getCompletedAt().compareTo(r1.getCompletedAt()))
-                .map(r -> {
-                    Map<String, Object> map = new HashMap<>();
-                    map.put("rideId", r.getRideId());
-                    map.put("sourceAddress", r.getSourceAddress());
-                    map.put("destinationAddress", r.getDestinationAddress());
-                    map.put("distanceKm", r.getDistanceKm());
-                    map.put("fare", r.getFare());
-                    map.put("finalFare", r.getFinalFare());
-                    map.put("rideStatus", r.getRideStatus());
-                    map.put("completedAt", r.getCompletedAt());
-                    map.put("customerName", r.getCustomer() != null ? r.getCustomer().getName() : "Unknown");
-                    map.put("driverEarning", fareHelper.calculateDriverEarning(BigDecimal.valueOf(r.getFinalFare() != null ? r.getFinalFare() : r.getFare())));
-                    return map;
-                })
-                .collect(Collectors.toList());
+    // One keyset page of the driver's completed rides, newest first; cursor is null for the first page.
+    // With neither cursor nor limit the whole history comes back in one list, as before paging.
+    @Transactional(readOnly = true)
+    public CursorPage<Map<String, Object>> getRideHistory(Integer driverId, String cursor, Integer limit) {
+        HistoryCursor after = HistoryCursor.decode(cursor);
+        boolean paged = HistoryCursor.isPaged(cursor, limit);
+        int pageSize = HistoryCursor.clampLimit(limit);
+
+        List<DriverRideHistoryRow> rows = rideRepository.findDriverHistoryPage(
+                driverId, after.at(), after.rideId(), paged ? Limit.of(pageSize + 1) : Limit.unlimited());
+
+        String nextCursor = null;
+        if (paged && rows.size() > pageSize) {
+            rows = rows.subList(0, pageSize);
+            DriverRideHistoryRow last = rows.get(pageSize - 1);
+            nextCursor = new HistoryCursor(last.completedAt(), last.rideId()).encode();
+        }
+
+        List<Map<String, Object>> items = new ArrayList<>(rows.size());
+        for (DriverRideHistoryRow r : rows) {
+            Map<String, Object> map = new HashMap<>();
+            map.put("rideId", r.rideId());
+            map.put("sourceAddress", r.sourceAddress());
+            map.put("destinationAddress", r.destinationAddress());
+            map.put("distanceKm", r.distanceKm());
+            map.put("fare", r.fare());
+            map.put("finalFare", r.finalFare());
+            map.put("rideStatus", r.rideStatus());
+            map.put("completedAt", r.completedAt());
+            map.put("customerName", r.customerName() != null ? r.customerName() : "Unknown");
+            // From the ledger; computed only for a ride the backfill hasn't reached yet
+            map.put("driverEarning", r.driverEarning() != null ? r.driverEarning()
+                    : fareHelper.calculateDriverEarning(BigDecimal.valueOf(r.finalFare() != null ? r.finalFare() : r.fare())));
+            items.add(map);
+        }
+        return new CursorPage<>(items, nextCursor);
     }
 }
@@ -0,0 +1,171 @@
+package com.wheelshare.cabbooking.service;
+
+import com.wheelshare.cabbooking.entity.EmailOutbox;
+import com.wheelshare.cabbooking.repository.EmailOutboxRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.mail.MessagingException;
+import jakarta.mail.internet.MimeMessage;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.mail.MailException;
+import org.springframework.mail.MailSendException;
+import org.springframework.mail.javamail.JavaMailSender;
+import org.springframework.mail.javamail.MimeMessageHelper;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Delivers the email outbox. Due rows are sent in batches, each batch over a single SMTP
+ * connection, and a failed row is retried with exponential backoff until max-attempts.
+ * No database connection is held while talking to the mail server.
+ *
+ * Rows are claimed with a conditional update before they are sent, so dispatchers on several
+ * instances, or overlapping runs, never send the same row twice. A claim lasts claim-ms; rows
+ * claimed by a dispatcher that died mid-batch are picked up again after that.
+ */
+@Component
+public class EmailOutboxDispatcher {
+
+    private final EmailOutboxRepository emailOutboxRepository;
+    private final JavaMailSender mailSender;
+
+    @Value("${spring.mail.username}")
+    private String fromEmail;
+
+    @Value("${mail.outbox.batch-size:50}")
+    private int batchSize;
+
+    @Value("${mail.outbox.max-attempts:8}")
+    private int maxAttempts;
+
+    @Value("${mail.outbox.backoff-ms:2000}")
+    private long backoffMs;
+
+    @Value("${mail.outbox.max-backoff-ms:600000}")
+    private long maxBackoffMs;
+
+    @Value("${mail.outbox.claim-ms:300000}")
+    private long claimMs;
+
+    @Value("${mail.outbox.keep-sent-days:7}")
+    private int keepSentDays;
+
+    private final Counter sent;
+    private final Counter retried;
+    private final Counter failed;
+
+    public EmailOutboxDispatcher(EmailOutboxRepository emailOutboxRepository, JavaMailSender mailSender, MeterRegistry meterRegistry) {
+        this.emailOutboxRepository = emailOutboxRepository;
+        this.mailSender = mailSender;
+
+        this.sent = meterRegistry.counter("mail.outbox.sent");
+        this.retried = meterRegistry.counter("mail.outbox.retried");
+        this.failed = meterRegistry.counter("mail.outbox.failed");
+    }
+
+    @Scheduled(initialDelayString = "${mail.outbox.poll-ms:1000}", fixedDelayString = "${mail.outbox.poll-ms:1000}")
+    public void dispatch() {
+        // Keep going while full batches come back, a signup surge drains in one tick
+        List<Integer> due;
+        do {
+            LocalDateTime now = LocalDateTime.now();
+            due = emailOutboxRepository.findDueIds(now, PageRequest.of(0, batchSize));
+            if (due.isEmpty()) {
+                return;
+            }
+
+            // Only rows this claim won are sent; the rest went to another dispatcher in between
+            String claim = UUID.randomUUID().toString();
+            if (emailOutboxRepository.claim(due, claim, now.plusNanos(claimMs * 1_000_000L), now) > 0) {
+                sendBatch(emailOutboxRepository.findByClaimedByOrderByOutboxIdAsc(claim));
+            }
+        } while (due.size() == batchSize);
+    }
+
+    @Scheduled(cron = "${mail.outbox.purge-cron:0 30 3 * * *}")
+    public void purgeSent() {
+        emailOutboxRepository.deleteSentBefore(LocalDateTime.now().minusDays(keepSentDays));
+    }
+
+    private void sendBatch(List<EmailOutbox> batch) {
+        Map<MimeMessage, EmailOutbox> messages = new IdentityHashMap<>();
+        List<MimeMessage> order = new ArrayList<>(batch.size());
+        for (EmailOutbox email : batch) {
+            try {
+                MimeMessage message = mailSender.createMimeMessage();
+                MimeMessageHelper helper = new MimeMessageHelper(message, true);
+                helper.setFrom(fromEmail);
+                helper.setTo(email.getToEmail());
+                helper.setSubject(email.getSubject());
+                helper.setText(email.getBody(), true);
+                messages.put(message, email);
+                order.add(message);
+            } catch (MessagingException e) {
+                markFailed(email, e);
+            }
+        }
+
+        Map<Object, Exception> failures = Map.of();
+        Exception batchFailure = null;
+        if (!order.isEmpty()) {
+            try {
+                // JavaMailSenderImpl opens one connection for the whole array
+                mailSender.send(order.toArray(new MimeMessage[0]));
+            } catch (MailSendException e) {
+                failures = e.getFailedMessages();
+                if (failures.isEmpty()) {
+                    batchFailure = e;
+                }
+            } catch (MailException e) {
+                batchFailure = e;
+            }
+        }
+
+        for (MimeMessage message : order) {
+            EmailOutbox email = messages.get(message);
+            Exception error = batchFailure != null ? batchFailure : failures.get(message);
+            if (error == null) {
+                email.setStatus("SENT");
+                email.setSentAt(LocalDateTime.now());
+                sent.increment();
+            } else {
+                markFailed(email, error);
+            }
+        }
+
+        for (EmailOutbox email : batch) {
+            email.setClaimedBy(null);
+            email.setClaimedUntil(null);
+        }
+        emailOutboxRepository.saveAll(batch);
+    }
+
+    private void markFailed(EmailOutbox email, Exception error) {
+        int attempts = email.getAttempts() + 1;
+        email.setAttempts(attempts);
+
+        String message = String.valueOf(error.getMessage());
+        email.setLastError(message.length() > 500 ? message.substring(0, 500) : message);
+
+        if (attempts >= maxAttempts) {
+            email.setStatus("FAILED");
+            failed.increment();
+            return;
+        }
+
+        // 2s, 4s, 8s ... capped, plus jitter so a mail server outage doesn't end in a thundering herd
+        long delay = Math.min(backoffMs << Math.min(attempts - 1, 30), maxBackoffMs);
+        delay += ThreadLocalRandom.current().nextLong(backoffMs / 2 + 1);
+        email.setNextAttemptAt(LocalDateTime.now().plusNanos(delay * 1_000_000L));
+        retried.increment();
+    }
+}
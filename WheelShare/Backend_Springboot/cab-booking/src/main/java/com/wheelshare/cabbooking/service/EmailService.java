@@ -1,36 +1,34 @@
 package com.wheelshare.cabbooking.service;
 
-import jakarta.mail.MessagingException;
-import jakarta.mail.internet.MimeMessage;
-import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.beans.factory.annotation.Value;
-import org.springframework.mail.javamail.JavaMailSender;
-import org.springframework.mail.javamail.MimeMessageHelper;
+import com.wheelshare.cabbooking.entity.EmailOutbox;
+import com.wheelshare.cabbooking.repository.EmailOutboxRepository;
+import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Service;
 
+import java.time.LocalDateTime;
+
+/**
+ * Mail is never sent on the request thread. Callers queue it in the email outbox inside
+ * their own transaction and EmailOutboxDispatcher delivers it once that commits.
+ */
 @Service
+@RequiredArgsConstructor
 public class EmailService {
 
-    @Autowired
-    private JavaMailSender mailSender;
-
-    @Value("${spring.mail.username}")
-    private String fromEmail;
+    private final EmailOutboxRepository emailOutboxRepository;
 
-    public void sendOtpEmail(String toEmail, String otp) {
-        try {
-            MimeMessage message = mailSender.createMimeMessage();
-            MimeMessageHelper helper = new MimeMessageHelper(message, true);
-
-            helper.setFrom(fromEmail);
-            helper.setTo(toEmail);
-            helper.setSubject("WheelShare - Email Verification OTP");
-            helper.setText("<h2>Your OTP is <b>" + otp + "</b></h2><p>Valid for 5 minutes.</p>", true);
+    public void queueOtpEmail(String toEmail, String otp) {
+        queue(toEmail,
+                "WheelShare - Email Verification OTP",
+                "<h2>Your OTP is <b>" + otp + "</b></h2><p>Valid for 5 minutes.</p>");
+    }
 
-            mailSender.send(message);
-        } catch (MessagingException e) {
-            e.printStackTrace();
-            // Handle exception appropriately
-        }
+    public void queue(String toEmail, String subject, String htmlBody) {
+        EmailOutbox email = new EmailOutbox();
+        email.setToEmail(toEmail);
+        email.setSubject(subject);
+        email.setBody(htmlBody);
+        email.setNextAttemptAt(LocalDateTime.now());
+        emailOutboxRepository.save(email);
     }
 }
@@ -0,0 +1,152 @@
+package com.wheelshare.cabbooking.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Component;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+
+/**
+ * Responses to POSTs sent with an Idempotency-Key header, so a client retrying after a timeout
+ * gets the first response back instead of creating a second ride or payment.
+ *
+ * Keys are scoped to the user and the operation. The first request with a key runs; a copy
+ * arriving while it runs waits for it and gets the same response, without reaching the service.
+ * Successful responses are kept for the TTL; errors are dropped so a retry runs again (the ride
+ * may have completed since a "Ride not completed", say). Bounded to max-entries, oldest first.
+ * Memory only: after a restart the unique constraints on rides (customer_id, idempotency_key)
+ * and Payments (ride_id) catch a late retry instead.
+ */
+@Component
+public class IdempotencyStore {
+
+    public static final String HEADER = "Idempotency-Key";
+    public static final String REPLAYED_HEADER = "Idempotent-Replayed";
+
+    // Same as the rides.idempotency_key column
+    public static final int MAX_KEY_LENGTH = 64;
+
+    private record Entry(Object fingerprint, long createdAt, CompletableFuture<ResponseEntity<?>> response) {
+    }
+
+    // Insertion order is creation order, so expired entries are always at the head
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>();
+
+    private final int maxEntries;
+    private final long ttlMs;
+    private final long waitMs;
+
+    public IdempotencyStore(@Value("${idempotency.max-entries:100000}") int maxEntries,
+                            @Value("${idempotency.ttl-ms:3600000}") long ttlMs,
+                            @Value("${idempotency.wait-ms:10000}") long waitMs) {
+        this.maxEntries = maxEntries;
+        this.ttlMs = ttlMs;
+        this.waitMs = waitMs;
+    }
+
+    /**
+     * Runs action once per (operation, userId, key). fingerprint identifies the request body;
+     * the same key sent with a different one is rejected. Without a key the action just runs.
+     */
+    public ResponseEntity<?> execute(Integer userId, String operation, String key, Object fingerprint,
+                                     Supplier<ResponseEntity<?>> action) {
+        if (key == null || key.isBlank()) {
+            return action.get();
+        }
+        if (key.length() > MAX_KEY_LENGTH) {
+            return ResponseEntity.badRequest().body("Idempotency-Key is longer than " + MAX_KEY_LENGTH + " characters");
+        }
+
+        String scoped = operation + ":" + userId + ":" + key;
+        CompletableFuture<ResponseEntity<?>> mine = new CompletableFuture<>();
+        Entry existing;
+        synchronized (entries) {
+            long now = System.currentTimeMillis();
+            expire(now);
+            existing = entries.get(scoped);
+            if (existing == null) {
+                entries.put(scoped, new Entry(fingerprint, now, mine));
+                if (entries.size() > maxEntries) {
+                    Iterator<String> eldest = entries.keySet().iterator();
+                    eldest.next();
+                    eldest.remove();
+                }
+            }
+        }
+
+        if (existing != null) {
+            if (!Objects.equals(existing.fingerprint(), fingerprint)) {
+                return ResponseEntity.status(HttpStatus.UNPROCESSABLE_CONTENT).body("Idempotency-Key was already used for a different request");
+            }
+            return replay(existing.response());
+        }
+
+        ResponseEntity<?> response;
+        try {
+            response = action.get();
+        } catch (RuntimeException e) {
+            forget(scoped, mine);
+            mine.completeExceptionally(e);
+            throw e;
+        }
+        if (!response.getStatusCode().is2xxSuccessful()) {
+            forget(scoped, mine);
+        }
+        mine.complete(response);
+        return response;
+    }
+
+    public int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    private ResponseEntity<?> replay(CompletableFuture<ResponseEntity<?>> future) {
+        ResponseEntity<?> original;
+        try {
+            original = future.get(waitMs, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            return ResponseEntity.status(409).body("A request with this Idempotency-Key is still in progress");
+        } catch (ExecutionException e) {
+            return ResponseEntity.status(500).body("Internal server error: " + e.getCause().getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return ResponseEntity.status(500).body("Internal server error: interrupted");
+        }
+
+        return ResponseEntity.status(original.getStatusCode())
+                .headers(original.getHeaders())
+                .header(REPLAYED_HEADER, "true")
+                .body(original.getBody());
+    }
+
+    private void expire(long now) {
+        Iterator<Map.Entry<String, Entry>> it = entries.entrySet().iterator();
+        while (it.hasNext()) {
+            Entry entry = it.next().getValue();
+            if (entry.createdAt() + ttlMs > now) {
+                break;
+            }
+            it.remove();
+        }
+    }
+
+    private void forget(String scoped, CompletableFuture<ResponseEntity<?>> future) {
+        synchronized (entries) {
+            Entry entry = entries.get(scoped);
+            if (entry != null && entry.response() == future) {
+                entries.remove(scoped);
+            }
+        }
+    }
+}
@@ -0,0 +1,355 @@
+package com.wheelshare.cabbooking.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * How well dispatch serves each part of the city: time from request to acceptance, driver
+ * distance to the pickup at acceptance, requests, acceptances and cancellations while waiting,
+ * plus the open requests right now. RideService records at each transition after commit.
+ *
+ * The city is cut into square areas of area-size-deg, keyed by pickup point. Each area keeps a
+ * ring of slots (slot-ms each, slots of them, so slot-ms x slots is the longest window); a slot
+ * holds the counters and two log-linear histograms (8 buckets per power of two, ~6% error) in
+ * one AtomicLongArray. Recording is a few atomic adds into preallocated arrays: no locks and no
+ * allocation, except once for an area's first event. At most max-areas areas exist, beyond that
+ * events land in "other". A slot is cleared by the first event of its new period; an event
+ * racing that clear can be lost.
+ */
+@Component
+public class MarketplaceMetrics {
+
+    public static final String OTHER = "other";
+
+    // Accept waits are kept in ms up to an hour, pickup distances in metres up to 100 km
+    static final long MAX_WAIT_MS = 3_600_000;
+    static final long MAX_PICKUP_M = 100_000;
+
+    private static final int REQUESTED = 0;
+    private static final int ACCEPTED = 1;
+    private static final int CANCELLED = 2;
+    private static final int WAIT_SUM = 3;
+    private static final int PICKUP_SUM = 4;
+    private static final int WAIT_BUCKETS = 5;
+    private static final int WAIT_BUCKET_COUNT = bucket(MAX_WAIT_MS) + 1;
+    private static final int PICKUP_BUCKETS = WAIT_BUCKETS + WAIT_BUCKET_COUNT;
+    private static final int PICKUP_BUCKET_COUNT = bucket(MAX_PICKUP_M) + 1;
+    private static final int SLOT_LENGTH = PICKUP_BUCKETS + PICKUP_BUCKET_COUNT;
+
+    private final RideGeoIndex rideGeoIndex;
+    private final double areaSizeDeg;
+    private final long slotMs;
+    private final int slots;
+    private final int maxAreas;
+
+    // Open addressing on the area key, sized twice max-areas
+    private final AtomicReferenceArray<Area> table;
+    private final AtomicInteger areaCount = new AtomicInteger();
+    private final Area other;
+
+    public MarketplaceMetrics(RideGeoIndex rideGeoIndex,
+                              @Value("${marketplace.area-size-deg:0.1}") double areaSizeDeg,
+                              @Value("${marketplace.slot-ms:300000}") long slotMs,
+                              @Value("${marketplace.slots:24}") int slots,
+                              @Value("${marketplace.max-areas:64}") int maxAreas) {
+        this.rideGeoIndex = rideGeoIndex;
+        this.areaSizeDeg = areaSizeDeg;
+        this.slotMs = slotMs;
+        this.slots = slots;
+        this.maxAreas = maxAreas;
+        this.table = new AtomicReferenceArray<>(Integer.highestOneBit(Math.max(maxAreas, 1) * 4 - 1));
+        this.other = new Area(0, OTHER, slots);
+    }
+
+    private static final class Area {
+        final long key;
+        final String name;
+        final AtomicLongArray periods;
+        final AtomicLongArray[] ring;
+
+        Area(long key, String name, int slots) {
+            this.key = key;
+            this.name = name;
+            this.periods = new AtomicLongArray(slots);
+            this.ring = new AtomicLongArray[slots];
+            for (int i = 0; i < slots; i++) {
+                periods.set(i, -1);
+                ring[i] = new AtomicLongArray(SLOT_LENGTH);
+            }
+        }
+    }
+
+    // Merged counters and histograms of an area (or all of them) over a window
+    public record Snapshot(String area, long windowMs, long requested, long accepted, long cancelledWhileWaiting,
+                           long openRequests, long[] waitBuckets, long waitSumMs,
+                           long[] pickupBuckets, long pickupSumMeters) {
+
+        public Map<String, Object> toMap() {
+            Map<String, Object> map = new LinkedHashMap<>();
+            map.put("area", area);
+            map.put("windowSeconds", windowMs / 1000);
+            map.put("requested", requested);
+            map.put("accepted", accepted);
+            map.put("cancelledWhileWaiting", cancelledWhileWaiting);
+            map.put("openRequests", openRequests);
+
+            Map<String, Object> wait = new LinkedHashMap<>();
+            wait.put("meanSeconds", accepted > 0 ? Math.round(waitSumMs / (double) accepted) / 1000.0 : null);
+            wait.put("p50Seconds", accepted > 0 ? percentile(waitBuckets, accepted, 0.50) / 1000.0 : null);
+            wait.put("p90Seconds", accepted > 0 ? percentile(waitBuckets, accepted, 0.90) / 1000.0 : null);
+            wait.put("p99Seconds", accepted > 0 ? percentile(waitBuckets, accepted, 0.99) / 1000.0 : null);
+            map.put("timeToAccept", wait);
+
+            Map<String, Object> pickup = new LinkedHashMap<>();
+            pickup.put("meanKm", accepted > 0 ? Math.round(pickupSumMeters / (double) accepted) / 1000.0 : null);
+            pickup.put("p50Km", accepted > 0 ? percentile(pickupBuckets, accepted, 0.50) / 1000.0 : null);
+            pickup.put("p90Km", accepted > 0 ? percentile(pickupBuckets, accepted, 0.90) / 1000.0 : null);
+            pickup.put("p99Km", accepted > 0 ? percentile(pickupBuckets, accepted, 0.99) / 1000.0 : null);
+            map.put("pickupDistance", pickup);
+            return map;
+        }
+    }
+
+    // Rides without a pickup point (imported ones, say) can't be placed and are skipped
+
+    public void rideRequested(Double sourceLat, Double sourceLng) {
+        if (sourceLat != null && sourceLng != null) {
+            rideRequested(sourceLat, sourceLng, System.currentTimeMillis());
+        }
+    }
+
+    public void rideAccepted(Double sourceLat, Double sourceLng, long waitMs, double pickupKm) {
+        if (sourceLat != null && sourceLng != null) {
+            rideAccepted(sourceLat, sourceLng, waitMs, pickupKm, System.currentTimeMillis());
+        }
+    }
+
+    public void rideCancelledWhileWaiting(Double sourceLat, Double sourceLng) {
+        if (sourceLat != null && sourceLng != null) {
+            rideCancelledWhileWaiting(sourceLat, sourceLng, System.currentTimeMillis());
+        }
+    }
+
+    void rideRequested(double sourceLat, double sourceLng, long nowMs) {
+        slot(area(sourceLat, sourceLng), nowMs).incrementAndGet(REQUESTED);
+    }
+
+    void rideAccepted(double sourceLat, double sourceLng, long waitMs, double pickupKm, long nowMs) {
+        AtomicLongArray slot = slot(area(sourceLat, sourceLng), nowMs);
+        long wait = Math.min(Math.max(waitMs, 0), MAX_WAIT_MS);
+        long pickupMeters = Math.min(Math.max(Math.round(pickupKm * 1000.0), 0), MAX_PICKUP_M);
+
+        slot.incrementAndGet(ACCEPTED);
+        slot.addAndGet(WAIT_SUM, wait);
+        slot.incrementAndGet(WAIT_BUCKETS + bucket(wait));
+        slot.addAndGet(PICKUP_SUM, pickupMeters);
+        slot.incrementAndGet(PICKUP_BUCKETS + bucket(pickupMeters));
+    }
+
+    void rideCancelledWhileWaiting(double sourceLat, double sourceLng, long nowMs) {
+        slot(area(sourceLat, sourceLng), nowMs).incrementAndGet(CANCELLED);
+    }
+
+    // Whole city, then each area that saw an event or has an open request, busiest first
+    public List<Snapshot> snapshots(long windowMs) {
+        return snapshots(windowMs, System.currentTimeMillis());
+    }
+
+    List<Snapshot> snapshots(long windowMs, long nowMs) {
+        Map<String, Integer> open = openRequestsByArea();
+
+        List<Area> all = new ArrayList<>();
+        for (int i = 0; i < table.length(); i++) {
+            if (table.get(i) != null) {
+                all.add(table.get(i));
+            }
+        }
+        all.add(other);
+
+        List<Snapshot> areas = new ArrayList<>();
+        Set<String> seen = new HashSet<>();
+        for (Area area : all) {
+            areas.add(snapshot(List.of(area), area.name, windowMs, nowMs, open.getOrDefault(area.name, 0)));
+            seen.add(area.name);
+        }
+        // Open requests in areas that recorded nothing yet (after a restart, say)
+        open.forEach((name, count) -> {
+            if (!seen.contains(name)) {
+                areas.add(snapshot(List.of(), name, windowMs, nowMs, count));
+            }
+        });
+        areas.removeIf(a -> a.requested() == 0 && a.accepted() == 0 && a.cancelledWhileWaiting() == 0
+                && a.openRequests() == 0);
+        areas.sort(Comparator.comparingLong((Snapshot a) -> a.requested() + a.openRequests()).reversed());
+
+        int openTotal = open.values().stream().mapToInt(Integer::intValue).sum();
+        List<Snapshot> result = new ArrayList<>(areas.size() + 1);
+        result.add(snapshot(all, "all", windowMs, nowMs, openTotal));
+        result.addAll(areas);
+        return result;
+    }
+
+    // The area containing this point
+    public Snapshot snapshot(double lat, double lng, long windowMs) {
+        return snapshot(lat, lng, windowMs, System.currentTimeMillis());
+    }
+
+    Snapshot snapshot(double lat, double lng, long windowMs, long nowMs) {
+        String name = areaName(lat, lng);
+        Area area = find(areaKey(lat, lng));
+        return snapshot(area != null ? List.of(area) : List.of(), name, windowMs, nowMs,
+                openRequestsByArea().getOrDefault(name, 0));
+    }
+
+    public long getMaxWindowMs() {
+        return slotMs * slots;
+    }
+
+    private Snapshot snapshot(List<Area> areas, String name, long windowMs, long nowMs, long openRequests) {
+        // Whole slots, the current (partial) one included
+        int covered = (int) Math.min(Math.max((windowMs + slotMs - 1) / slotMs, 1), slots);
+        long current = nowMs / slotMs;
+
+        long[] totals = new long[SLOT_LENGTH];
+        for (Area area : areas) {
+            for (int k = 0; k < covered; k++) {
+                long period = current - k;
+                int index = (int) (period % slots);
+                if (area.periods.get(index) != period) {
+                    continue;
+                }
+                AtomicLongArray slot = area.ring[index];
+                for (int j = 0; j < SLOT_LENGTH; j++) {
+                    totals[j] += slot.get(j);
+                }
+            }
+        }
+
+        long[] wait = new long[WAIT_BUCKET_COUNT];
+        long[] pickup = new long[PICKUP_BUCKET_COUNT];
+        System.arraycopy(totals, WAIT_BUCKETS, wait, 0, WAIT_BUCKET_COUNT);
+        System.arraycopy(totals, PICKUP_BUCKETS, pickup, 0, PICKUP_BUCKET_COUNT);
+        return new Snapshot(name, covered * slotMs, totals[REQUESTED], totals[ACCEPTED], totals[CANCELLED],
+                openRequests, wait, totals[WAIT_SUM], pickup, totals[PICKUP_SUM]);
+    }
+
+    private Map<String, Integer> openRequestsByArea() {
+        Map<String, Integer> open = new HashMap<>();
+        for (RideGeoIndex.OpenRide ride : rideGeoIndex.openRides()) {
+            long key = areaKey(ride.sourceLat(), ride.sourceLng());
+            String name = find(key) != null || areaCount.get() < maxAreas
+                    ? areaName(ride.sourceLat(), ride.sourceLng())
+                    : OTHER;
+            open.merge(name, 1, Integer::sum);
+        }
+        return open;
+    }
+
+    private AtomicLongArray slot(Area area, long nowMs) {
+        long period = nowMs / slotMs;
+        int index = (int) (period % slots);
+        long slotPeriod = area.periods.get(index);
+        if (slotPeriod < period && area.periods.compareAndSet(index, slotPeriod, period)) {
+            AtomicLongArray slot = area.ring[index];
+            for (int j = 0; j < SLOT_LENGTH; j++) {
+                slot.set(j, 0);
+            }
+        }
+        return area.ring[index];
+    }
+
+    private Area area(double lat, double lng) {
+        long key = areaKey(lat, lng);
+        int mask = table.length() - 1;
+        for (int i = mix(key) & mask; ; i = (i + 1) & mask) {
+            Area area = table.get(i);
+            if (area == null) {
+                if (areaCount.get() >= maxAreas) {
+                    return other;
+                }
+                Area created = new Area(key, areaName(lat, lng), slots);
+                if (table.compareAndSet(i, null, created)) {
+                    areaCount.incrementAndGet();
+                    return created;
+                }
+                area = table.get(i);
+            }
+            if (area.key == key) {
+                return area;
+            }
+        }
+    }
+
+    private Area find(long key) {
+        int mask = table.length() - 1;
+        for (int i = mix(key) & mask; ; i = (i + 1) & mask) {
+            Area area = table.get(i);
+            if (area == null || area.key == key) {
+                return area;
+            }
+        }
+    }
+
+    private long areaKey(double lat, double lng) {
+        long latIndex = (long) Math.floor(lat / areaSizeDeg);
+        long lngIndex = (long) Math.floor(lng / areaSizeDeg);
+        return (latIndex << 32) | (lngIndex & 0xFFFFFFFFL);
+    }
+
+    // South-west corner of the area, e.g. "18.50,73.80"
+    private String areaName(double lat, double lng) {
+        return String.format(Locale.ROOT, "%.2f,%.2f",
+                Math.floor(lat / areaSizeDeg) * areaSizeDeg, Math.floor(lng / areaSizeDeg) * areaSizeDeg);
+    }
+
+    private static int mix(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+
+    // Values below 16 get their own bucket, above that 8 buckets per power of two
+    static int bucket(long value) {
+        if (value < 16) {
+            return (int) value;
+        }
+        int msb = 63 - Long.numberOfLeadingZeros(value);
+        int shift = msb - 3;
+        return 16 + (msb - 4) * 8 + (int) (value >>> shift) - 8;
+    }
+
+    // Middle of the bucket's value range
+    static long bucketValue(int bucket) {
+        if (bucket < 16) {
+            return bucket;
+        }
+        int msb = 4 + (bucket - 16) / 8;
+        int shift = msb - 3;
+        long lower = (long) (8 + (bucket - 16) % 8) << shift;
+        return lower + ((1L << shift) - 1) / 2;
+    }
+
+    static long percentile(long[] buckets, long count, double quantile) {
+        long rank = Math.max(1, (long) Math.ceil(quantile * count));
+        long seen = 0;
+        for (int i = 0; i < buckets.length; i++) {
+            seen += buckets[i];
+            if (seen >= rank) {
+                return bucketValue(i);
+            }
+        }
+        return bucketValue(buckets.length - 1);
+    }
+}
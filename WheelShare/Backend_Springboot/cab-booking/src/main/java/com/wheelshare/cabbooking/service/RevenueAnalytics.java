@@ -0,0 +1,382 @@
+package com.wheelshare.cabbooking.service;
+
+import com.wheelshare.cabbooking.enums.RideStatus;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Completed-ride revenue and payment mix in fixed hour, day and month buckets.
+ *
+ * Each granularity is a set of parallel primitive arrays indexed by time unit, filled from the
+ * database once at startup with a streaming cursor and then kept current by RideService after
+ * each commit. A range is answered by merging the coarsest buckets that fit inside it
+ * (whole months, then whole days, then hours at the edges), so a year costs a few dozen
+ * array reads and never touches the rides or Payments tables.
+ * The rebuild runs at startup; a ride completed while it streams can be missed until the next one.
+ *
+ * Only the last retention-months whole months, up to a day ahead of the clock, are kept, which
+ * bounds the arrays no matter what timestamps turn up. Rows outside that window are not counted,
+ * and ranges reaching past it only include the part inside it.
+ */
+@Component
+public class RevenueAnalytics {
+
+    public enum Granularity { HOUR, DAY, MONTH }
+
+    public record Totals(long rides, long gmvPaise, long commissionPaise,
+                         Map<String, long[]> payments) {
+    }
+
+    private static final String RIDES_SQL =
+            "SELECT completed_at, COALESCE(final_fare, fare) FROM rides " +
+            "WHERE ride_status = " + RideStatus.COMPLETED.code() + " AND completed_at IS NOT NULL";
+
+    private static final String PAYMENTS_SQL =
+            "SELECT created_at, payment_method, amount FROM Payments WHERE created_at IS NOT NULL";
+
+    // Methods past this many are counted as OTHER, keeps the per-bucket arrays bounded
+    private static final int MAX_METHODS = 8;
+    private static final String OTHER = "OTHER";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    @Value("${commission.driver-percent:10}")
+    private double commissionPercent = 10;
+
+    // Rows per round trip while rebuilding; MySQL needs useCursorFetch=true to honour it
+    @Value("${analytics.rebuild.fetch-size:1000}")
+    private int fetchSize = 1000;
+
+    @Value("${analytics.retention-months:36}")
+    private int retentionMonths = 36;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private Buckets hours = new Buckets();
+    private Buckets days = new Buckets();
+    private Buckets months = new Buckets();
+    private List<String> methods = new ArrayList<>();
+
+    public RevenueAnalytics(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuild() {
+        // Built aside and swapped in, reads keep seeing the old buckets meanwhile
+        RevenueAnalytics fresh = new RevenueAnalytics(null);
+        fresh.commissionPercent = commissionPercent;
+        fresh.retentionMonths = retentionMonths;
+
+        stream(RIDES_SQL, rs -> fresh.recordRide(rs.getTimestamp(1).toLocalDateTime(), rs.getDouble(2)));
+        stream(PAYMENTS_SQL, rs -> fresh.recordPayment(
+                rs.getTimestamp(1).toLocalDateTime(), rs.getString(2), rs.getDouble(3)));
+
+        swapIn(fresh);
+    }
+
+    // Same rebuild from the ride event journal, for when the database is unavailable or too busy
+    public void rebuild(RideEventJournal journal) {
+        RevenueAnalytics fresh = new RevenueAnalytics(null);
+        fresh.commissionPercent = commissionPercent;
+        fresh.retentionMonths = retentionMonths;
+
+        journal.replay(1, event -> {
+            LocalDateTime at = LocalDateTime.ofInstant(Instant.ofEpochMilli(event.timestamp()), ZoneId.systemDefault());
+            if (event.type() == RideEventJournal.EventType.COMPLETED) {
+                fresh.recordRide(at, event.amountPaise() / 100.0);
+            } else if (event.type() == RideEventJournal.EventType.PAID) {
+                fresh.recordPayment(at, event.paymentMethod(), event.amountPaise() / 100.0);
+            }
+        });
+
+        swapIn(fresh);
+    }
+
+    private void swapIn(RevenueAnalytics fresh) {
+        lock.writeLock().lock();
+        try {
+            hours = fresh.hours;
+            days = fresh.days;
+            months = fresh.months;
+            methods = fresh.methods;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void recordRide(LocalDateTime completedAt, double fare) {
+        if (!isRetained(completedAt)) {
+            return;
+        }
+        long gmv = Math.round(fare * 100.0);
+        long commission = Math.round(gmv * commissionPercent / 100.0);
+
+        lock.writeLock().lock();
+        try {
+            long hour = hourOf(completedAt);
+            long day = completedAt.toLocalDate().toEpochDay();
+            long month = monthOf(completedAt.toLocalDate());
+            hours.addRide(hour, gmv, commission);
+            days.addRide(day, gmv, commission);
+            months.addRide(month, gmv, commission);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void recordPayment(LocalDateTime createdAt, String paymentMethod, double amount) {
+        if (!isRetained(createdAt)) {
+            return;
+        }
+        long paise = Math.round(amount * 100.0);
+
+        lock.writeLock().lock();
+        try {
+            int method = methodIndex(paymentMethod);
+            hours.addPayment(hourOf(createdAt), method, paise);
+            days.addPayment(createdAt.toLocalDate().toEpochDay(), method, paise);
+            months.addPayment(monthOf(createdAt.toLocalDate()), method, paise);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Totals over [from, to), both truncated to the hour
+    public Totals totals(LocalDateTime from, LocalDateTime to) {
+        lock.readLock().lock();
+        try {
+            long[] acc = new long[3 + 2 * MAX_METHODS];
+            merge(from.truncatedTo(ChronoUnit.HOURS), to.truncatedTo(ChronoUnit.HOURS), acc);
+            return toTotals(acc);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // One Totals per hour, day or month period overlapping [from, to), clipped to the range
+    public Map<LocalDateTime, Totals> series(LocalDateTime from, LocalDateTime to, Granularity granularity) {
+        LocalDateTime start = from.truncatedTo(ChronoUnit.HOURS);
+        LocalDateTime end = to.truncatedTo(ChronoUnit.HOURS);
+
+        Map<LocalDateTime, Totals> series = new LinkedHashMap<>();
+        lock.readLock().lock();
+        try {
+            LocalDateTime period = periodStart(start, granularity);
+            while (period.isBefore(end)) {
+                LocalDateTime next = switch (granularity) {
+                    case HOUR -> period.plusHours(1);
+                    case DAY -> period.plusDays(1);
+                    case MONTH -> period.plusMonths(1);
+                };
+                long[] acc = new long[3 + 2 * MAX_METHODS];
+                merge(period.isBefore(start) ? start : period, next.isAfter(end) ? end : next, acc);
+                series.put(period, toTotals(acc));
+                period = next;
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        return series;
+    }
+
+    public double getCommissionPercent() {
+        return commissionPercent;
+    }
+
+    // A stray 1970 or 2099 timestamp would otherwise stretch every array to reach it
+    private boolean isRetained(LocalDateTime time) {
+        LocalDateTime now = LocalDateTime.now();
+        LocalDateTime oldest = now.toLocalDate().withDayOfMonth(1).minusMonths(retentionMonths).atStartOfDay();
+        return !time.isBefore(oldest) && time.isBefore(now.plusDays(1));
+    }
+
+    // Walks [from, to) hour by hour, jumping a whole month or day whenever one fits
+    private void merge(LocalDateTime from, LocalDateTime to, long[] acc) {
+        LocalDateTime cursor = from;
+        while (cursor.isBefore(to)) {
+            if (cursor.getHour() == 0) {
+                LocalDate date = cursor.toLocalDate();
+                if (date.getDayOfMonth() == 1 && !cursor.plusMonths(1).isAfter(to)) {
+                    months.addTo(monthOf(date), acc);
+                    cursor = cursor.plusMonths(1);
+                    continue;
+                }
+                if (!cursor.plusDays(1).isAfter(to)) {
+                    days.addTo(date.toEpochDay(), acc);
+                    cursor = cursor.plusDays(1);
+                    continue;
+                }
+            }
+            hours.addTo(hourOf(cursor), acc);
+            cursor = cursor.plusHours(1);
+        }
+    }
+
+    private Totals toTotals(long[] acc) {
+        Map<String, long[]> payments = new HashMap<>();
+        for (int m = 0; m < methods.size(); m++) {
+            long count = acc[3 + 2 * m];
+            if (count > 0) {
+                payments.put(methods.get(m), new long[]{count, acc[4 + 2 * m]});
+            }
+        }
+        return new Totals(acc[0], acc[1], acc[2], payments);
+    }
+
+    private int methodIndex(String paymentMethod) {
+        String method = paymentMethod == null || paymentMethod.isBlank() ? OTHER : paymentMethod.toUpperCase();
+        int index = methods.indexOf(method);
+        if (index >= 0) {
+            return index;
+        }
+        if (methods.size() >= MAX_METHODS - 1 && !OTHER.equals(method)) {
+            method = OTHER;
+            index = methods.indexOf(OTHER);
+            if (index >= 0) {
+                return index;
+            }
+        }
+        methods.add(method);
+        return methods.size() - 1;
+    }
+
+    private void stream(String sql, RowHandler handler) {
+        jdbcTemplate.query(con -> {
+            PreparedStatement ps = con.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            ps.setFetchSize(fetchSize);
+            return ps;
+        }, handler::handle);
+    }
+
+    private interface RowHandler {
+        void handle(ResultSet rs) throws SQLException;
+    }
+
+    private static LocalDateTime periodStart(LocalDateTime time, Granularity granularity) {
+        return switch (granularity) {
+            case HOUR -> time.truncatedTo(ChronoUnit.HOURS);
+            case DAY -> time.toLocalDate().atStartOfDay();
+            case MONTH -> time.toLocalDate().withDayOfMonth(1).atStartOfDay();
+        };
+    }
+
+    private static long hourOf(LocalDateTime time) {
+        return time.toLocalDate().toEpochDay() * 24 + time.getHour();
+    }
+
+    private static long monthOf(LocalDate date) {
+        return date.getYear() * 12L + date.getMonthValue() - 1;
+    }
+
+    /**
+     * Parallel arrays for one granularity, index = unit - origin. Grows at either end;
+     * a slot per unit between the oldest and newest data, empty ones included.
+     */
+    private static final class Buckets {
+
+        private long origin;
+        private int length;
+        private long[] rides = new long[0];
+        private long[] gmv = new long[0];
+        private long[] commission = new long[0];
+        // [method] -> per-unit count and paise
+        private final long[][] methodCount = new long[MAX_METHODS][];
+        private final long[][] methodPaise = new long[MAX_METHODS][];
+
+        void addRide(long unit, long gmvPaise, long commissionPaise) {
+            int i = slot(unit);
+            rides[i]++;
+            gmv[i] += gmvPaise;
+            commission[i] += commissionPaise;
+        }
+
+        void addPayment(long unit, int method, long paise) {
+            int i = slot(unit);
+            if (methodCount[method] == null) {
+                methodCount[method] = new long[rides.length];
+                methodPaise[method] = new long[rides.length];
+            }
+            methodCount[method][i]++;
+            methodPaise[method][i] += paise;
+        }
+
+        void addTo(long unit, long[] acc) {
+            long i = unit - origin;
+            if (length == 0 || i < 0 || i >= length) {
+                return;
+            }
+            int slot = (int) i;
+            acc[0] += rides[slot];
+            acc[1] += gmv[slot];
+            acc[2] += commission[slot];
+            for (int m = 0; m < MAX_METHODS; m++) {
+                if (methodCount[m] != null) {
+                    acc[3 + 2 * m] += methodCount[m][slot];
+                    acc[4 + 2 * m] += methodPaise[m][slot];
+                }
+            }
+        }
+
+        private int slot(long unit) {
+            if (length == 0) {
+                origin = unit;
+                length = 1;
+                resize(16, 0);
+                return 0;
+            }
+            if (unit < origin) {
+                int shift = (int) (origin - unit);
+                resize(Math.max(rides.length * 2, length + shift), shift);
+                origin = unit;
+                length += shift;
+                return 0;
+            }
+            long i = unit - origin;
+            if (i >= length) {
+                if (i >= rides.length) {
+                    resize((int) Math.max(rides.length * 2L, i + 1), 0);
+                }
+                length = (int) i + 1;
+            }
+            return (int) i;
+        }
+
+        // New capacity, existing slots moved right by shift
+        private void resize(int capacity, int shift) {
+            rides = copy(rides, capacity, shift);
+            gmv = copy(gmv, capacity, shift);
+            commission = copy(commission, capacity, shift);
+            for (int m = 0; m < MAX_METHODS; m++) {
+                if (methodCount[m] != null) {
+                    methodCount[m] = copy(methodCount[m], capacity, shift);
+                    methodPaise[m] = copy(methodPaise[m], capacity, shift);
+                }
+            }
+        }
+
+        private long[] copy(long[] source, int capacity, int shift) {
+            long[] target = new long[capacity];
+            System.arraycopy(source, 0, target, shift, Math.min(source.length, length));
+            return target;
+        }
+    }
+}
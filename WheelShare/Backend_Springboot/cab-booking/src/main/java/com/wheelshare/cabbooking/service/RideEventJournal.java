@@ -0,0 +1,363 @@
+package com.wheelshare.cabbooking.service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.zip.CRC32C;
+
+/**
+ * Append-only binary journal of ride lifecycle events.
+ *
+ * Records are a fixed 40 bytes, written into memory-mapped segment files named after the first
+ * sequence they hold. An append is a copy into the mapping under a short lock. A flusher thread
+ * forces the mapping to disk every flush interval, or sooner when a caller waits in
+ * awaitDurable, so one force covers every record appended since the last one (group commit).
+ *
+ * Record layout, little endian:
+ *   0 crc32c of bytes 4..39 | 4 type | 5 payment method | 6 reserved (2) | 8 sequence
+ *   16 epoch millis | 24 rideId | 28 actorId | 32 amount in paise
+ *
+ * On open the last segment is scanned up to the first record with a bad checksum or an
+ * out-of-order sequence, a torn write from a crash. Everything from there on is zeroed
+ * (pages can reach disk out of order) and appending resumes at that point.
+ *
+ * Retention: with retain-segments above 0, each roll deletes the oldest sealed segments beyond
+ * that many. Replay then starts at the oldest segment left, so a journal rebuild only covers
+ * that window. 0 keeps every segment.
+ */
+@Component
+public class RideEventJournal {
+
+    public enum EventType { REQUESTED, ACCEPTED, STARTED, COMPLETED, CANCELLED, PAID }
+
+    // actorId is the customer for REQUESTED, CANCELLED and PAID, the driver otherwise
+    public record RideEvent(long sequence, EventType type, long timestamp,
+                            int rideId, int actorId, long amountPaise, String paymentMethod) {
+    }
+
+    static final int RECORD_BYTES = 40;
+
+    private static final String SUFFIX = ".journal";
+
+    // Payment method codes, 0 = none or anything else
+    private static final String[] METHODS = {null, "CASH", "UPI", "CARD", "WALLET"};
+
+    private final Path directory;
+    private final int segmentBytes;
+    private final long flushIntervalMs;
+    private final int retainSegments;
+
+    private final ReentrantLock appendLock = new ReentrantLock();
+    private final CRC32C appendCrc = new CRC32C();
+    private FileChannel channel;
+    private MappedByteBuffer segment;
+    private long nextSequence = 1;
+
+    private volatile long writtenSequence;
+    private volatile long durableSequence;
+    private final Object flushMonitor = new Object();
+    private volatile boolean running;
+    private Thread flusher;
+
+    public RideEventJournal(@Value("${journal.dir:${user.home}/.wheelshare/journal}") String directory,
+                            @Value("${journal.segment-bytes:67108864}") int segmentBytes,
+                            @Value("${journal.flush-interval-ms:5}") long flushIntervalMs,
+                            @Value("${journal.retain-segments:0}") int retainSegments) {
+        this.directory = Paths.get(directory);
+        this.segmentBytes = Math.max(segmentBytes / RECORD_BYTES, 1) * RECORD_BYTES;
+        this.flushIntervalMs = flushIntervalMs;
+        this.retainSegments = Math.max(retainSegments, 0);
+    }
+
+    @PostConstruct
+    public void open() {
+        try {
+            Files.createDirectories(directory);
+            List<Path> segments = segments();
+            if (segments.isEmpty()) {
+                mapSegment(1);
+            } else {
+                recover(segments.get(segments.size() - 1));
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot open ride journal in " + directory, e);
+        }
+
+        writtenSequence = nextSequence - 1;
+        durableSequence = writtenSequence;
+        running = true;
+        flusher = new Thread(this::flushLoop, "ride-journal-flusher");
+        flusher.setDaemon(true);
+        flusher.start();
+    }
+
+    // Returns the event's sequence; durable within the flush interval, or after awaitDurable(sequence)
+    public long append(EventType type, Integer rideId, Integer actorId, long amountPaise, String paymentMethod) {
+        appendLock.lock();
+        try {
+            if (segment.remaining() < RECORD_BYTES) {
+                roll();
+            }
+            long sequence = nextSequence++;
+            int pos = segment.position();
+            segment.put(pos + 4, (byte) (type.ordinal() + 1));
+            segment.put(pos + 5, methodCode(paymentMethod));
+            segment.putShort(pos + 6, (short) 0);
+            segment.putLong(pos + 8, sequence);
+            segment.putLong(pos + 16, System.currentTimeMillis());
+            segment.putInt(pos + 24, rideId != null ? rideId : 0);
+            segment.putInt(pos + 28, actorId != null ? actorId : 0);
+            segment.putLong(pos + 32, amountPaise);
+            // Checksum last, a record cut short by a crash fails it
+            segment.putInt(pos, crc(appendCrc, segment, pos));
+            segment.position(pos + RECORD_BYTES);
+            writtenSequence = sequence;
+            return sequence;
+        } finally {
+            appendLock.unlock();
+        }
+    }
+
+    // Blocks until the record with this sequence has been forced to disk
+    public void awaitDurable(long sequence) throws InterruptedException {
+        synchronized (flushMonitor) {
+            while (durableSequence < sequence && running) {
+                flushMonitor.notifyAll();
+                flushMonitor.wait(flushIntervalMs);
+            }
+        }
+    }
+
+    public long getLastSequence() {
+        return writtenSequence;
+    }
+
+    /**
+     * Reads every valid event with sequence >= fromSequence, oldest first, from the files
+     * through read-only mappings. Never touches the database.
+     */
+    public void replay(long fromSequence, Consumer<RideEvent> consumer) {
+        CRC32C crc = new CRC32C();
+        try {
+            List<Path> segments = segments();
+            for (int s = 0; s < segments.size(); s++) {
+                // Everything in this segment is older than the next one's first sequence
+                if (s + 1 < segments.size() && firstSequence(segments.get(s + 1)) <= fromSequence) {
+                    continue;
+                }
+                long expected = firstSequence(segments.get(s));
+                try (FileChannel file = FileChannel.open(segments.get(s), StandardOpenOption.READ)) {
+                    MappedByteBuffer buffer = file.map(FileChannel.MapMode.READ_ONLY, 0, file.size());
+                    buffer.order(ByteOrder.LITTLE_ENDIAN);
+                    for (int pos = 0; pos + RECORD_BYTES <= buffer.limit(); pos += RECORD_BYTES) {
+                        if (!isValid(crc, buffer, pos, expected++)) {
+                            break;
+                        }
+                        RideEvent event = decode(buffer, pos);
+                        if (event.sequence() >= fromSequence) {
+                            consumer.accept(event);
+                        }
+                    }
+                } catch (NoSuchFileException e) {
+                    // Dropped by retention since it was listed, its events are gone
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot replay ride journal", e);
+        }
+    }
+
+    @PreDestroy
+    public void close() {
+        running = false;
+        synchronized (flushMonitor) {
+            flushMonitor.notifyAll();
+        }
+        if (flusher != null) {
+            try {
+                flusher.join(1000);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        appendLock.lock();
+        try {
+            if (segment != null) {
+                segment.force();
+                durableSequence = writtenSequence;
+            }
+            if (channel != null) {
+                channel.close();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            appendLock.unlock();
+        }
+    }
+
+    private void flushLoop() {
+        while (running) {
+            synchronized (flushMonitor) {
+                if (durableSequence >= writtenSequence && running) {
+                    try {
+                        flushMonitor.wait(flushIntervalMs);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        return;
+                    }
+                }
+            }
+            flush();
+        }
+    }
+
+    private void flush() {
+        long target = writtenSequence;
+        if (target <= durableSequence) {
+            return;
+        }
+
+        // Segments are forced when they roll, so only the current one can hold unforced records
+        MappedByteBuffer current;
+        appendLock.lock();
+        try {
+            current = segment;
+        } finally {
+            appendLock.unlock();
+        }
+        current.force();
+
+        synchronized (flushMonitor) {
+            durableSequence = target;
+            flushMonitor.notifyAll();
+        }
+    }
+
+    private void roll() {
+        try {
+            segment.force();
+            channel.close();
+            mapSegment(nextSequence);
+            if (retainSegments > 0) {
+                dropOldSegments();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot roll ride journal segment", e);
+        }
+    }
+
+    // Keeps the current segment plus the newest retainSegments sealed ones
+    private void dropOldSegments() throws IOException {
+        List<Path> segments = segments();
+        for (int s = 0; s < segments.size() - 1 - retainSegments; s++) {
+            Files.deleteIfExists(segments.get(s));
+        }
+    }
+
+    private void mapSegment(long firstSequence) throws IOException {
+        Path path = directory.resolve(String.format("%020d%s", firstSequence, SUFFIX));
+        channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        segment = channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentBytes);
+        segment.order(ByteOrder.LITTLE_ENDIAN);
+        nextSequence = firstSequence;
+    }
+
+    private void recover(Path last) throws IOException {
+        long firstSequence = firstSequence(last);
+        channel = FileChannel.open(last, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        segment = channel.map(FileChannel.MapMode.READ_WRITE, 0, Math.max(channel.size(), segmentBytes));
+        segment.order(ByteOrder.LITTLE_ENDIAN);
+
+        CRC32C crc = new CRC32C();
+        long sequence = firstSequence;
+        int pos = 0;
+        while (pos + RECORD_BYTES <= segment.limit() && isValid(crc, segment, pos, sequence)) {
+            sequence++;
+            pos += RECORD_BYTES;
+        }
+
+        // Torn tail: zero every slot after it so replay and later appends see a clean end
+        boolean zeroed = false;
+        for (int p = pos; p + RECORD_BYTES <= segment.limit(); p += RECORD_BYTES) {
+            if (segment.get(p + 4) != 0 || segment.getInt(p) != 0) {
+                for (int i = 0; i < RECORD_BYTES; i++) {
+                    segment.put(p + i, (byte) 0);
+                }
+                zeroed = true;
+            }
+        }
+        if (zeroed) {
+            segment.force();
+        }
+
+        segment.position(pos);
+        nextSequence = sequence;
+    }
+
+    private List<Path> segments() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files
+                    .filter(p -> p.getFileName().toString().endsWith(SUFFIX))
+                    .sorted()
+                    .toList();
+        }
+    }
+
+    private static long firstSequence(Path segment) {
+        String name = segment.getFileName().toString();
+        return Long.parseLong(name.substring(0, name.length() - SUFFIX.length()));
+    }
+
+    private static boolean isValid(CRC32C crc, ByteBuffer buffer, int pos, long expectedSequence) {
+        byte type = buffer.get(pos + 4);
+        return type > 0 && type <= EventType.values().length
+                && buffer.getLong(pos + 8) == expectedSequence
+                && buffer.getInt(pos) == crc(crc, buffer, pos);
+    }
+
+    private static int crc(CRC32C crc, ByteBuffer buffer, int pos) {
+        crc.reset();
+        crc.update(buffer.slice(pos + 4, RECORD_BYTES - 4));
+        return (int) crc.getValue();
+    }
+
+    private static RideEvent decode(ByteBuffer buffer, int pos) {
+        int method = buffer.get(pos + 5);
+        return new RideEvent(
+                buffer.getLong(pos + 8),
+                EventType.values()[buffer.get(pos + 4) - 1],
+                buffer.getLong(pos + 16),
+                buffer.getInt(pos + 24),
+                buffer.getInt(pos + 28),
+                buffer.getLong(pos + 32),
+                method > 0 && method < METHODS.length ? METHODS[method] : null);
+    }
+
+    private static byte methodCode(String paymentMethod) {
+        for (int i = 1; i < METHODS.length; i++) {
+            if (METHODS[i].equalsIgnoreCase(paymentMethod)) {
+                return (byte) i;
+            }
+        }
+        return 0;
+    }
+}
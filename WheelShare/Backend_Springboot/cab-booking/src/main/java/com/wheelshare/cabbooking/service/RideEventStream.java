@@ -0,0 +1,220 @@
+package com.wheelshare.cabbooking.service;
+
+import com.wheelshare.cabbooking.entity.Ride;
+import com.wheelshare.cabbooking.enums.RideStatus;
+import com.wheelshare.cabbooking.repository.RideRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.ContextClosedEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Server-Sent Events push for ride status, replacing the 2 second status poll.
+ * Events are only sent when RideService commits a lifecycle change, plus driver
+ * positions while the ride is ACCEPTED or STARTED. All emitters share one small send pool, so
+ * sends can run out of order; a ride's status only ever moves forward, so each emitter drops
+ * a status that is not after the last one it sent.
+ */
+@Service
+public class RideEventStream {
+
+    private final RideRepository rideRepository;
+    private final ExecutorService sendPool;
+
+    @Value("${ride.stream.timeout-ms:1800000}")
+    private long emitterTimeoutMs;
+
+    // rideId -> open client connections
+    private final ConcurrentHashMap<Integer, List<Subscriber>> subscribers = new ConcurrentHashMap<>();
+
+    // driverId -> ride they are currently driving, for location events
+    private final ConcurrentHashMap<Integer, Integer> driverRides = new ConcurrentHashMap<>();
+
+    public RideEventStream(RideRepository rideRepository, @Value("${ride.stream.send-threads:4}") int sendThreads) {
+        this.rideRepository = rideRepository;
+
+        AtomicInteger threadCount = new AtomicInteger();
+        this.sendPool = Executors.newFixedThreadPool(sendThreads, r -> {
+            Thread thread = new Thread(r, "ride-stream-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void loadActiveRides() {
+        for (RideStatus status : List.of(RideStatus.ACCEPTED, RideStatus.STARTED)) {
+            for (Ride ride : rideRepository.findByRideStatus(status)) {
+                if (ride.getDriver() != null) {
+                    driverRides.put(ride.getDriver().getDriverId(), ride.getRideId());
+                }
+            }
+        }
+    }
+
+    /**
+     * Registers the emitter before reading the snapshot, so a change committed in between reaches the
+     * client as an event; whichever of the two is older is dropped. Returns null, keeping nothing, when
+     * there is no snapshot; anything the snapshot throws also unregisters the emitter.
+     */
+    public SseEmitter subscribe(Integer rideId, Supplier<Map<String, Object>> snapshot) {
+        Subscriber subscriber = new Subscriber(new SseEmitter(emitterTimeoutMs));
+        subscribers.compute(rideId, (id, emitters) -> {
+            if (emitters == null) {
+                emitters = new CopyOnWriteArrayList<>();
+            }
+            emitters.add(subscriber);
+            return emitters;
+        });
+
+        Map<String, Object> currentStatus;
+        try {
+            currentStatus = snapshot.get();
+        } catch (RuntimeException e) {
+            removeEmitter(rideId, subscriber);
+            throw e;
+        }
+        if (currentStatus == null) {
+            removeEmitter(rideId, subscriber);
+            return null;
+        }
+
+        SseEmitter emitter = subscriber.emitter;
+        Runnable remove = () -> removeEmitter(rideId, subscriber);
+        emitter.onCompletion(remove);
+        emitter.onTimeout(remove);
+        emitter.onError(e -> remove.run());
+
+        sendPool.execute(() -> sendStatus(rideId, subscriber, currentStatus));
+        return emitter;
+    }
+
+    public void publishStatus(Integer rideId, Map<String, Object> status) {
+        List<Subscriber> emitters = subscribers.get(rideId);
+        if (emitters == null) {
+            return;
+        }
+
+        sendPool.execute(() -> {
+            for (Subscriber subscriber : emitters) {
+                sendStatus(rideId, subscriber, status);
+            }
+        });
+    }
+
+    public void trackDriver(Integer driverId, Integer rideId) {
+        driverRides.put(driverId, rideId);
+    }
+
+    public void untrackDriver(Integer driverId) {
+        driverRides.remove(driverId);
+    }
+
+    public boolean isOnRide(Integer driverId) {
+        return driverRides.containsKey(driverId);
+    }
+
+    public void publishLocation(Integer driverId, double latitude, double longitude) {
+        Integer rideId = driverRides.get(driverId);
+        if (rideId == null) {
+            return;
+        }
+
+        List<Subscriber> emitters = subscribers.get(rideId);
+        if (emitters == null || emitters.isEmpty()) {
+            return;
+        }
+
+        Map<String, Object> location = Map.of("rideId", rideId, "latitude", latitude, "longitude", longitude);
+        sendPool.execute(() -> {
+            for (Subscriber subscriber : emitters) {
+                send(rideId, subscriber, "location", location);
+            }
+        });
+    }
+
+    // Keeps proxies from closing idle connections and flushes out dead clients
+    @Scheduled(fixedDelayString = "${ride.stream.heartbeat-ms:15000}")
+    public void heartbeat() {
+        subscribers.forEach((rideId, emitters) -> sendPool.execute(() -> {
+            for (Subscriber subscriber : emitters) {
+                try {
+                    subscriber.emitter.send(SseEmitter.event().comment("keep-alive"));
+                } catch (IOException | IllegalStateException e) {
+                    removeEmitter(rideId, subscriber);
+                }
+            }
+        }));
+    }
+
+    public int getSubscriberCount() {
+        return subscribers.values().stream().mapToInt(List::size).sum();
+    }
+
+    // On context close, before the web server's graceful shutdown, which would otherwise wait for every open stream
+    @EventListener(ContextClosedEvent.class)
+    public void shutdown() {
+        subscribers.values().forEach(emitters -> emitters.forEach(subscriber -> subscriber.emitter.complete()));
+        sendPool.shutdown();
+    }
+
+    // Statuses only move forward (enum order), so anything at or before the last one sent is stale
+    private void sendStatus(Integer rideId, Subscriber subscriber, Map<String, Object> status) {
+        RideStatus rideStatus = status.get("rideStatus") instanceof RideStatus value ? value : null;
+        synchronized (subscriber) {
+            if (rideStatus != null && subscriber.lastStatus != null
+                    && rideStatus.ordinal() <= subscriber.lastStatus.ordinal()) {
+                return;
+            }
+            if (!send(rideId, subscriber, "status", status)) {
+                return;
+            }
+            if (rideStatus != null) {
+                subscriber.lastStatus = rideStatus;
+                if (!rideStatus.isActive()) {
+                    subscriber.emitter.complete();
+                }
+            }
+        }
+    }
+
+    private boolean send(Integer rideId, Subscriber subscriber, String eventName, Object data) {
+        try {
+            subscriber.emitter.send(SseEmitter.event().name(eventName).data(data));
+            return true;
+        } catch (IOException | IllegalStateException e) {
+            removeEmitter(rideId, subscriber);
+            return false;
+        }
+    }
+
+    private void removeEmitter(Integer rideId, Subscriber subscriber) {
+        subscribers.computeIfPresent(rideId, (id, emitters) -> {
+            emitters.remove(subscriber);
+            return emitters.isEmpty() ? null : emitters;
+        });
+    }
+
+    private static final class Subscriber {
+        private final SseEmitter emitter;
+        // Guarded by the subscriber's monitor
+        private RideStatus lastStatus;
+
+        private Subscriber(SseEmitter emitter) {
+            this.emitter = emitter;
+        }
+    }
+}
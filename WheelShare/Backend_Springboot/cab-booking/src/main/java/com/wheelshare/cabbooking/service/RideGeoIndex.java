@@ -0,0 +1,164 @@
+package com.wheelshare.cabbooking.service;
+
+import com.wheelshare.cabbooking.entity.Ride;
+import com.wheelshare.cabbooking.enums.RideStatus;
+import com.wheelshare.cabbooking.helper.DistanceHelper;
+import com.wheelshare.cabbooking.repository.RideRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Uniform lat/lng grid over the open (REQUESTED, unassigned) rides.
+ * Kept current by RideService after each commit, so nearby lookups only touch
+ * the driver's cell and its neighbours instead of every open ride in the city.
+ */
+@Component
+public class RideGeoIndex {
+
+    private final RideRepository rideRepository;
+
+    // Search time alone, to tell it apart from queries and serialization in a nearby-rides request
+    private final Timer nearbyTimer;
+
+    @Value("${ride.grid.cell-size-deg:0.05}")
+    private double cellSizeDeg = 0.05;
+
+    // cell key -> open rides whose pickup falls in that cell
+    private final ConcurrentHashMap<Long, Map<Integer, OpenRide>> cells = new ConcurrentHashMap<>();
+
+    // rideId -> open ride, so removals don't need the coordinates
+    private final ConcurrentHashMap<Integer, OpenRide> rides = new ConcurrentHashMap<>();
+
+    public record OpenRide(Integer rideId, Integer customerId,
+                           double sourceLat, double sourceLng, String sourceAddress,
+                           String destinationAddress, Double distanceKm, Double fare,
+                           LocalDateTime requestedAt) {
+    }
+
+    public record Candidate(OpenRide ride, double distanceKm) {
+    }
+
+    public RideGeoIndex(RideRepository rideRepository, MeterRegistry meterRegistry) {
+        this.rideRepository = rideRepository;
+        this.nearbyTimer = meterRegistry.timer("ride.geo.nearby");
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void load() {
+        for (Ride ride : rideRepository.findByRideStatusAndDriverIsNull(RideStatus.REQUESTED)) {
+            add(ride);
+        }
+    }
+
+    public void add(Ride ride) {
+        if (ride.getSourceLat() == null || ride.getSourceLng() == null) {
+            return;
+        }
+
+        OpenRide openRide = new OpenRide(
+                ride.getRideId(),
+                ride.getCustomer() != null ? ride.getCustomer().getUserId() : null,
+                ride.getSourceLat(), ride.getSourceLng(), ride.getSourceAddress(),
+                ride.getDestinationAddress(), ride.getDistanceKm(), ride.getFare(),
+                ride.getRequestedAt()
+        );
+
+        OpenRide previous = rides.put(openRide.rideId(), openRide);
+        if (previous != null) {
+            removeFromCell(previous);
+        }
+
+        cells.compute(cellKey(openRide.sourceLat(), openRide.sourceLng()), (key, cell) -> {
+            if (cell == null) {
+                cell = new ConcurrentHashMap<>();
+            }
+            cell.put(openRide.rideId(), openRide);
+            return cell;
+        });
+    }
+
+    public OpenRide remove(Integer rideId) {
+        OpenRide openRide = rides.remove(rideId);
+        if (openRide != null) {
+            removeFromCell(openRide);
+        }
+        return openRide;
+    }
+
+    public List<Candidate> findNearby(double lat, double lng, double radiusKm) {
+        long start = System.nanoTime();
+        int centerLat = cellIndex(lat);
+        int centerLng = cellIndex(lng);
+
+        // Visit every cell the radius' bounding box touches; near the poles that is more
+        // longitude cells since they shrink there.
+        double latDelta = DistanceHelper.latitudeDelta(radiusKm);
+        double lngDelta = DistanceHelper.longitudeDelta(lat, radiusKm);
+        int latRing = (int) Math.ceil(latDelta / cellSizeDeg);
+        int lngRing = (int) Math.min(Math.ceil(lngDelta / cellSizeDeg), 180.0 / cellSizeDeg);
+
+        List<Candidate> result = new ArrayList<>();
+        for (int i = centerLat - latRing; i <= centerLat + latRing; i++) {
+            for (int j = centerLng - lngRing; j <= centerLng + lngRing; j++) {
+                Map<Integer, OpenRide> cell = cells.get(cellKey(i, j));
+                if (cell == null) {
+                    continue;
+                }
+                for (OpenRide openRide : cell.values()) {
+                    if (!DistanceHelper.withinBoundingBox(lat, lng, latDelta, lngDelta, openRide.sourceLat(), openRide.sourceLng())) {
+                        continue;
+                    }
+                    double distance = DistanceHelper.equirectangularKm(lat, lng, openRide.sourceLat(), openRide.sourceLng());
+                    if (distance <= radiusKm) {
+                        result.add(new Candidate(openRide, distance));
+                    }
+                }
+            }
+        }
+        nearbyTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        return result;
+    }
+
+    public OpenRide get(Integer rideId) {
+        return rides.get(rideId);
+    }
+
+    public int size() {
+        return rides.size();
+    }
+
+    public Collection<OpenRide> openRides() {
+        return rides.values();
+    }
+
+    private void removeFromCell(OpenRide openRide) {
+        cells.computeIfPresent(cellKey(openRide.sourceLat(), openRide.sourceLng()), (key, cell) -> {
+            cell.remove(openRide.rideId(), openRide);
+            return cell.isEmpty() ? null : cell;
+        });
+    }
+
+    private int cellIndex(double degrees) {
+        return (int) Math.floor(degrees / cellSizeDeg);
+    }
+
+    private long cellKey(double lat, double lng) {
+        return cellKey(cellIndex(lat), cellIndex(lng));
+    }
+
+    private static long cellKey(int latIndex, int lngIndex) {
+        return ((long) latIndex << 32) | (lngIndex & 0xffffffffL);
+    }
+}
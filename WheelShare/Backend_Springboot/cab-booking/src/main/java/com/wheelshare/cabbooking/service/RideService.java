@@ -1,5 +1,7 @@
 package com.wheelshare.cabbooking.service;
 
+import com.wheelshare.cabbooking.dto.CursorPage;
+import com.wheelshare.cabbooking.dto.CustomerRideHistoryRow;
 import com.wheelshare.cabbooking.dto.EstimateFareDto;
 import com.wheelshare.cabbooking.dto.PaymentDto;
 import com.wheelshare.cabbooking.dto.RideRequestDto;
@@ -7,23 +9,29 @@ import com.wheelshare.cabbooking.entity.Driver;
 import com.wheelshare.cabbooking.entity.Payment;
 import com.wheelshare.cabbooking.entity.Ride;
 import com.wheelshare.cabbooking.entity.User;
+import com.wheelshare.cabbooking.enums.RideStatus;
 import com.wheelshare.cabbooking.helper.DistanceHelper;
 import com.wheelshare.cabbooking.helper.FareHelper;
+import com.wheelshare.cabbooking.helper.HistoryCursor;
+import com.wheelshare.cabbooking.helper.TransactionHelper;
 import com.wheelshare.cabbooking.repository.DriverRepository;
 import com.wheelshare.cabbooking.repository.PaymentRepository;
 import com.wheelshare.cabbooking.repository.RideRepository;
 import com.wheelshare.cabbooking.repository.UserRepository;
 import lombok.RequiredArgsConstructor;
+import org.springframework.data.domain.Limit;
+import org.springframework.security.access.AccessDeniedException;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.math.BigDecimal;
+import java.time.Duration;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.UUID;
-import java.util.stream.Collectors;
 
 @Service
 @RequiredArgsConstructor
@@ -34,9 +42,19 @@ public class RideService {
     private final UserRepository userRepository;
     private final DriverRepository driverRepository;
     private final PaymentRepository paymentRepository;
+    private final RideGeoIndex rideGeoIndex;
+    private final DriverLocationBuffer driverLocationBuffer;
+    private final RideEventStream rideEventStream;
+    private final StatsService statsService;
+    private final DriverEarningsService driverEarningsService;
+    private final RevenueAnalytics revenueAnalytics;
+    private final RideEventJournal rideEventJournal;
+    private final ActiveRideStore activeRideStore;
+    private final MarketplaceMetrics marketplaceMetrics;
+    private final DispatchService dispatchService;
 
     @Transactional
-    public Map<String, Object> requestRide(RideRequestDto dto, Integer customerId) {
+    public Map<String, Object> requestRide(RideRequestDto dto, Integer customerId, String idempotencyKey) {
         User customer = userRepository.findById(customerId)
                 .orElseThrow(() -> new RuntimeException("Customer not found"));
 
@@ -63,11 +81,38 @@ public class RideService {
             ride.setFare(Math.round(estimatedFare.doubleValue() * 100.0) / 100.0);
         }
 
-        ride.setRideStatus("REQUESTED");
+        ride.setRideStatus(RideStatus.REQUESTED);
         ride.setRequestedAt(LocalDateTime.now());
+        ride.setIdempotencyKey(idempotencyKey);
         
         ride = rideRepository.save(ride);
 
+        Ride requested = ride;
+        TransactionHelper.afterCommit(() -> {
+            activeRideStore.put(requested);
+            rideGeoIndex.add(requested);
+            // An accept or cancel whose hook ran first has already removed it; checked after the add,
+            // so a hook running alongside either sees the add or is seen here
+            if (activeRideStore.isTaken(requested.getRideId())) {
+                rideGeoIndex.remove(requested.getRideId());
+            }
+            statsService.rideRequested();
+            marketplaceMetrics.rideRequested(requested.getSourceLat(), requested.getSourceLng());
+            rideEventJournal.append(RideEventJournal.EventType.REQUESTED, requested.getRideId(), customerId,
+                    Math.round(requested.getFare() * 100.0), null);
+        });
+
+        return toRequestResponse(ride);
+    }
+
+    // Response of the request that created the ride with this key, or null when there is none
+    public Map<String, Object> findRequestedRide(Integer customerId, String idempotencyKey) {
+        return rideRepository.findByCustomer_UserIdAndIdempotencyKey(customerId, idempotencyKey)
+                .map(this::toRequestResponse)
+                .orElse(null);
+    }
+
+    private Map<String, Object> toRequestResponse(Ride ride) {
         Map<String, Object> response = new HashMap<>();
         response.put("message", "Ride requested successfully");
         response.put("rideId", ride.getRideId());
@@ -77,84 +122,149 @@ public class RideService {
         return response;
     }
 
+    @Transactional(readOnly = true)
     public List<Ride> getPendingRides() {
-        return rideRepository.findByRideStatusAndDriverIsNull("REQUESTED");
+        return rideRepository.findByRideStatusAndDriverIsNull(RideStatus.REQUESTED);
     }
 
     @Transactional
     public String acceptRide(Integer rideId, Integer driverUserId) {
-        // Driver ID in Ride table refers to Driver entity primary key, which is Shared PK with User table usually
-        // But let's check: Driver entity has @Id private Integer driverId.
-        // And DriverController uses int.Parse(User.FindFirst(ClaimTypes.NameIdentifier).Value) which is UserID.
-        // Since Driver table usually has PK same as UserID (OneToOne), we can use userId directly if mapped that way.
-        // Let's assume DriverId = UserId for now based on .NET logic `ride.DriverId = driverId`.
-
-        // Finding Driver entity just to be sure
-        Driver driver = driverRepository.findById(driverUserId)
-                .orElseThrow(() -> new RuntimeException("Driver not found"));
-
-        Ride ride = rideRepository.findById(rideId)
-                .orElseThrow(() -> new RuntimeException("Ride not found"));
+        // DriverId is the driver's UserId (shared primary key), as in the .NET backend.
+        // The claim is a single conditional UPDATE, so racing drivers can't both pass a
+        // status check; the losers fail here without reading anything.
+        // Rides the store already knows are gone don't even get that far.
+        if (activeRideStore.isTaken(rideId)) {
+            throw new RuntimeException("Ride already taken or cancelled");
+        }
+        // In batch mode a driver may only take the ride dispatch offered them, while the offer lasts
+        DispatchService.Offer offer = null;
+        if (dispatchService.isBatchMode()) {
+            offer = dispatchService.getOffer(driverUserId);
+            if (offer == null || !offer.rideId().equals(rideId)) {
+                throw new RuntimeException("Ride was not offered to this driver");
+            }
+        }
+        LocalDateTime acceptedAt = LocalDateTime.now();
+        int claimed = rideRepository.claimRequestedRide(
+                rideId, driverRepository.getReferenceById(driverUserId), acceptedAt);
 
-        if (!"REQUESTED".equals(ride.getRideStatus())) {
+        if (claimed == 0) {
             throw new RuntimeException("Ride already taken or cancelled");
         }
 
-        ride.setDriver(driver);
-        ride.setRideStatus("ACCEPTED");
-        ride.setAcceptedAt(LocalDateTime.now());
-        
+        Ride ride = rideRepository.findWithDriverByRideId(rideId)
+                .orElseThrow(() -> new RuntimeException("Ride not found"));
+
+        Driver driver = ride.getDriver();
         driver.setIsAvailable(false);
         driverRepository.save(driver);
 
-        rideRepository.save(ride);
+        // Dispatch quality: how long the customer waited and how far the driver has to come
+        long waitMs = ride.getRequestedAt() != null ? Duration.between(ride.getRequestedAt(), acceptedAt).toMillis() : 0;
+        double pickupKm = pickupDistanceKm(ride, driverUserId, driver);
+
+        Map<String, Object> status = toStatusResponse(ride);
+        DispatchService.Offer accepted = offer;
+        TransactionHelper.afterCommit(() -> {
+            activeRideStore.put(ride);
+            rideGeoIndex.remove(rideId);
+            if (accepted != null) {
+                dispatchService.clearOffer(accepted);
+            }
+            marketplaceMetrics.rideAccepted(ride.getSourceLat(), ride.getSourceLng(), waitMs, pickupKm);
+            driverLocationBuffer.setAvailable(driverUserId, false);
+            rideEventStream.trackDriver(driverUserId, rideId);
+            rideEventStream.publishStatus(rideId, status);
+            statsService.rideStatusChanged(RideStatus.REQUESTED, RideStatus.ACCEPTED);
+            rideEventJournal.append(RideEventJournal.EventType.ACCEPTED, rideId, driverUserId, 0, null);
+        });
 
         return "Ride accepted successfully";
     }
 
+    // From the buffered position when there is one, it may be newer than the row
+    private double pickupDistanceKm(Ride ride, Integer driverUserId, Driver driver) {
+        if (ride.getSourceLat() == null || ride.getSourceLng() == null) {
+            return 0;
+        }
+        DriverLocationBuffer.Position position = driverLocationBuffer.getPosition(driverUserId);
+        if (position != null) {
+            return DistanceHelper.calculateDistanceKm(position.latitude(), position.longitude(),
+                    ride.getSourceLat(), ride.getSourceLng());
+        }
+        if (driver.getCurrentLatitude() != null && driver.getCurrentLongitude() != null) {
+            return DistanceHelper.calculateDistanceKm(driver.getCurrentLatitude(), driver.getCurrentLongitude(),
+                    ride.getSourceLat(), ride.getSourceLng());
+        }
+        return 0;
+    }
+
     @Transactional
     public String startRide(Integer rideId, Integer driverId) {
-        Ride ride = rideRepository.findById(rideId)
+        Ride ride = rideRepository.findWithDriverByRideId(rideId)
                 .orElseThrow(() -> new RuntimeException("Ride not found"));
         
         if (ride.getDriver() == null || !ride.getDriver().getDriverId().equals(driverId)) {
              throw new RuntimeException("Ride not assigned to this driver");
         }
 
-        if (!"ACCEPTED".equals(ride.getRideStatus())) {
+        if (!ride.getRideStatus().canMoveTo(RideStatus.STARTED)) {
             throw new RuntimeException("Ride cannot be started");
         }
 
-        ride.setRideStatus("STARTED");
+        ride.setRideStatus(RideStatus.STARTED);
         rideRepository.save(ride);
 
+        Map<String, Object> status = toStatusResponse(ride);
+        TransactionHelper.afterCommit(() -> {
+            activeRideStore.put(ride);
+            rideEventStream.publishStatus(rideId, status);
+            statsService.rideStatusChanged(RideStatus.ACCEPTED, RideStatus.STARTED);
+            rideEventJournal.append(RideEventJournal.EventType.STARTED, rideId, driverId, 0, null);
+        });
+
         return "Ride started successfully";
     }
 
     @Transactional
     public String completeRide(Integer rideId, Integer driverId) {
-        Ride ride = rideRepository.findById(rideId)
+        Ride ride = rideRepository.findWithDriverByRideId(rideId)
                 .orElseThrow(() -> new RuntimeException("Ride not found"));
                 
         if (ride.getDriver() == null || !ride.getDriver().getDriverId().equals(driverId)) {
              throw new RuntimeException("Ride not assigned to this driver");
         }
 
-        if (!"STARTED".equals(ride.getRideStatus())) {
+        if (!ride.getRideStatus().canMoveTo(RideStatus.COMPLETED)) {
             throw new RuntimeException("Ride cannot be completed");
         }
 
-        ride.setRideStatus("COMPLETED");
+        ride.setRideStatus(RideStatus.COMPLETED);
         ride.setCompletedAt(LocalDateTime.now());
         ride.setFinalFare(ride.getFare()); // Set final fare same as estimated
 
         rideRepository.save(ride);
+        driverEarningsService.recordRideEarning(driverId, rideId, ride.getFinalFare(), ride.getCompletedAt());
         
         // Make driver available again
         Driver driver = ride.getDriver();
         driver.setIsAvailable(true);
         driverRepository.save(driver);
 
+        Map<String, Object> status = toStatusResponse(ride);
+        Double finalFare = ride.getFinalFare();
+        LocalDateTime completedAt = ride.getCompletedAt();
+        TransactionHelper.afterCommit(() -> {
+            activeRideStore.put(ride);
+            driverLocationBuffer.setAvailable(driverId, true);
+            rideEventStream.untrackDriver(driverId);
+            rideEventStream.publishStatus(rideId, status);
+            statsService.rideCompleted(finalFare);
+            revenueAnalytics.recordRide(completedAt, finalFare);
+            rideEventJournal.append(RideEventJournal.EventType.COMPLETED, rideId, driverId,
+                    Math.round(finalFare * 100.0), null);
+        });
+
         return "Ride completed successfully";
     }
 
@@ -162,7 +272,7 @@ public class RideService {
         Ride ride = rideRepository.findById(rideId)
                 .orElseThrow(() -> new RuntimeException("Ride not found"));
 
-        if (!"REQUESTED".equals(ride.getRideStatus())) {
+        if (ride.getRideStatus() != RideStatus.REQUESTED) {
             throw new RuntimeException("Ride cannot be rejected");
         }
         
@@ -186,47 +296,136 @@ public class RideService {
 
     @Transactional
     public String cancelRide(Integer rideId, Integer customerId) {
-        Ride ride = rideRepository.findByRideIdAndCustomer_UserId(rideId, customerId)
+        // Same conditional update as acceptRide, so a cancel can't overwrite a driver's accept
+        int cancelled = rideRepository.cancelRequestedRide(rideId, customerId);
+
+        if (cancelled == 0) {
+            // Only the losing path pays for telling the two apart
+            throw new RuntimeException(rideRepository.findByRideIdAndCustomer_UserId(rideId, customerId).isPresent()
+                    ? "Ride cannot be cancelled"
+                    : "Ride not found");
+        }
+
+        Ride ride = rideRepository.findWithDriverByRideId(rideId)
                 .orElseThrow(() -> new RuntimeException("Ride not found"));
 
-        if (!"REQUESTED".equals(ride.getRideStatus())) {
-            throw new RuntimeException("Ride cannot be cancelled");
+        Map<String, Object> status = toStatusResponse(ride);
+        TransactionHelper.afterCommit(() -> {
+            activeRideStore.put(ride);
+            rideGeoIndex.remove(rideId);
+            rideEventStream.publishStatus(rideId, status);
+            statsService.rideStatusChanged(RideStatus.REQUESTED, RideStatus.CANCELLED);
+            marketplaceMetrics.rideCancelledWhileWaiting(ride.getSourceLat(), ride.getSourceLng());
+            rideEventJournal.append(RideEventJournal.EventType.CANCELLED, rideId, customerId, 0, null);
+        });
+
+        return "Ride cancelled successfully";
+    }
+
+    // Active rides come from memory; finished ones and anything the store doesn't hold from the database
+    @Transactional(readOnly = true)
+    public Map<String, Object> getRideStatus(Integer rideId) {
+        Ride ride = findForStatus(rideId);
+        return ride != null ? toStatusResponse(ride) : null;
+    }
+
+    // Same, for the ride's customer or its assigned driver only (a driver's id is their user id)
+    @Transactional(readOnly = true)
+    public Map<String, Object> getRideStatus(Integer rideId, Integer userId) {
+        Ride ride = findForStatus(rideId);
+        if (ride == null) {
+            return null;
         }
+        boolean isCustomer = ride.getCustomer().getUserId().equals(userId);
+        boolean isDriver = ride.getDriver() != null && ride.getDriver().getDriverId().equals(userId);
+        if (!isCustomer && !isDriver) {
+            throw new AccessDeniedException("Ride " + rideId + " belongs to another user");
+        }
+        return toStatusResponse(ride);
+    }
 
-        ride.setRideStatus("CANCELLED");
-        rideRepository.save(ride);
+    private Ride findForStatus(Integer rideId) {
+        Ride active = activeRideStore.get(rideId);
+        if (active != null) {
+            return active;
+        }
+        return rideRepository.findWithDriverByRideId(rideId).orElse(null);
+    }
 
-        return "Ride cancelled successfully";
+    // Shape shared by GET /api/rides/{rideId} and the status event stream
+    public Map<String, Object> toStatusResponse(Ride ride) {
+        Map<String, Object> response = new HashMap<>();
+        response.put("rideId", ride.getRideId());
+        response.put("rideStatus", ride.getRideStatus());
+        response.put("status", ride.getRideStatus()); // Duplicate for frontend compat
+        response.put("sourceLat", ride.getSourceLat());
+        response.put("sourceLng", ride.getSourceLng());
+        response.put("destinationLat", ride.getDestinationLat());
+        response.put("destinationLng", ride.getDestinationLng());
+        response.put("fare", ride.getFare());
+        response.put("distanceKm", ride.getDistanceKm());
+        response.put("requestedAt", ride.getRequestedAt());
+        response.put("completedAt", ride.getCompletedAt());
+
+        if (ride.getDriver() != null && ride.getDriver().getUser() != null) {
+            Map<String, Object> driverInfo = new HashMap<>();
+            driverInfo.put("name", ride.getDriver().getUser().getName());
+            driverInfo.put("phone", ride.getDriver().getUser().getPhone());
+            driverInfo.put("licenseNumber", ride.getDriver().getLicenseNumber());
+            response.put("driver", driverInfo);
+        } else {
+            response.put("driver", null);
+        }
+
+        return response;
     }
 
-    public List<Map<String, Object>> getRideHistory(Integer customerId) {
-        List<Ride> rides = rideRepository.findByCustomer_UserIdOrderByRequestedAtDesc(customerId);
+    // One keyset page of the customer's rides, newest first; cursor is null for the first page.
+    // With neither cursor nor limit the whole history comes back in one list, as before paging.
+    @Transactional(readOnly = true)
+    public CursorPage<Map<String, Object>> getRideHistory(Integer customerId, String cursor, Integer limit) {
+        HistoryCursor after = HistoryCursor.decode(cursor);
+        boolean paged = HistoryCursor.isPaged(cursor, limit);
+        int pageSize = HistoryCursor.clampLimit(limit);
+
+        // One extra row tells whether there is a next page
+        List<CustomerRideHistoryRow> rows = rideRepository.findCustomerHistoryPage(
+                customerId, after.at(), after.rideId(), paged ? Limit.of(pageSize + 1) : Limit.unlimited());
+
+        String nextCursor = null;
+        if (paged && rows.size() > pageSize) {
+            rows = rows.subList(0, pageSize);
+            CustomerRideHistoryRow last = rows.get(pageSize - 1);
+            nextCursor = new HistoryCursor(last.requestedAt(), last.rideId()).encode();
+        }
 
-        return rides.stream().map(r -> {
+        List<Map<String, Object>> items = new ArrayList<>(rows.size());
+        for (CustomerRideHistoryRow r : rows) {
             Map<String, Object> map = new HashMap<>();
-            map.put("rideId", r.getRideId());
-            map.put("sourceLat", r.getSourceLat());
-            map.put("sourceLng", r.getSourceLng());
-            map.put("destinationLat", r.getDestinationLat());
-            map.put("destinationLng", r.getDestinationLng());
-            map.put("distanceKm", r.getDistanceKm());
-            map.put("fare", r.getFare());
-            map.put("finalFare", r.getFinalFare());
-            map.put("rideStatus", r.getRideStatus());
-            map.put("requestedAt", r.getRequestedAt());
-            map.put("completedAt", r.getCompletedAt());
-            
-            if (r.getDriver() != null && r.getDriver().getUser() != null) {
+            map.put("rideId", r.rideId());
+            map.put("sourceLat", r.sourceLat());
+            map.put("sourceLng", r.sourceLng());
+            map.put("destinationLat", r.destinationLat());
+            map.put("destinationLng", r.destinationLng());
+            map.put("distanceKm", r.distanceKm());
+            map.put("fare", r.fare());
+            map.put("finalFare", r.finalFare());
+            map.put("rideStatus", r.rideStatus());
+            map.put("requestedAt", r.requestedAt());
+            map.put("completedAt", r.completedAt());
+
+            if (r.driverName() != null) {
                 Map<String, Object> driverInfo = new HashMap<>();
-                driverInfo.put("name", r.getDriver().getUser().getName());
-                driverInfo.put("phone", r.getDriver().getUser().getPhone());
-                driverInfo.put("licenseNumber", r.getDriver().getLicenseNumber());
+                driverInfo.put("name", r.driverName());
+                driverInfo.put("phone", r.driverPhone());
+                driverInfo.put("licenseNumber", r.licenseNumber());
                 map.put("driver", driverInfo);
             } else {
                 map.put("driver", null);
             }
-            return map;
-        }).collect(Collectors.toList());
+            items.add(map);
+        }
+        return new CursorPage<>(items, nextCursor);
     }
 
     @Transactional
@@ -234,7 +433,7 @@ public class RideService {
         Ride ride = rideRepository.findByRideIdAndCustomer_UserId(rideId, customerId)
                 .orElseThrow(() -> new RuntimeException("Ride not found"));
         
-        if (!"COMPLETED".equals(ride.getRideStatus())) {
+        if (ride.getRideStatus() != RideStatus.COMPLETED) {
             throw new RuntimeException("Ride not completed");
         }
 
@@ -255,6 +454,13 @@ public class RideService {
         }
 
         paymentRepository.save(payment);
+
+        TransactionHelper.afterCommit(() -> {
+            revenueAnalytics.recordPayment(
+                    payment.getCreatedAt(), payment.getPaymentMethod(), payment.getAmount().doubleValue());
+            rideEventJournal.append(RideEventJournal.EventType.PAID, rideId, customerId,
+                    payment.getAmount().movePointRight(2).longValue(), payment.getPaymentMethod());
+        });
         
         Map<String, Object> response = new HashMap<>();
         response.put("message", "Payment processed successfully");
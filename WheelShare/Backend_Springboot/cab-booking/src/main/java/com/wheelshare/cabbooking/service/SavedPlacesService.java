@@ -5,6 +5,7 @@ import com.wheelshare.cabbooking.entity.SavedPlace;
 import com.wheelshare.cabbooking.repository.SavedPlaceRepository;
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDateTime;
 import java.util.List;
@@ -15,6 +16,7 @@ public class SavedPlacesService {
 
     private final SavedPlaceRepository savedPlaceRepository;
 
+    @Transactional(readOnly = true)
     public List<SavedPlace> getSavedPlaces(Integer userId) {
         // Assuming findByUserId exists, relying on JpaRepository default or defined
         return savedPlaceRepository.findByUserId(userId);
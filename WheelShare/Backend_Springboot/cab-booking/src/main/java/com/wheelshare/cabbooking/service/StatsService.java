@@ -1,14 +1,27 @@
 package com.wheelshare.cabbooking.service;
 
+import com.wheelshare.cabbooking.dto.RideStatusTotal;
+import com.wheelshare.cabbooking.enums.RideStatus;
 import com.wheelshare.cabbooking.repository.DriverRepository;
 import com.wheelshare.cabbooking.repository.RideRepository;
 import com.wheelshare.cabbooking.repository.UserRepository;
 import lombok.RequiredArgsConstructor;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
 
+/**
+ * Platform counters kept in memory. AuthService and RideService bump them after each commit,
+ * and reconcile() resets them from the database on a schedule, so the public stats endpoint
+ * never queries. A write racing a reconcile can be off by one until the next run.
+ */
 @Service
 @RequiredArgsConstructor
 public class StatsService {
@@ -17,33 +30,80 @@ public class StatsService {
     private final DriverRepository driverRepository;
     private final RideRepository rideRepository;
 
-    public Map<String, Object> getPublicStats() {
-        // Implement count methods. JpaRepository has count().
-        // For filtering we utilize count() with example or custom query is needed?
-        // count(Example) or findAll().size(). findAll is expensive.
-        
-        // Efficient way: create repository methods `countByIsEmailVerifiedTrue`?
-        // Or just map it for now.
-        
-        long totalUsers = userRepository.count(); // Approximate
-        long totalDrivers = driverRepository.count();
-        long totalRides = rideRepository.count(); // Approximate
-        
-        // To match .NET: count(u => u.IsEmailVerified)
-        // I should add countByIsEmailVerifiedTrue to UserRepository
-        
-        // I will return approximate or implement precise later.
-        // Let's assume precise is desired. 
-        // But for now I'll use repository.count() generic.
-        
-        double avgRating = 4.8;
+    private final AtomicLong verifiedUsers = new AtomicLong();
+    private final AtomicLong drivers = new AtomicLong();
+    // Indexed by RideStatus ordinal
+    private final AtomicLongArray ridesByStatus = new AtomicLongArray(RideStatus.values().length);
+
+    // Final fares of completed rides, in paise so it adds up exactly
+    private final AtomicLong completedRevenuePaise = new AtomicLong();
 
+    public Map<String, Object> getPublicStats() {
         Map<String, Object> stats = new HashMap<>();
-        stats.put("totalUsers", totalUsers);
-        stats.put("totalDrivers", totalDrivers);
-        stats.put("totalRides", totalRides);
-        stats.put("avgRating", avgRating);
-        
+        stats.put("totalUsers", verifiedUsers.get());
+        stats.put("totalDrivers", drivers.get());
+        // Shown as "Rides Completed", same as the .NET backend
+        stats.put("totalRides", getRideCount(RideStatus.COMPLETED));
+        // No rating data exists yet
+        stats.put("avgRating", 4.8);
+
         return stats;
     }
+
+    public long getRideCount(RideStatus rideStatus) {
+        return ridesByStatus.get(rideStatus.ordinal());
+    }
+
+    public double getCompletedRevenue() {
+        return completedRevenuePaise.get() / 100.0;
+    }
+
+    public void userVerified() {
+        verifiedUsers.incrementAndGet();
+    }
+
+    public void driverRegistered() {
+        drivers.incrementAndGet();
+    }
+
+    public void rideRequested() {
+        ridesByStatus.incrementAndGet(RideStatus.REQUESTED.ordinal());
+    }
+
+    public void rideStatusChanged(RideStatus from, RideStatus to) {
+        ridesByStatus.decrementAndGet(from.ordinal());
+        ridesByStatus.incrementAndGet(to.ordinal());
+    }
+
+    public void rideCompleted(Double finalFare) {
+        rideStatusChanged(RideStatus.STARTED, RideStatus.COMPLETED);
+        if (finalFare != null) {
+            completedRevenuePaise.addAndGet(Math.round(finalFare * 100.0));
+        }
+    }
+
+    // Read-only, so with a replica configured it counts there; replica lag is another
+    // off-by-a-few until the next run
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(initialDelayString = "${stats.reconcile-ms:300000}", fixedDelayString = "${stats.reconcile-ms:300000}")
+    @Transactional(readOnly = true)
+    public void reconcile() {
+        verifiedUsers.set(userRepository.countByIsEmailVerifiedTrue());
+        drivers.set(driverRepository.count());
+
+        // Statuses with no rows left go back to zero
+        long[] counted = new long[RideStatus.values().length];
+        long revenuePaise = 0;
+        for (RideStatusTotal total : rideRepository.totalsByStatus()) {
+            counted[total.rideStatus().ordinal()] = total.rides();
+            if (total.rideStatus() == RideStatus.COMPLETED && total.fares() != null) {
+                revenuePaise = Math.round(total.fares() * 100.0);
+            }
+        }
+
+        for (int i = 0; i < counted.length; i++) {
+            ridesByStatus.set(i, counted[i]);
+        }
+        completedRevenuePaise.set(revenuePaise);
+    }
 }
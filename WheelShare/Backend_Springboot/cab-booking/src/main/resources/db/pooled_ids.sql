@@ -0,0 +1,21 @@
+-- One-off MySQL migration: AUTO_INCREMENT ids -> pooled ids from id_sequences (see @PooledId
+-- on each entity). Run once before deploying; without it every table starts again at id 1.
+-- Each row is set a couple of allocation blocks past the table's current max id, so no block can
+-- hand out an id already in use. The AUTO_INCREMENT attribute can stay, Hibernate always sends the id.
+
+CREATE TABLE IF NOT EXISTS id_sequences (
+    sequence_name VARCHAR(255) NOT NULL PRIMARY KEY,
+    next_val BIGINT
+);
+
+INSERT INTO id_sequences (sequence_name, next_val)
+          SELECT 'Users',         COALESCE(MAX(user_id), 0) + 100         FROM users
+UNION ALL SELECT 'rides',         COALESCE(MAX(ride_id), 0) + 100         FROM rides
+UNION ALL SELECT 'Payments',      COALESCE(MAX(payment_id), 0) + 100      FROM payments
+UNION ALL SELECT 'Vehicles',      COALESCE(MAX(vehicle_id), 0) + 100      FROM vehicles
+UNION ALL SELECT 'Notifications', COALESCE(MAX(notification_id), 0) + 100 FROM notifications
+UNION ALL SELECT 'EmailOtps',     COALESCE(MAX(otp_id), 0) + 100          FROM email_otps
+UNION ALL SELECT 'EmailOutbox',   COALESCE(MAX(outbox_id), 0) + 100       FROM email_outbox
+UNION ALL SELECT 'DriverWallets', COALESCE(MAX(wallet_id), 0) + 100       FROM driver_wallets
+UNION ALL SELECT 'saved_places',  COALESCE(MAX(saved_place_id), 0) + 100  FROM saved_places
+ON DUPLICATE KEY UPDATE next_val = GREATEST(id_sequences.next_val, VALUES(next_val));
@@ -0,0 +1,23 @@
+-- One-off MySQL migration: rides.ride_status VARCHAR(20) -> TINYINT (RideStatus ordinal).
+-- ddl-auto=update doesn't change existing column types, run this once before deploying.
+
+ALTER TABLE rides ADD COLUMN ride_status_code TINYINT NULL;
+
+UPDATE rides SET ride_status_code = CASE ride_status
+    WHEN 'REQUESTED' THEN 0
+    WHEN 'ACCEPTED'  THEN 1
+    WHEN 'STARTED'   THEN 2
+    WHEN 'COMPLETED' THEN 3
+    WHEN 'CANCELLED' THEN 4
+END;
+
+-- Must be 0 before going on; anything else is a status this script does not know
+SELECT COUNT(*) AS unmapped_rows FROM rides WHERE ride_status_code IS NULL;
+
+ALTER TABLE rides DROP INDEX idx_rides_driver_history;
+ALTER TABLE rides DROP COLUMN ride_status;
+ALTER TABLE rides RENAME COLUMN ride_status_code TO ride_status;
+ALTER TABLE rides MODIFY ride_status TINYINT NOT NULL;
+
+CREATE INDEX idx_rides_driver_history ON rides (driver_id, ride_status, completed_at, ride_id);
+CREATE INDEX idx_rides_status ON rides (ride_status, driver_id);
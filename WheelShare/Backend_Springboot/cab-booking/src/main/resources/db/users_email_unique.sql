@@ -0,0 +1,7 @@
+-- One-off MySQL migration: User.email is now a natural id (login looks users up by it through the
+-- second-level cache) and must be unique. register() already refused duplicates; check anyway.
+
+-- Must return no rows before going on
+SELECT email, COUNT(*) FROM users GROUP BY email HAVING COUNT(*) > 1;
+
+ALTER TABLE users ADD CONSTRAINT uk_users_email UNIQUE (email);
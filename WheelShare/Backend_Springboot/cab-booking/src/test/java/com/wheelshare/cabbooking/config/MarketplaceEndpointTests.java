@@ -0,0 +1,104 @@
+package com.wheelshare.cabbooking.config;
+
+import com.wheelshare.cabbooking.dto.RideRequestDto;
+import com.wheelshare.cabbooking.entity.Driver;
+import com.wheelshare.cabbooking.entity.User;
+import com.wheelshare.cabbooking.repository.DriverRepository;
+import com.wheelshare.cabbooking.repository.UserRepository;
+import com.wheelshare.cabbooking.service.DriverLocationBuffer;
+import com.wheelshare.cabbooking.service.RideService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Ride transitions through RideService show up in /actuator/marketplace for their area.
+ * The rides are placed where no other test puts any, the context is shared.
+ */
+@SpringBootTest
+@ActiveProfiles("test")
+class MarketplaceEndpointTests {
+
+    private static final double LAT = 10.02;
+    private static final double LNG = 10.03;
+
+    @Autowired
+    private MarketplaceEndpoint marketplaceEndpoint;
+
+    @Autowired
+    private RideService rideService;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private DriverRepository driverRepository;
+
+    @Autowired
+    private DriverLocationBuffer driverLocationBuffer;
+
+    private User user(String email, String role) {
+        User user = new User();
+        user.setName(email);
+        user.setEmail(email);
+        user.setPhone("9999999999");
+        user.setPasswordHash("x");
+        user.setRole(role);
+        user.setIsEmailVerified(true);
+        return userRepository.save(user);
+    }
+
+    private Integer request(Integer customerId) {
+        RideRequestDto dto = new RideRequestDto();
+        dto.setSourceLat(LAT);
+        dto.setSourceLng(LNG);
+        dto.setDestinationLat(LAT + 0.05);
+        dto.setDestinationLng(LNG + 0.05);
+        return (Integer) rideService.requestRide(dto, customerId, null).get("rideId");
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void transitionsAreRecordedPerArea() {
+        Integer customerId = user("marketplace-customer@test", "CUSTOMER").getUserId();
+        Driver driver = new Driver();
+        driver.setUser(user("marketplace-driver@test", "DRIVER"));
+        driver.setLicenseNumber("M1");
+        driver.setIsAvailable(true);
+        Integer driverId = driverRepository.save(driver).getDriverId();
+        // About 1.1 km north of the pickup
+        driverLocationBuffer.ingest(driverId, LAT + 0.01, LNG);
+
+        Integer accepted = request(customerId);
+        Integer cancelled = request(customerId);
+        request(customerId);
+        rideService.acceptRide(accepted, driverId);
+        rideService.cancelRide(cancelled, customerId);
+
+        Map<String, Object> area = marketplaceEndpoint.area(LAT, LNG, Duration.ofMinutes(15));
+        assertEquals("10.00,10.00", area.get("area"));
+        assertEquals(3L, area.get("requested"));
+        assertEquals(1L, area.get("accepted"));
+        assertEquals(1L, area.get("cancelledWhileWaiting"));
+        assertEquals(1L, area.get("openRequests"));
+
+        Map<String, Object> pickup = (Map<String, Object>) area.get("pickupDistance");
+        double meanKm = (Double) pickup.get("meanKm");
+        assertTrue(meanKm > 1.0 && meanKm < 1.2, "pickup " + meanKm);
+        assertNotNull(((Map<String, Object>) area.get("timeToAccept")).get("p50Seconds"));
+
+        Map<String, Object> all = marketplaceEndpoint.areas(null);
+        List<Map<String, Object>> areas = (List<Map<String, Object>>) all.get("areas");
+        assertTrue(areas.stream().anyMatch(a -> "10.00,10.00".equals(a.get("area"))));
+        assertTrue((Long) ((Map<String, Object>) all.get("city")).get("requested") >= 3);
+    }
+}
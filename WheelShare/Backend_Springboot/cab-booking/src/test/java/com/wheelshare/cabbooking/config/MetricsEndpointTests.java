@@ -0,0 +1,115 @@
+package com.wheelshare.cabbooking.config;
+
+import com.wheelshare.cabbooking.repository.UserRepository;
+import com.wheelshare.cabbooking.security.JwtService;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.micrometer.metrics.test.autoconfigure.AutoConfigureMetrics;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalManagementPort;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Endpoint, repository, pool and transaction meters reach the Prometheus scrape, with histogram
+ * buckets where application.properties asks for them. Actuator answers on the management port only.
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = {
+        "management.server.port=0",
+        // Its own database, closing this context drops the schema
+        "spring.datasource.url=jdbc:h2:mem:wheelshare-metrics;MODE=MySQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1"
+})
+@AutoConfigureMetrics
+@ActiveProfiles("test")
+@DirtiesContext
+class MetricsEndpointTests {
+
+    @LocalServerPort
+    private int port;
+
+    @LocalManagementPort
+    private int managementPort;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private JwtService jwtService;
+
+    private final HttpClient client = HttpClient.newHttpClient();
+
+    private HttpResponse<String> get(int port, String path) throws Exception {
+        return client.send(HttpRequest.newBuilder(URI.create("http://localhost:" + port + path)).build(),
+                HttpResponse.BodyHandlers.ofString());
+    }
+
+    private HttpResponse<String> get(String path, String role) throws Exception {
+        String token = jwtService.generateToken("metrics-" + role.toLowerCase() + "@test", role, 1);
+        return client.send(HttpRequest.newBuilder(URI.create("http://localhost:" + managementPort + path))
+                        .header("Authorization", "Bearer " + token).build(),
+                HttpResponse.BodyHandlers.ofString());
+    }
+
+    private double active(String readOnly) {
+        return meterRegistry.get("transactions.active").tag("read_only", readOnly).gauge().value();
+    }
+
+    @Test
+    void scrapeHasLatencyHistogramsAndTransactionCounts() throws Exception {
+        assertEquals(200, get(port, "/api/stats/public").statusCode());
+        userRepository.count();
+
+        long committed = meterRegistry.get("transactions").tag("read_only", "false").tag("outcome", "commit")
+                .timer().count();
+        transactionTemplate.executeWithoutResult(status -> {
+            assertTrue(active("false") >= 1);
+            userRepository.findByEmail("nobody@test");
+        });
+        assertEquals(committed + 1, meterRegistry.get("transactions").tag("read_only", "false")
+                .tag("outcome", "commit").timer().count());
+
+        // Not on the API port
+        assertTrue(get(port, "/actuator/prometheus").statusCode() >= 400);
+        HttpResponse<String> scrape = get(managementPort, "/actuator/prometheus");
+        assertEquals(200, scrape.statusCode());
+        String body = scrape.body();
+        assertTrue(body.contains("http_server_requests_seconds_bucket{") && body.contains("uri=\"/api/stats/public\""),
+                "endpoint histogram");
+        assertTrue(body.contains("spring_data_repository_invocations_seconds_bucket{"), "repository histogram");
+        assertTrue(body.contains("method=\"count\"") && body.contains("repository=\"UserRepository\""),
+                "repository tags");
+        assertTrue(body.contains("hikaricp_connections_acquire_seconds_bucket{") && body.contains("pool=\"primary\""),
+                "pool wait histogram");
+        assertTrue(body.contains("transactions_active{read_only=\"false\"}"), "in-flight transactions");
+    }
+
+    @Test
+    void marketplaceEndpointIsForAdmins() throws Exception {
+        String path = "/actuator/marketplace/18.52/73.85?window=15m";
+        assertEquals(403, get(path, "CUSTOMER").statusCode());
+
+        HttpResponse<String> response = get(path, "ADMIN");
+        assertEquals(200, response.statusCode());
+        assertTrue(response.body().contains("\"area\":\"18.50,73.80\""), response.body());
+        assertTrue(response.body().contains("\"windowSeconds\":900"), response.body());
+
+        assertEquals(200, get("/actuator/marketplace", "ADMIN").statusCode());
+    }
+}
@@ -0,0 +1,62 @@
+package com.wheelshare.cabbooking.controller;
+
+import com.wheelshare.cabbooking.helper.LocationBatchCodec;
+import com.wheelshare.cabbooking.security.JwtService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Malformed location batches are the client's fault: 400 with the codec's message, never a 500.
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@ActiveProfiles("test")
+class DriverLocationBatchTests {
+
+    @LocalServerPort
+    private int port;
+
+    @Autowired
+    private JwtService jwtService;
+
+    private final HttpClient client = HttpClient.newHttpClient();
+
+    private HttpResponse<String> post(String contentType, HttpRequest.BodyPublisher body) throws Exception {
+        String token = jwtService.generateToken("batch-driver@test", "DRIVER", 1);
+        return client.send(HttpRequest.newBuilder(URI.create("http://localhost:" + port + "/api/driver/update-location/batch"))
+                        .header("Authorization", "Bearer " + token)
+                        .header("Content-Type", contentType)
+                        .POST(body)
+                        .build(),
+                HttpResponse.BodyHandlers.ofString());
+    }
+
+    @Test
+    void malformedBatchesAreBadRequests() throws Exception {
+        byte[] overlong = new byte[11];
+        Arrays.fill(overlong, (byte) 0xFF);
+        byte[][] bodies = {{3, (byte) 0x80}, overlong, {(byte) 0x91, 0x4E, 0, 0, 0}};
+        String[] messages = {"Truncated location batch",
+                "Malformed varint in location batch", "Invalid sample count in location batch"};
+        for (int i = 0; i < bodies.length; i++) {
+            HttpResponse<String> response = post(LocationBatchCodec.CONTENT_TYPE, HttpRequest.BodyPublishers.ofByteArray(bodies[i]));
+            assertEquals(400, response.statusCode(), messages[i]);
+            assertEquals(messages[i], response.body());
+        }
+
+        HttpResponse<String> json = post("application/json", HttpRequest.BodyPublishers.ofString(
+                "{\"timestamps\":[1760000000000],\"latitudes\":[1e10],\"longitudes\":[73.85]}"));
+        assertEquals(400, json.statusCode());
+        assertEquals("Coordinate out of range in location batch", json.body());
+    }
+}
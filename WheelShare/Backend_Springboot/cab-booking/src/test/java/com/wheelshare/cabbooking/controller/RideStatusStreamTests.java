@@ -0,0 +1,180 @@
+package com.wheelshare.cabbooking.controller;
+
+import com.wheelshare.cabbooking.dto.RideRequestDto;
+import com.wheelshare.cabbooking.entity.Driver;
+import com.wheelshare.cabbooking.entity.User;
+import com.wheelshare.cabbooking.repository.DriverRepository;
+import com.wheelshare.cabbooking.repository.UserRepository;
+import com.wheelshare.cabbooking.security.JwtService;
+import com.wheelshare.cabbooking.service.RideService;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.test.context.ActiveProfiles;
+import tools.jackson.databind.json.JsonMapper;
+
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * A ride followed over its status stream, end to end over HTTP: one event per state change, and
+ * following it runs no queries beyond the ones the state changes run themselves. The 2 s poll
+ * it replaces read the ride 30 times a minute for as long as the ride lasted.
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@ActiveProfiles("test")
+class RideStatusStreamTests {
+
+    @LocalServerPort
+    private int port;
+
+    @Autowired
+    private RideService rideService;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private DriverRepository driverRepository;
+
+    @Autowired
+    private JwtService jwtService;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private JsonMapper jsonMapper;
+
+    private final HttpClient client = HttpClient.newHttpClient();
+
+    private User user(String email, String role) {
+        User user = new User();
+        user.setName(email);
+        user.setEmail(email);
+        user.setPhone("9999999999");
+        user.setPasswordHash("x");
+        user.setRole(role);
+        user.setIsEmailVerified(true);
+        return userRepository.save(user);
+    }
+
+    private Integer driver(String email) {
+        Driver driver = new Driver();
+        driver.setUser(user(email, "DRIVER"));
+        driver.setLicenseNumber("SSE");
+        driver.setIsAvailable(true);
+        return driverRepository.save(driver).getDriverId();
+    }
+
+    private Integer requestRide(Integer customerId) {
+        RideRequestDto dto = new RideRequestDto();
+        dto.setSourceLat(18.52);
+        dto.setSourceLng(73.85);
+        dto.setDestinationLat(18.60);
+        dto.setDestinationLng(73.90);
+        return (Integer) rideService.requestRide(dto, customerId, null).get("rideId");
+    }
+
+    private HttpRequest stream(Integer rideId, User caller) {
+        String token = jwtService.generateToken(caller.getEmail(), caller.getRole(), caller.getUserId());
+        return HttpRequest.newBuilder(URI.create("http://localhost:" + port + "/api/rides/" + rideId + "/stream"))
+                .header("Authorization", "Bearer " + token)
+                .header("Accept", "text/event-stream")
+                .build();
+    }
+
+    // Ride status of every "status" event, in arrival order
+    private HttpResponse<Stream<String>> follow(Integer rideId, User caller, BlockingQueue<String> statuses) throws Exception {
+        HttpResponse<Stream<String>> response = client.send(stream(rideId, caller), HttpResponse.BodyHandlers.ofLines());
+        Thread reader = new Thread(() -> {
+            String event = null;
+            try {
+                for (String line : (Iterable<String>) response.body()::iterator) {
+                    if (line.startsWith("event:")) {
+                        event = line.substring(6).trim();
+                    } else if (line.startsWith("data:") && "status".equals(event)) {
+                        statuses.add(jsonMapper.readTree(line.substring(5)).get("rideStatus").asString());
+                    }
+                }
+            } catch (UncheckedIOException e) {
+                // Closed by the test
+            }
+        });
+        reader.setDaemon(true);
+        reader.start();
+        return response;
+    }
+
+    private long statements(Statistics statistics, Runnable action) {
+        statistics.clear();
+        action.run();
+        return statistics.getPrepareStatementCount();
+    }
+
+    @Test
+    void onlyTheRideCustomerAndDriverCanFollowIt() throws Exception {
+        User customer = user("sse-owner@test", "CUSTOMER");
+        User stranger = user("sse-stranger@test", "CUSTOMER");
+        Integer rideId = requestRide(customer.getUserId());
+
+        assertEquals(403, client.send(stream(rideId, stranger), HttpResponse.BodyHandlers.discarding()).statusCode());
+        assertEquals(404, client.send(stream(-1, customer), HttpResponse.BodyHandlers.discarding()).statusCode());
+
+        BlockingQueue<String> statuses = new LinkedBlockingQueue<>();
+        HttpResponse<Stream<String>> response = follow(rideId, customer, statuses);
+        assertEquals(200, response.statusCode());
+        assertEquals("REQUESTED", statuses.poll(10, TimeUnit.SECONDS));
+        response.body().close();
+    }
+
+    @Test
+    void followingARideCostsNoQueriesBeyondItsStateChanges() throws Exception {
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        User customer = user("sse-customer@test", "CUSTOMER");
+        Integer followedDriver = driver("sse-driver-1@test");
+        Integer otherDriver = driver("sse-driver-2@test");
+        Integer followed = requestRide(customer.getUserId());
+        Integer unfollowed = requestRide(customer.getUserId());
+
+        BlockingQueue<String> statuses = new LinkedBlockingQueue<>();
+        statistics.clear();
+        HttpResponse<Stream<String>> response = follow(followed, customer, statuses);
+        assertEquals("REQUESTED", statuses.poll(10, TimeUnit.SECONDS));
+        long subscribe = statistics.getPrepareStatementCount();
+
+        List<String> lifecycle = List.of("ACCEPTED", "STARTED", "COMPLETED");
+        List<Consumer<Integer[]>> steps = List.of(
+                r -> rideService.acceptRide(r[0], r[1]),
+                r -> rideService.startRide(r[0], r[1]),
+                r -> rideService.completeRide(r[0], r[1]));
+
+        for (int i = 0; i < steps.size(); i++) {
+            Consumer<Integer[]> step = steps.get(i);
+            long withStream = statements(statistics, () -> step.accept(new Integer[]{followed, followedDriver}));
+            assertEquals(lifecycle.get(i), statuses.poll(10, TimeUnit.SECONDS));
+            long withoutStream = statements(statistics, () -> step.accept(new Integer[]{unfollowed, otherDriver}));
+            assertEquals(withoutStream, withStream, lifecycle.get(i));
+        }
+        response.body().close();
+
+        // An active ride's snapshot comes from memory
+        assertEquals(0, subscribe);
+        assertEquals(0, statuses.size());
+    }
+}
@@ -0,0 +1,43 @@
+package com.wheelshare.cabbooking.enums;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RideStatusTests {
+
+    @Test
+    void onlyTheLifecycleMovesAreLegal() {
+        int legal = 0;
+        for (RideStatus from : RideStatus.values()) {
+            for (RideStatus to : RideStatus.values()) {
+                if (from.canMoveTo(to)) {
+                    legal++;
+                }
+            }
+        }
+        assertEquals(4, legal);
+        assertTrue(RideStatus.REQUESTED.canMoveTo(RideStatus.ACCEPTED));
+        assertTrue(RideStatus.REQUESTED.canMoveTo(RideStatus.CANCELLED));
+        assertTrue(RideStatus.ACCEPTED.canMoveTo(RideStatus.STARTED));
+        assertTrue(RideStatus.STARTED.canMoveTo(RideStatus.COMPLETED));
+
+        assertTrue(RideStatus.REQUESTED.canReach(RideStatus.COMPLETED));
+        assertFalse(RideStatus.ACCEPTED.canReach(RideStatus.CANCELLED));
+        assertFalse(RideStatus.STARTED.canReach(RideStatus.ACCEPTED));
+        assertFalse(RideStatus.COMPLETED.isActive());
+        assertFalse(RideStatus.CANCELLED.isActive());
+    }
+
+    @Test
+    void persistedCodesNeverMove() {
+        // Stored in rides.ride_status; db/ride_status_tinyint.sql maps the old strings to these
+        assertEquals(0, RideStatus.REQUESTED.code());
+        assertEquals(1, RideStatus.ACCEPTED.code());
+        assertEquals(2, RideStatus.STARTED.code());
+        assertEquals(3, RideStatus.COMPLETED.code());
+        assertEquals(4, RideStatus.CANCELLED.code());
+    }
+}
@@ -0,0 +1,64 @@
+package com.wheelshare.cabbooking.helper;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class DistanceHelperTests {
+
+    @Test
+    void haversineMatchesKnownDistance() {
+        // Pune station to Mumbai CSMT, ~118.6 km great-circle
+        double km = DistanceHelper.haversineKm(18.5286, 73.8743, 18.9398, 72.8355);
+        assertEquals(118.6, km, 0.5);
+        assertEquals(0.0, DistanceHelper.haversineKm(18.52, 73.85, 18.52, 73.85));
+    }
+
+    @Test
+    void fastKernelsAgreeWithHaversineUnderFiftyKm() {
+        Random random = new Random(11);
+        double[] lats = new double[10_000];
+        double[] lngs = new double[10_000];
+        double originLat = 18.52;
+        double originLng = 73.85;
+        for (int i = 0; i < lats.length; i++) {
+            lats[i] = originLat + (random.nextDouble() - 0.5) * 0.8;
+            lngs[i] = originLng + (random.nextDouble() - 0.5) * 0.8;
+        }
+
+        double[] batch = new double[lats.length];
+        DistanceHelper.equirectangularKm(originLat, originLng, lats, lngs, lats.length, batch);
+
+        int[] index = new int[lats.length];
+        double[] within = new double[lats.length];
+        int found = DistanceHelper.withinRadius(originLat, originLng, 20.0, lats, lngs, lats.length, index, within);
+
+        double latDelta = DistanceHelper.latitudeDelta(20.0);
+        double lngDelta = DistanceHelper.longitudeDelta(originLat, 20.0);
+        int expected = 0;
+        for (int i = 0; i < lats.length; i++) {
+            double exact = DistanceHelper.haversineKm(originLat, originLng, lats[i], lngs[i]);
+            // A few metres at most
+            assertEquals(exact, DistanceHelper.equirectangularKm(originLat, originLng, lats[i], lngs[i]), 0.005);
+            assertEquals(exact, batch[i], 0.005);
+            if (exact <= 20.0 - 0.005) {
+                assertTrue(DistanceHelper.withinBoundingBox(originLat, originLng, latDelta, lngDelta, lats[i], lngs[i]));
+            }
+            if (batch[i] <= 20.0) {
+                assertEquals(i, index[expected]);
+                assertEquals(batch[i], within[expected], 1e-9);
+                expected++;
+            }
+        }
+        assertEquals(expected, found);
+    }
+
+    @Test
+    void longitudeWrapsAtTheAntimeridian() {
+        assertEquals(DistanceHelper.haversineKm(0.0, 179.99, 0.0, -179.99),
+                DistanceHelper.equirectangularKm(0.0, 179.99, 0.0, -179.99), 0.001);
+    }
+}
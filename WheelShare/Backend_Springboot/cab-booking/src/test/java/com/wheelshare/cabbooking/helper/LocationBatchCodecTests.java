@@ -0,0 +1,134 @@
+package com.wheelshare.cabbooking.helper;
+
+import com.wheelshare.cabbooking.dto.DriverLocationBatchDto;
+import com.wheelshare.cabbooking.dto.LocationBatch;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrowsExactly;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LocationBatchCodecTests {
+
+    // A driver crawling through Pune, one sample every 3-5 s
+    private static LocationBatch drive(int size) {
+        Random random = new Random(3);
+        long[] timestamps = new long[size];
+        int[] latitudes = new int[size];
+        int[] longitudes = new int[size];
+        timestamps[0] = 1_760_000_000_000L;
+        latitudes[0] = LocationBatchCodec.toE7(18.5204);
+        longitudes[0] = LocationBatchCodec.toE7(73.8567);
+        for (int i = 1; i < size; i++) {
+            timestamps[i] = timestamps[i - 1] + 3000 + random.nextInt(2000);
+            latitudes[i] = latitudes[i - 1] + random.nextInt(801) - 400;
+            longitudes[i] = longitudes[i - 1] + random.nextInt(801) - 400;
+        }
+        return new LocationBatch(size, timestamps, latitudes, longitudes);
+    }
+
+    private static void writeVarLong(ByteArrayOutputStream out, long value) {
+        while ((value & ~0x7FL) != 0) {
+            out.write((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.write((int) value);
+    }
+
+    private static long zigzag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    // count, then (t, lat, lng) as the codec lays them out, without the encoder's checks
+    private static byte[] raw(long count, long... fields) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        writeVarLong(out, count);
+        for (int i = 0; i < fields.length; i++) {
+            writeVarLong(out, i == 0 ? fields[i] : zigzag(fields[i]));
+        }
+        return out.toByteArray();
+    }
+
+    private static String rejected(byte[] data) {
+        return assertThrowsExactly(RuntimeException.class, () -> LocationBatchCodec.decode(data)).getMessage();
+    }
+
+    @Test
+    void roundTripsSamplesExactly() {
+        LocationBatch batch = drive(500);
+        byte[] encoded = LocationBatchCodec.encode(batch);
+        LocationBatch decoded = LocationBatchCodec.decode(encoded);
+
+        assertEquals(batch.getSize(), decoded.getSize());
+        assertArrayEquals(batch.getTimestamps(), decoded.getTimestamps());
+        assertArrayEquals(batch.getLatitudesE7(), decoded.getLatitudesE7());
+        assertArrayEquals(batch.getLongitudesE7(), decoded.getLongitudesE7());
+        assertTrue(encoded.length < 8 * batch.getSize(), encoded.length + " bytes");
+
+        // The JSON form lands on the same fixed-point values
+        DriverLocationBatchDto dto = new DriverLocationBatchDto();
+        dto.setTimestamps(batch.getTimestamps());
+        dto.setLatitudes(Arrays.stream(batch.getLatitudesE7()).mapToDouble(LocationBatchCodec::fromE7).toArray());
+        dto.setLongitudes(Arrays.stream(batch.getLongitudesE7()).mapToDouble(LocationBatchCodec::fromE7).toArray());
+        assertArrayEquals(batch.getLatitudesE7(), LocationBatchCodec.fromDto(dto).getLatitudesE7());
+        assertArrayEquals(batch.getLongitudesE7(), LocationBatchCodec.fromDto(dto).getLongitudesE7());
+    }
+
+    @Test
+    void rejectsTruncatedAndMalformedInput() {
+        byte[] encoded = LocationBatchCodec.encode(drive(20));
+        for (int length = 0; length < encoded.length; length++) {
+            assertEquals("Truncated location batch", rejected(Arrays.copyOf(encoded, length)), "length " + length);
+        }
+        assertEquals("Trailing bytes in location batch", rejected(Arrays.copyOf(encoded, encoded.length + 1)));
+
+        byte[] overlong = new byte[11];
+        Arrays.fill(overlong, (byte) 0xFF);
+        assertEquals("Malformed varint in location batch", rejected(overlong));
+        // Ten bytes, but more than 64 bits in them
+        byte[] tooWide = {1, (byte) 0x80, (byte) 0x80, (byte) 0x80, (byte) 0x80,
+                (byte) 0x80, (byte) 0x80, (byte) 0x80, (byte) 0x80, (byte) 0x80, 0x02};
+        assertEquals("Malformed varint in location batch", rejected(tooWide));
+    }
+
+    @Test
+    void rejectsSampleCountsOutsideTheLimit() {
+        assertEquals("Invalid sample count in location batch", rejected(raw(0)));
+        assertEquals("Invalid sample count in location batch", rejected(raw(LocationBatchCodec.MAX_SAMPLES + 1L, 0, 0, 0)));
+        assertEquals("Invalid sample count in location batch", rejected(raw(Long.MAX_VALUE)));
+    }
+
+    @Test
+    void rejectsCoordinatesAndDeltasOutOfRange() {
+        long t = 1_760_000_000_000L;
+        long nearPole = 899_000_000L;
+        assertEquals("Coordinate out of range in location batch", rejected(raw(1, t, 900_000_001L, 0)));
+        assertEquals("Coordinate out of range in location batch", rejected(raw(1, t, 0, -1_800_000_001L)));
+        // Each step stays small, the walk leaves the globe
+        assertEquals("Coordinate out of range in location batch",
+                rejected(raw(2, t, nearPole, 0, 1000, 2_000_000L, 0)));
+        assertEquals("Delta out of range in location batch", rejected(raw(2, t, 0, 0, 1000, Long.MIN_VALUE, 0)));
+        assertEquals("Delta out of range in location batch", rejected(raw(2, t, 0, 0, 1000, 0, Long.MAX_VALUE)));
+        assertEquals("Delta out of range in location batch", rejected(raw(2, t, 0, 0, Long.MIN_VALUE, 0, 0)));
+        assertEquals("Timestamp out of range in location batch", rejected(raw(2, t, 0, 0, -2 * t, 0, 0)));
+    }
+
+    @Test
+    void jsonBatchesGetTheSameRangeChecks() {
+        for (double[] sample : new double[][]{{91, 73.85}, {18.52, -180.5}, {1e10, 73.85}, {Double.NaN, 73.85},
+                {18.52, Double.POSITIVE_INFINITY}}) {
+            DriverLocationBatchDto dto = new DriverLocationBatchDto();
+            dto.setTimestamps(new long[]{1_760_000_000_000L});
+            dto.setLatitudes(new double[]{sample[0]});
+            dto.setLongitudes(new double[]{sample[1]});
+            assertEquals("Coordinate out of range in location batch",
+                    assertThrowsExactly(RuntimeException.class, () -> LocationBatchCodec.fromDto(dto)).getMessage(),
+                    Arrays.toString(sample));
+        }
+    }
+}
@@ -0,0 +1,32 @@
+package com.wheelshare.cabbooking.security;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+class JwtServiceTests {
+
+    @Test
+    void verifiedTokensAreCachedAndTamperedOnesRejected() {
+        JwtService jwtService = new JwtService();
+        String token = jwtService.generateToken("rider@test", "CUSTOMER", 7);
+
+        JwtPrincipal principal = jwtService.parseToken(token);
+        assertEquals(7, principal.userId());
+        assertEquals("rider@test", principal.email());
+        assertEquals("CUSTOMER", principal.role());
+        assertSame(principal, jwtService.parseToken(token));
+        assertEquals(1, jwtService.getCacheSize());
+
+        // Change one character inside the signature
+        int at = token.length() - 5;
+        char replacement = token.charAt(at) == 'a' ? 'Q' : 'a';
+        String tampered = token.substring(0, at) + replacement + token.substring(at + 1);
+        assertNull(jwtService.parseToken(tampered));
+        assertFalse(jwtService.isTokenValid("not-a-jwt"));
+        assertEquals(1, jwtService.getCacheSize());
+    }
+}
@@ -0,0 +1,139 @@
+package com.wheelshare.cabbooking.service;
+
+import com.wheelshare.cabbooking.entity.User;
+import com.wheelshare.cabbooking.repository.UserRepository;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.io.StringReader;
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * CSV import through the batched path: every row lands, in far fewer statements than rows.
+ */
+@SpringBootTest
+@ActiveProfiles("test")
+class BulkImportTests {
+
+    private static final int DRIVERS = 200;
+    private static final int RIDES = 20_000;
+
+    @Autowired
+    private BulkImportService bulkImportService;
+
+    @Autowired
+    private DriverEarningsService driverEarningsService;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    private User customer(String email) {
+        User user = new User();
+        user.setName(email);
+        user.setEmail(email);
+        user.setPhone("9999999999");
+        user.setPasswordHash("x");
+        user.setRole("CUSTOMER");
+        user.setIsEmailVerified(true);
+        return userRepository.save(user);
+    }
+
+    private List<Integer> importDrivers(String prefix) throws Exception {
+        StringBuilder csv = new StringBuilder("name,email,phone,license_number,is_verified\n");
+        for (int i = 0; i < DRIVERS; i++) {
+            csv.append("\"Driver, ").append(i).append("\",").append(prefix).append(i).append("@import.test,")
+                    .append("9000000000,LIC-").append(i).append(",true\n");
+        }
+
+        BulkImportService.ImportResult first = bulkImportService.importDrivers(new StringReader(csv.toString()));
+        assertEquals(DRIVERS, first.imported());
+
+        // Same file again: every email is taken now
+        BulkImportService.ImportResult again = bulkImportService.importDrivers(new StringReader(csv.toString()));
+        assertEquals(0, again.imported());
+        assertEquals(DRIVERS, again.skipped());
+
+        return userRepository.findAll().stream()
+                .filter(u -> u.getEmail().startsWith(prefix))
+                .map(User::getUserId)
+                .toList();
+    }
+
+    @Test
+    void ridesAreInsertedInBatches() throws Exception {
+        List<Integer> driverIds = importDrivers("batch-driver-");
+        assertEquals(DRIVERS, driverIds.size());
+        Integer customerId = customer("batch-customer@import.test").getUserId();
+
+        StringBuilder csv = new StringBuilder("customer_id,driver_id,source_lat,source_lng,source_address,"
+                + "destination_lat,destination_lng,destination_address,distance_km,fare,final_fare,"
+                + "ride_status,requested_at,accepted_at,completed_at\n");
+        for (int i = 0; i < RIDES; i++) {
+            csv.append(customerId).append(',').append(driverIds.get(i % DRIVERS))
+                    .append(",18.52,73.85,\"Shivaji Nagar, Pune\",18.60,73.90,Hinjewadi,12.5,155.0,,CANCELLED,")
+                    .append("2024-03-01 10:").append(String.format("%02d", i % 60)).append(":00,,\n");
+        }
+
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+        BulkImportService.ImportResult result = bulkImportService.importRides(new StringReader(csv.toString()));
+
+        assertEquals(RIDES, result.imported());
+        assertEquals(RIDES, statistics.getEntityInsertCount());
+        // One prepared statement per JDBC batch, not per row
+        assertTrue(statistics.getPrepareStatementCount() < RIDES / 10,
+                statistics.getPrepareStatementCount() + " statements for " + RIDES + " rows");
+    }
+
+    @Test
+    void completedRidesReachTheEarningsLedger() throws Exception {
+        List<Integer> driverIds = importDrivers("ledger-driver-");
+        Integer customerId = customer("ledger-customer@import.test").getUserId();
+        Integer driverId = driverIds.get(0);
+
+        String csv = "customer_id,driver_id,fare,final_fare,ride_status,requested_at,accepted_at,completed_at\n"
+                + customerId + "," + driverId + ",200.0,200.0,COMPLETED,2024-03-01T10:00:00,2024-03-01T10:01:00,2024-03-01T10:30:00\n"
+                + customerId + "," + driverId + ",100.0,,COMPLETED,2024-03-02T10:00:00,2024-03-02T10:01:00,2024-03-02T10:30:00\n"
+                + customerId + ",,80.0,,cancelled,2024-03-03T10:00:00,,\n";
+        assertEquals(3, bulkImportService.importRides(new StringReader(csv)).imported());
+
+        // 25% commission (commission.driver-percent): 150.00 + 75.00
+        @SuppressWarnings("unchecked")
+        Map<String, Object> lifetime = (Map<String, Object>) driverEarningsService.getEarnings(driverId).get("lifetime");
+        assertEquals(new BigDecimal("225.00"), lifetime.get("amount"));
+        assertEquals(2, lifetime.get("rides"));
+    }
+
+    @Test
+    void badRowsAreRejectedWithTheirLine() {
+        String active = "customer_id,fare,ride_status,requested_at\n1,50.0,CANCELLED,2024-03-01T10:00:00\n1,50.0,REQUESTED,2024-03-01T10:00:00\n";
+        RuntimeException e = assertThrows(RuntimeException.class,
+                () -> bulkImportService.importRides(new StringReader(active)));
+        assertEquals("Line 3: only COMPLETED and CANCELLED rides can be imported", e.getMessage());
+
+        String unknownCustomer = "customer_id,fare,ride_status,requested_at\n999999999,50.0,CANCELLED,2024-03-01T10:00:00\n";
+        assertThrows(RuntimeException.class, () -> bulkImportService.importRides(new StringReader(unknownCustomer)));
+
+        String farFuture = "customer_id,fare,ride_status,requested_at\n1,50.0,CANCELLED,2099-03-01T10:00:00\n";
+        e = assertThrows(RuntimeException.class, () -> bulkImportService.importRides(new StringReader(farFuture)));
+        assertEquals("Line 2: requested_at is out of range", e.getMessage());
+
+        String noEmail = "name,email,phone,license_number\nA,,9000000000,L1\n";
+        e = assertThrows(RuntimeException.class, () -> bulkImportService.importDrivers(new StringReader(noEmail)));
+        assertEquals("Line 2: email is required", e.getMessage());
+    }
+}
@@ -0,0 +1,67 @@
+package com.wheelshare.cabbooking.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class DispatchMatcherTests {
+
+    @Test
+    void auctionFixesGreedyChoice() {
+        // Greedy grabs A->X (1 km) and leaves B with Y (9 km); A->Y + B->X is 3.5 km
+        DispatchMatcher.CandidateGraph graph = new DispatchMatcher.CandidateGraph(
+                2, 2, new int[]{100, 200},
+                new int[]{0, 2, 4},
+                new int[]{0, 1, 0, 1},
+                new double[]{1.0, 2.0, 1.5, 9.0});
+
+        assertArrayEquals(new int[]{0, 1}, DispatchMatcher.greedy(graph));
+        assertArrayEquals(new int[]{1, 0}, DispatchMatcher.solve(graph, 20.0, 0.01, 1000));
+    }
+
+    @Test
+    void matchesFiveThousandByFiveThousandWellUnderASecond() {
+        Random random = new Random(7);
+        int[] rideIds = new int[5000];
+        double[] rideLat = new double[5000];
+        double[] rideLng = new double[5000];
+        double[] lat = new double[5000];
+        double[] lng = new double[5000];
+        // ~30 km square around Pune
+        for (int i = 0; i < 5000; i++) {
+            rideIds[i] = i + 1;
+            rideLat[i] = 18.40 + random.nextDouble() * 0.3;
+            rideLng[i] = 73.70 + random.nextDouble() * 0.3;
+            lat[i] = 18.40 + random.nextDouble() * 0.3;
+            lng[i] = 73.70 + random.nextDouble() * 0.3;
+        }
+
+        int[] assigned = null;
+        long elapsedMs = Long.MAX_VALUE;
+        DispatchMatcher.CandidateGraph graph = null;
+        // First rounds warm up the JIT, keep the best time
+        for (int round = 0; round < 3; round++) {
+            long start = System.nanoTime();
+            graph = DispatchMatcher.CandidateGraph.build(rideIds, rideLat, rideLng, lat, lng, 5.0, 8);
+            assigned = DispatchMatcher.solve(graph, 10.0, 0.05, 2_000_000);
+            elapsedMs = Math.min(elapsedMs, (System.nanoTime() - start) / 1_000_000);
+        }
+        // At most 8 candidate rides per driver
+        assertTrue(graph.edgeStart()[graph.drivers()] <= 5000 * 8);
+
+        boolean[] taken = new boolean[graph.rides()];
+        for (int ride : assigned) {
+            if (ride != DispatchMatcher.UNASSIGNED) {
+                assertFalse(taken[ride], "ride assigned twice");
+                taken[ride] = true;
+            }
+        }
+        assertTrue(DispatchMatcher.totalCost(graph, assigned, 10.0)
+                <= DispatchMatcher.totalCost(graph, DispatchMatcher.greedy(graph), 10.0));
+        assertTrue(elapsedMs < 1000, "dispatch window took " + elapsedMs + " ms");
+    }
+}
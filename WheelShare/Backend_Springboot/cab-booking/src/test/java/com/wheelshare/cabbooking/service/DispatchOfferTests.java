@@ -0,0 +1,106 @@
+package com.wheelshare.cabbooking.service;
+
+import com.wheelshare.cabbooking.dto.RideRequestDto;
+import com.wheelshare.cabbooking.entity.Driver;
+import com.wheelshare.cabbooking.entity.User;
+import com.wheelshare.cabbooking.enums.RideStatus;
+import com.wheelshare.cabbooking.repository.DriverRepository;
+import com.wheelshare.cabbooking.repository.RideRepository;
+import com.wheelshare.cabbooking.repository.UserRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.ActiveProfiles;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Batch dispatch: a ride goes to the driver it was offered to, nobody else can take it
+ * first, and accepting it clears the offer.
+ */
+@SpringBootTest(properties = {
+        // Its own database, closing this context drops the schema
+        "spring.datasource.url=jdbc:h2:mem:wheelshare-dispatch;MODE=MySQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1",
+        "dispatch.mode=batch",
+        // The test runs the dispatch window itself
+        "dispatch.window-ms=3600000"
+})
+@ActiveProfiles("test")
+@DirtiesContext
+class DispatchOfferTests {
+
+    @Autowired
+    private DispatchService dispatchService;
+
+    @Autowired
+    private RideService rideService;
+
+    @Autowired
+    private DriverLocationBuffer driverLocationBuffer;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private DriverRepository driverRepository;
+
+    @Autowired
+    private RideRepository rideRepository;
+
+    private User user(String email, String role) {
+        User user = new User();
+        user.setName(email);
+        user.setEmail(email);
+        user.setPhone("9999999999");
+        user.setPasswordHash("x");
+        user.setRole(role);
+        user.setIsEmailVerified(true);
+        return userRepository.save(user);
+    }
+
+    private Integer onlineDriver(String email, double latitude, double longitude) {
+        Driver driver = new Driver();
+        driver.setUser(user(email, "DRIVER"));
+        driver.setLicenseNumber("OFFER");
+        driver.setIsAvailable(true);
+        Integer driverId = driverRepository.save(driver).getDriverId();
+        driverLocationBuffer.setAvailable(driverId, true);
+        driverLocationBuffer.ingest(driverId, latitude, longitude);
+        return driverId;
+    }
+
+    @Test
+    void onlyTheOfferedDriverCanAcceptAndAcceptingClearsTheOffer() {
+        User customer = user("offer-customer@test", "CUSTOMER");
+        // Both in range, the first one much closer to the pickup
+        Integer near = onlineDriver("offer-near@test", 18.521, 73.851);
+        Integer far = onlineDriver("offer-far@test", 18.54, 73.87);
+
+        RideRequestDto dto = new RideRequestDto();
+        dto.setSourceLat(18.52);
+        dto.setSourceLng(73.85);
+        dto.setDestinationLat(18.60);
+        dto.setDestinationLng(73.90);
+        Integer rideId = (Integer) rideService.requestRide(dto, customer.getUserId(), null).get("rideId");
+
+        // No window has run yet, so nobody holds an offer
+        assertThrows(RuntimeException.class, () -> rideService.acceptRide(rideId, near));
+
+        dispatchService.dispatch();
+        DispatchService.Offer offer = dispatchService.getOffer(near);
+        assertNotNull(offer);
+        assertEquals(rideId, offer.rideId());
+        assertNull(dispatchService.getOffer(far));
+
+        assertThrows(RuntimeException.class, () -> rideService.acceptRide(rideId, far));
+        assertEquals(RideStatus.REQUESTED, rideRepository.findById(rideId).orElseThrow().getRideStatus());
+
+        rideService.acceptRide(rideId, near);
+        assertNull(dispatchService.getOffer(near));
+        assertEquals(near, rideRepository.findWithDriverByRideId(rideId).orElseThrow().getDriver().getDriverId());
+    }
+}
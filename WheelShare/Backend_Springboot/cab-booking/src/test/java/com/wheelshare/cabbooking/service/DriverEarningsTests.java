@@ -0,0 +1,116 @@
+package com.wheelshare.cabbooking.service;
+
+import com.wheelshare.cabbooking.entity.Driver;
+import com.wheelshare.cabbooking.entity.Ride;
+import com.wheelshare.cabbooking.entity.User;
+import com.wheelshare.cabbooking.enums.RideStatus;
+import com.wheelshare.cabbooking.repository.DriverRepository;
+import com.wheelshare.cabbooking.repository.DriverWalletRepository;
+import com.wheelshare.cabbooking.repository.RideRepository;
+import com.wheelshare.cabbooking.repository.UserRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Completing rides through RideService fills the ledger and the rollups, and the earnings
+ * endpoint, the ride history and the backfill all agree on the amounts.
+ */
+@SpringBootTest
+@ActiveProfiles("test")
+class DriverEarningsTests {
+
+    @Autowired
+    private RideService rideService;
+
+    @Autowired
+    private DriverService driverService;
+
+    @Autowired
+    private DriverEarningsService driverEarningsService;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private DriverRepository driverRepository;
+
+    @Autowired
+    private RideRepository rideRepository;
+
+    @Autowired
+    private DriverWalletRepository driverWalletRepository;
+
+    private User user(String email, String role) {
+        User user = new User();
+        user.setName(email);
+        user.setEmail(email);
+        user.setPhone("9999999999");
+        user.setPasswordHash("x");
+        user.setRole(role);
+        user.setIsEmailVerified(true);
+        return userRepository.save(user);
+    }
+
+    private Ride ride(User customer, double fare) {
+        Ride ride = new Ride();
+        ride.setCustomer(customer);
+        ride.setSourceLat(18.52);
+        ride.setSourceLng(73.85);
+        ride.setDestinationLat(18.60);
+        ride.setDestinationLng(73.90);
+        ride.setFare(fare);
+        ride.setRideStatus(RideStatus.REQUESTED);
+        ride.setRequestedAt(LocalDateTime.now());
+        return rideRepository.save(ride);
+    }
+
+    @SuppressWarnings("unchecked")
+    private BigDecimal amount(Map<String, Object> earnings, String period) {
+        return (BigDecimal) ((Map<String, Object>) earnings.get(period)).get("amount");
+    }
+
+    @Test
+    void completedRidesAreCreditedOnceAndRolledUp() {
+        User customer = user("earnings-customer@test", "CUSTOMER");
+        Driver driver = new Driver();
+        driver.setUser(user("earnings-driver@test", "DRIVER"));
+        driver.setLicenseNumber("E1");
+        driver.setIsAvailable(true);
+        Integer driverId = driverRepository.save(driver).getDriverId();
+
+        // 25% commission (commission.driver-percent): 150.00 + 75.00
+        for (double fare : new double[]{200.0, 100.0}) {
+            Integer rideId = ride(customer, fare).getRideId();
+            rideService.acceptRide(rideId, driverId);
+            rideService.startRide(rideId, driverId);
+            rideService.completeRide(rideId, driverId);
+        }
+
+        Map<String, Object> earnings = driverEarningsService.getEarnings(driverId);
+        assertEquals(new BigDecimal("225.00"), amount(earnings, "today"));
+        assertEquals(new BigDecimal("225.00"), amount(earnings, "thisWeek"));
+        assertEquals(new BigDecimal("225.00"), amount(earnings, "lifetime"));
+        assertEquals(2, ((Map<?, ?>) earnings.get("lifetime")).get("rides"));
+
+        List<Map<String, Object>> history = driverService.getRideHistory(driverId, null, null).items();
+        assertEquals(new BigDecimal("75.00"), history.get(0).get("driverEarning"));
+        assertEquals(new BigDecimal("150.00"), history.get(1).get("driverEarning"));
+
+        // Already credited, the backfill must not add anything. Settle rides other tests in the
+        // shared context completed outside RideService first, then a second run is a no-op
+        driverEarningsService.backfill();
+        long entries = driverWalletRepository.count();
+        driverEarningsService.backfill();
+        assertEquals(entries, driverWalletRepository.count());
+        assertEquals(new BigDecimal("225.00"), amount(driverEarningsService.getEarnings(driverId), "lifetime"));
+    }
+}
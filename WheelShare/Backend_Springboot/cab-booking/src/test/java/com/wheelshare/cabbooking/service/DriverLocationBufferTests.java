@@ -0,0 +1,109 @@
+package com.wheelshare.cabbooking.service;
+
+import com.wheelshare.cabbooking.entity.Driver;
+import com.wheelshare.cabbooking.entity.User;
+import com.wheelshare.cabbooking.repository.DriverRepository;
+import com.wheelshare.cabbooking.repository.UserRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Pings are served from memory at once; unmoved ones are dropped, overwritten ones coalesce,
+ * and a flush writes only each driver's newest position.
+ */
+@SpringBootTest
+@ActiveProfiles("test")
+class DriverLocationBufferTests {
+
+    @Autowired
+    private DriverLocationBuffer driverLocationBuffer;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private DriverRepository driverRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private Integer driver(String email) {
+        User user = new User();
+        user.setName(email);
+        user.setEmail(email);
+        user.setPhone("9999999999");
+        user.setPasswordHash("x");
+        user.setRole("DRIVER");
+        user.setIsEmailVerified(true);
+        Driver driver = new Driver();
+        driver.setUser(userRepository.save(user));
+        driver.setLicenseNumber("GPS");
+        driver.setIsAvailable(true);
+        return driverRepository.save(driver).getDriverId();
+    }
+
+    private Map<String, Object> row(Integer driverId) {
+        return jdbcTemplate.queryForMap(
+                "SELECT current_latitude, current_longitude FROM drivers WHERE driver_id = ?", driverId);
+    }
+
+    private double count(String name) {
+        return meterRegistry.get(name).counter().count();
+    }
+
+    @Test
+    void flushWritesTheNewestMovedPositionPerDriver() {
+        Integer moving = driver("gps-moving@test");
+        Integer parked = driver("gps-parked@test");
+        driverLocationBuffer.flush();
+        double ingested = count("driver.location.ingested");
+        double dropped = count("driver.location.dropped");
+        double coalesced = count("driver.location.coalesced");
+        double flushed = count("driver.location.flushed");
+
+        assertTrue(driverLocationBuffer.ingest(moving, 18.5200, 73.8500));
+        // Same spot, then ~1 m: under driver.location.min-move-meters
+        assertFalse(driverLocationBuffer.ingest(moving, 18.5200, 73.8500));
+        assertFalse(driverLocationBuffer.ingest(moving, 18.52001, 73.8500));
+        // ~100 m on, replacing the unflushed first ping
+        assertTrue(driverLocationBuffer.ingest(moving, 18.5209, 73.8500));
+        assertTrue(driverLocationBuffer.ingest(parked, 18.6000, 73.9000));
+
+        // Reads see the ping before the database does
+        assertEquals(18.5209, driverLocationBuffer.getPosition(moving).latitude());
+        assertNull(row(moving).get("current_latitude"));
+
+        driverLocationBuffer.flush();
+
+        assertEquals(18.5209, ((Number) row(moving).get("current_latitude")).doubleValue());
+        assertEquals(73.8500, ((Number) row(moving).get("current_longitude")).doubleValue());
+        assertEquals(18.6000, ((Number) row(parked).get("current_latitude")).doubleValue());
+        assertEquals(73.9000, ((Number) row(parked).get("current_longitude")).doubleValue());
+
+        assertEquals(ingested + 5, count("driver.location.ingested"));
+        assertEquals(dropped + 2, count("driver.location.dropped"));
+        assertEquals(coalesced + 1, count("driver.location.coalesced"));
+        // One row per driver, not one per kept ping
+        assertEquals(flushed + 2, count("driver.location.flushed"));
+        assertEquals((count("driver.location.dropped") + count("driver.location.coalesced")) / count("driver.location.ingested"),
+                meterRegistry.get("driver.location.coalesce.ratio").gauge().value(), 1e-9);
+
+        // Nothing pending, nothing written
+        driverLocationBuffer.flush();
+        assertEquals(flushed + 2, count("driver.location.flushed"));
+    }
+}
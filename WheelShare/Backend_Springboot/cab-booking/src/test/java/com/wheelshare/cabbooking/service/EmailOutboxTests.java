@@ -0,0 +1,119 @@
+package com.wheelshare.cabbooking.service;
+
+import com.icegreen.greenmail.configuration.GreenMailConfiguration;
+import com.icegreen.greenmail.junit5.GreenMailExtension;
+import com.icegreen.greenmail.util.ServerSetupTest;
+import com.wheelshare.cabbooking.dto.RegisterDto;
+import com.wheelshare.cabbooking.entity.EmailOutbox;
+import com.wheelshare.cabbooking.repository.EmailOutboxRepository;
+import jakarta.mail.internet.MimeMessage;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@SpringBootTest
+@ActiveProfiles("test")
+class EmailOutboxTests {
+
+    @RegisterExtension
+    // The sender logs in as spring.mail.username; GreenMail would reject it as an unknown user
+    static GreenMailExtension greenMail = new GreenMailExtension(ServerSetupTest.SMTP)
+            .withConfiguration(GreenMailConfiguration.aConfig().withDisabledAuthentication());
+
+    @Autowired
+    private AuthService authService;
+
+    @Autowired
+    private EmailService emailService;
+
+    @Autowired
+    private EmailOutboxDispatcher dispatcher;
+
+    @Autowired
+    private EmailOutboxRepository emailOutboxRepository;
+
+    @Test
+    void signupQueuesOtpAndDispatcherDeliversIt() throws Exception {
+        RegisterDto dto = new RegisterDto();
+        dto.setName("Outbox Rider");
+        dto.setEmail("outbox-rider@test");
+        dto.setPhone("9999999999");
+        dto.setPassword("secret");
+        dto.setRole("CUSTOMER");
+
+        authService.register(dto);
+
+        // Nothing has touched SMTP yet
+        List<EmailOutbox> queued = emailOutboxRepository.findByToEmailOrderByOutboxIdDesc("outbox-rider@test");
+        assertEquals(1, queued.size());
+        assertEquals("PENDING", queued.get(0).getStatus());
+        assertEquals(0, greenMail.getReceivedMessages().length);
+
+        dispatcher.dispatch();
+
+        MimeMessage[] received = greenMail.getReceivedMessages();
+        assertEquals(1, received.length);
+        assertEquals("outbox-rider@test", received[0].getAllRecipients()[0].toString());
+        assertEquals("SENT", emailOutboxRepository.findById(queued.get(0).getOutboxId()).orElseThrow().getStatus());
+    }
+
+    @Test
+    void failedSendIsRetriedWithBackoff() {
+        emailService.queue("outbox-retry@test", "Retry", "<p>retry</p>");
+        greenMail.stop();
+
+        dispatcher.dispatch();
+
+        EmailOutbox email = emailOutboxRepository.findByToEmailOrderByOutboxIdDesc("outbox-retry@test").get(0);
+        assertEquals("PENDING", email.getStatus());
+        assertEquals(1, email.getAttempts());
+        assertNotNull(email.getLastError());
+        assertTrue(email.getNextAttemptAt().isAfter(LocalDateTime.now()));
+    }
+
+    @Test
+    void rowsClaimedByAnotherDispatcherAreNotSentTwice() throws Exception {
+        emailService.queue("outbox-claimed@test", "Claimed", "<p>claimed</p>");
+        EmailOutbox email = emailOutboxRepository.findByToEmailOrderByOutboxIdDesc("outbox-claimed@test").get(0);
+
+        // Another instance holds this row while it talks to its mail server
+        LocalDateTime now = LocalDateTime.now();
+        assertEquals(1, emailOutboxRepository.claim(List.of(email.getOutboxId()), "other-instance", now.plusMinutes(5), now));
+        assertEquals(0, emailOutboxRepository.claim(List.of(email.getOutboxId()), "late-instance", now.plusMinutes(5), now));
+
+        dispatcher.dispatch();
+        assertEquals(0, received("outbox-claimed@test"));
+        assertEquals("PENDING", emailOutboxRepository.findById(email.getOutboxId()).orElseThrow().getStatus());
+
+        // That instance died mid-batch: once its claim runs out the row is sent here
+        email = emailOutboxRepository.findById(email.getOutboxId()).orElseThrow();
+        email.setClaimedUntil(now.minusSeconds(1));
+        emailOutboxRepository.save(email);
+
+        dispatcher.dispatch();
+        assertEquals(1, received("outbox-claimed@test"));
+        EmailOutbox sent = emailOutboxRepository.findById(email.getOutboxId()).orElseThrow();
+        assertEquals("SENT", sent.getStatus());
+        assertNull(sent.getClaimedBy());
+    }
+
+    private static long received(String recipient) throws Exception {
+        long count = 0;
+        for (MimeMessage message : greenMail.getReceivedMessages()) {
+            if (recipient.equals(message.getAllRecipients()[0].toString())) {
+                count++;
+            }
+        }
+        return count;
+    }
+}
@@ -0,0 +1,106 @@
+package com.wheelshare.cabbooking.service;
+
+import com.wheelshare.cabbooking.config.EntityCacheConfig;
+import com.wheelshare.cabbooking.dto.LoginDto;
+import com.wheelshare.cabbooking.dto.RegisterDto;
+import com.wheelshare.cabbooking.dto.VerifyOtpDto;
+import com.wheelshare.cabbooking.repository.DriverRepository;
+import com.wheelshare.cabbooking.repository.EmailOtpRepository;
+import com.wheelshare.cabbooking.repository.UserRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * User and Driver lookups come from the second-level cache, and the write paths in AuthService
+ * and DriverService leave it holding what the database holds.
+ */
+@SpringBootTest
+@ActiveProfiles("test")
+class EntityCacheTests {
+
+    private static final String EMAIL = "cache-driver@test";
+
+    @Autowired
+    private AuthService authService;
+
+    @Autowired
+    private DriverService driverService;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private DriverRepository driverRepository;
+
+    @Autowired
+    private EmailOtpRepository emailOtpRepository;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private Statistics statistics;
+
+    private long statements(Runnable action) {
+        statistics.clear();
+        action.run();
+        return statistics.getPrepareStatementCount();
+    }
+
+    @Test
+    void lookupsHitTheCacheAndWritesKeepItCurrent() {
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+
+        RegisterDto register = new RegisterDto();
+        register.setName("Cache Driver");
+        register.setEmail(EMAIL);
+        register.setPhone("9999999999");
+        register.setPassword("secret");
+        register.setRole("DRIVER");
+        authService.register(register);
+
+        Integer userId = userRepository.findByEmail(EMAIL).orElseThrow().getUserId();
+        driverRepository.findById(userId).orElseThrow();
+
+        assertEquals(0, statements(() -> userRepository.findByEmail(EMAIL).orElseThrow()), "user by email");
+        assertTrue(statistics.getNaturalIdCacheHitCount() > 0);
+        assertEquals(0, statements(() -> userRepository.findById(userId).orElseThrow()), "user by id");
+        assertEquals(0, statements(() -> driverRepository.findById(userId).orElseThrow()), "driver by id");
+
+        // verifyOtp updates the user, login must see the change
+        VerifyOtpDto verify = new VerifyOtpDto();
+        verify.setEmail(EMAIL);
+        verify.setOtp(emailOtpRepository.findFirstByUserIdAndIsUsedFalseOrderByExpiresAtDesc(userId)
+                .orElseThrow().getOtpCode());
+        authService.verifyOtp(verify);
+        assertTrue(userRepository.findByEmail(EMAIL).orElseThrow().getIsEmailVerified());
+
+        LoginDto login = new LoginDto();
+        login.setEmail(EMAIL);
+        login.setPassword("secret");
+        assertNotNull(authService.login(login).get("token"));
+
+        driverService.goOnline(userId);
+        assertTrue(driverRepository.findById(userId).orElseThrow().getIsAvailable());
+        driverService.goOffline(userId);
+        assertFalse(driverRepository.findById(userId).orElseThrow().getIsAvailable());
+
+        double hitRatio = meterRegistry.get("entity.cache.hit.ratio")
+                .tag("cache", EntityCacheConfig.USERS)
+                .gauge().value();
+        assertTrue(hitRatio > 0 && hitRatio <= 1, "users hit ratio " + hitRatio);
+    }
+}
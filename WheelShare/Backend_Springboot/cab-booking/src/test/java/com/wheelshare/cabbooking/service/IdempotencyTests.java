@@ -0,0 +1,203 @@
+package com.wheelshare.cabbooking.service;
+
+import com.wheelshare.cabbooking.controller.RideController;
+import com.wheelshare.cabbooking.dto.PaymentDto;
+import com.wheelshare.cabbooking.dto.RideRequestDto;
+import com.wheelshare.cabbooking.entity.Ride;
+import com.wheelshare.cabbooking.entity.User;
+import com.wheelshare.cabbooking.enums.RideStatus;
+import com.wheelshare.cabbooking.repository.PaymentRepository;
+import com.wheelshare.cabbooking.repository.RideRepository;
+import com.wheelshare.cabbooking.repository.UserRepository;
+import com.wheelshare.cabbooking.security.JwtService;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.http.ResponseEntity;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Retry storms through the controller: many copies of one request with the same Idempotency-Key
+ * make exactly one insert, and every copy gets the first response.
+ */
+@SpringBootTest
+@ActiveProfiles("test")
+class IdempotencyTests {
+
+    private static final int THREADS = 32;
+    private static final int RETRIES = 5;
+
+    @Autowired
+    private RideController rideController;
+
+    @Autowired
+    private RideService rideService;
+
+    @Autowired
+    private JwtService jwtService;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private RideRepository rideRepository;
+
+    @Autowired
+    private PaymentRepository paymentRepository;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    private Statistics statistics;
+    private User customer;
+    private String token;
+
+    @BeforeEach
+    void seed() {
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+
+        User user = new User();
+        user.setName("idem");
+        user.setEmail("idem-" + System.nanoTime() + "@test");
+        user.setPhone("9999999999");
+        user.setPasswordHash("x");
+        user.setRole("CUSTOMER");
+        user.setIsEmailVerified(true);
+        customer = userRepository.save(user);
+        token = "Bearer " + jwtService.generateToken(customer.getEmail(), "CUSTOMER", customer.getUserId());
+    }
+
+    private RideRequestDto request() {
+        RideRequestDto dto = new RideRequestDto();
+        dto.setSourceLat(18.52);
+        dto.setSourceLng(73.85);
+        dto.setDestinationLat(18.60);
+        dto.setDestinationLng(73.90);
+        return dto;
+    }
+
+    // THREADS clients each sending the request RETRIES times, all at once
+    private List<ResponseEntity<?>> storm(Supplier<ResponseEntity<?>> call) throws InterruptedException {
+        List<ResponseEntity<?>> responses = new CopyOnWriteArrayList<>();
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+        for (int t = 0; t < THREADS; t++) {
+            pool.execute(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+                for (int r = 0; r < RETRIES; r++) {
+                    responses.add(call.get());
+                }
+            });
+        }
+        start.countDown();
+        pool.shutdown();
+        assertTrue(pool.awaitTermination(1, TimeUnit.MINUTES));
+        return responses;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Object field(ResponseEntity<?> response, String name) {
+        return ((Map<String, Object>) response.getBody()).get(name);
+    }
+
+    @Test
+    void rideRequestRetryStormInsertsOneRide() throws Exception {
+        String key = UUID.randomUUID().toString();
+        RideRequestDto dto = request();
+
+        statistics.clear();
+        List<ResponseEntity<?>> responses = storm(() -> rideController.requestRide(token, key, dto));
+
+        assertEquals(1, statistics.getEntityInsertCount(), "rows inserted by " + responses.size() + " requests");
+        assertEquals(1, rideRepository.findByCustomer_UserIdOrderByRequestedAtDesc(customer.getUserId()).size());
+
+        Set<Object> rideIds = ConcurrentHashMap.newKeySet();
+        AtomicInteger replayed = new AtomicInteger();
+        for (ResponseEntity<?> response : responses) {
+            assertEquals(200, response.getStatusCode().value());
+            rideIds.add(field(response, "rideId"));
+            if (response.getHeaders().containsHeader(IdempotencyStore.REPLAYED_HEADER)) {
+                replayed.incrementAndGet();
+            }
+        }
+        assertEquals(1, rideIds.size());
+        assertEquals(THREADS * RETRIES - 1, replayed.get());
+
+        // Same key, different trip
+        RideRequestDto other = request();
+        other.setDestinationLat(19.0);
+        assertEquals(422, rideController.requestRide(token, key, other).getStatusCode().value());
+    }
+
+    @Test
+    void paymentRetryStormInsertsOnePayment() throws Exception {
+        Ride ride = new Ride();
+        ride.setCustomer(customer);
+        ride.setSourceLat(18.52);
+        ride.setSourceLng(73.85);
+        ride.setFare(150.0);
+        ride.setFinalFare(150.0);
+        ride.setRideStatus(RideStatus.COMPLETED);
+        ride.setRequestedAt(LocalDateTime.now().minusHours(1));
+        ride.setCompletedAt(LocalDateTime.now());
+        Integer rideId = rideRepository.save(ride).getRideId();
+
+        PaymentDto dto = new PaymentDto();
+        dto.setPaymentMethod("UPI");
+        String key = UUID.randomUUID().toString();
+
+        statistics.clear();
+        List<ResponseEntity<?>> responses = storm(() -> rideController.makePayment(token, key, rideId, dto));
+
+        assertEquals(1, statistics.getEntityInsertCount(), "rows inserted by " + responses.size() + " requests");
+        assertTrue(paymentRepository.findByRideId(rideId).isPresent());
+        assertEquals(1, responses.stream().map(r -> field(r, "paymentId")).distinct().count());
+
+        // A client that lost its key is stopped by the check, and by uk_payments_ride under a race
+        ResponseEntity<?> again = rideController.makePayment(token, UUID.randomUUID().toString(), rideId, dto);
+        assertEquals(400, again.getStatusCode().value());
+        assertEquals("Payment already made for this ride", again.getBody());
+    }
+
+    @Test
+    void databaseConstraintCatchesKeysTheStoreForgot() {
+        // Sent straight to the service, as if the store had been wiped by a restart
+        String key = UUID.randomUUID().toString();
+        Map<String, Object> first = rideService.requestRide(request(), customer.getUserId(), key);
+        assertThrows(DataIntegrityViolationException.class,
+                () -> rideService.requestRide(request(), customer.getUserId(), key));
+
+        ResponseEntity<?> retried = rideController.requestRide(token, key, request());
+        assertEquals(200, retried.getStatusCode().value());
+        assertEquals(first.get("rideId"), field(retried, "rideId"));
+        assertEquals(1, rideRepository.findByCustomer_UserIdOrderByRequestedAtDesc(customer.getUserId()).size());
+    }
+}
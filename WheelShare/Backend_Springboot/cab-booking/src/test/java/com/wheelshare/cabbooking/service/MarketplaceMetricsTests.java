@@ -0,0 +1,123 @@
+package com.wheelshare.cabbooking.service;
+
+import com.sun.management.ThreadMXBean;
+import com.wheelshare.cabbooking.entity.Ride;
+import com.wheelshare.cabbooking.enums.RideStatus;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class MarketplaceMetricsTests {
+
+    private static final long SLOT_MS = 60_000;
+    private static final long NOW = 1_700_000_000_000L;
+
+    private final RideGeoIndex rideGeoIndex = new RideGeoIndex(null, new SimpleMeterRegistry());
+
+    private MarketplaceMetrics metrics(int maxAreas) {
+        return new MarketplaceMetrics(rideGeoIndex, 0.1, SLOT_MS, 10, maxAreas);
+    }
+
+    @Test
+    void percentilesStayWithinBucketPrecision() {
+        MarketplaceMetrics metrics = metrics(8);
+        Random random = new Random(11);
+        long[] waits = new long[10_000];
+        for (int i = 0; i < waits.length; i++) {
+            waits[i] = 500 + random.nextInt(120_000);
+            metrics.rideAccepted(18.52, 73.85, waits[i], waits[i] / 10_000.0, NOW);
+        }
+        Arrays.sort(waits);
+
+        MarketplaceMetrics.Snapshot snapshot = metrics.snapshot(18.52, 73.85, SLOT_MS, NOW);
+        assertEquals(waits.length, snapshot.accepted());
+        for (double q : new double[]{0.5, 0.9, 0.99}) {
+            long exact = waits[(int) Math.ceil(q * waits.length) - 1];
+            long estimate = MarketplaceMetrics.percentile(snapshot.waitBuckets(), snapshot.accepted(), q);
+            assertTrue(Math.abs(estimate - exact) <= exact * 0.07, q + ": " + estimate + " vs " + exact);
+        }
+    }
+
+    @Test
+    void windowsOnlySeeTheirSlots() {
+        MarketplaceMetrics metrics = metrics(8);
+        metrics.rideRequested(18.52, 73.85, NOW - 5 * SLOT_MS);
+        metrics.rideRequested(18.52, 73.85, NOW - SLOT_MS);
+        metrics.rideRequested(18.52, 73.85, NOW);
+        metrics.rideCancelledWhileWaiting(18.52, 73.85, NOW);
+
+        assertEquals(1, metrics.snapshot(18.52, 73.85, SLOT_MS, NOW).requested());
+        assertEquals(2, metrics.snapshot(18.52, 73.85, 2 * SLOT_MS, NOW).requested());
+        assertEquals(3, metrics.snapshot(18.52, 73.85, 10 * SLOT_MS, NOW).requested());
+        assertEquals(1, metrics.snapshot(18.52, 73.85, SLOT_MS, NOW).cancelledWhileWaiting());
+
+        // Ten slots later the ring has wrapped; the slot is reused, not added to
+        metrics.rideRequested(18.52, 73.85, NOW + 10 * SLOT_MS);
+        assertEquals(1, metrics.snapshot(18.52, 73.85, SLOT_MS, NOW + 10 * SLOT_MS).requested());
+        assertEquals(1, metrics.snapshot(18.52, 73.85, 10 * SLOT_MS, NOW + 10 * SLOT_MS).requested());
+    }
+
+    @Test
+    void areasAreSplitAndBounded() {
+        MarketplaceMetrics metrics = metrics(2);
+        metrics.rideRequested(18.52, 73.85, NOW);
+        metrics.rideRequested(18.55, 73.81, NOW);
+        metrics.rideRequested(18.61, 73.85, NOW);
+        metrics.rideRequested(19.07, 72.87, NOW);
+        metrics.rideRequested(28.61, 77.20, NOW);
+
+        Ride open = new Ride();
+        open.setRideId(1);
+        open.setSourceLat(18.53);
+        open.setSourceLng(73.86);
+        open.setRideStatus(RideStatus.REQUESTED);
+        rideGeoIndex.add(open);
+
+        List<MarketplaceMetrics.Snapshot> snapshots = metrics.snapshots(SLOT_MS, NOW);
+        assertEquals("all", snapshots.get(0).area());
+        assertEquals(5, snapshots.get(0).requested());
+        assertEquals(1, snapshots.get(0).openRequests());
+
+        MarketplaceMetrics.Snapshot pune = metrics.snapshot(18.52, 73.85, SLOT_MS, NOW);
+        assertEquals("18.50,73.80", pune.area());
+        assertEquals(2, pune.requested());
+        assertEquals(1, pune.openRequests());
+        assertEquals(1, metrics.snapshot(18.61, 73.85, SLOT_MS, NOW).requested());
+
+        // Only two areas fit, the rest share "other"
+        MarketplaceMetrics.Snapshot other = snapshots.stream()
+                .filter(s -> s.area().equals(MarketplaceMetrics.OTHER))
+                .findFirst().orElseThrow();
+        assertEquals(2, other.requested());
+
+        Map<String, Object> map = pune.toMap();
+        assertEquals(2L, map.get("requested"));
+    }
+
+    @Test
+    void recordingDoesNotAllocate() {
+        MarketplaceMetrics metrics = metrics(8);
+        ThreadMXBean threads = (ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+        // First events create the area; measure afterwards
+        for (int i = 0; i < 20_000; i++) {
+            metrics.rideAccepted(18.52, 73.85, i, i / 1000.0, NOW + i);
+        }
+        long before = threads.getCurrentThreadAllocatedBytes();
+        for (int i = 0; i < 100_000; i++) {
+            metrics.rideRequested(18.52, 73.85, NOW + i);
+            metrics.rideAccepted(18.52, 73.85, i, i / 1000.0, NOW + i);
+            metrics.rideCancelledWhileWaiting(18.52, 73.85, NOW + i);
+        }
+        long allocated = threads.getCurrentThreadAllocatedBytes() - before;
+        assertTrue(allocated < 64 * 1024, allocated + " bytes for 300000 events");
+    }
+}
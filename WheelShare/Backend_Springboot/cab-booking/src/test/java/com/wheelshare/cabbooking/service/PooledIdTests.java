@@ -0,0 +1,93 @@
+package com.wheelshare.cabbooking.service;
+
+import com.wheelshare.cabbooking.entity.Notification;
+import com.wheelshare.cabbooking.entity.User;
+import com.wheelshare.cabbooking.repository.NotificationRepository;
+import com.wheelshare.cabbooking.repository.UserRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * As many transactions as the pool has connections, each holding one, all insert at once and
+ * need fresh id blocks. Id allocation must not wait for a connection from the same pool.
+ */
+@SpringBootTest
+@ActiveProfiles("test")
+class PooledIdTests {
+
+    // Several id blocks per transaction
+    private static final int INSERTS = 120;
+
+    @Autowired
+    private NotificationRepository notificationRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Value("${spring.datasource.hikari.maximum-pool-size}")
+    private int poolSize;
+
+    @Test
+    void fullPoolOfInsertingTransactionsDoesNotDeadlock() throws Exception {
+        User user = new User();
+        user.setName("pooled-ids@test");
+        user.setEmail("pooled-ids@test");
+        user.setPhone("9999999999");
+        user.setPasswordHash("x");
+        user.setRole("CUSTOMER");
+        user.setIsEmailVerified(true);
+        Integer userId = userRepository.save(user).getUserId();
+
+        Set<Integer> ids = ConcurrentHashMap.newKeySet();
+        CyclicBarrier allHoldConnections = new CyclicBarrier(poolSize);
+        ExecutorService pool = Executors.newFixedThreadPool(poolSize);
+
+        List<Future<?>> done = new ArrayList<>();
+        for (int t = 0; t < poolSize; t++) {
+            int thread = t;
+            done.add(pool.submit(() -> transactionTemplate.executeWithoutResult(status -> {
+                // First statement takes this transaction's connection
+                notificationRepository.count();
+                try {
+                    allHoldConnections.await(10, TimeUnit.SECONDS);
+                } catch (Exception e) {
+                    throw new IllegalStateException(e);
+                }
+                for (int i = 0; i < INSERTS; i++) {
+                    Notification notification = new Notification();
+                    notification.setUserId(userId);
+                    notification.setMessage("pooled id " + thread + "-" + i);
+                    ids.add(notificationRepository.save(notification).getNotificationId());
+                }
+            })));
+        }
+        pool.shutdown();
+        // Hikari gives up on a connection after 30s; a deadlock shows up well before that
+        assertTrue(pool.awaitTermination(20, TimeUnit.SECONDS), "inserts stuck waiting for connections");
+        for (Future<?> future : done) {
+            future.get();
+        }
+
+        assertEquals(poolSize * INSERTS, ids.size());
+    }
+}
@@ -0,0 +1,207 @@
+package com.wheelshare.cabbooking.service;
+
+import com.wheelshare.cabbooking.entity.Driver;
+import com.wheelshare.cabbooking.entity.Ride;
+import com.wheelshare.cabbooking.entity.User;
+import com.wheelshare.cabbooking.enums.RideStatus;
+import com.wheelshare.cabbooking.repository.DriverRepository;
+import com.wheelshare.cabbooking.repository.RideRepository;
+import com.wheelshare.cabbooking.repository.UserRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import tools.jackson.databind.json.JsonMapper;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * SQL statements per endpoint, with enough rides, customers and drivers that an N+1 would show.
+ * Responses that return entities are serialized inside the count, so a lazy association
+ * the fetch plan missed fails here instead of in production.
+ */
+@SpringBootTest
+@ActiveProfiles("test")
+class QueryCountTests {
+
+    private static final int RIDES = 12;
+
+    @Autowired
+    private RideService rideService;
+
+    @Autowired
+    private DriverService driverService;
+
+    @Autowired
+    private StatsService statsService;
+
+    @Autowired
+    private ActiveRideStore activeRideStore;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private DriverRepository driverRepository;
+
+    @Autowired
+    private RideRepository rideRepository;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private JsonMapper jsonMapper;
+
+    private Statistics statistics;
+
+    private final List<Integer> customerIds = new ArrayList<>();
+    private final List<Integer> driverIds = new ArrayList<>();
+    private final List<Integer> openRideIds = new ArrayList<>();
+    private Integer completedRideId;
+
+    private User user(String email, String role) {
+        User user = new User();
+        user.setName(email);
+        user.setEmail(email);
+        user.setPhone("9999999999");
+        user.setPasswordHash("x");
+        user.setRole(role);
+        user.setIsEmailVerified(true);
+        return userRepository.save(user);
+    }
+
+    @BeforeEach
+    void seed() {
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+
+        String run = String.valueOf(System.nanoTime());
+        List<User> customers = new ArrayList<>();
+        List<Driver> drivers = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            customers.add(user("qc-customer-" + run + "-" + i + "@test", "CUSTOMER"));
+            Driver driver = new Driver();
+            driver.setUser(user("qc-driver-" + run + "-" + i + "@test", "DRIVER"));
+            driver.setLicenseNumber("QC" + i);
+            driver.setIsAvailable(true);
+            drivers.add(driverRepository.save(driver));
+        }
+        customers.forEach(c -> customerIds.add(c.getUserId()));
+        drivers.forEach(d -> driverIds.add(d.getDriverId()));
+
+        LocalDateTime base = LocalDateTime.now().minusHours(2);
+        for (int i = 0; i < RIDES; i++) {
+            Ride ride = new Ride();
+            ride.setCustomer(customers.get(i % 3));
+            ride.setSourceLat(18.52);
+            ride.setSourceLng(73.85);
+            ride.setDestinationLat(18.60);
+            ride.setDestinationLng(73.90);
+            ride.setFare(120.0);
+            ride.setRequestedAt(base.plusMinutes(i));
+            switch (i % 4) {
+                case 0 -> ride.setRideStatus(RideStatus.REQUESTED);
+                case 1 -> {
+                    ride.setDriver(drivers.get(i % 3));
+                    ride.setRideStatus(RideStatus.STARTED);
+                }
+                default -> {
+                    ride.setDriver(drivers.get(i % 3));
+                    ride.setRideStatus(RideStatus.COMPLETED);
+                    ride.setCompletedAt(base.plusMinutes(i + 30));
+                }
+            }
+            ride = rideRepository.save(ride);
+            if (ride.getDriver() == null) {
+                openRideIds.add(ride.getRideId());
+            } else if (ride.getRideStatus() == RideStatus.COMPLETED) {
+                completedRideId = ride.getRideId();
+            }
+        }
+
+        // The rides above were saved around RideService, the consistency check picks them up
+        double corrections = meterRegistry.get("rides.active.corrections").functionCounter().count();
+        activeRideStore.reconcile();
+        // At least the REQUESTED and STARTED ones; other tests may have left drift of their own
+        assertTrue(meterRegistry.get("rides.active.corrections").functionCounter().count() >= corrections + RIDES / 2);
+    }
+
+    private long statements(Runnable action) {
+        statistics.clear();
+        action.run();
+        return statistics.getPrepareStatementCount();
+    }
+
+    @Test
+    void activeRideReadsComeFromMemory() {
+        Integer driverId = driverIds.get(1);
+        String fromDatabase = jsonMapper.writeValueAsString(rideRepository
+                .findByDriver_DriverIdAndRideStatusInOrderByRequestedAtDesc(driverId, List.of(RideStatus.ACCEPTED, RideStatus.STARTED)));
+
+        assertEquals(0, statements(() -> assertEquals(fromDatabase,
+                jsonMapper.writeValueAsString(driverService.getMyRides(driverId)))), "my rides");
+
+        assertEquals(0, statements(() -> rideService.getRideStatus(openRideIds.get(0))), "active ride status");
+
+        // Finished rides aren't held, their status is one select
+        assertEquals(1, statements(() -> rideService.getRideStatus(completedRideId)), "completed ride status");
+    }
+
+    @Test
+    void readEndpointsRunOneSelectEach() {
+        assertEquals(1, statements(() -> {
+            String json = jsonMapper.writeValueAsString(rideService.getPendingRides());
+            assertFalse(json.contains("passwordHash"));
+        }), "pending rides");
+
+        assertEquals(1, statements(() -> rideService.getRideHistory(customerIds.get(0), null, null)),
+                "customer history");
+
+        assertEquals(1, statements(() -> driverService.getRideHistory(driverIds.get(2), null, null)),
+                "driver history");
+    }
+
+    @Test
+    void acceptRideIsClaimReadAndDriverUpdate() {
+        Integer rideId = openRideIds.get(1);
+        Integer driverId = driverIds.get(0);
+        statsService.reconcile();
+        long accepted = statsService.getRideCount(RideStatus.ACCEPTED);
+
+        assertEquals(3, statements(() -> rideService.acceptRide(rideId, driverId)), "accept ride");
+
+        // The store moved with the commit, and a second driver is turned away without a query
+        assertEquals(RideStatus.ACCEPTED, activeRideStore.get(rideId).getRideStatus());
+        assertTrue(driverService.getMyRides(driverId).stream().anyMatch(r -> r.getRideId().equals(rideId)));
+        assertEquals(0, statements(() -> assertThrows(RuntimeException.class,
+                () -> rideService.acceptRide(rideId, driverIds.get(2)))), "second accept");
+
+        // The in-memory counter moved with the commit and agrees with a fresh count
+        assertEquals(accepted + 1, statsService.getRideCount(RideStatus.ACCEPTED));
+        statsService.reconcile();
+        assertEquals(accepted + 1, statsService.getRideCount(RideStatus.ACCEPTED));
+    }
+
+    @Test
+    void publicStatsRunNoQueries() {
+        statsService.reconcile();
+        assertEquals(0, statements(() -> statsService.getPublicStats()), "public stats");
+        assertEquals(rideRepository.findByRideStatus(RideStatus.COMPLETED).size(),
+                ((Number) statsService.getPublicStats().get("totalRides")).intValue());
+    }
+}
@@ -0,0 +1,115 @@
+package com.wheelshare.cabbooking.service;
+
+import com.wheelshare.cabbooking.dto.SavedRideDto;
+import com.wheelshare.cabbooking.entity.SavedPlace;
+import com.wheelshare.cabbooking.entity.User;
+import com.wheelshare.cabbooking.repository.SavedPlaceRepository;
+import com.wheelshare.cabbooking.repository.UserRepository;
+import com.wheelshare.cabbooking.security.JwtPrincipal;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.context.event.ApplicationStartedEvent;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.ApplicationListener;
+import org.springframework.context.annotation.Bean;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.ActiveProfiles;
+
+import javax.sql.DataSource;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Two H2 databases standing in for a MySQL primary and replica, with no replication between
+ * them: a row that only exists on the replica shows which one a read went to.
+ */
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:wheelshare-routing;MODE=MySQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1",
+        "datasource.replica.url=jdbc:h2:mem:wheelshare-replica;MODE=MySQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1",
+        "datasource.replica.username=sa",
+        "datasource.replica.read-your-writes-ms=500"
+})
+@ActiveProfiles("test")
+@DirtiesContext
+class ReplicaRoutingTests {
+
+    @Autowired
+    private SavedPlacesService savedPlacesService;
+
+    @Autowired
+    private SavedPlaceRepository savedPlaceRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    @Qualifier("replicaDataSource")
+    private DataSource replicaDataSource;
+
+    // Replica gets the primary's schema before anything reads from it (StatsService reconciles
+    // on ApplicationReadyEvent); users aren't replicated, so no foreign keys there
+    @TestConfiguration
+    static class ReplicaSchema {
+
+        @Bean
+        ApplicationListener<ApplicationStartedEvent> copySchemaToReplica(
+                @Qualifier("primaryDataSource") DataSource primaryDataSource,
+                @Qualifier("replicaDataSource") DataSource replicaDataSource) {
+            return event -> {
+                JdbcTemplate replica = new JdbcTemplate(replicaDataSource);
+                for (String statement : new JdbcTemplate(primaryDataSource).queryForList("SCRIPT NODATA", String.class)) {
+                    replica.execute(statement);
+                }
+                replica.execute("SET REFERENTIAL_INTEGRITY FALSE");
+            };
+        }
+    }
+
+    @AfterEach
+    void clearUser() {
+        SecurityContextHolder.clearContext();
+    }
+
+    private List<String> placeNames(List<SavedPlace> places) {
+        return places.stream().map(SavedPlace::getRideName).toList();
+    }
+
+    @Test
+    void readOnlyServiceMethodsReadTheReplicaExceptRightAfterOwnWrites() throws Exception {
+        User user = new User();
+        user.setName("Routed");
+        user.setEmail("routed@test");
+        user.setPhone("9999999999");
+        user.setPasswordHash("x");
+        user.setRole("CUSTOMER");
+        user.setIsEmailVerified(true);
+        Integer userId = userRepository.save(user).getUserId();
+
+        new JdbcTemplate(replicaDataSource).update(
+                "INSERT INTO saved_places (saved_place_id, user_id, ride_name) VALUES (?, ?, ?)",
+                1_000_000, userId, "replica");
+
+        assertEquals(List.of("replica"), placeNames(savedPlacesService.getSavedPlaces(userId)));
+        // Spring Data's own read-only transactions are not service reads
+        assertEquals(List.of(), placeNames(savedPlaceRepository.findByUserId(userId)));
+
+        SecurityContextHolder.getContext().setAuthentication(new UsernamePasswordAuthenticationToken(
+                new JwtPrincipal(userId, "routed@test", "CUSTOMER", Long.MAX_VALUE), null, List.of()));
+        SavedRideDto dto = new SavedRideDto();
+        dto.setRideName("primary");
+        savedPlacesService.addSavedRide(dto, userId);
+
+        // Own write within the window: primary
+        assertEquals(List.of("primary"), placeNames(savedPlacesService.getSavedPlaces(userId)));
+
+        Thread.sleep(600);
+        assertEquals(List.of("replica"), placeNames(savedPlacesService.getSavedPlaces(userId)));
+    }
+}
@@ -0,0 +1,98 @@
+package com.wheelshare.cabbooking.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RevenueAnalyticsTests {
+
+    // Inside the retention window whenever the tests run: a year of data ending two months ago
+    private static final LocalDateTime BASE = LocalDate.now().withDayOfMonth(1).minusMonths(14).atStartOfDay();
+
+    @Test
+    void mergedBucketsMatchRawRowsForAnyRange() {
+        RevenueAnalytics analytics = new RevenueAnalytics(null);
+        Random random = new Random(5);
+        int n = 200_000;
+        LocalDateTime[] at = new LocalDateTime[n];
+        long[] paise = new long[n];
+        for (int i = 0; i < n; i++) {
+            at[i] = BASE.plusMinutes(random.nextInt(366 * 24 * 60));
+            paise[i] = 5_000 + random.nextInt(50_000);
+            analytics.recordRide(at[i], paise[i] / 100.0);
+        }
+
+        for (int k = 0; k < 20; k++) {
+            LocalDateTime from = BASE.plusHours(random.nextInt(6000));
+            LocalDateTime to = from.plusHours(1 + random.nextInt(4000));
+            long rides = 0;
+            long gmv = 0;
+            for (int i = 0; i < n; i++) {
+                LocalDateTime hour = at[i].truncatedTo(ChronoUnit.HOURS);
+                if (!hour.isBefore(from) && hour.isBefore(to)) {
+                    rides++;
+                    gmv += paise[i];
+                }
+            }
+
+            RevenueAnalytics.Totals totals = analytics.totals(from, to);
+            assertEquals(rides, totals.rides());
+            assertEquals(gmv, totals.gmvPaise());
+
+            // The series splits the same range, its points add back up to the totals
+            long seriesRides = 0;
+            for (RevenueAnalytics.Totals point : analytics.series(from, to, RevenueAnalytics.Granularity.MONTH).values()) {
+                seriesRides += point.rides();
+            }
+            assertEquals(rides, seriesRides);
+        }
+
+        // A whole year is a dozen month buckets
+        long start = System.nanoTime();
+        assertEquals(n, analytics.totals(BASE, BASE.plusYears(1).plusDays(1)).rides());
+        assertTrue(System.nanoTime() - start < 50_000_000L);
+    }
+
+    @Test
+    void commissionAndPaymentMix() {
+        RevenueAnalytics analytics = new RevenueAnalytics(null);
+        analytics.recordRide(BASE.plusHours(3), 200.0);
+        // Older than anything so far, the buckets grow at the front
+        analytics.recordRide(BASE.minusMonths(2), 100.0);
+        analytics.recordPayment(BASE.plusHours(3), "cash", 200.0);
+        analytics.recordPayment(BASE.plusHours(4), "UPI", 100.0);
+        analytics.recordPayment(BASE.plusHours(5), "", 50.0);
+
+        RevenueAnalytics.Totals totals = analytics.totals(BASE.minusYears(1), BASE.plusYears(1));
+        assertEquals(2, totals.rides());
+        assertEquals(30_000, totals.gmvPaise());
+        // commission.driver-percent defaults to 10
+        assertEquals(3_000, totals.commissionPaise());
+
+        Map<String, long[]> payments = totals.payments();
+        assertEquals(20_000, payments.get("CASH")[1]);
+        assertEquals(1, payments.get("UPI")[0]);
+        assertEquals(1, payments.get("OTHER")[0]);
+    }
+
+    @Test
+    void timestampsOutsideTheRetentionWindowAreLeftOut() {
+        RevenueAnalytics analytics = new RevenueAnalytics(null);
+        analytics.recordRide(BASE, 100.0);
+        analytics.recordRide(LocalDateTime.of(1970, 1, 1, 0, 0), 100.0);
+        analytics.recordRide(LocalDateTime.of(2099, 12, 31, 23, 0), 100.0);
+        analytics.recordPayment(LocalDateTime.of(1970, 1, 1, 0, 0), "CASH", 100.0);
+
+        RevenueAnalytics.Totals totals = analytics.totals(LocalDateTime.of(1960, 1, 1, 0, 0), LocalDateTime.of(2100, 1, 1, 0, 0));
+        assertEquals(1, totals.rides());
+        assertEquals(10_000, totals.gmvPaise());
+        assertTrue(totals.payments().isEmpty());
+    }
+}
@@ -0,0 +1,244 @@
+package com.wheelshare.cabbooking.service;
+
+import com.wheelshare.cabbooking.dto.RideRequestDto;
+import com.wheelshare.cabbooking.entity.Driver;
+import com.wheelshare.cabbooking.entity.Ride;
+import com.wheelshare.cabbooking.entity.User;
+import com.wheelshare.cabbooking.enums.RideStatus;
+import com.wheelshare.cabbooking.repository.DriverRepository;
+import com.wheelshare.cabbooking.repository.RideRepository;
+import com.wheelshare.cabbooking.repository.UserRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * N drivers race to accept the same M rides. Every ride must end up with exactly one
+ * winner and the database must agree with who won. Customers cancelling while a driver
+ * accepts are held to the same rule, and a ride taken before its own request's after-commit
+ * hook runs must not reappear in the geo index.
+ */
+@SpringBootTest
+@ActiveProfiles("test")
+class RideAcceptanceStressTests {
+
+    private static final int DRIVERS = 16;
+    private static final int RIDES = 200;
+
+    @Autowired
+    private RideService rideService;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private DriverRepository driverRepository;
+
+    @Autowired
+    private RideRepository rideRepository;
+
+    @Autowired
+    private ActiveRideStore activeRideStore;
+
+    @Autowired
+    private RideGeoIndex rideGeoIndex;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    private Integer requestedRide(User customer) {
+        Ride ride = new Ride();
+        ride.setCustomer(customer);
+        ride.setSourceLat(18.52);
+        ride.setSourceLng(73.85);
+        ride.setDestinationLat(18.60);
+        ride.setDestinationLng(73.90);
+        ride.setFare(120.0);
+        ride.setRideStatus(RideStatus.REQUESTED);
+        ride.setRequestedAt(LocalDateTime.now());
+        return rideRepository.save(ride).getRideId();
+    }
+
+    private User user(String email, String role) {
+        User user = new User();
+        user.setName(email);
+        user.setEmail(email);
+        user.setPhone("9999999999");
+        user.setPasswordHash("x");
+        user.setRole(role);
+        user.setIsEmailVerified(true);
+        return userRepository.save(user);
+    }
+
+    @Test
+    void exactlyOneDriverWinsEachRide() throws Exception {
+        User customer = user("stress-customer@test", "CUSTOMER");
+
+        List<Integer> driverIds = new ArrayList<>();
+        for (int i = 0; i < DRIVERS; i++) {
+            Driver driver = new Driver();
+            driver.setUser(user("stress-driver-" + i + "@test", "DRIVER"));
+            driver.setLicenseNumber("L" + i);
+            driver.setIsAvailable(true);
+            driverIds.add(driverRepository.save(driver).getDriverId());
+        }
+
+        List<Integer> rideIds = new ArrayList<>();
+        for (int i = 0; i < RIDES; i++) {
+            rideIds.add(requestedRide(customer));
+        }
+
+        Map<Integer, Integer> winners = new ConcurrentHashMap<>();
+        AtomicInteger wins = new AtomicInteger();
+        AtomicInteger losses = new AtomicInteger();
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService pool = Executors.newFixedThreadPool(DRIVERS);
+
+        for (Integer driverId : driverIds) {
+            List<Integer> order = new ArrayList<>(rideIds);
+            Collections.shuffle(order, new Random(driverId));
+            pool.execute(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+                for (Integer rideId : order) {
+                    try {
+                        rideService.acceptRide(rideId, driverId);
+                        wins.incrementAndGet();
+                        Integer previous = winners.putIfAbsent(rideId, driverId);
+                        if (previous != null) {
+                            // Second winner for the same ride, record it so the assertion below fails
+                            winners.put(-rideId, driverId);
+                        }
+                    } catch (RuntimeException e) {
+                        losses.incrementAndGet();
+                    }
+                }
+            });
+        }
+
+        start.countDown();
+        pool.shutdown();
+        assertTrue(pool.awaitTermination(2, TimeUnit.MINUTES));
+
+        assertEquals(RIDES, wins.get());
+        assertEquals(RIDES * (DRIVERS - 1), losses.get());
+        assertEquals(RIDES, winners.size());
+
+        for (Integer rideId : rideIds) {
+            Ride ride = rideRepository.findById(rideId).orElseThrow();
+            assertEquals(RideStatus.ACCEPTED, ride.getRideStatus());
+            assertEquals(winners.get(rideId), ride.getDriver().getDriverId());
+        }
+    }
+
+    @Test
+    void cancelAndAcceptNeverBothWin() throws Exception {
+        User customer = user("race-customer@test", "CUSTOMER");
+        Driver driver = new Driver();
+        driver.setUser(user("race-driver@test", "DRIVER"));
+        driver.setLicenseNumber("RACE");
+        driver.setIsAvailable(true);
+        Integer driverId = driverRepository.save(driver).getDriverId();
+
+        List<Integer> rideIds = new ArrayList<>();
+        for (int i = 0; i < RIDES; i++) {
+            rideIds.add(requestedRide(customer));
+        }
+
+        Map<Integer, RideStatus> winners = new ConcurrentHashMap<>();
+        AtomicInteger doubleWins = new AtomicInteger();
+        ExecutorService pool = Executors.newFixedThreadPool(2);
+        for (Integer rideId : rideIds) {
+            CountDownLatch start = new CountDownLatch(1);
+            List<Future<?>> both = List.of(
+                    pool.submit(() -> race(start, rideId, RideStatus.CANCELLED,
+                            () -> rideService.cancelRide(rideId, customer.getUserId()), winners, doubleWins)),
+                    pool.submit(() -> race(start, rideId, RideStatus.ACCEPTED,
+                            () -> rideService.acceptRide(rideId, driverId), winners, doubleWins)));
+            start.countDown();
+            for (Future<?> future : both) {
+                future.get(30, TimeUnit.SECONDS);
+            }
+        }
+        pool.shutdown();
+
+        assertEquals(0, doubleWins.get());
+        assertEquals(RIDES, winners.size());
+        for (Integer rideId : rideIds) {
+            assertEquals(winners.get(rideId), rideRepository.findById(rideId).orElseThrow().getRideStatus());
+        }
+    }
+
+    @Test
+    void rideCancelledBeforeItsRequestHookStaysOutOfTheGeoIndex() {
+        User customer = user("late-hook-customer@test", "CUSTOMER");
+        RideRequestDto dto = new RideRequestDto();
+        dto.setSourceLat(18.52);
+        dto.setSourceLng(73.85);
+        dto.setDestinationLat(18.60);
+        dto.setDestinationLng(73.90);
+
+        Integer[] rideId = new Integer[1];
+        transactionTemplate.executeWithoutResult(status -> {
+            // Registered ahead of requestRide's hook, so it runs first: the cancel's hook, as if the
+            // cancel had committed and run its hook before the request's hook got going
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    Ride cancelled = new Ride();
+                    cancelled.setRideId(rideId[0]);
+                    cancelled.setRideStatus(RideStatus.CANCELLED);
+                    activeRideStore.put(cancelled);
+                    rideGeoIndex.remove(rideId[0]);
+                }
+            });
+            rideId[0] = (Integer) rideService.requestRide(dto, customer.getUserId(), null).get("rideId");
+        });
+
+        assertNull(rideGeoIndex.get(rideId[0]));
+    }
+
+    private static void race(CountDownLatch start, Integer rideId, RideStatus outcome, Runnable attempt,
+                             Map<Integer, RideStatus> winners, AtomicInteger doubleWins) {
+        try {
+            start.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        }
+        try {
+            attempt.run();
+        } catch (RuntimeException e) {
+            return;
+        }
+        if (winners.putIfAbsent(rideId, outcome) != null) {
+            doubleWins.incrementAndGet();
+        }
+    }
+}
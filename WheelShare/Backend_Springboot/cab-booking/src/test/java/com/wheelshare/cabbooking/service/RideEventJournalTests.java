@@ -0,0 +1,124 @@
+package com.wheelshare.cabbooking.service;
+
+import com.wheelshare.cabbooking.service.RideEventJournal.EventType;
+import com.wheelshare.cabbooking.service.RideEventJournal.RideEvent;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RideEventJournalTests {
+
+    private static final int RECORD = RideEventJournal.RECORD_BYTES;
+
+    private static List<RideEvent> replayAll(RideEventJournal journal) {
+        List<RideEvent> events = new ArrayList<>();
+        journal.replay(1, events::add);
+        return events;
+    }
+
+    @Test
+    void recoversFromTornTailAfterCrash(@TempDir Path dir) throws Exception {
+        // 100 records per segment, so 1050 events span 11 files
+        RideEventJournal journal = new RideEventJournal(dir.toString(), 100 * RECORD, 5, 0);
+        journal.open();
+        long last = 0;
+        for (int i = 1; i <= 1050; i++) {
+            last = journal.append(EventType.values()[i % 6], i, i * 7, i * 100L, i % 6 == 5 ? "UPI" : null);
+        }
+        journal.awaitDurable(last);
+        assertEquals(1050, last);
+
+        // Crash without close(): a half-written record right after the tail, and a stale
+        // record further on whose page happened to reach disk first
+        Path tail;
+        try (Stream<Path> files = Files.list(dir)) {
+            tail = files.sorted().reduce((a, b) -> b).orElseThrow();
+        }
+        try (FileChannel file = FileChannel.open(tail, StandardOpenOption.WRITE)) {
+            ByteBuffer torn = ByteBuffer.allocate(RECORD / 2);
+            torn.put(0, (byte) 0x5A).put(4, (byte) 2);
+            file.write(torn, 50L * RECORD);
+            file.write(ByteBuffer.wrap(new byte[]{1, 2, 3, 4, 1}), 70L * RECORD);
+        }
+
+        RideEventJournal recovered = new RideEventJournal(dir.toString(), 100 * RECORD, 5, 0);
+        recovered.open();
+        try {
+            List<RideEvent> events = replayAll(recovered);
+            assertEquals(1050, events.size());
+            for (int i = 0; i < events.size(); i++) {
+                RideEvent event = events.get(i);
+                assertEquals(i + 1, event.sequence());
+                assertEquals(i + 1, event.rideId());
+                assertEquals((i + 1) * 7, event.actorId());
+                assertEquals((i + 1) * 100L, event.amountPaise());
+            }
+            assertEquals("UPI", events.get(4).paymentMethod());
+
+            // Appending resumes right after the last good record
+            assertEquals(1051, recovered.append(EventType.PAID, 9, 9, 900, "CASH"));
+            List<RideEvent> after = new ArrayList<>();
+            recovered.replay(1040, after::add);
+            assertEquals(12, after.size());
+            assertEquals(EventType.PAID, after.get(11).type());
+            assertEquals("CASH", after.get(11).paymentMethod());
+        } finally {
+            recovered.close();
+        }
+    }
+
+    @Test
+    void dropsSegmentsBeyondRetention(@TempDir Path dir) throws Exception {
+        // 100 records per segment, the current one plus 2 sealed ones are kept
+        RideEventJournal journal = new RideEventJournal(dir.toString(), 100 * RECORD, 5, 2);
+        journal.open();
+        try {
+            for (int i = 1; i <= 1050; i++) {
+                journal.append(EventType.COMPLETED, i, i, 100, null);
+            }
+            try (Stream<Path> files = Files.list(dir)) {
+                assertEquals(List.of("00000000000000000801.journal", "00000000000000000901.journal",
+                                "00000000000000001001.journal"),
+                        files.map(p -> p.getFileName().toString()).sorted().toList());
+            }
+
+            List<RideEvent> events = replayAll(journal);
+            assertEquals(250, events.size());
+            assertEquals(801, events.get(0).sequence());
+            assertEquals(1050, events.get(249).sequence());
+        } finally {
+            journal.close();
+        }
+    }
+
+    @Test
+    void sustainsOneHundredThousandEventsPerSecond(@TempDir Path dir) throws Exception {
+        RideEventJournal journal = new RideEventJournal(dir.toString(), 16 * 1024 * 1024, 5, 0);
+        journal.open();
+        try {
+            int events = 1_000_000;
+            long start = System.nanoTime();
+            long last = 0;
+            for (int i = 0; i < events; i++) {
+                last = journal.append(EventType.COMPLETED, i, i, 12_000, null);
+            }
+            journal.awaitDurable(last);
+            double perSecond = events / ((System.nanoTime() - start) / 1e9);
+            assertTrue(perSecond > 100_000, "only " + perSecond + " events/s");
+            assertEquals(events, replayAll(journal).size());
+        } finally {
+            journal.close();
+        }
+    }
+}
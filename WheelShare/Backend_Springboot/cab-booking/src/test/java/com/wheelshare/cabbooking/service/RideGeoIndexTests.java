@@ -0,0 +1,71 @@
+package com.wheelshare.cabbooking.service;
+
+import com.wheelshare.cabbooking.entity.Ride;
+import com.wheelshare.cabbooking.enums.RideStatus;
+import com.wheelshare.cabbooking.helper.DistanceHelper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class RideGeoIndexTests {
+
+    private static Ride ride(int id, double lat, double lng) {
+        Ride ride = new Ride();
+        ride.setRideId(id);
+        ride.setSourceLat(lat);
+        ride.setSourceLng(lng);
+        ride.setFare(100.0);
+        ride.setRideStatus(RideStatus.REQUESTED);
+        return ride;
+    }
+
+    @Test
+    void nearbyMatchesFullScan() {
+        RideGeoIndex index = new RideGeoIndex(null, new SimpleMeterRegistry());
+        Random random = new Random(42);
+        Ride[] rides = new Ride[5000];
+        for (int i = 0; i < rides.length; i++) {
+            // ~30 km square around Pune
+            rides[i] = ride(i + 1, 18.40 + random.nextDouble() * 0.3, 73.70 + random.nextDouble() * 0.3);
+            index.add(rides[i]);
+        }
+
+        for (int q = 0; q < 50; q++) {
+            double lat = 18.40 + random.nextDouble() * 0.3;
+            double lng = 73.70 + random.nextDouble() * 0.3;
+
+            Set<Integer> expected = new HashSet<>();
+            for (Ride r : rides) {
+                if (DistanceHelper.calculateDistanceKm(lat, lng, r.getSourceLat(), r.getSourceLng()) <= 5.0) {
+                    expected.add(r.getRideId());
+                }
+            }
+
+            Set<Integer> actual = index.findNearby(lat, lng, 5.0).stream()
+                    .map(c -> c.ride().rideId())
+                    .collect(Collectors.toSet());
+
+            assertEquals(expected, actual);
+        }
+    }
+
+    @Test
+    void removedRidesAreNoLongerReturned() {
+        RideGeoIndex index = new RideGeoIndex(null, new SimpleMeterRegistry());
+        index.add(ride(1, 18.52, 73.85));
+        index.add(ride(2, 18.53, 73.86));
+
+        index.remove(1);
+
+        assertNull(index.get(1));
+        assertEquals(1, index.size());
+        assertEquals(2, index.findNearby(18.52, 73.85, 5.0).get(0).ride().rideId());
+    }
+}
@@ -0,0 +1,150 @@
+package com.wheelshare.cabbooking.service;
+
+import com.wheelshare.cabbooking.dto.CursorPage;
+import com.wheelshare.cabbooking.entity.Driver;
+import com.wheelshare.cabbooking.entity.Ride;
+import com.wheelshare.cabbooking.entity.User;
+import com.wheelshare.cabbooking.enums.RideStatus;
+import com.wheelshare.cabbooking.helper.HistoryCursor;
+import com.wheelshare.cabbooking.repository.DriverRepository;
+import com.wheelshare.cabbooking.repository.RideRepository;
+import com.wheelshare.cabbooking.repository.UserRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Walks both history endpoints page by page. Several rides share a timestamp so the
+ * rideId tie-break has to hold; the pages together must be the full list, in order, once.
+ */
+@SpringBootTest
+@ActiveProfiles("test")
+class RideHistoryPaginationTests {
+
+    @Autowired
+    private RideService rideService;
+
+    @Autowired
+    private DriverService driverService;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private DriverRepository driverRepository;
+
+    @Autowired
+    private RideRepository rideRepository;
+
+    private User user(String email, String role) {
+        User user = new User();
+        user.setName(email);
+        user.setEmail(email);
+        user.setPhone("9999999999");
+        user.setPasswordHash("x");
+        user.setRole(role);
+        user.setIsEmailVerified(true);
+        return userRepository.save(user);
+    }
+
+    @Test
+    void pagesCoverHistoryExactlyOnceInOrder() {
+        User customer = user("history-customer@test", "CUSTOMER");
+        Driver driver = new Driver();
+        driver.setUser(user("history-driver@test", "DRIVER"));
+        driver.setLicenseNumber("H1");
+        driver = driverRepository.save(driver);
+
+        LocalDateTime base = LocalDateTime.of(2025, 1, 1, 10, 0);
+        List<Ride> rides = new ArrayList<>();
+        for (int i = 0; i < 11; i++) {
+            Ride ride = new Ride();
+            ride.setCustomer(customer);
+            ride.setSourceLat(18.52);
+            ride.setSourceLng(73.85);
+            ride.setDestinationLat(18.60);
+            ride.setDestinationLng(73.90);
+            ride.setFare(100.0 + i);
+            // Pairs of rides share a timestamp
+            ride.setRequestedAt(base.plusMinutes(i / 2));
+            if (i % 3 != 0) {
+                ride.setDriver(driver);
+                ride.setRideStatus(RideStatus.COMPLETED);
+                ride.setCompletedAt(base.plusHours(1).plusMinutes(i / 2));
+            } else {
+                ride.setRideStatus(RideStatus.REQUESTED);
+            }
+            rides.add(rideRepository.save(ride));
+        }
+
+        List<Integer> expectedCustomer = rides.stream()
+                .sorted(Comparator.comparing(Ride::getRequestedAt).thenComparing(Ride::getRideId).reversed())
+                .map(Ride::getRideId)
+                .toList();
+        List<Integer> expectedDriver = rides.stream()
+                .filter(r -> r.getCompletedAt() != null)
+                .sorted(Comparator.comparing(Ride::getCompletedAt).thenComparing(Ride::getRideId).reversed())
+                .map(Ride::getRideId)
+                .toList();
+
+        Integer customerId = customer.getUserId();
+        Integer driverId = driver.getDriverId();
+        assertEquals(expectedCustomer, walk(cursor -> rideService.getRideHistory(customerId, cursor, 3)));
+        assertEquals(expectedDriver, walk(cursor -> driverService.getRideHistory(driverId, cursor, 3)));
+
+        CursorPage<Map<String, Object>> all = rideService.getRideHistory(customerId, null, null);
+        assertEquals(expectedCustomer.size(), all.items().size());
+        assertNull(all.nextCursor());
+
+        assertThrows(RuntimeException.class, () -> rideService.getRideHistory(customerId, "not-a-cursor", 3));
+    }
+
+    @Test
+    void withoutCursorOrLimitTheWholeHistoryComesBack() {
+        User customer = user("history-unpaged@test", "CUSTOMER");
+        int total = HistoryCursor.DEFAULT_LIMIT + 5;
+        List<Ride> rides = new ArrayList<>();
+        for (int i = 0; i < total; i++) {
+            Ride ride = new Ride();
+            ride.setCustomer(customer);
+            ride.setFare(100.0);
+            ride.setRideStatus(RideStatus.CANCELLED);
+            ride.setRequestedAt(LocalDateTime.of(2025, 2, 1, 10, 0).plusMinutes(i));
+            rides.add(ride);
+        }
+        rideRepository.saveAll(rides);
+
+        // The web UI asks this way, it totals and filters the whole list itself
+        CursorPage<Map<String, Object>> all = rideService.getRideHistory(customer.getUserId(), null, null);
+        assertEquals(total, all.items().size());
+        assertNull(all.nextCursor());
+
+        CursorPage<Map<String, Object>> first = rideService.getRideHistory(customer.getUserId(), null, HistoryCursor.DEFAULT_LIMIT);
+        assertEquals(HistoryCursor.DEFAULT_LIMIT, first.items().size());
+        assertNotNull(first.nextCursor());
+    }
+
+    private List<Integer> walk(Function<String, CursorPage<Map<String, Object>>> fetch) {
+        List<Integer> seen = new ArrayList<>();
+        String cursor = null;
+        do {
+            CursorPage<Map<String, Object>> page = fetch.apply(cursor);
+            page.items().forEach(item -> seen.add((Integer) item.get("rideId")));
+            cursor = page.nextCursor();
+        } while (cursor != null);
+        return seen;
+    }
+}
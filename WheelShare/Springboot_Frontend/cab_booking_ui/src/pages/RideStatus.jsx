@@ -2,7 +2,7 @@ import { useState, useEffect, useRef } from "react";
 import { useLocation, useNavigate } from "react-router-dom";
 import { motion } from "framer-motion";
 import { MapPin, Navigation, Clock, Car, Phone, CheckCircle, AlertCircle, Loader, XCircle, CreditCard, Banknote } from "lucide-react";
-import { getRideStatus, cancelRide } from "../services/rideService";
+import { getRideStatus, cancelRide, subscribeRideStatus } from "../services/rideService";
 import { makePayment } from "../services/paymentService";
 import { getRoute } from "../services/mapplsService";
 import { useToast } from "../contexts/ToastContext";
@@ -121,52 +121,69 @@ function RideStatus() {
     }
   }, [rideId]);
 
-  // Fetch and poll ride status
+  // Ride status arrives over a server push stream; polling is only the fallback
+  const lastStatusRef = useRef(null);
+
   useEffect(() => {
     if (!rideId) {
       return;
     }
 
-    const fetchRideStatus = async () => {
-      try {
-        console.log("Fetching ride status for rideId:", rideId);
-        const response = await getRideStatus(rideId);
-        console.log("Ride status response:", response.data);
-        const newRideData = response.data;
+    const applyRideStatus = (newRideData) => {
+      // Check if ride just completed
+      if (lastStatusRef.current !== "COMPLETED" && newRideData.status === "COMPLETED") {
+        success("Ride completed successfully!");
         
-        // Check if ride just completed
-        if (rideData?.status !== "COMPLETED" && newRideData.status === "COMPLETED") {
-          success("Ride completed successfully!");
-          
-          // Show payment method selection modal only if payment not already processed
-          if (!newRideData.paymentStatus || newRideData.paymentStatus === 'PENDING') {
-            if (!paymentCompleted && !paymentMethodSelected) {
-              setTimeout(() => {
-                setShowPaymentModal(true);
-              }, 1000);
-            }
+        // Show payment method selection modal only if payment not already processed
+        if (!newRideData.paymentStatus || newRideData.paymentStatus === 'PENDING') {
+          if (!paymentCompleted && !paymentMethodSelected) {
+            setTimeout(() => {
+              setShowPaymentModal(true);
+            }, 1000);
           }
         }
-        
-        setRideData(newRideData);
-        setError("");
-        setPollingStatus("connected");
+      }
+      lastStatusRef.current = newRideData.status;
+
+      setRideData((previous) => ({ ...previous, ...newRideData }));
+      setError("");
+      setPollingStatus("connected");
+      setLoading(false);
+    };
+
+    const fetchRideStatus = async () => {
+      try {
+        const response = await getRideStatus(rideId);
+        applyRideStatus(response.data);
       } catch (err) {
         console.error("Error fetching ride status:", err);
         setError(err.response?.data?.message || "Failed to fetch ride status");
         setPollingStatus("error");
-      } finally {
         setLoading(false);
       }
     };
 
-    fetchRideStatus();
-    
-    // Poll for status updates every 2 seconds for more real-time updates
-    const interval = setInterval(fetchRideStatus, 2000);
-    
-    return () => clearInterval(interval);
-  }, [rideId, rideData?.status, success, showError]);
+    let interval = null;
+    const unsubscribe = subscribeRideStatus(rideId, {
+      onStatus: applyRideStatus,
+      onLocation: (location) =>
+        setRideData((previous) => ({
+          ...previous,
+          driverLatitude: location.latitude,
+          driverLongitude: location.longitude,
+        })),
+      onError: (err) => {
+        console.warn("Ride status stream unavailable, falling back to polling:", err);
+        fetchRideStatus();
+        interval = setInterval(fetchRideStatus, 2000);
+      },
+    });
+
+    return () => {
+      unsubscribe();
+      if (interval) clearInterval(interval);
+    };
+  }, [rideId, success, showError]);
 
   // Fetch route when ride data is available
   useEffect(() => {
@@ -24,3 +24,82 @@ export const getCustomerRides = () => {
 export const cancelRide = (rideId) => {
   return api.post(`/rides/cancel/${rideId}`);
 };
+
+// Subscribe to ride status pushes (Server-Sent Events).
+// EventSource can't send the Authorization header, so the stream is read with fetch.
+// The server ends a stream on timeout or shutdown, and proxies may drop it: while the ride is
+// still active the stream is reopened with backoff, and its first event is the current status.
+// Returns a function that closes the stream.
+const TERMINAL_STATUSES = ["COMPLETED", "CANCELLED"];
+const RECONNECT_MIN_MS = 1000;
+const RECONNECT_MAX_MS = 30000;
+
+export const subscribeRideStatus = (rideId, { onStatus, onLocation, onError }) => {
+  const controller = new AbortController();
+  let lastStatus = null;
+  let reconnectDelay = RECONNECT_MIN_MS;
+  let reconnectTimer = null;
+
+  const dispatch = (block) => {
+    let event = "message";
+    let data = "";
+    for (const line of block.split("\n")) {
+      if (line.startsWith("event:")) event = line.slice(6).trim();
+      else if (line.startsWith("data:")) data += line.slice(5).trim();
+    }
+    if (!data) return;
+    const payload = JSON.parse(data);
+    if (event === "status") {
+      lastStatus = payload.status || payload.rideStatus;
+      reconnectDelay = RECONNECT_MIN_MS;
+      if (onStatus) onStatus(payload);
+    }
+    if (event === "location" && onLocation) onLocation(payload);
+  };
+
+  const connect = async () => {
+    // Read on every attempt, the token may have been refreshed since the last one
+    const token = sessionStorage.getItem("token");
+    try {
+      const response = await fetch(`${api.defaults.baseURL}/rides/${rideId}/stream`, {
+        headers: {
+          Accept: "text/event-stream",
+          ...(token ? { Authorization: `Bearer ${token}` } : {}),
+        },
+        signal: controller.signal,
+      });
+      if (!response.ok || !response.body) {
+        throw new Error(`Stream failed with status ${response.status}`);
+      }
+
+      const reader = response.body.getReader();
+      const decoder = new TextDecoder();
+      let buffer = "";
+      for (;;) {
+        const { done, value } = await reader.read();
+        if (done) break;
+        buffer += decoder.decode(value, { stream: true });
+        let boundary;
+        while ((boundary = buffer.indexOf("\n\n")) >= 0) {
+          dispatch(buffer.slice(0, boundary));
+          buffer = buffer.slice(boundary + 2);
+        }
+      }
+    } catch (err) {
+      if (!controller.signal.aborted && onError) onError(err);
+      return;
+    }
+
+    // Ended cleanly: reopen unless the ride is over or the caller closed it
+    if (controller.signal.aborted || TERMINAL_STATUSES.includes(lastStatus)) return;
+    reconnectTimer = setTimeout(connect, reconnectDelay);
+    reconnectDelay = Math.min(reconnectDelay * 2, RECONNECT_MAX_MS);
+  };
+
+  connect();
+
+  return () => {
+    controller.abort();
+    if (reconnectTimer) clearTimeout(reconnectTimer);
+  };
+};